@@ -38,6 +38,8 @@ import com.moviejukebox.scanner.*;
 import com.moviejukebox.scanner.artwork.*;
 import com.moviejukebox.tools.*;
 import com.moviejukebox.tools.PropertiesUtil.KeywordMap;
+import com.moviejukebox.tools.cache.CacheDisk;
+import com.moviejukebox.tools.cache.CacheDocument;
 import com.moviejukebox.tools.cache.CacheMemory;
 import com.moviejukebox.writer.CompleteMoviesWriter;
 import com.moviejukebox.writer.MovieJukeboxHTMLWriter;
@@ -500,6 +502,9 @@ public class MovieJukebox {
             ml.generateLibrary();
         }
 
+        // The disk cache is written in the background, so wait for it to finish
+        CacheDisk.flush();
+
         // Now rename the log files
         renameLogFile();
 
@@ -1086,6 +1091,8 @@ public class MovieJukebox {
                 LOG.info("Searching for people information...");
                 int peopleCounter = 0;
                 Map<String, Person> popularPeople = new TreeMap<>();
+                // The popular people by their case insensitive name
+                Map<String, Person> popularNames = new HashMap<>();
                 for (Movie movie : library.values()) {
                     // Issue 997: Skip the processing of extras if not required
                     if (movie.isExtra() && !processExtras) {
@@ -1094,22 +1101,18 @@ public class MovieJukebox {
 
                     if (popularity > 0) {
                         for (Filmography person : movie.getPeople()) {
-                            boolean exists = Boolean.FALSE;
-                            String name = person.getName();
-                            for (Map.Entry<String, Person> entry : popularPeople.entrySet()) {
-                                if (entry.getKey().substring(3).equalsIgnoreCase(name)) {
-                                    entry.getValue().addDepartment(person.getDepartment());
-                                    entry.getValue().popularityUp(movie);
-                                    exists = Boolean.TRUE;
-                                }
-                            }
-
-                            if (!exists) {
+                            String name = foldCase(person.getName());
+                            Person existing = popularNames.get(name);
+                            if (existing == null) {
                                 Person p = new Person(person);
                                 p.addDepartment(p.getDepartment());
                                 String key = String.format("%03d", person.getOrder()) + person.getName();
                                 popularPeople.put(key, p);
-                                popularPeople.get(key).popularityUp(movie);
+                                popularNames.put(name, p);
+                                p.popularityUp(movie);
+                            } else {
+                                existing.addDepartment(person.getDepartment());
+                                existing.popularityUp(movie);
                             }
                         }
                     } else {
@@ -1219,87 +1222,7 @@ public class MovieJukebox {
                 tasks.waitFor();
 
                 LOG.info("Add/update people information to the videos...");
-                boolean dirty;
-                for (Movie movie : library.values()) {
-                    // Issue 997: Skip the processing of extras if not required
-                    if (movie.isExtra() && !processExtras) {
-                        continue;
-                    }
-
-                    for (Filmography person : movie.getPeople()) {
-                        dirty = Boolean.FALSE;
-                        for (Person p : library.getPeople()) {
-                            if (Filmography.comparePersonName(person, p) || comparePersonId(person, p)) {
-                                if (!person.getFilename().equals(p.getFilename()) && isValidString(p.getFilename())) {
-                                    person.setFilename(p.getFilename());
-                                    dirty = Boolean.TRUE;
-                                }
-                                if (!person.getUrl().equals(p.getUrl()) && isValidString(p.getUrl())) {
-                                    person.setUrl(p.getUrl());
-                                    dirty = Boolean.TRUE;
-                                }
-                                for (Map.Entry<String, String> e : p.getIdMap().entrySet()) {
-                                    if (isNotValidString(e.getValue())) {
-                                        continue;
-                                    }
-
-                                    if (person.getId(e.getKey()).equals(e.getValue())) {
-                                        continue;
-                                    }
-
-                                    person.setId(e.getKey(), e.getValue());
-                                    dirty = Boolean.TRUE;
-                                }
-
-                                if (!person.getPhotoFilename().equals(p.getPhotoFilename()) && isValidString(p.getPhotoFilename())) {
-                                    person.setPhotoFilename(p.getPhotoFilename());
-                                    dirty = Boolean.TRUE;
-                                }
-
-                                break;
-                            }
-                        }
-
-                        if (dirty) {
-                            movie.setDirty(DirtyFlag.INFO, Boolean.TRUE);
-                        }
-                    }
-
-                    for (Person p : library.getPeople()) {
-                        for (Filmography film : p.getFilmography()) {
-                            if (Filmography.compareMovieAndFilm(movie, film)) {
-                                film.setFilename(movie.getBaseName());
-                                film.setTitle(movie.getTitle());
-                                if (film.isDirty()) {
-                                    p.setDirty();
-                                }
-                                break;
-                            }
-                        }
-                    }
-                }
-
-                for (Person p : library.getPeople()) {
-                    for (Filmography film : p.getFilmography()) {
-                        if (film.isDirty() || StringTools.isNotValidString(film.getFilename())) {
-                            continue;
-                        }
-                        dirty = Boolean.FALSE;
-                        for (Movie movie : library.values()) {
-                            if (movie.isExtra() && !processExtras) {
-                                continue;
-                            }
-                            dirty = Filmography.compareMovieAndFilm(movie, film);
-                            if (dirty) {
-                                break;
-                            }
-                        }
-                        if (!dirty) {
-                            film.clearFilename();
-                            p.setDirty();
-                        }
-                    }
-                }
+                updatePeopleInformation(library, processExtras);
 
                 JukeboxStatistics.setJukeboxTime(JukeboxStatistics.JukeboxTimes.PEOPLE_END, System.currentTimeMillis());
             }
@@ -1334,8 +1257,13 @@ public class MovieJukebox {
              * ones that are there now. So the movies that are in getMoviesList
              * but not in values are the index masters.
              */
-            List<Movie> indexMasters = new ArrayList<>(library.getMoviesList());
-            indexMasters.removeAll(library.values());
+            Set<Movie> libraryMovies = new HashSet<>(library.values());
+            List<Movie> indexMasters = new ArrayList<>();
+            for (Movie movie : library.getMoviesList()) {
+                if (!libraryMovies.contains(movie)) {
+                    indexMasters.add(movie);
+                }
+            }
 
             JukeboxStatistics.setStatistic(JukeboxStatistic.SETS, indexMasters.size());
 
@@ -1437,6 +1365,7 @@ public class MovieJukebox {
             tasks.waitFor();
 
             // Clear the cache if we've used it
+            CacheMemory.logStatistics();
             CacheMemory.clear();
             JukeboxStatistics.setJukeboxTime(JukeboxStatistics.JukeboxTimes.MASTERS_END, System.currentTimeMillis());
             SystemTools.showMemory();
@@ -1457,6 +1386,9 @@ public class MovieJukebox {
             // Issue 1882: Separate index files for each category
             List<String> categoriesList = Arrays.asList(getProperty("mjb.categories.indexList", "Other,Genres,Title,Certification,Year,Library,Set").split(","));
 
+            // Only hold the written XML documents if they are going to be transformed
+            CacheDocument.setEnabled(!skipIndexGeneration && !skipHtmlGeneration);
+
             if (!skipIndexGeneration) {
                 LOG.info("Writing Indexes XML...");
                 xmlWriter.writeIndexXML(jukebox, library, tasks);
@@ -1477,15 +1409,15 @@ public class MovieJukebox {
                             }
 
                             if (createPosters) {
-                                // Create/update a detail poster for setMaster
-                                LOG.debug("Create/update detail poster for set: {}", movie.getBaseName());
-                                createPoster(tools.imagePlugin, jukebox, SkinProperties.getSkinHome(), movie, Boolean.TRUE);
+                                // Create/update a detail poster and a thumbnail for setMaster
+                                LOG.debug("Create/update detail poster and thumbnail for set: {}, isTV: {}, isHD: {}", movie.getBaseName(), movie.isTVShow(), movie.isHD());
+                                createPosterAndThumbnail(tools.imagePlugin, jukebox, SkinProperties.getSkinHome(), movie, Boolean.TRUE, Boolean.TRUE);
+                            } else {
+                                // Create/update a thumbnail for setMaster
+                                LOG.debug("Create/update thumbnail for set: {}, isTV: {}, isHD: {}", movie.getBaseName(), movie.isTVShow(), movie.isHD());
+                                createThumbnail(tools.imagePlugin, jukebox, SkinProperties.getSkinHome(), movie, Boolean.TRUE);
                             }
 
-                            // Create/update a thumbnail for setMaster
-                            LOG.debug("Create/update thumbnail for set: {}, isTV: {}, isHD: {}", movie.getBaseName(), movie.isTVShow(), movie.isHD());
-                            createThumbnail(tools.imagePlugin, jukebox, SkinProperties.getSkinHome(), movie, Boolean.TRUE);
-
                             for (int inx = 0; inx < footerCount; inx++) {
                                 if (FOOTER_ENABLE.get(inx)) {
                                     LOG.debug("Create/update footer for set: {}, footerName: {}", movie.getBaseName(), FOOTER_NAME.get(inx));
@@ -1538,13 +1470,9 @@ public class MovieJukebox {
                         LOG.debug("Writing index data to movie: {}", movie.getBaseName());
                         xmlWriter.writeMovieXML(jukebox, movie, library);
 
-                        // Create a detail poster for each movie
-                        LOG.debug("Creating detail poster for movie: {}", movie.getBaseName());
-                        createPoster(tools.imagePlugin, jukebox, SkinProperties.getSkinHome(), movie, forcePosterOverwrite);
-
-                        // Create a thumbnail for each movie
-                        LOG.debug("Creating thumbnails for movie: {}", movie.getBaseName());
-                        createThumbnail(tools.imagePlugin, jukebox, SkinProperties.getSkinHome(), movie, forceThumbnailOverwrite);
+                        // Create a detail poster and a thumbnail for each movie
+                        LOG.debug("Creating detail poster and thumbnails for movie: {}", movie.getBaseName());
+                        createPosterAndThumbnail(tools.imagePlugin, jukebox, SkinProperties.getSkinHome(), movie, forcePosterOverwrite, forceThumbnailOverwrite);
 
                         if (!skipIndexGeneration && !skipHtmlGeneration) {
                             // write the movie details HTML
@@ -1619,6 +1547,7 @@ public class MovieJukebox {
                         }
                     }
                 }
+                CacheDocument.setEnabled(Boolean.FALSE);
 
                 /*
                  * Generate the index file.
@@ -1736,6 +1665,9 @@ public class MovieJukebox {
             AttachmentScanner.cleanUp();
         }
 
+        // All the processing phases are done, stop the pool threads
+        tasks.shutdown();
+
         // Set the end time
         JukeboxStatistics.setTimeEnd(System.currentTimeMillis());
 
@@ -1750,6 +1682,219 @@ public class MovieJukebox {
         LOG.info("Processing took {}", JukeboxStatistics.getProcessingTime());
     }
 
+    /**
+     * Copy the scanned people information to the people of the videos and link the filmography of the people to the
+     * videos of the library.
+     *
+     * The people and videos are indexed by their names and IDs, so only the candidates are compared instead of
+     * comparing every person with every video.
+     *
+     * @param library
+     * @param processExtras
+     */
+    private static void updatePeopleInformation(Library library, boolean processExtras) {
+        List<Person> people = new ArrayList<>(library.getPeople());
+        List<Movie> movies = new ArrayList<>();
+        for (Movie movie : library.values()) {
+            // Issue 997: Skip the processing of extras if not required
+            if (!movie.isExtra() || processExtras) {
+                movies.add(movie);
+            }
+        }
+
+        // Index the people by their names and IDs
+        Map<String, List<Integer>> peopleIndex = new HashMap<>();
+        for (int position = 0; position < people.size(); position++) {
+            Person p = people.get(position);
+            addToIndex(peopleIndex, foldCase(p.getName()), position);
+            addToIndex(peopleIndex, foldCase(p.getTitle()), position);
+            for (String aka : p.getAka()) {
+                addToIndex(peopleIndex, foldCase(aka), position);
+            }
+            for (String idKey : getIdKeys(p.getIdMap())) {
+                addToIndex(peopleIndex, idKey, position);
+            }
+        }
+
+        // Index the videos by their titles and IDs
+        Map<String, List<Integer>> movieIndex = new HashMap<>();
+        for (int position = 0; position < movies.size(); position++) {
+            Movie movie = movies.get(position);
+            addToIndex(movieIndex, foldCase(movie.getOriginalTitle()), position);
+            addToIndex(movieIndex, foldCase(movie.getTitle()), position);
+            for (String idKey : getIdKeys(movie.getIdMap())) {
+                addToIndex(movieIndex, idKey, position);
+            }
+        }
+
+        boolean dirty;
+        for (Movie movie : movies) {
+            for (Filmography person : movie.getPeople()) {
+                dirty = Boolean.FALSE;
+
+                // Use the first person of the library that matches
+                SortedSet<Integer> candidates = new TreeSet<>();
+                addFromIndex(peopleIndex, foldCase(person.getName()), candidates);
+                addFromIndex(peopleIndex, foldCase(person.getTitle()), candidates);
+                for (String idKey : getIdKeys(person.getIdMap())) {
+                    addFromIndex(peopleIndex, idKey, candidates);
+                }
+
+                for (Integer position : candidates) {
+                    Person p = people.get(position);
+                    if (Filmography.comparePersonName(person, p) || comparePersonId(person, p)) {
+                        if (!person.getFilename().equals(p.getFilename()) && isValidString(p.getFilename())) {
+                            person.setFilename(p.getFilename());
+                            dirty = Boolean.TRUE;
+                        }
+                        if (!person.getUrl().equals(p.getUrl()) && isValidString(p.getUrl())) {
+                            person.setUrl(p.getUrl());
+                            dirty = Boolean.TRUE;
+                        }
+                        for (Map.Entry<String, String> e : p.getIdMap().entrySet()) {
+                            if (isNotValidString(e.getValue())) {
+                                continue;
+                            }
+
+                            if (person.getId(e.getKey()).equals(e.getValue())) {
+                                continue;
+                            }
+
+                            person.setId(e.getKey(), e.getValue());
+                            dirty = Boolean.TRUE;
+                        }
+
+                        if (!person.getPhotoFilename().equals(p.getPhotoFilename()) && isValidString(p.getPhotoFilename())) {
+                            person.setPhotoFilename(p.getPhotoFilename());
+                            dirty = Boolean.TRUE;
+                        }
+
+                        break;
+                    }
+                }
+
+                if (dirty) {
+                    movie.setDirty(DirtyFlag.INFO, Boolean.TRUE);
+                }
+            }
+        }
+
+        for (Person p : people) {
+            // Each video is linked to the first film of the person that matches it
+            Set<Integer> linkedMovies = new HashSet<>();
+            for (Filmography film : p.getFilmography()) {
+                // The videos are processed in library order, because the title of the film changes with each linked video
+                SortedSet<Integer> candidates = new TreeSet<>();
+                addFilmCandidates(movieIndex, film, candidates);
+                while (!candidates.isEmpty()) {
+                    Integer position = candidates.first();
+                    candidates.remove(position);
+                    if (linkedMovies.contains(position)) {
+                        continue;
+                    }
+
+                    Movie movie = movies.get(position);
+                    if (Filmography.compareMovieAndFilm(movie, film)) {
+                        linkedMovies.add(position);
+                        film.setFilename(movie.getBaseName());
+                        film.setTitle(movie.getTitle());
+                        if (film.isDirty()) {
+                            p.setDirty();
+                        }
+                        // Later videos may now match the new title
+                        List<Integer> titlePositions = movieIndex.get(foldCase(film.getTitle()));
+                        if (titlePositions != null) {
+                            for (Integer titlePosition : titlePositions) {
+                                if (titlePosition > position) {
+                                    candidates.add(titlePosition);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        for (Person p : people) {
+            for (Filmography film : p.getFilmography()) {
+                if (film.isDirty() || StringTools.isNotValidString(film.getFilename())) {
+                    continue;
+                }
+                dirty = Boolean.FALSE;
+                SortedSet<Integer> candidates = new TreeSet<>();
+                addFilmCandidates(movieIndex, film, candidates);
+                for (Integer position : candidates) {
+                    dirty = Filmography.compareMovieAndFilm(movies.get(position), film);
+                    if (dirty) {
+                        break;
+                    }
+                }
+                if (!dirty) {
+                    film.clearFilename();
+                    p.setDirty();
+                }
+            }
+        }
+    }
+
+    private static void addFilmCandidates(Map<String, List<Integer>> movieIndex, Filmography film, Set<Integer> candidates) {
+        addFromIndex(movieIndex, foldCase(film.getName()), candidates);
+        addFromIndex(movieIndex, foldCase(film.getTitle()), candidates);
+        for (String idKey : getIdKeys(film.getIdMap())) {
+            addFromIndex(movieIndex, idKey, candidates);
+        }
+    }
+
+    private static void addToIndex(Map<String, List<Integer>> index, String key, int position) {
+        List<Integer> positions = index.get(key);
+        if (positions == null) {
+            positions = new ArrayList<>(1);
+            index.put(key, positions);
+        }
+        // Keys may be added more than once for the same entry
+        if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+            positions.add(position);
+        }
+    }
+
+    private static void addFromIndex(Map<String, List<Integer>> index, String key, Set<Integer> candidates) {
+        List<Integer> positions = index.get(key);
+        if (positions != null) {
+            candidates.addAll(positions);
+        }
+    }
+
+    /**
+     * Create the index keys for the valid IDs
+     *
+     * @param idMap
+     * @return
+     */
+    private static List<String> getIdKeys(Map<String, String> idMap) {
+        List<String> idKeys = new ArrayList<>(idMap.size());
+        for (Map.Entry<String, String> e : idMap.entrySet()) {
+            if (isValidString(e.getValue())) {
+                // The separator can not be part of a name, so the ID keys never match a name key
+                idKeys.add(e.getKey() + '\u0000' + e.getValue());
+            }
+        }
+        return idKeys;
+    }
+
+    /**
+     * Fold the case of the string so that two strings that are equal ignoring the case have the same key
+     *
+     * @param value
+     * @return
+     */
+    private static String foldCase(String value) {
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
     private static boolean comparePersonId(Filmography aPerson, Filmography bPerson) {
         String aValue, bValue;
         for (Map.Entry<String, String> e : aPerson.getIdMap().entrySet()) {
@@ -2265,97 +2410,53 @@ public class MovieJukebox {
     } // getListingPlugin()
 
     /**
-     * Create a thumbnail from the original poster file.
+     * Create the detail poster and the thumbnail from the original poster
+     * file.
+     *
+     * The original poster is only decoded once and shared by all the images
+     * generated from it.
      *
      * @param imagePlugin
-     * @param skinHome
      * @param jukebox
+     * @param skinHome
      * @param movie
+     * @param forcePosterOverwrite
      * @param forceThumbnailOverwrite
      */
-    public static void createThumbnail(MovieImagePlugin imagePlugin, Jukebox jukebox, String skinHome, Movie movie,
-            boolean forceThumbnailOverwrite) {
-
-        // TODO Move all temp directory code to FileTools for a cleaner method
-        // Issue 201 : we now download to local temp directory
-        String safePosterFilename = movie.getPosterFilename();
-        String safeThumbnailFilename = movie.getThumbnailFilename();
-
-        File tmpPosterFile = new File(appendToPath(jukebox.getJukeboxTempLocationDetails(), safePosterFilename));
-        File jkbPosterFile = FileTools.fileCache.getFile(appendToPath(jukebox.getJukeboxRootLocationDetails(), safePosterFilename));
-        String tmpThumbnailFile = appendToPath(jukebox.getJukeboxTempLocationDetails(), safeThumbnailFilename);
-        String jkbThumbnailFile = appendToPath(jukebox.getJukeboxRootLocationDetails(), safeThumbnailFilename);
-        File destinationFile;
-
-        if (movie.isDirty(DirtyFlag.POSTER)
-                || forceThumbnailOverwrite
-                || !FileTools.fileCache.fileExists(jkbThumbnailFile)
-                || tmpPosterFile.exists()) {
-            // Issue 228: If the PNG files are deleted before running the jukebox this fails.
-            // Therefore check to see if they exist in the original directory
-            if (tmpPosterFile.exists()) {
-                // logger.debug("Use new file: " + tmpPosterFile.getAbsolutePath());
-                destinationFile = tmpPosterFile;
-            } else {
-                // logger.debug("Use jukebox file: " + jkbPosterFile.getAbsolutePath());
-                destinationFile = jkbPosterFile;
-            }
-
-            BufferedImage bi = null;
-            try {
-                bi = GraphicTools.loadJPEGImage(destinationFile);
-            } catch (IOException ex) {
-                LOG.warn("Error reading the thumbnail file: {} - Error: {}", destinationFile.getAbsolutePath(), ex.getMessage());
-            }
+    public static void createPosterAndThumbnail(MovieImagePlugin imagePlugin, Jukebox jukebox, String skinHome, Movie movie,
+            boolean forcePosterOverwrite, boolean forceThumbnailOverwrite) {
+        BufferedImage bi = null;
+        boolean posterLoaded = false;
 
-            if (bi == null) {
-                LOG.info("Using dummy thumbnail image for {}", movie.getBaseName());
-                // There was an error with the URL, assume it's a bad URL and clear it so we try again
-                movie.setPosterURL(Movie.UNKNOWN);
-                FileTools.copyFile(new File(skinHome + File.separator + LIT_RESOURCES + File.separator + DUMMY_JPG), tmpPosterFile);
-                try {
-                    bi = GraphicTools.loadJPEGImage(tmpPosterFile);
-                } catch (IOException ex) {
-                    LOG.warn("Error reading the dummy file: {} - Error: {}", tmpPosterFile.getAbsolutePath(), ex.getMessage());
-                }
-            }
-
-            // Perspective code.
-            String perspectiveDirection = getProperty("thumbnails.perspectiveDirection", RIGHT);
-
-            // Generate and save both images
-            if (BOTH.equalsIgnoreCase(perspectiveDirection)) {
-                // Calculate mirror thumbnail name.
-                String dstMirror = tmpThumbnailFile.substring(0, tmpThumbnailFile.lastIndexOf('.')) + "_mirror" + tmpThumbnailFile.substring(tmpThumbnailFile.lastIndexOf('.'));
-
-                // Generate left & save as copy
-                LOG.debug("Generating mirror thumbnail from {} to {}", tmpPosterFile, dstMirror);
-                BufferedImage biMirror = imagePlugin.generate(movie, bi, THUMBNAILS, LEFT);
-                GraphicTools.saveImageToDisk(biMirror, dstMirror);
-
-                // Generate right as per normal
-                LOG.debug("Generating right thumbnail from {} to {}", tmpPosterFile, tmpThumbnailFile);
-                bi = imagePlugin.generate(movie, bi, THUMBNAILS, RIGHT);
-                GraphicTools.saveImageToDisk(bi, tmpThumbnailFile);
-            }
-
-            // Only generate the right image
-            if (RIGHT.equalsIgnoreCase(perspectiveDirection)) {
-                bi = imagePlugin.generate(movie, bi, THUMBNAILS, RIGHT);
+        if (isPosterImageNeeded(jukebox, movie, movie.getDetailPosterFilename(), forcePosterOverwrite)) {
+            bi = loadPosterImage(jukebox, skinHome, movie);
+            posterLoaded = true;
+            generatePosterImages(imagePlugin, jukebox, movie, bi, POSTERS, movie.getDetailPosterFilename());
+        }
 
-                // Save the right perspective image.
-                GraphicTools.saveImageToDisk(bi, tmpThumbnailFile);
-                LOG.debug("Generating right thumbnail from {} to {}", tmpPosterFile, tmpThumbnailFile);
+        // Only checked now, because loading the poster may have replaced it with the dummy image
+        if (isPosterImageNeeded(jukebox, movie, movie.getThumbnailFilename(), forceThumbnailOverwrite)) {
+            if (!posterLoaded) {
+                bi = loadPosterImage(jukebox, skinHome, movie);
             }
+            generatePosterImages(imagePlugin, jukebox, movie, bi, THUMBNAILS, movie.getThumbnailFilename());
+        }
+    }
 
-            // Only generate the left image
-            if (LEFT.equalsIgnoreCase(perspectiveDirection)) {
-                bi = imagePlugin.generate(movie, bi, THUMBNAILS, LEFT);
-
-                // Save the right perspective image.
-                GraphicTools.saveImageToDisk(bi, tmpThumbnailFile);
-                LOG.debug("Generating left thumbnail from {} to {}", tmpPosterFile, tmpThumbnailFile);
-            }
+    /**
+     * Create a thumbnail from the original poster file.
+     *
+     * @param imagePlugin
+     * @param skinHome
+     * @param jukebox
+     * @param movie
+     * @param forceThumbnailOverwrite
+     */
+    public static void createThumbnail(MovieImagePlugin imagePlugin, Jukebox jukebox, String skinHome, Movie movie,
+            boolean forceThumbnailOverwrite) {
+        if (isPosterImageNeeded(jukebox, movie, movie.getThumbnailFilename(), forceThumbnailOverwrite)) {
+            BufferedImage bi = loadPosterImage(jukebox, skinHome, movie);
+            generatePosterImages(imagePlugin, jukebox, movie, bi, THUMBNAILS, movie.getThumbnailFilename());
         }
     }
 
@@ -2370,87 +2471,134 @@ public class MovieJukebox {
      */
     public static void createPoster(MovieImagePlugin posterManager, Jukebox jukebox, String skinHome, Movie movie,
             boolean forcePosterOverwrite) {
+        if (isPosterImageNeeded(jukebox, movie, movie.getDetailPosterFilename(), forcePosterOverwrite)) {
+            BufferedImage bi = loadPosterImage(jukebox, skinHome, movie);
+            generatePosterImages(posterManager, jukebox, movie, bi, POSTERS, movie.getDetailPosterFilename());
+        }
+    }
+
+    /**
+     * Check to see if an image generated from the original poster needs to be
+     * (re)created
+     *
+     * @param jukebox
+     * @param movie
+     * @param safeImageFilename
+     * @param forceOverwrite
+     * @return
+     */
+    private static boolean isPosterImageNeeded(Jukebox jukebox, Movie movie, String safeImageFilename, boolean forceOverwrite) {
+        // Issue 201 : we now download to local temp directory
+        File tmpPosterFile = new File(appendToPath(jukebox.getJukeboxTempLocationDetails(), movie.getPosterFilename()));
+        String jkbImageFile = appendToPath(jukebox.getJukeboxRootLocationDetails(), safeImageFilename);
 
-        // Issue 201 : we now download to local temporary directory
+        return movie.isDirty(DirtyFlag.POSTER)
+                || forceOverwrite
+                || !FileTools.fileCache.fileExists(jkbImageFile)
+                || tmpPosterFile.exists();
+    }
+
+    /**
+     * Decode the original poster file, using the dummy image if it can't be
+     * read
+     *
+     * @param jukebox
+     * @param skinHome
+     * @param movie
+     * @return
+     */
+    private static BufferedImage loadPosterImage(Jukebox jukebox, String skinHome, Movie movie) {
         String safePosterFilename = movie.getPosterFilename();
-        String safeDetailPosterFilename = movie.getDetailPosterFilename();
         File tmpPosterFile = new File(appendToPath(jukebox.getJukeboxTempLocationDetails(), safePosterFilename));
         File jkbPosterFile = FileTools.fileCache.getFile(appendToPath(jukebox.getJukeboxRootLocationDetails(), safePosterFilename));
-        String tmpThumbnailFile = appendToPath(jukebox.getJukeboxTempLocationDetails(), safeDetailPosterFilename);
-        String jkbThumbnailFile = appendToPath(jukebox.getJukeboxRootLocationDetails(), safeDetailPosterFilename);
-        File destinationFile;
-
-        if (movie.isDirty(DirtyFlag.POSTER)
-                || forcePosterOverwrite
-                || !FileTools.fileCache.fileExists(jkbThumbnailFile)
-                || tmpPosterFile.exists()) {
-            // Issue 228: If the PNG files are deleted before running the jukebox this fails. Therefore check to see if they exist in the original directory
-            if (tmpPosterFile.exists()) {
-                LOG.debug("CreatePoster: New file exists ({})", tmpPosterFile);
-                destinationFile = tmpPosterFile;
-            } else {
-                LOG.debug("CreatePoster: Using old file ({})", jkbPosterFile);
-                destinationFile = jkbPosterFile;
-            }
+        File sourceFile;
+
+        // Issue 228: If the PNG files are deleted before running the jukebox this fails.
+        // Therefore check to see if they exist in the original directory
+        if (tmpPosterFile.exists()) {
+            LOG.debug("Using new poster file ({})", tmpPosterFile);
+            sourceFile = tmpPosterFile;
+        } else {
+            LOG.debug("Using old poster file ({})", jkbPosterFile);
+            sourceFile = jkbPosterFile;
+        }
 
-            BufferedImage bi = null;
+        BufferedImage bi = null;
+        try {
+            bi = GraphicTools.loadJPEGImage(sourceFile);
+        } catch (IOException ex) {
+            LOG.warn("Error reading the poster file: {} - Error: {}", sourceFile.getAbsolutePath(), ex.getMessage());
+        }
+
+        if (bi == null) {
+            LOG.info("Using dummy poster image for {}", movie.getBaseName());
+            // There was an error with the URL, assume it's a bad URL and clear it so we try again
+            movie.setPosterURL(Movie.UNKNOWN);
+            FileTools.copyFile(new File(skinHome + File.separator + LIT_RESOURCES + File.separator + DUMMY_JPG), tmpPosterFile);
             try {
-                bi = GraphicTools.loadJPEGImage(destinationFile);
+                bi = GraphicTools.loadJPEGImage(tmpPosterFile);
             } catch (IOException ex) {
-                LOG.warn("Error processing the poster file: {}", destinationFile.getAbsolutePath());
-                LOG.error(SystemTools.getStackTrace(ex));
+                LOG.warn("Error reading the dummy file: {} - Error: {}", tmpPosterFile.getAbsolutePath(), ex.getMessage());
             }
+        }
 
-            if (bi == null) {
-                // There was an error with the URL, assume it's a bad URL and clear it so we try again
-                movie.setPosterURL(Movie.UNKNOWN);
-                FileTools.copyFile(new File(skinHome + File.separator + LIT_RESOURCES + File.separator + DUMMY_JPG), jkbPosterFile);
-                try {
-                    bi = GraphicTools.loadJPEGImage(tmpPosterFile);
-                    LOG.info("Using dummy poster image for {}", movie.getOriginalTitle());
-                } catch (IOException ex) {
-                    LOG.warn("Error processing the dummy poster file: {}", tmpPosterFile.getAbsolutePath());
-                    LOG.error(SystemTools.getStackTrace(ex));
-                }
-            }
-            LOG.debug("Generating poster from {} to {}", tmpPosterFile, tmpThumbnailFile);
+        return bi;
+    }
+
+    /**
+     * Generate and save the perspective images for the image type from the
+     * decoded original poster.
+     *
+     * The image plugin is given its own copy of the poster, so the decoded
+     * poster can be reused for the other images.
+     *
+     * @param imagePlugin
+     * @param jukebox
+     * @param movie
+     * @param posterImage
+     * @param imageType
+     * @param safeImageFilename
+     */
+    private static void generatePosterImages(MovieImagePlugin imagePlugin, Jukebox jukebox, Movie movie, BufferedImage posterImage,
+            String imageType, String safeImageFilename) {
+        String tmpImageFile = appendToPath(jukebox.getJukeboxTempLocationDetails(), safeImageFilename);
 
-            // Perspective code.
-            String perspectiveDirection = getProperty("posters.perspectiveDirection", RIGHT);
+        // Perspective code.
+        String perspectiveDirection = getProperty(imageType + ".perspectiveDirection", RIGHT);
+        BufferedImage bi;
 
-            // Generate and save both images
-            if (BOTH.equalsIgnoreCase(perspectiveDirection)) {
-                // Calculate mirror poster name.
-                String dstMirror = FilenameUtils.removeExtension(tmpThumbnailFile) + "_mirror." + FilenameUtils.getExtension(tmpThumbnailFile);
+        // Generate and save both images
+        if (BOTH.equalsIgnoreCase(perspectiveDirection)) {
+            // Calculate mirror image name.
+            String dstMirror = FilenameUtils.removeExtension(tmpImageFile) + "_mirror." + FilenameUtils.getExtension(tmpImageFile);
 
-                // Generate left & save as copy
-                LOG.debug("Generating mirror poster from {} to {}", tmpPosterFile, dstMirror);
-                BufferedImage biMirror = posterManager.generate(movie, bi, POSTERS, LEFT);
-                GraphicTools.saveImageToDisk(biMirror, dstMirror);
+            // Generate left & save as copy
+            LOG.debug("Generating mirror {} for {} to {}", imageType, movie.getBaseName(), dstMirror);
+            bi = imagePlugin.generate(movie, GraphicTools.copyImage(posterImage), imageType, LEFT);
+            GraphicTools.saveImageToDisk(bi, dstMirror);
 
-                // Generate right as per normal
-                LOG.debug("Generating right poster from {} to {}", tmpPosterFile, tmpThumbnailFile);
-                bi = posterManager.generate(movie, bi, POSTERS, RIGHT);
-                GraphicTools.saveImageToDisk(bi, tmpThumbnailFile);
-            }
+            // Generate right as per normal
+            LOG.debug("Generating right {} for {} to {}", imageType, movie.getBaseName(), tmpImageFile);
+            bi = imagePlugin.generate(movie, GraphicTools.copyImage(posterImage), imageType, RIGHT);
+            GraphicTools.saveImageToDisk(bi, tmpImageFile);
+        }
 
-            // Only generate the right image
-            if (RIGHT.equalsIgnoreCase(perspectiveDirection)) {
-                bi = posterManager.generate(movie, bi, POSTERS, RIGHT);
+        // Only generate the right image
+        if (RIGHT.equalsIgnoreCase(perspectiveDirection)) {
+            bi = imagePlugin.generate(movie, GraphicTools.copyImage(posterImage), imageType, RIGHT);
 
-                // Save the right perspective image.
-                GraphicTools.saveImageToDisk(bi, tmpThumbnailFile);
-                LOG.debug("Generating right poster from {} to {}", tmpPosterFile, tmpThumbnailFile);
-            }
+            // Save the right perspective image.
+            GraphicTools.saveImageToDisk(bi, tmpImageFile);
+            LOG.debug("Generating right {} for {} to {}", imageType, movie.getBaseName(), tmpImageFile);
+        }
 
-            // Only generate the left image
-            if (LEFT.equalsIgnoreCase(perspectiveDirection)) {
-                bi = posterManager.generate(movie, bi, POSTERS, LEFT);
+        // Only generate the left image
+        if (LEFT.equalsIgnoreCase(perspectiveDirection)) {
+            bi = imagePlugin.generate(movie, GraphicTools.copyImage(posterImage), imageType, LEFT);
 
-                // Save the right perspective image.
-                GraphicTools.saveImageToDisk(bi, tmpThumbnailFile);
-                LOG.debug("Generating left poster from {} to {}", tmpPosterFile, tmpThumbnailFile);
-            }
+            // Save the left perspective image.
+            GraphicTools.saveImageToDisk(bi, tmpImageFile);
+            LOG.debug("Generating left {} for {} to {}", imageType, movie.getBaseName(), tmpImageFile);
         }
     }
 
@@ -25,6 +25,8 @@ package com.moviejukebox.model;
 import com.moviejukebox.tools.FileTools;
 import com.moviejukebox.tools.PropertiesUtil;
 import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
@@ -38,6 +40,7 @@ public class IndexInfo {
     public String baseName;
     public int videosPerPage, videosPerLine, pages;
     public boolean canSkip = true; // skip flags, global (all pages)
+    private final Set<Integer> changedPages = new HashSet<>();
 
     public IndexInfo(String category, String key, int pages, int videosPerPage, int videosPerLine, boolean canSkip) {
         this.categoryName = category;
@@ -50,11 +53,18 @@ public class IndexInfo {
         baseName = FileTools.makeSafeFilename(FileTools.createPrefix(categoryName, key));
     }
 
-    public void checkSkip(int page, String rootPath) {
+    /**
+     * Check that the XML and HTML files of the page exist from a previous run
+     *
+     * @param page
+     * @param rootPath
+     * @return
+     */
+    public boolean pageExists(int page, String rootPath) {
         StringBuilder filetest = new StringBuilder(rootPath);
         filetest.append(File.separator).append(baseName).append(page).append(EXT_XML);
 
-        canSkip = canSkip && FileTools.fileCache.fileExists(filetest.toString());
+        boolean exists = FileTools.fileCache.fileExists(filetest.toString());
         FileTools.addJukeboxFile(filetest.toString());
 
         // Don't check if we aren't using HTML
@@ -62,9 +72,30 @@ public class IndexInfo {
             // not nice, but no need to do this again in HTMLWriter
             filetest = new StringBuilder(rootPath);
             filetest.append(File.separator).append(baseName).append(page).append(EXT_HTML);
-            canSkip = canSkip && FileTools.fileCache.fileExists(filetest.toString());
+            exists = exists && FileTools.fileCache.fileExists(filetest.toString());
             FileTools.addJukeboxFile(filetest.toString());
         }
+        return exists;
+    }
+
+    /**
+     * Mark the page as written, so the HTML for it has to be generated again
+     *
+     * @param page
+     */
+    public synchronized void setPageChanged(int page) {
+        changedPages.add(page);
+        canSkip = false;
+    }
+
+    /**
+     * Check if the page is unchanged from the last run
+     *
+     * @param page
+     * @return
+     */
+    public synchronized boolean canSkipPage(int page) {
+        return !changedPages.contains(page);
     }
 
     @Override
@@ -75,6 +75,11 @@ public class Library implements Map<String, Movie> {
     private List<Movie> moviesList = new ArrayList<>();
     private final Map<String, Index> indexes;
     private Map<String, Index> unCompressedIndexes = new LinkedHashMap<>();
+    // Lookups built by buildIndex so the index writers don't rescan the library for every index
+    private final Map<String, Map<String, Integer>> indexCounts = new HashMap<>();
+    private final Map<Movie, Integer> moviePositions = new HashMap<>();
+    private final Map<String, Person> peopleByTitle = new HashMap<>();
+    private final Map<String, Person> peopleByTitleOrAka = new HashMap<>();
     private static final DecimalFormat PADDED_FORMAT = new DecimalFormat("000"); // Issue 190
     private static int categoryMinCountMaster = 3;
     private static int categoryMaxCountMaster = 0;
@@ -102,7 +107,6 @@ public class Library implements Map<String, Movie> {
     private static boolean processExtras = true;
     private static boolean hideWatched = true;
     private static final boolean ENABLE_WATCH_SCANNER;
-    private static final List<String> DIRTY_LIBRARIES = new ArrayList<>();
     // Issue 1897: Cast enhancement
     private final Map<String, Person> people;
     private boolean isDirty = false;
@@ -549,11 +553,14 @@ public class Library implements Map<String, Movie> {
     }
 
     protected static void compressSetMovies(List<Movie> movies, Index index, Map<String, Movie> masters, String indexName, String subIndexName) {
+        // Movie does not override equals, so the membership is by identity
+        Set<Movie> movieSet = new HashSet<>(movies);
+
         // Construct an index that includes only the intersection of movies and index
         Index inMovies = new Index();
         for (Map.Entry<String, List<Movie>> indexEntry : index.entrySet()) {
             for (Movie m : indexEntry.getValue()) {
-                if (movies.contains(m)) {
+                if (movieSet.contains(m)) {
                     inMovies.addMovie(indexEntry.getKey(), m);
                 }
             }
@@ -561,24 +568,41 @@ public class Library implements Map<String, Movie> {
 
         // Now, for each list of movies in in_movies, if the list has more than the minSetCount movies
         // remove them all from the movies list, and insert the corresponding master
+        Set<Movie> removeMovies = new HashSet<>();
+        List<Movie> addMasters = new ArrayList<>();
         for (Map.Entry<String, List<Movie>> inMoviesEntry : inMovies.entrySet()) {
             List<Movie> lm = inMoviesEntry.getValue();
             if (lm.size() >= minSetCount && (!setsRequireAll || lm.size() == index.get(inMoviesEntry.getKey()).size())) {
                 boolean tvSet = keepTVExplodeSet && lm.get(0).isTVShow();
                 boolean explodeSet = CATEGORIES_EXPLODE_SET.contains(indexName) || (indexName.equalsIgnoreCase(INDEX_OTHER) && CATEGORIES_EXPLODE_SET.contains(subIndexName));
                 if (!beforeSortExplodeSet || !explodeSet || tvSet) {
-                    movies.removeAll(lm);
+                    removeMovies.addAll(lm);
                 }
                 if (!beforeSortExplodeSet || !explodeSet || tvSet || !removeExplodeSet) {
-                    movies.add(masters.get(inMoviesEntry.getKey()));
+                    addMasters.add(masters.get(inMoviesEntry.getKey()));
+                }
+            }
+        }
+
+        // Remove the set movies in one pass, keeping the order of the remaining movies
+        if (!removeMovies.isEmpty()) {
+            List<Movie> keepMovies = new ArrayList<>(movies.size());
+            for (Movie m : movies) {
+                if (!removeMovies.contains(m)) {
+                    keepMovies.add(m);
                 }
             }
+            movies.clear();
+            movies.addAll(keepMovies);
         }
+        movies.addAll(addMasters);
     }
 
     public void buildIndex(ThreadExecutor<Void> tasks) throws Throwable {
         moviesList.clear();
         indexes.clear();
+        indexCounts.clear();
+        moviePositions.clear();
 
         tasks.restart();
         final List<Movie> indexMovies = new ArrayList<>(library.values());
@@ -762,11 +786,13 @@ public class Library implements Map<String, Movie> {
             }
             Collections.sort(indexMovies);
             setMovieListNavigation(indexMovies);
+            buildMovieLookups();
             SystemTools.showMemory();
         }
 
         tasks.restart();
         final List<Person> indexPersons = new ArrayList<>(people.values());
+        buildPersonLookups(indexPersons);
 
         if (!indexPersons.isEmpty()) {
             for (final String indexStr : INDEX_LIST.split(",")) {
@@ -819,6 +845,64 @@ public class Library implements Map<String, Movie> {
         return trimOK;
     }
 
+    /**
+     * Count the members of each index and record the position of each movie.
+     *
+     * The counts come from the uncompressed index where there is one, so sets are counted by their movies, not their
+     * masters.
+     */
+    private void buildMovieLookups() {
+        for (Map.Entry<String, Index> indexEntry : indexes.entrySet()) {
+            Index index = unCompressedIndexes.get(indexEntry.getKey());
+            if (index == null) {
+                index = indexEntry.getValue();
+            }
+
+            Map<String, Integer> counts = new HashMap<>(index.size());
+            for (Map.Entry<String, List<Movie>> categoryEntry : index.entrySet()) {
+                counts.put(categoryEntry.getKey(), categoryEntry.getValue().size());
+            }
+            indexCounts.put(indexEntry.getKey(), counts);
+        }
+
+        for (Movie movie : moviesList) {
+            if (!moviePositions.containsKey(movie)) {
+                moviePositions.put(movie, moviePositions.size());
+            }
+        }
+    }
+
+    /**
+     * Map the people by their (lower case) name or title, and by their aka names.
+     *
+     * The first person in the list wins when names clash.
+     *
+     * @param personList
+     */
+    private void buildPersonLookups(List<Person> personList) {
+        peopleByTitle.clear();
+        peopleByTitleOrAka.clear();
+
+        for (Person person : personList) {
+            addPersonLookup(peopleByTitle, person.getName(), person);
+            addPersonLookup(peopleByTitle, person.getTitle(), person);
+            addPersonLookup(peopleByTitleOrAka, person.getName(), person);
+            addPersonLookup(peopleByTitleOrAka, person.getTitle(), person);
+            for (String aka : person.getAka()) {
+                addPersonLookup(peopleByTitleOrAka, aka, person);
+            }
+        }
+    }
+
+    private static void addPersonLookup(Map<String, Person> lookup, String name, Person person) {
+        if (name != null) {
+            String key = name.toLowerCase();
+            if (!lookup.containsKey(key)) {
+                lookup.put(key, person);
+            }
+        }
+    }
+
     private void keepUncompressedIndexes() {
         this.unCompressedIndexes = new HashMap<>(indexes.size());
         Set<String> indexeskeySet = this.indexes.keySet();
@@ -1346,22 +1430,24 @@ public class Library implements Map<String, Movie> {
         return index;
     }
 
+    /**
+     * Get the number of movies in the index category, or -1 if the category is not known.
+     *
+     * @param indexName
+     * @param category
+     * @return
+     */
     public int getMovieCountForIndex(String indexName, String category) {
-        Index index = unCompressedIndexes.get(indexName);
-
-        if (index == null) {
-            index = indexes.get(indexName);
-        }
-
-        if (index == null) {
+        Map<String, Integer> counts = indexCounts.get(indexName);
+        if (counts == null) {
             return -1;
         }
 
-        List<Movie> categoryList = index.get(category);
-        if (categoryList != null) {
-            return categoryList.size();
+        Integer count = counts.get(category);
+        if (count == null) {
+            return -1;
         }
-        return -1;
+        return count;
     }
 
     /**
@@ -1484,6 +1570,21 @@ public class Library implements Map<String, Movie> {
 
     public void setMoviesList(List<Movie> moviesList) {
         this.moviesList = moviesList;
+        this.moviePositions.clear();
+    }
+
+    /**
+     * Get the position of the movie in the movie list, or -1 if it's not in the list
+     *
+     * @param movie
+     * @return
+     */
+    public int getMoviePosition(Movie movie) {
+        Integer position = moviePositions.get(movie);
+        if (position == null) {
+            return moviesList.indexOf(movie);
+        }
+        return position;
     }
 
     public List<Movie> getMoviesByIndexKey(String key) {
@@ -1501,6 +1602,15 @@ public class Library implements Map<String, Movie> {
         return indexes;
     }
 
+    /**
+     * Get the indexes as they were before the set movies were replaced by their set masters
+     *
+     * @return
+     */
+    Map<String, Index> getUnCompressedIndexes() {
+        return unCompressedIndexes;
+    }
+
     private static void fillGenreMap(String xmlGenreFilename) {
         File xmlGenreFile = new File(xmlGenreFilename);
         if (xmlGenreFile.exists() && xmlGenreFile.isFile() && xmlGenreFilename.toUpperCase().endsWith("XML")) {
@@ -1857,6 +1967,23 @@ public class Library implements Map<String, Movie> {
         return people.get(getPersonKey(person));
     }
 
+    /**
+     * Find the person for an index page.
+     *
+     * The person is matched by name or title, and for the job indexes also by their aka names
+     *
+     * @param indexName
+     * @param key
+     * @return
+     */
+    public Person getPersonForIndex(String indexName, String key) {
+        String lookupKey = key.toLowerCase();
+        if (INDEX_PERSON.equals(indexName)) {
+            return peopleByTitle.get(lookupKey);
+        }
+        return peopleByTitleOrAka.get(lookupKey);
+    }
+
     public Person getPersonByName(String name) {
         for (Person person : people.values()) {
             if (person.getName().equalsIgnoreCase(name)) {
@@ -1883,13 +2010,8 @@ public class Library implements Map<String, Movie> {
     }
 
     public void addDirtyLibrary(String name) {
-        if (StringTools.isValidString(name) && !DIRTY_LIBRARIES.contains(name)) {
-            DIRTY_LIBRARIES.add(name);
+        if (StringTools.isValidString(name)) {
             setDirty();
         }
     }
-
-    public boolean isDirtyLibrary(String name) {
-        return StringTools.isValidString(name) && DIRTY_LIBRARIES.contains(name);
-    }
 }
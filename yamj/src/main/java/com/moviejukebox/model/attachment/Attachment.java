@@ -43,6 +43,8 @@ public class Attachment {
     private String mimeType;
     private int part; // only relevant for video images
     private File sourceFile;
+    private long dataPosition = -1L; // position of the data within the source file
+    private long dataSize;
 
     @XmlElement
     public AttachmentType getType() {
@@ -98,6 +100,24 @@ public class Attachment {
         this.sourceFile = sourceFile;
     }
 
+    @XmlTransient
+    public long getDataPosition() {
+        return dataPosition;
+    }
+
+    public void setDataPosition(long dataPosition) {
+        this.dataPosition = dataPosition;
+    }
+
+    @XmlTransient
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    public void setDataSize(long dataSize) {
+        this.dataSize = dataSize;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
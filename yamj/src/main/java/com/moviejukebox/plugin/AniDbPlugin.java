@@ -46,9 +46,17 @@ import com.omertron.thetvdbapi.TvDbException;
 import com.omertron.thetvdbapi.model.Banners;
 import com.omertron.thetvdbapi.model.Series;
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.xml.parsers.ParserConfigurationException;
@@ -56,11 +64,13 @@ import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import net.anidb.Anime;
 import net.anidb.Episode;
-import net.anidb.checksum.Ed2kChecksum;
+import net.anidb.checksum.Md4Checksum;
 import net.anidb.udp.*;
 import net.anidb.udp.mask.AnimeFileMask;
 import net.anidb.udp.mask.AnimeMask;
 import net.anidb.udp.mask.FileMask;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.lang3.StringUtils;
 import org.pojava.datetime.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,6 +99,9 @@ public class AniDbPlugin implements MovieDatabasePlugin {
     private static final int ANIDB_CLIENT_VERSION = 1;
     private static int anidbPort = PropertiesUtil.getIntProperty("anidb.port", 1025);
     private static final int ED2K_CHUNK_SIZE = 9728000;
+    // Size of the start and the end of the file used to recognise a moved file
+    private static final int FINGERPRINT_SIZE = 65536;
+    private static final int HASH_THREADS = PropertiesUtil.getIntProperty("anidb.hashThreads", Runtime.getRuntime().availableProcessors());
     private AnimeMask anidbMask;
     private AnimeMask categoryMask;
     private AnimeFileMask animeFileMask;
@@ -101,7 +114,7 @@ public class AniDbPlugin implements MovieDatabasePlugin {
     private static boolean hash;
     private boolean getAdditionalInformationFromTheTvDB = false;
     private static final HashMap<String, Movie> MAIN_SERIES_MOVIES;
-    private static final int TABLE_VERSION = 1;
+    private static final int TABLE_VERSION = 2;
     private Dao<AnidbLocalFile, String> localFileDao;
     private Dao<AnidbFile, String> anidbFileDao;
     private Dao<AnidbAnime, String> animeDao;
@@ -222,7 +235,7 @@ public class AniDbPlugin implements MovieDatabasePlugin {
      * Method to check if the database tables are old and need updating, and
      * performs the update if it's needed.
      */
-    private static synchronized void updateTables(ConnectionSource connectionSource) {
+    static synchronized void updateTables(ConnectionSource connectionSource) {
         try {
             Dao<AnidbTableInfo, String> tableDao = DaoManager.<Dao<AnidbTableInfo, String>, AnidbTableInfo>createDao(connectionSource, AnidbTableInfo.class);
             boolean dbUpdate = true;
@@ -255,6 +268,14 @@ public class AniDbPlugin implements MovieDatabasePlugin {
                 info = new AnidbTableInfo();
                 info.setVersion(AniDbPlugin.TABLE_VERSION);
                 tableDao.create(info);
+                setTableVersion(tableDao);
+            } else if (dbUpdate && version == 1) {
+                // Version 2 adds the modification time and fingerprint of the local files
+                Dao<AnidbLocalFile, String> fileDao = DaoManager.<Dao<AnidbLocalFile, String>, AnidbLocalFile>createDao(connectionSource, AnidbLocalFile.class);
+                fileDao.executeRaw("ALTER TABLE " + AnidbLocalFile.TABLE_NAME + " ADD COLUMN " + AnidbLocalFile.LAST_MODIFIED_COLUMN_NAME + " BIGINT DEFAULT 0");
+                fileDao.executeRaw("ALTER TABLE " + AnidbLocalFile.TABLE_NAME + " ADD COLUMN " + AnidbLocalFile.FINGERPRINT_COLUMN_NAME + " VARCHAR");
+                fileDao.executeRaw("CREATE INDEX " + AnidbLocalFile.FINGERPRINT_INDEX_NAME + " ON " + AnidbLocalFile.TABLE_NAME + " (" + AnidbLocalFile.FINGERPRINT_COLUMN_NAME + ")");
+                setTableVersion(tableDao);
             }
 
         } catch (SQLException error) {
@@ -262,6 +283,13 @@ public class AniDbPlugin implements MovieDatabasePlugin {
         }
     }
 
+    /*
+     * The version is the generated id of the table info, so it is set with an update
+     */
+    private static void setTableVersion(Dao<AnidbTableInfo, String> tableDao) throws SQLException {
+        tableDao.executeRaw("UPDATE " + AnidbTableInfo.TABLE_NAME + " SET version = " + AniDbPlugin.TABLE_VERSION);
+    }
+
     private static synchronized void initTvdb() {
         if (tvdb == null) {
             tvdb = new TheTVDBApi(PropertiesUtil.getProperty("API_KEY_TheTVDb"));
@@ -592,20 +620,11 @@ public class AniDbPlugin implements MovieDatabasePlugin {
 
     private AnidbFile anidbHashScan(Movie movie) {
         try {
-            AnidbLocalFile localFile = loadLocalFile(movie.getFile());
-
-            String ed2kHash = null;
-            AnidbFile file;
+            AnidbLocalFile localFile = loadLocalFile(localFileDao, movie.getFile());
             if (localFile == null) {
-                ed2kHash = getEd2kChecksum(movie.getFile());
-                if ("".equals(ed2kHash)) {
-                    return null;
-                }
-                localFile = loadLocalFile(movie.getFile(), ed2kHash);
+                return null;
             }
-
-            file = getAnimeEpisodeByHash(movie.getFile().length(), localFile == null ? ed2kHash : localFile.getEd2k());
-            return file;
+            return getAnimeEpisodeByHash(localFile.getSize(), localFile.getEd2k());
         } catch (UdpConnectionException ex) {
             LOG.info("UDP Connection Error");
             LOG.error(SystemTools.getStackTrace(ex));
@@ -617,21 +636,114 @@ public class AniDbPlugin implements MovieDatabasePlugin {
         }
     }
 
-    private static String getEd2kChecksum(File file) {
+    /**
+     * Calculate the ed2k hash of the file.
+     *
+     * The MD4 hashes of the chunks are calculated at the same time from memory mapped parts of the file.
+     *
+     * @param file
+     * @return the hash or an empty string if the file can't be read
+     */
+    static String getEd2kChecksum(File file) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, HASH_THREADS));
         try (FileInputStream fi = new FileInputStream(file)) {
-            Ed2kChecksum ed2kChecksum = new Ed2kChecksum();
-            byte[] buffer = new byte[ED2K_CHUNK_SIZE];
-            int k;
-            while ((k = fi.read(buffer, 0, buffer.length)) > 0) {
-                ed2kChecksum.update(buffer, 0, k);
+            FileChannel channel = fi.getChannel();
+            long size = channel.size();
+
+            // A file with an exact number of chunks ends with the hash of an empty chunk
+            int chunks = (int) (size / ED2K_CHUNK_SIZE) + 1;
+            List<Future<byte[]>> hashes = new ArrayList<>(chunks);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                long position = (long) chunk * ED2K_CHUNK_SIZE;
+                hashes.add(pool.submit(new Md4Chunk(channel, position, Math.min(ED2K_CHUNK_SIZE, size - position))));
             }
-            return ed2kChecksum.getHexDigest();
+
+            if (chunks == 1) {
+                return Hex.encodeHexString(hashes.get(0).get());
+            }
+
+            Md4Checksum md4 = new Md4Checksum();
+            for (Future<byte[]> hash : hashes) {
+                byte[] digest = hash.get();
+                md4.update(digest, 0, digest.length);
+            }
+            return md4.getHexDigest();
         } catch (FileNotFoundException error) {
             // This shouldn't happen
             LOG.error("Unable to find the file {}", file.getAbsolutePath());
+        } catch (IOException | ExecutionException error) {
+            LOG.error("Encountered an IO-error while reading file {}", file.getAbsolutePath());
+            LOG.error(SystemTools.getStackTrace(error));
+        } catch (InterruptedException error) {
+            LOG.warn("Hashing of file {} was interrupted", file.getAbsolutePath());
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+        return "";
+    }
+
+    /**
+     * Calculate the MD4 hash of one chunk of the file
+     */
+    private static final class Md4Chunk implements Callable<byte[]> {
+
+        private static final int BUFFER_SIZE = 65536;
+        private final FileChannel channel;
+        private final long position;
+        private final long length;
+
+        Md4Chunk(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            Md4Checksum md4 = new Md4Checksum();
+            if (length > 0) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (mapped.hasRemaining()) {
+                    int count = Math.min(buffer.length, mapped.remaining());
+                    mapped.get(buffer, 0, count);
+                    md4.update(buffer, 0, count);
+                }
+            }
+            return md4.getDigest();
+        }
+    }
+
+    /**
+     * Create a fingerprint of the file from its start and its end, to recognise a file that is moved or renamed.
+     *
+     * @param file
+     * @return the fingerprint or an empty string if the file can't be read
+     */
+    private static String getFingerprint(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[FINGERPRINT_SIZE];
+            long length = raf.length();
+
+            int read = (int) Math.min(FINGERPRINT_SIZE, length);
+            raf.readFully(buffer, 0, read);
+            md5.update(buffer, 0, read);
+
+            long tail = Math.max(read, length - FINGERPRINT_SIZE);
+            if (tail < length) {
+                raf.seek(tail);
+                read = (int) (length - tail);
+                raf.readFully(buffer, 0, read);
+                md5.update(buffer, 0, read);
+            }
+            return Hex.encodeHexString(md5.digest());
         } catch (IOException error) {
             LOG.error("Encountered an IO-error while reading file {}", file.getAbsolutePath());
             LOG.error(SystemTools.getStackTrace(error));
+        } catch (NoSuchAlgorithmException error) {
+            LOG.error("Unable to create file fingerprint: {}", error.getMessage());
         }
         return "";
     }
@@ -896,39 +1008,65 @@ public class AniDbPlugin implements MovieDatabasePlugin {
         return false;
     }
 
-    private AnidbLocalFile loadLocalFile(java.io.File file) {
+    /**
+     * Find the hash of the file.
+     *
+     * The file is looked up by name first and then by its size, modification time and fingerprint, so a moved or renamed
+     * file does not need to be hashed again. If the file isn't known it is hashed and stored.
+     *
+     * @param localFileDao
+     * @param file
+     * @return the local file or null if the file can't be hashed
+     */
+    static AnidbLocalFile loadLocalFile(Dao<AnidbLocalFile, String> localFileDao, File file) {
         try {
+            long size = file.length();
+            long lastModified = file.lastModified();
+
             QueryBuilder<AnidbLocalFile, String> qb = localFileDao.queryBuilder();
-            qb.where().eq(AnidbLocalFile.FILENAME_COLUMN_NAME, file.getAbsolutePath()).and().eq(AnidbLocalFile.SIZE_COLUMN_NAME, file.length());
-            PreparedQuery<AnidbLocalFile> pq = qb.prepare();
-            return localFileDao.query(pq).get(0);
-        } catch (SQLException error) {
-            LOG.error("Encountered an SQL error when loading local file data");
-            LOG.error(SystemTools.getStackTrace(error));
-        }
-        return null;
-    }
+            qb.where().eq(AnidbLocalFile.FILENAME_COLUMN_NAME, file.getAbsolutePath()).and().eq(AnidbLocalFile.SIZE_COLUMN_NAME, size);
+            AnidbLocalFile localFile = localFileDao.queryForFirst(qb.prepare());
+            // Files stored before the modification time was recorded are trusted
+            if (localFile != null && (localFile.getLastModified() == 0 || localFile.getLastModified() == lastModified)) {
+                return updateLocalFile(localFileDao, localFile, file, lastModified, localFile.getFingerprint());
+            }
 
-    private AnidbLocalFile loadLocalFile(File file, String ed2kHash) {
-        try {
-            AnidbLocalFile localFile = loadLocalFile(file);
-            if (localFile != null) {
-                return localFile;
+            String fingerprint = getFingerprint(file);
+            if (!"".equals(fingerprint)) {
+                qb = localFileDao.queryBuilder();
+                qb.where().eq(AnidbLocalFile.SIZE_COLUMN_NAME, size)
+                        .and().eq(AnidbLocalFile.LAST_MODIFIED_COLUMN_NAME, lastModified)
+                        .and().eq(AnidbLocalFile.FINGERPRINT_COLUMN_NAME, fingerprint);
+                AnidbLocalFile movedFile = localFileDao.queryForFirst(qb.prepare());
+                if (movedFile != null) {
+                    LOG.debug("Found moved file {} (was {})", file.getAbsolutePath(), movedFile.getOriginalFilename());
+                    if (localFile != null) {
+                        localFileDao.delete(localFile);
+                    }
+                    return updateLocalFile(localFileDao, movedFile, file, lastModified, fingerprint);
+                }
             }
-            QueryBuilder<AnidbLocalFile, String> qb = localFileDao.queryBuilder();
-            qb.where().eq(AnidbLocalFile.ED2K_COLUMN_NAME, file.getAbsolutePath()).and().eq(AnidbLocalFile.SIZE_COLUMN_NAME, file.length());
-            PreparedQuery<AnidbLocalFile> pq = qb.prepare();
-            List<AnidbLocalFile> res = localFileDao.query(pq);
-            if (!res.isEmpty()) {
-                return res.get(0);
+
+            String ed2kHash = getEd2kChecksum(file);
+            if ("".equals(ed2kHash)) {
+                return null;
             }
-            localFile = new AnidbLocalFile();
+
+            if (localFile == null) {
+                localFile = new AnidbLocalFile();
+                localFile.setOriginalFilename(file.getAbsolutePath());
+                localFile.setSize(size);
+                localFile.setEd2k(ed2kHash);
+                localFile.setLastModified(lastModified);
+                localFile.setFingerprint(fingerprint);
+                localFile.setLastSeen(new Date());
+                localFileDao.create(localFile);
+                return localFile;
+            }
+
+            // The file has changed
             localFile.setEd2k(ed2kHash);
-            localFile.setLastSeen(new Date());
-            localFile.setOriginalFilename(file.getAbsolutePath());
-            localFile.setSize(file.length());
-            localFileDao.create(localFile);
-            return localFile;
+            return updateLocalFile(localFileDao, localFile, file, lastModified, fingerprint);
         } catch (SQLException error) {
             LOG.error("Encountered an SQL error when loading local file data");
             LOG.error(SystemTools.getStackTrace(error));
@@ -936,6 +1074,15 @@ public class AniDbPlugin implements MovieDatabasePlugin {
         return null;
     }
 
+    private static AnidbLocalFile updateLocalFile(Dao<AnidbLocalFile, String> localFileDao, AnidbLocalFile localFile, File file, long lastModified, String fingerprint) throws SQLException {
+        localFile.setOriginalFilename(file.getAbsolutePath());
+        localFile.setLastModified(lastModified);
+        localFile.setFingerprint(StringUtils.isBlank(fingerprint) ? getFingerprint(file) : fingerprint);
+        localFile.setLastSeen(new Date());
+        localFileDao.update(localFile);
+        return localFile;
+    }
+
     private AnidbFile loadAnidbFile(String ed2kHash, long size) throws SQLException, UdpConnectionException, AniDbException {
         AnidbFile af;
         QueryBuilder<AnidbFile, String> qb = anidbFileDao.queryBuilder();
@@ -1138,14 +1285,19 @@ public class AniDbPlugin implements MovieDatabasePlugin {
 /**
  * Holds information about a scanned file on the local system
  */
-@DatabaseTable(tableName = "anidb_local_file")
+@DatabaseTable(tableName = AnidbLocalFile.TABLE_NAME)
 class AnidbLocalFile {
 
+    public static final String TABLE_NAME = "anidb_local_file";
     public static final String ID_COLUMN_NAME = "id";
     public static final String FILENAME_COLUMN_NAME = "filename";
     public static final String ED2K_COLUMN_NAME = "ed2khash";
     public static final String SIZE_COLUMN_NAME = "size";
     public static final String LAST_SEEN_COLUMN_NAME = "lastseen";
+    public static final String LAST_MODIFIED_COLUMN_NAME = "lastmodified";
+    public static final String FINGERPRINT_COLUMN_NAME = "fingerprint";
+    // The name ORMLite gives the index of the fingerprint column
+    public static final String FINGERPRINT_INDEX_NAME = TABLE_NAME + "_" + FINGERPRINT_COLUMN_NAME + "_idx";
 
     @DatabaseField(generatedId = true, columnName = ID_COLUMN_NAME)
     private int id;
@@ -1158,6 +1310,10 @@ class AnidbLocalFile {
     private long size;
     @DatabaseField(index = true, columnName = LAST_SEEN_COLUMN_NAME)
     private Date lastSeen; // Date this file was last seen, to allow periodic cleanup of stale records
+    @DatabaseField(columnName = LAST_MODIFIED_COLUMN_NAME)
+    private long lastModified;
+    @DatabaseField(index = true, columnName = FINGERPRINT_COLUMN_NAME)
+    private String fingerprint; // Hash of the start and end of the file, to find a file that has been moved
 
     public int getId() {
         return id;
@@ -1198,6 +1354,22 @@ class AnidbLocalFile {
     public void setLastSeen(Date lastSeen) {
         this.lastSeen = lastSeen;
     }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
 }
 
 /**
@@ -1775,9 +1947,11 @@ class AnidbCategory {
     }
 }
 
-@DatabaseTable(tableName = "anidb_tableinfo")
+@DatabaseTable(tableName = AnidbTableInfo.TABLE_NAME)
 class AnidbTableInfo {
 
+    public static final String TABLE_NAME = "anidb_tableinfo";
+
     @DatabaseField(generatedId = true)
     private int version;
     @DatabaseField()
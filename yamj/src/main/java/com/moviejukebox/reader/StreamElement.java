@@ -0,0 +1,431 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.reader;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The parts of an XML element that are needed by the jukebox readers.
+ *
+ * The file is read with a single pass of a pull parser. Only the elements named in the ElementSpec are kept, with their
+ * attributes and text. The values of the first descendant of each name are kept for the elements that need them, which gives the
+ * same result as DOMHelper.getValueFromElement without building the document.
+ */
+final class StreamElement {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamElement.class);
+    private static final XMLInputFactory FACTORY = createFactory();
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+    private static final String SOURCE = "source";
+    private final String name;
+    private final Map<String, String> attributes;
+    private final StringBuilder text;
+    private final Map<String, FirstValue> values;
+    private final List<StreamElement> children;
+    private final Map<String, List<StreamElement>> descendants;
+
+    private StreamElement(String name, Map<String, String> attributes, ElementSpec spec) {
+        this.name = name;
+        this.attributes = attributes;
+        this.text = spec.text ? new StringBuilder() : null;
+        this.values = spec.values ? new HashMap<String, FirstValue>() : null;
+        this.children = spec.childSpec == null ? null : new ArrayList<StreamElement>();
+        this.descendants = spec.descendantSpecs.isEmpty() ? null : new HashMap<String, List<StreamElement>>();
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // The DOM readers were not namespace aware either
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        // CDATA sections are separate nodes in the DOM, so they need to be seen
+        if (factory.isPropertySupported(REPORT_CDATA)) {
+            factory.setProperty(REPORT_CDATA, Boolean.TRUE);
+        } else {
+            LOG.trace("CDATA sections are not reported by {}", factory.getClass().getName());
+        }
+        return factory;
+    }
+
+    /**
+     * Read the elements with the root name from the file
+     *
+     * @param xmlFile
+     * @param rootName the name of the elements to read
+     * @param rootSpec the parts of the elements to keep
+     * @param firstOnly stop after the first element
+     * @return the elements that were found
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    static List<StreamElement> read(File xmlFile, String rootName, ElementSpec rootSpec, boolean firstOnly) throws IOException, XMLStreamException {
+        List<StreamElement> roots = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(xmlFile))) {
+            XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+            try {
+                List<Frame> stack = new ArrayList<>();
+                // First values waiting for their first child and first values reading their first text
+                List<FirstValue> pending = new ArrayList<>();
+                List<FirstValue> reading = new ArrayList<>();
+                StreamElement root = null;
+
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        // The first child of the pending values is an element, which has no value
+                        for (FirstValue value : pending) {
+                            value.setChild(null);
+                        }
+                        pending.clear();
+                        reading.clear();
+
+                        String elementName = getName(reader.getPrefix(), reader.getLocalName());
+                        Frame frame;
+                        if (root == null) {
+                            if (rootName.equals(elementName)) {
+                                root = new StreamElement(elementName, getAttributes(reader), rootSpec);
+                                frame = new Frame(root, rootSpec);
+                            } else {
+                                frame = new Frame(null, null);
+                            }
+                        } else {
+                            frame = startElement(reader, elementName, stack, pending);
+                        }
+                        stack.add(frame);
+                    } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                            || event == XMLStreamConstants.SPACE) {
+                        String eventText = reader.getText();
+                        if (event == XMLStreamConstants.CDATA) {
+                            // A CDATA section is a node of its own in the DOM
+                            for (FirstValue value : pending) {
+                                value.setChild(eventText);
+                            }
+                            pending.clear();
+                            reading.clear();
+                        } else if (!pending.isEmpty()) {
+                            for (FirstValue value : pending) {
+                                value.setChild(eventText);
+                            }
+                            reading.addAll(pending);
+                            pending.clear();
+                        } else {
+                            for (FirstValue value : reading) {
+                                value.appendText(eventText);
+                            }
+                        }
+                        for (Frame frame : stack) {
+                            if (frame.element != null && frame.element.text != null) {
+                                frame.element.text.append(eventText);
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.COMMENT || event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+                        String eventText = event == XMLStreamConstants.COMMENT ? reader.getText() : reader.getPIData();
+                        for (FirstValue value : pending) {
+                            value.setChild(eventText);
+                        }
+                        pending.clear();
+                        reading.clear();
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        pending.clear();
+                        reading.clear();
+                        Frame frame = stack.remove(stack.size() - 1);
+                        if (root != null && frame.element == root) {
+                            roots.add(root);
+                            root = null;
+                            if (firstOnly) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * Keep the element if its parent or one of its ancestors wants it and add it to the first values of the ancestors
+     */
+    private static Frame startElement(XMLStreamReader reader, String elementName, List<Frame> stack, List<FirstValue> pending) {
+        Map<String, String> elementAttributes = null;
+        StreamElement element = null;
+        ElementSpec spec = null;
+
+        Frame parent = stack.get(stack.size() - 1);
+        if (parent.spec != null && parent.spec.childSpec != null) {
+            spec = parent.spec.childSpec;
+            elementAttributes = getAttributes(reader);
+            element = new StreamElement(elementName, elementAttributes, spec);
+            parent.element.children.add(element);
+        }
+
+        for (Frame frame : stack) {
+            if (frame.element == null) {
+                continue;
+            }
+
+            ElementSpec descendantSpec = frame.spec.descendantSpecs.get(elementName);
+            if (descendantSpec != null) {
+                if (element == null) {
+                    spec = descendantSpec;
+                    elementAttributes = getAttributes(reader);
+                    element = new StreamElement(elementName, elementAttributes, spec);
+                }
+                List<StreamElement> list = frame.element.descendants.get(elementName);
+                if (list == null) {
+                    list = new ArrayList<>(1);
+                    frame.element.descendants.put(elementName, list);
+                }
+                list.add(element);
+            }
+
+            if (frame.element.values != null && !frame.element.values.containsKey(elementName)) {
+                if (elementAttributes == null) {
+                    elementAttributes = getAttributes(reader);
+                }
+                FirstValue value = new FirstValue(StringUtils.defaultString(elementAttributes.get(SOURCE)));
+                frame.element.values.put(elementName, value);
+                pending.add(value);
+            }
+        }
+        return new Frame(element, spec);
+    }
+
+    private static String getName(String prefix, String localName) {
+        return StringUtils.isEmpty(prefix) ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * Get the attributes of the current element, sorted by name in the same way as the DOM
+     */
+    private static Map<String, String> getAttributes(XMLStreamReader reader) {
+        int count = reader.getAttributeCount();
+        if (count == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> result = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            result.put(getName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+        }
+        return result;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the attribute value
+     *
+     * @param attributeName
+     * @return the value or an empty string if there is no attribute
+     */
+    public String getAttribute(String attributeName) {
+        return StringUtils.defaultString(attributes.get(attributeName));
+    }
+
+    /**
+     * Get all the attributes, sorted by name
+     *
+     * @return
+     */
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public String getTextContent() {
+        return text == null ? "" : text.toString();
+    }
+
+    /**
+     * Get the value of the first descendant with the name
+     *
+     * @param tagName
+     * @return the value of the first child of the element, or an empty string if there is no element
+     */
+    public String getValue(String tagName) {
+        FirstValue value = values == null ? null : values.get(tagName);
+        return value == null ? "" : value.getValue();
+    }
+
+    /**
+     * Get the source attribute of the first descendant with the name
+     *
+     * @param tagName
+     * @return the source or an empty string if the element has no value
+     */
+    public String getValueSource(String tagName) {
+        FirstValue value = values == null ? null : values.get(tagName);
+        return value == null ? "" : value.getSource();
+    }
+
+    public List<StreamElement> getChildren() {
+        return children == null ? Collections.<StreamElement>emptyList() : children;
+    }
+
+    /**
+     * Get the descendants with the name, in document order
+     *
+     * @param tagName
+     * @return
+     */
+    public List<StreamElement> getElements(String tagName) {
+        List<StreamElement> list = descendants == null ? null : descendants.get(tagName);
+        return list == null ? Collections.<StreamElement>emptyList() : list;
+    }
+
+    /**
+     * Get the first descendant with the name
+     *
+     * @param tagName
+     * @return the element or null if there is none
+     */
+    public StreamElement getElement(String tagName) {
+        List<StreamElement> list = getElements(tagName);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * The parts of an element to keep
+     */
+    static final class ElementSpec {
+
+        private boolean text;
+        private boolean values;
+        private ElementSpec childSpec;
+        private final Map<String, ElementSpec> descendantSpecs = new HashMap<>();
+
+        /**
+         * Keep the text content of the element
+         *
+         * @return
+         */
+        ElementSpec withText() {
+            this.text = Boolean.TRUE;
+            return this;
+        }
+
+        /**
+         * Keep the value of the first descendant of each name
+         *
+         * @return
+         */
+        ElementSpec withValues() {
+            this.values = Boolean.TRUE;
+            return this;
+        }
+
+        /**
+         * Keep the child elements
+         *
+         * @param spec
+         * @return
+         */
+        ElementSpec withChildren(ElementSpec spec) {
+            this.childSpec = spec;
+            return this;
+        }
+
+        /**
+         * Keep the descendants with the name
+         *
+         * @param tagName
+         * @param spec
+         * @return
+         */
+        ElementSpec withDescendant(String tagName, ElementSpec spec) {
+            descendantSpecs.put(tagName, spec);
+            return this;
+        }
+    }
+
+    /**
+     * An open element; the element is null if it is not kept
+     */
+    private static final class Frame {
+
+        private final StreamElement element;
+        private final ElementSpec spec;
+
+        Frame(StreamElement element, ElementSpec spec) {
+            this.element = element;
+            this.spec = spec;
+        }
+    }
+
+    /**
+     * The value of the first child of an element
+     */
+    private static final class FirstValue {
+
+        private final String source;
+        private boolean hasChild = Boolean.FALSE;
+        private String value;
+        private StringBuilder textValue;
+
+        FirstValue(String source) {
+            this.source = source;
+        }
+
+        void setChild(String childValue) {
+            hasChild = Boolean.TRUE;
+            value = childValue;
+        }
+
+        void appendText(String moreText) {
+            if (textValue == null) {
+                textValue = new StringBuilder(value);
+            }
+            textValue.append(moreText);
+        }
+
+        String getValue() {
+            if (!hasChild) {
+                return "";
+            }
+            return textValue == null ? value : textValue.toString();
+        }
+
+        String getSource() {
+            return hasChild ? source : "";
+        }
+    }
+}
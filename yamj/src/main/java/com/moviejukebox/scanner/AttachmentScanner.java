@@ -22,10 +22,10 @@
  */
 package com.moviejukebox.scanner;
 
-import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -66,16 +66,15 @@ public class AttachmentScanner {
     private static final Logger LOG = LoggerFactory.getLogger(AttachmentScanner.class);
     // Enabled
     private static final Boolean IS_ENABLED = PropertiesUtil.getBooleanProperty("attachment.scanner.enable", Boolean.FALSE);
-    // mkvToolnix
-    private static final File MT_PATH = new File(PropertiesUtil.getProperty("attachment.mkvtoolnix.home", "./mkvToolnix/"));
-    private static final String MT_LANGUAGE = PropertiesUtil.getProperty("attachment.mkvtoolnix.language", "");
-    // mkvToolnix command line, depend on OS
-    private static final List<String> MT_INFO_EXE = new ArrayList<>();
-    private static final List<String> MT_EXTRACT_EXE = new ArrayList<>();
-    private static final String MT_INFO_FILENAME_WINDOWS = "mkvinfo.exe";
-    private static final String MT_INFO_FILENAME_LINUX = "mkvinfo";
-    private static final String MT_EXTRACT_FILENAME_WINDOWS = "mkvextract.exe";
-    private static final String MT_EXTRACT_FILENAME_LINUX = "mkvextract";
+    // Matroska element IDs of the attachments
+    private static final long MKV_ATTACHMENTS = 0x1941A469L;
+    private static final long MKV_ATTACHED_FILE = 0x61A7L;
+    private static final long MKV_FILE_NAME = 0x466EL;
+    private static final long MKV_FILE_MIME_TYPE = 0x4660L;
+    private static final long MKV_FILE_DATA = 0x465CL;
+    // largest file name or MIME type that will be read
+    private static final long MAX_VALUE_SIZE = 4096L;
+    private static final int BUFFER_SIZE = 65536;
     // flag to indicate if scanner is activated
     private static boolean isActivated = Boolean.FALSE;
     // temporary directory
@@ -84,8 +83,6 @@ public class AttachmentScanner {
     // enable/disable some checks
     private static final boolean RECHECK_ENABLED = PropertiesUtil.getBooleanProperty("attachment.recheck.enable", Boolean.TRUE);
     private static final boolean INCLUDE_VIDEOIMAGES = PropertiesUtil.getBooleanProperty("mjb.includeVideoImages", Boolean.FALSE);
-    // the operating system name
-    public static final String OS_NAME = System.getProperty("os.name");
     // properties for NFO handling
     private static final String[] NFO_EXTENSIONS = PropertiesUtil.getProperty("filename.nfo.extensions", "nfo").toLowerCase().split(",");
     // image tokens
@@ -99,43 +96,6 @@ public class AttachmentScanner {
 
     static {
         if (IS_ENABLED) {
-            File checkMkvInfo = findMkvInfo();
-            File checkMkvExtract = findMkvExtract();
-
-            if (OS_NAME.contains("Windows")) {
-                if (MT_INFO_EXE.isEmpty()) {
-                    MT_INFO_EXE.add("cmd.exe");
-                    MT_INFO_EXE.add("/E:1900");
-                    MT_INFO_EXE.add("/C");
-                    MT_INFO_EXE.add(checkMkvInfo.getName());
-                    MT_INFO_EXE.add("--ui-language");
-                    if (StringUtils.isBlank(MT_LANGUAGE)) {
-                        MT_INFO_EXE.add("en");
-                    } else {
-                        MT_INFO_EXE.add(MT_LANGUAGE);
-                    }
-                }
-                if (MT_EXTRACT_EXE.isEmpty()) {
-                    MT_EXTRACT_EXE.add("cmd.exe");
-                    MT_EXTRACT_EXE.add("/E:1900");
-                    MT_EXTRACT_EXE.add("/C");
-                    MT_EXTRACT_EXE.add(checkMkvExtract.getName());
-                }
-            } else {
-                if (MT_INFO_EXE.isEmpty()) {
-                    MT_INFO_EXE.add("./" + checkMkvInfo.getName());
-                    MT_INFO_EXE.add("--ui-language");
-                    if (StringUtils.isBlank(MT_LANGUAGE)) {
-                        MT_INFO_EXE.add("en_US");
-                    } else {
-                        MT_INFO_EXE.add(MT_LANGUAGE);
-                    }
-                }
-                if (MT_EXTRACT_EXE.isEmpty()) {
-                    MT_EXTRACT_EXE.add("./" + checkMkvExtract.getName());
-                }
-            }
-
             if (VALID_TEXT_MIME_TYPES.isEmpty()) {
                 VALID_TEXT_MIME_TYPES.add("text/xml");
                 VALID_TEXT_MIME_TYPES.add("application/xml");
@@ -149,50 +109,40 @@ public class AttachmentScanner {
                 VALID_IMAGE_MIME_TYPES.put("image/x-ms-bmp", ".bmp");
             }
 
-            if (!checkMkvInfo.canExecute()) {
-                LOG.info( "Couldn't find MKV toolnix executable tool 'mkvinfo'");
-                isActivated = Boolean.FALSE;
-            } else if (!checkMkvExtract.canExecute()) {
-                LOG.info( "Couldn't find MKV toolnix executable tool 'mkvextract'");
-                isActivated = Boolean.FALSE;
-            } else {
-                LOG.info( "MkvToolnix will be used to extract matroska attachments");
-                isActivated = Boolean.TRUE;
-            }
+            LOG.info("Matroska attachments will be read from the movie files");
+            isActivated = Boolean.TRUE;
 
-            if (isActivated) {
-                // just create temporary directories if MkvToolnix is activated
-                try {
-                    String tempLocation = PropertiesUtil.getProperty("attachment.temp.directory", "");
-                    if (StringUtils.isBlank(tempLocation)) {
-                        tempLocation = StringTools.appendToPath(PropertiesUtil.getProperty("mjb.jukeboxTempDir", "./temp"), "attachments");
+            // attachments are extracted to the temporary directory for the artwork scanners
+            try {
+                String tempLocation = PropertiesUtil.getProperty("attachment.temp.directory", "");
+                if (StringUtils.isBlank(tempLocation)) {
+                    tempLocation = StringTools.appendToPath(PropertiesUtil.getProperty("mjb.jukeboxTempDir", "./temp"), "attachments");
+                }
+
+                File tempFile = new File(FileTools.getCanonicalPath(tempLocation));
+                if (tempFile.exists()) {
+                    tempDirectory = tempFile;
+                } else {
+                    LOG.debug("Creating temporary attachment location: ({})",  tempLocation );
+                    boolean status = tempFile.mkdirs();
+                    int i = 1;
+                    while (!status && i++ <= 10) {
+                        Thread.sleep(1000);
+                        status = tempFile.mkdirs();
                     }
 
-                    File tempFile = new File(FileTools.getCanonicalPath(tempLocation));
-                    if (tempFile.exists()) {
-                        tempDirectory = tempFile;
+                    if (status && i > 10) {
+                        LOG.error("Failed creating the temporary attachment directory: ({})",  tempLocation );
+                        // scanner will not be active without temporary directory
+                        isActivated = Boolean.FALSE;
                     } else {
-                        LOG.debug("Creating temporary attachment location: ({})",  tempLocation );
-                        boolean status = tempFile.mkdirs();
-                        int i = 1;
-                        while (!status && i++ <= 10) {
-                            Thread.sleep(1000);
-                            status = tempFile.mkdirs();
-                        }
-
-                        if (status && i > 10) {
-                            LOG.error("Failed creating the temporary attachment directory: ({})",  tempLocation );
-                            // scanner will not be active without temporary directory
-                            isActivated = Boolean.FALSE;
-                        } else {
-                            tempDirectory = tempFile;
-                        }
+                        tempDirectory = tempFile;
                     }
-                } catch (Exception ex) {
-                    LOG.error("Failed creating the temporary attachment directory: {}",  ex.getMessage());
-                    // scanner will not be active without temporary directory
-                    isActivated = Boolean.FALSE;
                 }
+            } catch (Exception ex) {
+                LOG.error("Failed creating the temporary attachment directory: {}",  ex.getMessage());
+                // scanner will not be active without temporary directory
+                isActivated = Boolean.FALSE;
             }
         } else {
             isActivated = Boolean.FALSE;
@@ -323,7 +273,7 @@ public class AttachmentScanner {
      *
      * @param movieFile the movie file to scan
      */
-    private static void scanAttachments(MovieFile movieFile) {
+    static void scanAttachments(MovieFile movieFile) {
         if (movieFile.isAttachmentsScanned()) {
             // attachments has been scanned during rescan of movie
             return;
@@ -336,128 +286,254 @@ public class AttachmentScanner {
         File scanFile = movieFile.getFile();
 
         LOG.debug("Scanning file {}",  scanFile.getName());
-        int attachmentId = 0;
-        try {
-            // create the command line
-            List<String> commandMkvInfo = new ArrayList<>(MT_INFO_EXE);
-            commandMkvInfo.add(scanFile.getAbsolutePath());
-
-            ProcessBuilder pb = new ProcessBuilder(commandMkvInfo);
-
-            // set up the working directory.
-            pb.directory(MT_PATH);
-
-            Process p = pb.start();
-
-            BufferedReader input = new BufferedReader(new InputStreamReader(p.getInputStream()));
-
-            String line = localInputReadLine(input);
-            while (line != null) {
-                if (line.contains("+ Attached")) {
-                    // increase the attachment id
-                    attachmentId++;
-                    // next line contains file name
-                    String fileNameLine = localInputReadLine(input);
-                    // next line contains MIME type
-                    String mimeTypeLine = localInputReadLine(input);
-
-                    Attachment attachment = createAttachment(attachmentId, fileNameLine, mimeTypeLine, movieFile.getFirstPart(), movieFile.getLastPart());
-                    if (attachment != null) {
-                        attachment.setSourceFile(movieFile.getFile());
-                        movieFile.addAttachment(attachment);
-                    }
-                }
-
-                line = localInputReadLine(input);
-            }
-
-            if (p.waitFor() != 0) {
-                LOG.error("Error during attachment retrieval - ErrorCode={}",  p.exitValue());
+        try (EbmlReader reader = new EbmlReader(scanFile)) {
+            long attachmentsPosition = findAttachmentsPosition(reader);
+            if (attachmentsPosition > 0) {
+                readAttachments(reader, attachmentsPosition, movieFile);
             }
-        } catch (IOException | InterruptedException ex) {
-            LOG.error(SystemTools.getStackTrace(ex));
+        } catch (IOException ex) {
+            LOG.error("Error during attachment retrieval from {}: {}", scanFile.getName(), ex.getMessage());
+            LOG.trace(SystemTools.getStackTrace(ex));
         }
 
         // attachments has been scanned; no double scan of attachments needed
         movieFile.setAttachmentsScanned(Boolean.TRUE);
     }
 
-    private static String localInputReadLine(BufferedReader input) {
-        String line = null;
-        try {
-            line = input.readLine();
-            while ((line != null) && StringUtils.isBlank(line)) {
-                line = input.readLine();
+    /**
+     * Find the attachments element of a matroska file.
+     *
+     * The attachments are looked up in the seek head, so the clusters of the file are never read. If there is no seek head, then
+     * the elements in front of the first cluster are checked.
+     *
+     * @param reader
+     * @return the position of the attachments element or -1 if the file has no attachments
+     * @throws IOException
+     */
+    private static long findAttachmentsPosition(EbmlReader reader) throws IOException {
+        if (reader.readId() != EbmlReader.ID_EBML) {
+            // no matroska file
+            return -1L;
+        }
+        long size = reader.readSize();
+        if (size == EbmlReader.UNKNOWN_SIZE) {
+            return -1L;
+        }
+        reader.seek(reader.getPosition() + size);
+
+        if (reader.readId() != EbmlReader.ID_SEGMENT) {
+            return -1L;
+        }
+        long segmentSize = reader.readSize();
+        long segmentStart = reader.getPosition();
+        long segmentEnd = reader.getLength();
+        if (segmentSize != EbmlReader.UNKNOWN_SIZE) {
+            segmentEnd = Math.min(segmentEnd, segmentStart + segmentSize);
+        }
+
+        while (reader.getPosition() < segmentEnd) {
+            long elementStart = reader.getPosition();
+            long id = reader.readId();
+            if (id < 0 || id == EbmlReader.ID_CLUSTER) {
+                break;
+            }
+            size = reader.readSize();
+            if (size == EbmlReader.UNKNOWN_SIZE) {
+                break;
             }
-        } catch (IOException ignore) { /* ignore */ }
-        return line;
+            long elementEnd = reader.getPosition() + size;
+
+            if (id == MKV_ATTACHMENTS) {
+                return elementStart;
+            } else if (id == EbmlReader.ID_SEEKHEAD) {
+                long position = findSeekPosition(reader, elementEnd, segmentStart, MKV_ATTACHMENTS);
+                if (position > 0) {
+                    return position;
+                }
+            }
+            reader.seek(elementEnd);
+        }
+        return -1L;
     }
 
     /**
-     * Look for the mkvinfo filename and return it.
+     * Look up the position of a top level element in a seek head.
      *
-     * @return
+     * @param reader
+     * @param end end of the seek head
+     * @param segmentStart start of the segment data the positions are relative to
+     * @param elementId the element to look for
+     * @return the position or -1 if the element is not listed
+     * @throws IOException
      */
-    private static File findMkvInfo() {
-        File mkvInfoFile;
+    private static long findSeekPosition(EbmlReader reader, long end, long segmentStart, long elementId) throws IOException {
+        while (reader.getPosition() < end) {
+            long id = reader.readId();
+            long size = reader.readSize();
+            if (id != EbmlReader.ID_SEEK) {
+                reader.seek(reader.getPosition() + size);
+                continue;
+            }
 
-        if (OS_NAME.contains("Windows")) {
-            mkvInfoFile = new File(StringTools.appendToPath(MT_PATH.getAbsolutePath(), MT_INFO_FILENAME_WINDOWS));
-        } else {
-            mkvInfoFile = new File(StringTools.appendToPath(MT_PATH.getAbsolutePath(), MT_INFO_FILENAME_LINUX));
+            long seekEnd = reader.getPosition() + size;
+            long target = -1;
+            long targetPosition = -1;
+            while (reader.getPosition() < seekEnd) {
+                long childId = reader.readId();
+                long childSize = reader.readSize();
+                if (childId == EbmlReader.ID_SEEK_ID) {
+                    target = reader.readUnsigned(childSize);
+                } else if (childId == EbmlReader.ID_SEEK_POSITION) {
+                    targetPosition = segmentStart + reader.readUnsigned(childSize);
+                } else {
+                    reader.seek(reader.getPosition() + childSize);
+                }
+            }
+            if (target == elementId) {
+                return targetPosition;
+            }
+            reader.seek(seekEnd);
         }
+        return -1L;
+    }
 
-        return mkvInfoFile;
+    /**
+     * Read the attached files and add the usable ones to the movie file.
+     *
+     * Only the name and the MIME type are read, the position of the data is kept so the attachment can be copied later on.
+     *
+     * @param reader
+     * @param position the position of the attachments element
+     * @param movieFile
+     * @throws IOException
+     */
+    private static void readAttachments(EbmlReader reader, long position, MovieFile movieFile) throws IOException {
+        List<AttachedFile> attachedFiles = readAttachedFiles(reader, position);
+        if (attachedFiles == null) {
+            LOG.debug("No attachments found at position {} of {}", position, movieFile.getFile().getName());
+            return;
+        }
+
+        // the attachment id is the number of the attached file
+        int attachmentId = 0;
+        for (AttachedFile attachedFile : attachedFiles) {
+            attachmentId++;
+            if (attachedFile.dataPosition < 0) {
+                LOG.debug("Attachment '{}' has no data", attachedFile.fileName);
+                continue;
+            }
+
+            Attachment attachment = createAttachment(attachmentId, attachedFile.fileName, attachedFile.mimeType, movieFile.getFirstPart(), movieFile.getLastPart());
+            if (attachment != null) {
+                attachment.setSourceFile(movieFile.getFile());
+                attachment.setDataPosition(attachedFile.dataPosition);
+                attachment.setDataSize(attachedFile.dataSize);
+                movieFile.addAttachment(attachment);
+            }
+        }
     }
 
     /**
-     * Look for the mkvextract filename and return it.
+     * Read the name, MIME type and data position of each attached file
      *
-     * @return
+     * @param reader
+     * @param position the position of the attachments element
+     * @return the attached files in the order of the file or null if there is no attachments element at the position
+     * @throws IOException
      */
-    private static File findMkvExtract() {
-        File mkvExtractFile;
+    private static List<AttachedFile> readAttachedFiles(EbmlReader reader, long position) throws IOException {
+        reader.seek(position);
+        if (reader.readId() != MKV_ATTACHMENTS) {
+            return null;
+        }
+        long size = reader.readSize();
+        long end = reader.getLength();
+        if (size != EbmlReader.UNKNOWN_SIZE) {
+            end = Math.min(end, reader.getPosition() + size);
+        }
 
-        if (OS_NAME.contains("Windows")) {
-            mkvExtractFile = new File(StringTools.appendToPath(MT_PATH.getAbsolutePath(), MT_EXTRACT_FILENAME_WINDOWS));
-        } else {
-            mkvExtractFile = new File(StringTools.appendToPath(MT_PATH.getAbsolutePath(), MT_EXTRACT_FILENAME_LINUX));
+        List<AttachedFile> attachedFiles = new ArrayList<>();
+        while (reader.getPosition() < end) {
+            long id = reader.readId();
+            if (id < 0) {
+                break;
+            }
+            size = reader.readSize();
+            long elementEnd = reader.getPosition() + size;
+            if (id != MKV_ATTACHED_FILE) {
+                reader.seek(elementEnd);
+                continue;
+            }
+
+            AttachedFile attachedFile = new AttachedFile();
+            while (reader.getPosition() < elementEnd) {
+                long childId = reader.readId();
+                long childSize = reader.readSize();
+                if (childId == MKV_FILE_NAME && childSize <= MAX_VALUE_SIZE) {
+                    attachedFile.fileName = reader.readString(childSize);
+                } else if (childId == MKV_FILE_MIME_TYPE && childSize <= MAX_VALUE_SIZE) {
+                    attachedFile.mimeType = reader.readString(childSize);
+                } else {
+                    if (childId == MKV_FILE_DATA) {
+                        attachedFile.dataPosition = reader.getPosition();
+                        attachedFile.dataSize = childSize;
+                    }
+                    reader.seek(reader.getPosition() + childSize);
+                }
+            }
+            reader.seek(elementEnd);
+            attachedFiles.add(attachedFile);
         }
+        return attachedFiles;
+    }
 
-        return mkvExtractFile;
+    /**
+     * Find the data of an attachment that was read from the jukebox XML, where only the attachment id is kept
+     *
+     * @param reader
+     * @param attachment
+     * @return true if the data position of the attachment has been set
+     * @throws IOException
+     */
+    private static boolean locateAttachment(EbmlReader reader, Attachment attachment) throws IOException {
+        long attachmentsPosition = findAttachmentsPosition(reader);
+        if (attachmentsPosition <= 0) {
+            return Boolean.FALSE;
+        }
+
+        List<AttachedFile> attachedFiles = readAttachedFiles(reader, attachmentsPosition);
+        int index = attachment.getAttachmentId() - 1;
+        if (attachedFiles == null || index < 0 || index >= attachedFiles.size() || attachedFiles.get(index).dataPosition < 0) {
+            return Boolean.FALSE;
+        }
+
+        attachment.setDataPosition(attachedFiles.get(index).dataPosition);
+        attachment.setDataSize(attachedFiles.get(index).dataSize);
+        return Boolean.TRUE;
     }
 
     /**
      * Creates an attachment.
      *
      * @param id
-     * @param filename
-     * @param mimetype
-     * @param firstParst
+     * @param fileName
+     * @param mimeType
+     * @param firstPart
      * @param lastPart
      * @return Attachment or null
      */
-    private static Attachment createAttachment(int id, String filename, String mimetype, int firstParst, int lastPart) {
-        String fixedFileName = null;
-        if (filename.contains("File name:")) {
-            fixedFileName = filename.substring(filename.indexOf("File name:") + 10).trim();
-        }
-        String fixedMimeType = null;
-        if (mimetype.contains("Mime type:")) {
-            fixedMimeType = mimetype.substring(mimetype.indexOf("Mime type:") + 10).trim();
-        }
-
-        AttachmentContent content = determineContent(fixedFileName, fixedMimeType, firstParst, lastPart);
+    private static Attachment createAttachment(int id, String fileName, String mimeType, int firstPart, int lastPart) {
+        AttachmentContent content = determineContent(fileName, mimeType, firstPart, lastPart);
 
         Attachment attachment = null;
         if (content == null) {
-            LOG.debug("Failed to dertermine attachment type for '{}' ({})",fixedFileName,  fixedMimeType );
+            LOG.debug("Failed to dertermine attachment type for '{}' ({})", fileName, mimeType);
         } else {
             attachment = new Attachment();
             attachment.setType(AttachmentType.MATROSKA); // one and only type at the moment
             attachment.setAttachmentId(id);
             attachment.setContentType(content.getContentType());
-            attachment.setMimeType(fixedMimeType == null ? null : fixedMimeType.toLowerCase());
+            attachment.setMimeType(mimeType == null ? null : mimeType.toLowerCase());
             attachment.setPart(content.getPart());
             LOG.debug("Found attachment {}",  attachment);
         }
@@ -851,23 +927,7 @@ public class AttachmentScanner {
         }
 
         LOG.trace("Extract attachement ({})",  attachment );
-        try {
-            // Create the command line
-            List<String> commandMedia = new ArrayList<>(MT_EXTRACT_EXE);
-            commandMedia.add("attachments");
-            commandMedia.add(sourceFile.getAbsolutePath());
-            commandMedia.add(attachment.getAttachmentId() + ":" + returnFileName.toString());
-
-            ProcessBuilder pb = new ProcessBuilder(commandMedia);
-            pb.directory(MT_PATH);
-            Process p = pb.start();
-
-            if (p.waitFor() != 0) {
-                LOG.error("Error during extraction - ErrorCode={}",  p.exitValue());
-                returnFile = null;
-            }
-        } catch (IOException | InterruptedException ex) {
-            LOG.error(SystemTools.getStackTrace(ex));
+        if (!copyAttachment(attachment, returnFile)) {
             returnFile = null;
         }
 
@@ -888,6 +948,53 @@ public class AttachmentScanner {
         return returnFile;
     }
 
+    /**
+     * Copy the data of an attachment from the movie file.
+     *
+     * The data position is found during the scan; an attachment read from the jukebox XML is looked up by its id.
+     *
+     * @param attachment the attachment to copy
+     * @param targetFile the file to write
+     * @return true if the attachment has been copied, else false
+     */
+    static boolean copyAttachment(Attachment attachment, File targetFile) {
+        try (EbmlReader reader = new EbmlReader(attachment.getSourceFile())) {
+            if (attachment.getDataPosition() < 0 && !locateAttachment(reader, attachment)) {
+                LOG.warn("Attachment {} not found in {}", attachment, attachment.getSourceFile().getName());
+                return Boolean.FALSE;
+            }
+            copyData(reader, attachment, targetFile);
+            return Boolean.TRUE;
+        } catch (IOException ex) {
+            LOG.error("Error during extraction of {}: {}", attachment, ex.getMessage());
+            LOG.trace(SystemTools.getStackTrace(ex));
+            if (targetFile.exists() && !targetFile.delete()) {
+                LOG.debug("Failed to delete incomplete attachment {}", targetFile.getAbsolutePath());
+            }
+            return Boolean.FALSE;
+        }
+    }
+
+    private static void copyData(EbmlReader reader, Attachment attachment, File targetFile) throws IOException {
+        try (OutputStream out = new FileOutputStream(targetFile)) {
+            if (attachment.getDataPosition() + attachment.getDataSize() > reader.getLength()) {
+                throw new IOException("Attachment exceeds the end of the file; file changed since scan?");
+            }
+
+            reader.seek(attachment.getDataPosition());
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = attachment.getDataSize();
+            while (remaining > 0) {
+                int count = reader.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+                out.write(buffer, 0, count);
+                remaining -= count;
+            }
+        }
+    }
+
     /**
      * Clean up the temporary directory for attachments
      */
@@ -896,4 +1003,15 @@ public class AttachmentScanner {
             FileTools.deleteDir(tempDirectory);
         }
     }
+
+    /**
+     * The values of an attached file that are needed to create and copy the attachment
+     */
+    private static final class AttachedFile {
+
+        private String fileName;
+        private String mimeType;
+        private long dataPosition = -1L;
+        private long dataSize;
+    }
 }
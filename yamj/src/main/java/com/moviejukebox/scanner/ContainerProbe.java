@@ -0,0 +1,815 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.scanner;
+
+import com.moviejukebox.tools.PropertiesUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read the stream information of Matroska and MP4/QuickTime files without running MediaInfo.
+ *
+ * Only the headers of the container are read. The results are stored with the same labels as the MediaInfo output, so the
+ * MediaInfoScanner can process them in the same way. Files in other formats, or files that can not be read, are left to
+ * MediaInfo.
+ */
+public final class ContainerProbe {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContainerProbe.class);
+    private static final boolean PROBE_ENABLED = PropertiesUtil.getBooleanProperty("mediainfo.probe.enable", Boolean.TRUE);
+    // Matroska elements
+    private static final long MKV_INFO = 0x1549A966L;
+    private static final long MKV_TIMECODE_SCALE = 0x2AD7B1L;
+    private static final long MKV_DURATION = 0x4489L;
+    private static final long MKV_TITLE = 0x7BA9L;
+    private static final long MKV_TRACKS = 0x1654AE6BL;
+    private static final long MKV_TRACK_ENTRY = 0xAEL;
+    private static final long MKV_TRACK_TYPE = 0x83L;
+    private static final long MKV_CODEC_ID = 0x86L;
+    private static final long MKV_CODEC_PRIVATE = 0x63A2L;
+    private static final long MKV_LANGUAGE = 0x22B59CL;
+    private static final long MKV_LANGUAGE_IETF = 0x22B59DL;
+    private static final long MKV_NAME = 0x536EL;
+    private static final long MKV_DEFAULT_DURATION = 0x23E383L;
+    private static final long MKV_VIDEO = 0xE0L;
+    private static final long MKV_PIXEL_WIDTH = 0xB0L;
+    private static final long MKV_PIXEL_HEIGHT = 0xBAL;
+    private static final long MKV_DISPLAY_WIDTH = 0x54B0L;
+    private static final long MKV_DISPLAY_HEIGHT = 0x54BAL;
+    private static final long MKV_DISPLAY_UNIT = 0x54B2L;
+    private static final long MKV_FLAG_INTERLACED = 0x9AL;
+    private static final long MKV_STEREO_MODE = 0x53B8L;
+    private static final long MKV_AUDIO = 0xE1L;
+    private static final long MKV_SAMPLING_FREQUENCY = 0xB5L;
+    private static final long MKV_CHANNELS = 0x9FL;
+    private static final int MKV_TYPE_VIDEO = 1;
+    private static final int MKV_TYPE_AUDIO = 2;
+    private static final int MKV_TYPE_SUBTITLE = 17;
+    // Largest string or binary value that is read, anything bigger is not a header value
+    private static final long MAX_VALUE_SIZE = 65536L;
+    // The MediaInfo formats of the Matroska codec IDs
+    private static final Map<String, String> MKV_FORMATS = new HashMap<>();
+    // The MediaInfo formats of the MP4 sample entries
+    private static final Map<String, String> MP4_FORMATS = new HashMap<>();
+    // The MediaInfo formats of the AVI four character codes used in Matroska
+    private static final Map<String, String> FOURCC_FORMATS = new HashMap<>();
+    // ISO 639-2 codes to the ISO 639-1 codes that MediaInfo lists first
+    private static final Map<String, String> LANGUAGE_CODES = new HashMap<>();
+
+    static {
+        MKV_FORMATS.put("V_MPEG4/ISO/AVC", "AVC");
+        MKV_FORMATS.put("V_MPEGH/ISO/HEVC", "HEVC");
+        MKV_FORMATS.put("V_MPEG4/ISO/SP", "MPEG-4 Visual");
+        MKV_FORMATS.put("V_MPEG4/ISO/ASP", "MPEG-4 Visual");
+        MKV_FORMATS.put("V_MPEG4/ISO/AP", "MPEG-4 Visual");
+        MKV_FORMATS.put("V_MPEG4/MS/V3", "MPEG-4 Visual");
+        MKV_FORMATS.put("V_MPEG1", "MPEG Video");
+        MKV_FORMATS.put("V_MPEG2", "MPEG Video");
+        MKV_FORMATS.put("V_VP8", "VP8");
+        MKV_FORMATS.put("V_VP9", "VP9");
+        MKV_FORMATS.put("V_AV1", "AV1");
+        MKV_FORMATS.put("V_THEORA", "Theora");
+        MKV_FORMATS.put("A_AC3", "AC-3");
+        MKV_FORMATS.put("A_EAC3", "E-AC-3");
+        MKV_FORMATS.put("A_DTS", "DTS");
+        MKV_FORMATS.put("A_TRUEHD", "TrueHD");
+        MKV_FORMATS.put("A_FLAC", "FLAC");
+        MKV_FORMATS.put("A_VORBIS", "Vorbis");
+        MKV_FORMATS.put("A_OPUS", "Opus");
+        MKV_FORMATS.put("A_MPEG/L1", "MPEG Audio");
+        MKV_FORMATS.put("A_MPEG/L2", "MPEG Audio");
+        MKV_FORMATS.put("A_MPEG/L3", "MPEG Audio");
+        MKV_FORMATS.put("A_ALAC", "ALAC");
+        MKV_FORMATS.put("S_TEXT/UTF8", "UTF-8");
+        MKV_FORMATS.put("S_TEXT/ASCII", "UTF-8");
+        MKV_FORMATS.put("S_TEXT/ASS", "ASS");
+        MKV_FORMATS.put("S_TEXT/SSA", "SSA");
+        MKV_FORMATS.put("S_ASS", "ASS");
+        MKV_FORMATS.put("S_SSA", "SSA");
+        MKV_FORMATS.put("S_TEXT/WEBVTT", "WebVTT");
+        MKV_FORMATS.put("S_VOBSUB", "VobSub");
+        MKV_FORMATS.put("S_HDMV/PGS", "PGS");
+
+        MP4_FORMATS.put("avc1", "AVC");
+        MP4_FORMATS.put("avc3", "AVC");
+        MP4_FORMATS.put("hvc1", "HEVC");
+        MP4_FORMATS.put("hev1", "HEVC");
+        MP4_FORMATS.put("mp4v", "MPEG-4 Visual");
+        MP4_FORMATS.put("s263", "H.263");
+        MP4_FORMATS.put("vp09", "VP9");
+        MP4_FORMATS.put("av01", "AV1");
+        MP4_FORMATS.put("jpeg", "JPEG");
+        MP4_FORMATS.put("mp4a", "AAC");
+        MP4_FORMATS.put("ac-3", "AC-3");
+        MP4_FORMATS.put("ec-3", "E-AC-3");
+        MP4_FORMATS.put("dtsc", "DTS");
+        MP4_FORMATS.put("dtsh", "DTS");
+        MP4_FORMATS.put("dtsl", "DTS");
+        MP4_FORMATS.put("alac", "ALAC");
+        MP4_FORMATS.put("fLaC", "FLAC");
+        MP4_FORMATS.put("Opus", "Opus");
+        MP4_FORMATS.put("sowt", "PCM");
+        MP4_FORMATS.put("twos", "PCM");
+        MP4_FORMATS.put("lpcm", "PCM");
+        MP4_FORMATS.put(".mp3", "MPEG Audio");
+        MP4_FORMATS.put("tx3g", "Timed Text");
+        MP4_FORMATS.put("wvtt", "WebVTT");
+        MP4_FORMATS.put("c608", "EIA-608");
+
+        FOURCC_FORMATS.put("XVID", "MPEG-4 Visual");
+        FOURCC_FORMATS.put("DIVX", "MPEG-4 Visual");
+        FOURCC_FORMATS.put("DX50", "MPEG-4 Visual");
+        FOURCC_FORMATS.put("FMP4", "MPEG-4 Visual");
+        FOURCC_FORMATS.put("DIV3", "MPEG-4 Visual");
+        FOURCC_FORMATS.put("WVC1", "VC-1");
+        FOURCC_FORMATS.put("WMV3", "VC-1");
+        FOURCC_FORMATS.put("H264", "AVC");
+        FOURCC_FORMATS.put("AVC1", "AVC");
+        FOURCC_FORMATS.put("MJPG", "JPEG");
+
+        for (String language : Locale.getISOLanguages()) {
+            try {
+                LANGUAGE_CODES.put(new Locale(language).getISO3Language(), language);
+            } catch (MissingResourceException ignore) {
+                // No three letter code for this language
+            }
+        }
+        // The bibliographic codes used by Matroska
+        String[] bibliographic = {"alb", "sq", "arm", "hy", "baq", "eu", "bur", "my", "chi", "zh", "cze", "cs", "dut", "nl",
+            "fre", "fr", "geo", "ka", "ger", "de", "gre", "el", "ice", "is", "mac", "mk", "mao", "mi", "may", "ms", "per", "fa",
+            "rum", "ro", "slo", "sk", "tib", "bo", "wel", "cy"};
+        for (int i = 0; i < bibliographic.length; i += 2) {
+            LANGUAGE_CODES.put(bibliographic[i], bibliographic[i + 1]);
+        }
+    }
+
+    private ContainerProbe() {
+        throw new UnsupportedOperationException("Class cannot be instantiated");
+    }
+
+    public static boolean isEnabled() {
+        return PROBE_ENABLED;
+    }
+
+    /**
+     * Read the stream information of the file into the MediaInfo lists.
+     *
+     * Nothing is added to the lists if the file can not be probed.
+     *
+     * @param videoFile
+     * @param infosGeneral
+     * @param infosVideo
+     * @param infosAudio
+     * @param infosText
+     * @return true if the container was read, false if MediaInfo is needed
+     */
+    public static boolean probe(File videoFile,
+            Map<String, String> infosGeneral,
+            List<Map<String, String>> infosVideo,
+            List<Map<String, String>> infosAudio,
+            List<Map<String, String>> infosText) {
+        if (!PROBE_ENABLED || !videoFile.isFile()) {
+            return false;
+        }
+
+        Map<String, String> general = new HashMap<>();
+        List<Map<String, String>> video = new ArrayList<>();
+        List<Map<String, String>> audio = new ArrayList<>();
+        List<Map<String, String>> text = new ArrayList<>();
+        boolean read;
+
+        try {
+            byte[] magic = new byte[8];
+            try (RandomAccessFile file = new RandomAccessFile(videoFile, "r")) {
+                if (file.read(magic) < magic.length) {
+                    return false;
+                }
+            }
+
+            if ((magic[0] & 0xFF) == 0x1A && (magic[1] & 0xFF) == 0x45 && (magic[2] & 0xFF) == 0xDF && (magic[3] & 0xFF) == 0xA3) {
+                read = probeMatroska(videoFile, general, video, audio, text);
+            } else if (isMp4Box(new String(magic, 4, 4, StandardCharsets.ISO_8859_1))) {
+                read = probeMp4(videoFile, general, video, audio, text);
+            } else {
+                return false;
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOG.debug("Failed to probe {}: {}", videoFile.getName(), ex.getMessage());
+            return false;
+        }
+
+        if (!read || (video.isEmpty() && audio.isEmpty())) {
+            LOG.debug("No streams found in {}, using MediaInfo", videoFile.getName());
+            return false;
+        }
+
+        long duration = NumberUtils.toLong(general.get("Duration"), 0L);
+        if (duration > 0) {
+            general.put("Overall bit rate", String.valueOf(videoFile.length() * 8000L / duration));
+        }
+
+        LOG.debug("Probed {}: {} video, {} audio and {} text streams", videoFile.getName(), video.size(), audio.size(), text.size());
+        infosGeneral.putAll(general);
+        infosVideo.addAll(video);
+        infosAudio.addAll(audio);
+        infosText.addAll(text);
+        return true;
+    }
+
+    /**
+     * Read the segment information and the tracks of a Matroska file
+     */
+    private static boolean probeMatroska(File videoFile,
+            Map<String, String> general,
+            List<Map<String, String>> video,
+            List<Map<String, String>> audio,
+            List<Map<String, String>> text) throws IOException {
+        try (EbmlReader reader = new EbmlReader(videoFile)) {
+            if (reader.readId() != EbmlReader.ID_EBML) {
+                return false;
+            }
+            long headerEnd = end(reader, reader.readSize());
+            String docType = "matroska";
+            while (reader.getPosition() < headerEnd) {
+                long id = reader.readId();
+                long size = reader.readSize();
+                if (id == EbmlReader.ID_DOCTYPE && size <= MAX_VALUE_SIZE) {
+                    docType = reader.readString(size);
+                } else {
+                    reader.seek(reader.getPosition() + size);
+                }
+            }
+            reader.seek(headerEnd);
+
+            if (reader.readId() != EbmlReader.ID_SEGMENT) {
+                return false;
+            }
+            long segmentEnd = end(reader, reader.readSize());
+            long segmentStart = reader.getPosition();
+            general.put("Format", "webm".equalsIgnoreCase(docType) ? "WebM" : "Matroska");
+
+            long infoPosition = -1;
+            long tracksPosition = -1;
+            boolean infoRead = false;
+            boolean tracksRead = false;
+
+            // The headers are at the start of the segment, followed by the clusters
+            while (reader.getPosition() < segmentEnd && !(infoRead && tracksRead)) {
+                long id = reader.readId();
+                if (id < 0 || id == EbmlReader.ID_CLUSTER) {
+                    break;
+                }
+                long size = reader.readSize();
+                if (size == EbmlReader.UNKNOWN_SIZE) {
+                    break;
+                }
+                long elementEnd = reader.getPosition() + size;
+
+                if (id == MKV_INFO) {
+                    readMatroskaInfo(reader, elementEnd, general);
+                    infoRead = true;
+                } else if (id == MKV_TRACKS) {
+                    readMatroskaTracks(reader, elementEnd, video, audio, text);
+                    tracksRead = true;
+                } else if (id == EbmlReader.ID_SEEKHEAD) {
+                    // Remember where the headers are, in case they are after the clusters
+                    while (reader.getPosition() < elementEnd) {
+                        long seekId = reader.readId();
+                        long seekSize = reader.readSize();
+                        if (seekId != EbmlReader.ID_SEEK) {
+                            reader.seek(reader.getPosition() + seekSize);
+                            continue;
+                        }
+                        long seekEnd = reader.getPosition() + seekSize;
+                        long target = -1;
+                        long targetPosition = -1;
+                        while (reader.getPosition() < seekEnd) {
+                            long childId = reader.readId();
+                            long childSize = reader.readSize();
+                            if (childId == EbmlReader.ID_SEEK_ID) {
+                                target = reader.readUnsigned(childSize);
+                            } else if (childId == EbmlReader.ID_SEEK_POSITION) {
+                                targetPosition = segmentStart + reader.readUnsigned(childSize);
+                            } else {
+                                reader.seek(reader.getPosition() + childSize);
+                            }
+                        }
+                        if (target == MKV_INFO) {
+                            infoPosition = targetPosition;
+                        } else if (target == MKV_TRACKS) {
+                            tracksPosition = targetPosition;
+                        }
+                        reader.seek(seekEnd);
+                    }
+                }
+                reader.seek(elementEnd);
+            }
+
+            if (!infoRead && infoPosition > 0) {
+                reader.seek(infoPosition);
+                if (reader.readId() == MKV_INFO) {
+                    long size = reader.readSize();
+                    readMatroskaInfo(reader, reader.getPosition() + size, general);
+                }
+            }
+
+            if (!tracksRead && tracksPosition > 0) {
+                reader.seek(tracksPosition);
+                if (reader.readId() == MKV_TRACKS) {
+                    long size = reader.readSize();
+                    readMatroskaTracks(reader, reader.getPosition() + size, video, audio, text);
+                    tracksRead = true;
+                }
+            }
+            return tracksRead;
+        }
+    }
+
+    private static long end(EbmlReader reader, long size) {
+        if (size == EbmlReader.UNKNOWN_SIZE) {
+            return reader.getLength();
+        }
+        return Math.min(reader.getLength(), reader.getPosition() + size);
+    }
+
+    private static void readMatroskaInfo(EbmlReader reader, long end, Map<String, String> general) throws IOException {
+        long timecodeScale = 1000000L;
+        double duration = -1;
+
+        while (reader.getPosition() < end) {
+            long id = reader.readId();
+            long size = reader.readSize();
+            if (id == MKV_TIMECODE_SCALE) {
+                timecodeScale = reader.readUnsigned(size);
+            } else if (id == MKV_DURATION) {
+                duration = reader.readFloat(size);
+            } else if (id == MKV_TITLE && size <= MAX_VALUE_SIZE) {
+                String title = reader.readString(size);
+                if (StringUtils.isNotBlank(title)) {
+                    general.put("Movie name", title);
+                }
+            } else {
+                reader.seek(reader.getPosition() + size);
+            }
+        }
+
+        if (duration > 0) {
+            general.put("Duration", String.valueOf(Math.round(duration * timecodeScale / 1000000.0)));
+        }
+    }
+
+    private static void readMatroskaTracks(EbmlReader reader, long end,
+            List<Map<String, String>> video,
+            List<Map<String, String>> audio,
+            List<Map<String, String>> text) throws IOException {
+        while (reader.getPosition() < end) {
+            long id = reader.readId();
+            long size = reader.readSize();
+            long entryEnd = reader.getPosition() + size;
+            if (id == MKV_TRACK_ENTRY) {
+                readMatroskaTrack(reader, entryEnd, video, audio, text);
+            }
+            reader.seek(entryEnd);
+        }
+    }
+
+    private static void readMatroskaTrack(EbmlReader reader, long end,
+            List<Map<String, String>> video,
+            List<Map<String, String>> audio,
+            List<Map<String, String>> text) throws IOException {
+        Map<String, String> infos = new HashMap<>();
+        long type = 0;
+        String codecId = null;
+        byte[] codecPrivate = null;
+        // The Matroska default language
+        String language = "eng";
+        String languageIetf = null;
+        long defaultDuration = 0;
+        long pixelWidth = 0;
+        long pixelHeight = 0;
+        long displayWidth = 0;
+        long displayHeight = 0;
+        long displayUnit = 0;
+
+        while (reader.getPosition() < end) {
+            long id = reader.readId();
+            long size = reader.readSize();
+            long elementEnd = reader.getPosition() + size;
+
+            if (id == MKV_TRACK_TYPE) {
+                type = reader.readUnsigned(size);
+            } else if (id == MKV_CODEC_ID && size <= MAX_VALUE_SIZE) {
+                codecId = reader.readString(size);
+            } else if (id == MKV_CODEC_PRIVATE && size <= MAX_VALUE_SIZE) {
+                codecPrivate = reader.readBytes(size);
+            } else if (id == MKV_LANGUAGE && size <= MAX_VALUE_SIZE) {
+                language = reader.readString(size);
+            } else if (id == MKV_LANGUAGE_IETF && size <= MAX_VALUE_SIZE) {
+                languageIetf = reader.readString(size);
+            } else if (id == MKV_NAME && size <= MAX_VALUE_SIZE) {
+                infos.put("Title", reader.readString(size));
+            } else if (id == MKV_DEFAULT_DURATION) {
+                defaultDuration = reader.readUnsigned(size);
+            } else if (id == MKV_VIDEO) {
+                while (reader.getPosition() < elementEnd) {
+                    long childId = reader.readId();
+                    long childSize = reader.readSize();
+                    if (childId == MKV_PIXEL_WIDTH) {
+                        pixelWidth = reader.readUnsigned(childSize);
+                    } else if (childId == MKV_PIXEL_HEIGHT) {
+                        pixelHeight = reader.readUnsigned(childSize);
+                    } else if (childId == MKV_DISPLAY_WIDTH) {
+                        displayWidth = reader.readUnsigned(childSize);
+                    } else if (childId == MKV_DISPLAY_HEIGHT) {
+                        displayHeight = reader.readUnsigned(childSize);
+                    } else if (childId == MKV_DISPLAY_UNIT) {
+                        displayUnit = reader.readUnsigned(childSize);
+                    } else if (childId == MKV_FLAG_INTERLACED) {
+                        long interlaced = reader.readUnsigned(childSize);
+                        if (interlaced == 1) {
+                            infos.put("Scan type", "Interlaced");
+                        } else if (interlaced == 2) {
+                            infos.put("Scan type", "Progressive");
+                        }
+                    } else if (childId == MKV_STEREO_MODE) {
+                        if (reader.readUnsigned(childSize) > 0) {
+                            infos.put("MultiView_Count", "2");
+                        }
+                    } else {
+                        reader.seek(reader.getPosition() + childSize);
+                    }
+                }
+            } else if (id == MKV_AUDIO) {
+                // The Matroska default is one channel
+                infos.put("Channel(s)", "1");
+                while (reader.getPosition() < elementEnd) {
+                    long childId = reader.readId();
+                    long childSize = reader.readSize();
+                    if (childId == MKV_SAMPLING_FREQUENCY) {
+                        infos.put("Sampling rate", String.valueOf(Math.round(reader.readFloat(childSize))));
+                    } else if (childId == MKV_CHANNELS) {
+                        infos.put("Channel(s)", String.valueOf(reader.readUnsigned(childSize)));
+                    } else {
+                        reader.seek(reader.getPosition() + childSize);
+                    }
+                }
+            }
+            reader.seek(elementEnd);
+        }
+
+        if (codecId == null) {
+            return;
+        }
+        infos.put("Codec ID", codecId);
+
+        String format = MKV_FORMATS.get(codecId);
+        if (format == null && codecId.startsWith("A_AAC")) {
+            format = "AAC";
+        } else if (format == null && codecId.startsWith("A_PCM")) {
+            format = "PCM";
+        } else if (format == null && "V_MS/VFW/FOURCC".equals(codecId) && codecPrivate != null && codecPrivate.length >= 20) {
+            // The codec is in the compression field of the BITMAPINFOHEADER
+            String fourcc = new String(codecPrivate, 16, 4, StandardCharsets.ISO_8859_1);
+            infos.put("Codec ID", fourcc);
+            format = FOURCC_FORMATS.get(fourcc.toUpperCase());
+        }
+        if (format != null) {
+            infos.put("Format", format);
+        }
+        if ("V_MPEG1".equals(codecId)) {
+            infos.put("Format version", "Version 1");
+        } else if ("V_MPEG2".equals(codecId)) {
+            infos.put("Format version", "Version 2");
+        } else if (codecId.startsWith("A_MPEG/L")) {
+            infos.put("Format profile", "Layer " + codecId.substring(codecId.length() - 1));
+        }
+
+        String languageCode = getLanguageCode(languageIetf, language);
+        if (languageCode != null) {
+            infos.put("Language", languageCode);
+        }
+
+        if (type == MKV_TYPE_VIDEO) {
+            if (pixelWidth > 0 && pixelHeight > 0) {
+                infos.put("Width", String.valueOf(pixelWidth));
+                infos.put("Height", String.valueOf(pixelHeight));
+                // Display sizes in pixels or as an aspect ratio, other units are not ratios of the picture
+                if (displayWidth > 0 && displayHeight > 0 && (displayUnit == 0 || displayUnit == 3)) {
+                    infos.put("Display aspect ratio", formatDecimal((double) displayWidth / displayHeight));
+                } else {
+                    infos.put("Display aspect ratio", formatDecimal((double) pixelWidth / pixelHeight));
+                }
+            }
+            if (defaultDuration > 0) {
+                infos.put("Frame rate", formatDecimal(1000000000.0 / defaultDuration));
+            }
+            video.add(infos);
+        } else if (type == MKV_TYPE_AUDIO) {
+            audio.add(infos);
+        } else if (type == MKV_TYPE_SUBTITLE) {
+            text.add(infos);
+        }
+    }
+
+    /**
+     * Read the movie header and the tracks of an MP4 or QuickTime file
+     */
+    private static boolean probeMp4(File videoFile,
+            Map<String, String> general,
+            List<Map<String, String>> video,
+            List<Map<String, String>> audio,
+            List<Map<String, String>> text) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(videoFile, "r")) {
+            long[] moov = findBox(file, 0, file.length(), "moov");
+            if (moov == null) {
+                return false;
+            }
+            general.put("Format", "MPEG-4");
+
+            long[] mvhd = findBox(file, moov[0], moov[1], "mvhd");
+            if (mvhd != null) {
+                long[] times = readMp4Times(file, mvhd[0]);
+                if (times[0] > 0 && times[1] > 0) {
+                    general.put("Duration", String.valueOf(times[1] * 1000L / times[0]));
+                }
+            }
+
+            long position = moov[0];
+            while (position < moov[1]) {
+                long[] trak = findBox(file, position, moov[1], "trak");
+                if (trak == null) {
+                    break;
+                }
+                readMp4Track(file, trak, video, audio, text);
+                position = trak[1];
+            }
+            return true;
+        }
+    }
+
+    private static void readMp4Track(RandomAccessFile file, long[] trak,
+            List<Map<String, String>> video,
+            List<Map<String, String>> audio,
+            List<Map<String, String>> text) throws IOException {
+        long[] mdia = findBox(file, trak[0], trak[1], "mdia");
+        long[] hdlr = mdia == null ? null : findBox(file, mdia[0], mdia[1], "hdlr");
+        long[] mdhd = mdia == null ? null : findBox(file, mdia[0], mdia[1], "mdhd");
+        long[] minf = mdia == null ? null : findBox(file, mdia[0], mdia[1], "minf");
+        long[] stbl = minf == null ? null : findBox(file, minf[0], minf[1], "stbl");
+        long[] stsd = stbl == null ? null : findBox(file, stbl[0], stbl[1], "stsd");
+        if (hdlr == null || mdhd == null || stsd == null) {
+            return;
+        }
+
+        file.seek(hdlr[0] + 8);
+        String handler = readType(file);
+        Map<String, String> infos = new HashMap<>();
+
+        long[] times = readMp4Times(file, mdhd[0]);
+        if (times[0] > 0 && times[1] > 0) {
+            infos.put("Duration", String.valueOf(times[1] * 1000L / times[0]));
+        }
+        // The packed ISO 639-2 language follows the duration
+        int packed = file.readUnsignedShort();
+        if (packed >= 0x400 && packed != 0x7FFF) {
+            char[] code = new char[]{
+                (char) (((packed >> 10) & 0x1F) + 0x60),
+                (char) (((packed >> 5) & 0x1F) + 0x60),
+                (char) ((packed & 0x1F) + 0x60)};
+            String languageCode = getLanguageCode(null, new String(code));
+            if (languageCode != null) {
+                infos.put("Language", languageCode);
+            }
+        }
+
+        // The first sample description
+        file.seek(stsd[0] + 8);
+        long entryStart = file.getFilePointer();
+        long entrySize = file.readInt() & 0xFFFFFFFFL;
+        String sampleType = readType(file);
+        infos.put("Codec ID", sampleType);
+        String format = MP4_FORMATS.get(sampleType);
+
+        if ("vide".equals(handler)) {
+            file.seek(entryStart + 32);
+            int width = file.readUnsignedShort();
+            int height = file.readUnsignedShort();
+            if (width > 0 && height > 0) {
+                infos.put("Width", String.valueOf(width));
+                infos.put("Height", String.valueOf(height));
+                infos.put("Display aspect ratio", formatDecimal(getMp4DisplayAspect(file, trak, width, height)));
+            }
+
+            long[] stsz = findBox(file, stbl[0], stbl[1], "stsz");
+            if (stsz == null) {
+                stsz = findBox(file, stbl[0], stbl[1], "stz2");
+            }
+            if (stsz != null && times[0] > 0 && times[1] > 0) {
+                file.seek(stsz[0] + 8);
+                long frames = file.readInt() & 0xFFFFFFFFL;
+                infos.put("Frame rate", formatDecimal(frames * (double) times[0] / times[1]));
+            }
+            if (format != null) {
+                infos.put("Format", format);
+            }
+            video.add(infos);
+        } else if ("soun".equals(handler)) {
+            file.seek(entryStart + 24);
+            infos.put("Channel(s)", String.valueOf(file.readUnsignedShort()));
+            file.seek(entryStart + 32);
+            infos.put("Sampling rate", String.valueOf(file.readInt() >>> 16));
+            if ("mp4a".equals(sampleType) && isMp4MpegAudio(file, entryStart, entryStart + entrySize)) {
+                format = "MPEG Audio";
+            }
+            if (format != null) {
+                infos.put("Format", format);
+            }
+            audio.add(infos);
+        } else if ("sbtl".equals(handler) || "subt".equals(handler) || "text".equals(handler)) {
+            if (format != null) {
+                infos.put("Format", format);
+            }
+            text.add(infos);
+        }
+    }
+
+    /**
+     * Find the first child box of the type between the start and end positions
+     *
+     * @return The start of the box data and the end of the box, or null if there is no such box
+     */
+    private static long[] findBox(RandomAccessFile file, long start, long end, String type) throws IOException {
+        long position = start;
+        while (position + 8 <= end) {
+            file.seek(position);
+            long size = file.readInt() & 0xFFFFFFFFL;
+            String boxType = readType(file);
+            long dataStart = position + 8;
+            if (size == 1) {
+                size = file.readLong();
+                dataStart += 8;
+            } else if (size == 0) {
+                // The last box runs to the end of the file
+                size = end - position;
+            }
+            if (size < dataStart - position) {
+                throw new IOException("Invalid box size " + size + " for " + boxType);
+            }
+
+            if (boxType.equals(type)) {
+                return new long[]{dataStart, Math.min(end, position + size)};
+            }
+            position += size;
+        }
+        return null;
+    }
+
+    private static String readType(RandomAccessFile file) throws IOException {
+        byte[] type = new byte[4];
+        file.readFully(type);
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isMp4Box(String type) {
+        return "ftyp".equals(type) || "moov".equals(type) || "mdat".equals(type) || "free".equals(type)
+                || "skip".equals(type) || "wide".equals(type) || "pnot".equals(type);
+    }
+
+    /**
+     * Read the time scale and the duration of a movie or media header, leaving the file after the duration
+     *
+     * @return The time scale and the duration
+     */
+    private static long[] readMp4Times(RandomAccessFile file, long dataStart) throws IOException {
+        file.seek(dataStart);
+        int version = file.readUnsignedByte();
+        if (version == 1) {
+            file.seek(dataStart + 20);
+            long timeScale = file.readInt() & 0xFFFFFFFFL;
+            return new long[]{timeScale, file.readLong()};
+        }
+        file.seek(dataStart + 12);
+        long timeScale = file.readInt() & 0xFFFFFFFFL;
+        return new long[]{timeScale, file.readInt() & 0xFFFFFFFFL};
+    }
+
+    /**
+     * Use the presentation size of the track header, which includes the pixel aspect ratio
+     */
+    private static double getMp4DisplayAspect(RandomAccessFile file, long[] trak, int width, int height) throws IOException {
+        long[] tkhd = findBox(file, trak[0], trak[1], "tkhd");
+        if (tkhd != null) {
+            file.seek(tkhd[0]);
+            int version = file.readUnsignedByte();
+            file.seek(tkhd[0] + (version == 1 ? 88 : 76));
+            long displayWidth = (file.readInt() & 0xFFFFFFFFL) >> 16;
+            long displayHeight = (file.readInt() & 0xFFFFFFFFL) >> 16;
+            if (displayWidth > 0 && displayHeight > 0) {
+                return (double) displayWidth / displayHeight;
+            }
+        }
+        return (double) width / height;
+    }
+
+    /**
+     * Check the object type of the elementary stream descriptor for MP3 audio
+     */
+    private static boolean isMp4MpegAudio(RandomAccessFile file, long entryStart, long entryEnd) throws IOException {
+        file.seek(entryStart + 16);
+        int version = file.readUnsignedShort();
+        // The size of the QuickTime sound description depends on its version
+        long childStart = entryStart + (version == 1 ? 52 : (version == 2 ? 72 : 36));
+        long[] esds = findBox(file, childStart, entryEnd, "esds");
+        if (esds == null) {
+            return false;
+        }
+
+        file.seek(esds[0] + 4);
+        if (file.readUnsignedByte() != 0x03) {
+            return false;
+        }
+        readDescriptorSize(file);
+        file.skipBytes(2);
+        int flags = file.readUnsignedByte();
+        if ((flags & 0x80) != 0) {
+            file.skipBytes(2);
+        }
+        if ((flags & 0x40) != 0) {
+            file.skipBytes(file.readUnsignedByte());
+        }
+        if ((flags & 0x20) != 0) {
+            file.skipBytes(2);
+        }
+        if (file.readUnsignedByte() != 0x04) {
+            return false;
+        }
+        readDescriptorSize(file);
+        int objectType = file.readUnsignedByte();
+        return objectType == 0x69 || objectType == 0x6B;
+    }
+
+    private static void readDescriptorSize(RandomAccessFile file) throws IOException {
+        for (int i = 0; i < 4; i++) {
+            if ((file.readUnsignedByte() & 0x80) == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Convert the language of a track to the two letter code that MediaInfo lists first
+     *
+     * @param languageIetf BCP 47 language, used when set
+     * @param language ISO 639-2 language
+     * @return The language code or null if the language is undefined
+     */
+    private static String getLanguageCode(String languageIetf, String language) {
+        String code = language;
+        if (StringUtils.isNotBlank(languageIetf)) {
+            code = StringUtils.substringBefore(languageIetf, "-");
+        }
+        if (StringUtils.isBlank(code) || "und".equalsIgnoreCase(code) || "zxx".equalsIgnoreCase(code)) {
+            return null;
+        }
+
+        code = code.toLowerCase(Locale.ENGLISH);
+        String shortCode = LANGUAGE_CODES.get(code);
+        return shortCode == null ? code : shortCode;
+    }
+
+    private static String formatDecimal(double value) {
+        return String.format(Locale.ENGLISH, "%.3f", value);
+    }
+}
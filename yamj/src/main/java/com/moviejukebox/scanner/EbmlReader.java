@@ -0,0 +1,270 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.scanner;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal reader for the EBML structure of Matroska and WebM files.
+ *
+ * The reader only understands the element headers and the basic value types, the caller knows which elements to read and which
+ * to skip. Reads are buffered, so walking the headers of a file costs a few disk reads.
+ */
+public class EbmlReader implements Closeable {
+
+    /**
+     * Size of an element that runs to the end of its parent
+     */
+    public static final long UNKNOWN_SIZE = -1L;
+    public static final long ID_EBML = 0x1A45DFA3L;
+    public static final long ID_DOCTYPE = 0x4282L;
+    public static final long ID_SEGMENT = 0x18538067L;
+    public static final long ID_SEEKHEAD = 0x114D9B74L;
+    public static final long ID_SEEK = 0x4DBBL;
+    public static final long ID_SEEK_ID = 0x53ABL;
+    public static final long ID_SEEK_POSITION = 0x53ACL;
+    public static final long ID_CLUSTER = 0x1F43B675L;
+    private static final int BUFFER_SIZE = 8192;
+    private final RandomAccessFile file;
+    private final long length;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private long bufferStart = 0;
+    private int bufferLength = 0;
+    private long position = 0;
+
+    public EbmlReader(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.length = this.file.length();
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public void seek(long position) {
+        this.position = position;
+    }
+
+    /**
+     * Read the ID of the next element, with its length marker bits as used in the specification
+     *
+     * @return The ID or -1 at the end of the file
+     * @throws IOException if the ID is not valid
+     */
+    public long readId() throws IOException {
+        int first = read();
+        if (first < 0) {
+            return -1L;
+        }
+
+        int length = Integer.numberOfLeadingZeros(first) - 23;
+        if (length < 1 || length > 4) {
+            throw new IOException("Invalid EBML element ID at " + (position - 1));
+        }
+
+        long id = first;
+        for (int i = 1; i < length; i++) {
+            id = (id << 8) | readByte();
+        }
+        return id;
+    }
+
+    /**
+     * Read the size of the element data
+     *
+     * @return The size or UNKNOWN_SIZE
+     * @throws IOException if the size is not valid
+     */
+    public long readSize() throws IOException {
+        int first = readByte();
+        int length = Integer.numberOfLeadingZeros(first) - 23;
+        if (length < 1 || length > 8) {
+            throw new IOException("Invalid EBML element size at " + (position - 1));
+        }
+
+        long size = first & (0xFF >> length);
+        boolean unknown = size == (0xFF >> length);
+        for (int i = 1; i < length; i++) {
+            int next = readByte();
+            unknown &= next == 0xFF;
+            size = (size << 8) | next;
+        }
+        return unknown ? UNKNOWN_SIZE : size;
+    }
+
+    /**
+     * Read an unsigned integer element value
+     *
+     * @param size
+     * @return
+     * @throws IOException
+     */
+    public long readUnsigned(long size) throws IOException {
+        if (size > 8) {
+            throw new IOException("Invalid EBML integer size " + size);
+        }
+
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    /**
+     * Read a float element value, stored with 4 or 8 bytes
+     *
+     * @param size
+     * @return
+     * @throws IOException
+     */
+    public double readFloat(long size) throws IOException {
+        if (size == 4) {
+            return Float.intBitsToFloat((int) readUnsigned(4));
+        } else if (size == 8) {
+            return Double.longBitsToDouble(readUnsigned(8));
+        } else if (size == 0) {
+            return 0.0;
+        }
+        throw new IOException("Invalid EBML float size " + size);
+    }
+
+    /**
+     * Read a string element value, ASCII and UTF-8 strings are both read as UTF-8
+     *
+     * @param size
+     * @return
+     * @throws IOException
+     */
+    public String readString(long size) throws IOException {
+        byte[] bytes = readBytes(size);
+        int end = bytes.length;
+        // Strings may be padded with zero bytes
+        while (end > 0 && bytes[end - 1] == 0) {
+            end--;
+        }
+        return new String(bytes, 0, end, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a binary element value
+     *
+     * @param size
+     * @return
+     * @throws IOException
+     */
+    public byte[] readBytes(long size) throws IOException {
+        if (size < 0 || size > Integer.MAX_VALUE || position + size > length) {
+            throw new IOException("Invalid EBML binary size " + size);
+        }
+
+        byte[] bytes = new byte[(int) size];
+        int done = 0;
+        while (done < bytes.length) {
+            if (position >= bufferStart && position < bufferStart + bufferLength) {
+                int count = Math.min(bytes.length - done, (int) (bufferStart + bufferLength - position));
+                System.arraycopy(buffer, (int) (position - bufferStart), bytes, done, count);
+                position += count;
+                done += count;
+            } else if (bytes.length - done >= BUFFER_SIZE) {
+                // Large values are read directly
+                file.seek(position);
+                file.readFully(bytes, done, bytes.length - done);
+                position += bytes.length - done;
+                done = bytes.length;
+            } else {
+                fill();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Read part of the file, from the current position, straight from the file into the array
+     *
+     * @param bytes
+     * @param offset
+     * @param count
+     * @return the number of bytes read or -1 at the end of the file
+     * @throws IOException
+     */
+    public int read(byte[] bytes, int offset, int count) throws IOException {
+        if (position >= length) {
+            return -1;
+        }
+
+        int toRead = (int) Math.min(count, length - position);
+        if (position >= bufferStart && position + toRead <= bufferStart + bufferLength) {
+            System.arraycopy(buffer, (int) (position - bufferStart), bytes, offset, toRead);
+        } else {
+            file.seek(position);
+            toRead = file.read(bytes, offset, toRead);
+            if (toRead < 0) {
+                return -1;
+            }
+        }
+        position += toRead;
+        return toRead;
+    }
+
+    private int read() throws IOException {
+        if (position < bufferStart || position >= bufferStart + bufferLength) {
+            if (position >= length) {
+                return -1;
+            }
+            fill();
+        }
+        return buffer[(int) (position++ - bufferStart)] & 0xFF;
+    }
+
+    private int readByte() throws IOException {
+        int value = read();
+        if (value < 0) {
+            throw new IOException("Unexpected end of file");
+        }
+        return value;
+    }
+
+    private void fill() throws IOException {
+        file.seek(position);
+        int count = file.read(buffer, 0, BUFFER_SIZE);
+        if (count < 0) {
+            throw new IOException("Unexpected end of file");
+        }
+        bufferStart = position;
+        bufferLength = count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.scanner;
+
+import com.moviejukebox.tools.FileTools;
+import com.moviejukebox.tools.PropertiesUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of the parsed MediaInfo output.
+ *
+ * The entries are keyed on the absolute path of the video file and are only
+ * valid while the size and the modification date of the file are unchanged,
+ * so an unchanged file never needs the MediaInfo process to be run again.
+ */
+public final class MediaInfoCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MediaInfoCache.class);
+    private static final String EXT_CACHE = ".mediainfo.cache";
+    private static final boolean CACHE_ENABLED = PropertiesUtil.getBooleanProperty("mediainfo.cache.enable", Boolean.TRUE);
+    private static volatile File cacheDirectory = new File(PropertiesUtil.getProperty("mediainfo.cache.directory", "cache/mediainfo"));
+
+    private MediaInfoCache() {
+        throw new UnsupportedOperationException("Class cannot be instantiated");
+    }
+
+    public static boolean isEnabled() {
+        return CACHE_ENABLED;
+    }
+
+    /**
+     * Change the directory the entries are stored in
+     *
+     * @param directory
+     */
+    static void setCacheDirectory(File directory) {
+        cacheDirectory = directory;
+    }
+
+    static File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Get the cached MediaInfo output for the file.
+     *
+     * @param videoFile
+     * @return the cached output or null if the file is not cached or has changed
+     */
+    public static MediaInfoData read(File videoFile) {
+        if (!CACHE_ENABLED || !videoFile.isFile()) {
+            return null;
+        }
+
+        File cacheFile = getCacheFile(videoFile);
+        if (!cacheFile.exists()) {
+            return null;
+        }
+
+        MediaInfoData data;
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            data = (MediaInfoData) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            LOG.debug("MediaInfo cache: Failed to read entry for {}: {}", videoFile.getName(), ex.getMessage());
+            FileUtils.deleteQuietly(cacheFile);
+            return null;
+        }
+
+        if (!data.isValidFor(videoFile)) {
+            LOG.debug("MediaInfo cache: {} has changed since it was scanned", videoFile.getName());
+            FileUtils.deleteQuietly(cacheFile);
+            return null;
+        }
+
+        LOG.debug("MediaInfo cache: Using cached information for {}", videoFile.getName());
+        return data;
+    }
+
+    /**
+     * Store the parsed MediaInfo output for the file.
+     *
+     * @param videoFile
+     * @param data
+     */
+    public static void write(File videoFile, MediaInfoData data) {
+        if (!CACHE_ENABLED || !videoFile.isFile()) {
+            return;
+        }
+
+        File cacheFile = getCacheFile(videoFile);
+        File tempFile = new File(cacheFile.getPath() + ".tmp" + Thread.currentThread().getId());
+        FileTools.makeDirsForFile(cacheFile);
+
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeObject(data);
+        } catch (IOException ex) {
+            LOG.debug("MediaInfo cache: Failed to write entry for {}: {}", videoFile.getName(), ex.getMessage());
+            FileUtils.deleteQuietly(tempFile);
+            return;
+        }
+
+        FileTools.replaceFile(tempFile, cacheFile);
+    }
+
+    private static File getCacheFile(File videoFile) {
+        String hash = DigestUtils.md5Hex(videoFile.getAbsolutePath());
+        // Spread the files over sub-directories to keep the directories small
+        return new File(new File(cacheDirectory, hash.substring(0, 2)), hash + EXT_CACHE);
+    }
+
+    /**
+     * The parsed MediaInfo output of a single file
+     */
+    public static final class MediaInfoData implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final HashMap<String, String> infosGeneral;
+        private final ArrayList<Map<String, String>> infosVideo;
+        private final ArrayList<Map<String, String>> infosAudio;
+        private final ArrayList<Map<String, String>> infosText;
+
+        public MediaInfoData(File videoFile,
+                Map<String, String> infosGeneral,
+                List<Map<String, String>> infosVideo,
+                List<Map<String, String>> infosAudio,
+                List<Map<String, String>> infosText) {
+            this.path = videoFile.getAbsolutePath();
+            this.size = videoFile.length();
+            this.lastModified = videoFile.lastModified();
+            this.infosGeneral = new HashMap<>(infosGeneral);
+            this.infosVideo = copyList(infosVideo);
+            this.infosAudio = copyList(infosAudio);
+            this.infosText = copyList(infosText);
+        }
+
+        private static ArrayList<Map<String, String>> copyList(List<Map<String, String>> infos) {
+            ArrayList<Map<String, String>> copy = new ArrayList<>(infos.size());
+            for (Map<String, String> info : infos) {
+                copy.add(new HashMap<>(info));
+            }
+            return copy;
+        }
+
+        private boolean isValidFor(File videoFile) {
+            return path.equals(videoFile.getAbsolutePath())
+                    && size == videoFile.length()
+                    && lastModified == videoFile.lastModified();
+        }
+
+        /**
+         * Copy the cached information into the lists used by the scanner
+         *
+         * @param infosGeneral
+         * @param infosVideo
+         * @param infosAudio
+         * @param infosText
+         */
+        public void copyTo(Map<String, String> infosGeneral,
+                List<Map<String, String>> infosVideo,
+                List<Map<String, String>> infosAudio,
+                List<Map<String, String>> infosText) {
+            infosGeneral.putAll(this.infosGeneral);
+            infosVideo.addAll(copyList(this.infosVideo));
+            infosAudio.addAll(copyList(this.infosAudio));
+            infosText.addAll(copyList(this.infosText));
+        }
+    }
+}
@@ -267,7 +267,7 @@ public class MediaInfoScanner {
 
             // Clean up
             FileTools.deleteDir(randomDirName);
-        } else if (IS_ACTIVATED) {
+        } else if (IS_ACTIVATED || ContainerProbe.isEnabled()) {
             if (isMediaInfoRar && MI_DISK_IMAGES.contains(FilenameUtils.getExtension(currentMovie.getFile().getName()))) {
                 LOG.debug("Using MediaInfo-rar to scan {}", currentMovie.getFile().getName());
             }
@@ -292,17 +292,15 @@ public class MediaInfoScanner {
             }
         }
 
-        
-        try (MediaInfoStream stream = createStream(movieFilePath)) {
-
+        try {
             Map<String, String> infosGeneral = new HashMap<>();
             List<Map<String, String>> infosVideo = new ArrayList<>();
             List<Map<String, String>> infosAudio = new ArrayList<>();
             List<Map<String, String>> infosText = new ArrayList<>();
 
-            parseMediaInfo(stream, infosGeneral, infosVideo, infosAudio, infosText);
-
-            updateMovieInfo(currentMovie, infosGeneral, infosVideo, infosAudio, infosText, infosMultiPart);
+            if (readMediaInfo(movieFilePath, infosGeneral, infosVideo, infosAudio, infosText)) {
+                updateMovieInfo(currentMovie, infosGeneral, infosVideo, infosAudio, infosText, infosMultiPart);
+            }
         } catch (Exception ex) {
             LOG.warn("Failed reading mediainfo output for {}", movieFilePath);
             LOG.error(SystemTools.getStackTrace(ex));
@@ -325,14 +323,13 @@ public class MediaInfoScanner {
     }
 
     private void scanMultiParts(String movieFilePath, Map<String, String> infosMultiPart) {
-        try (MediaInfoStream stream = createStream(movieFilePath)) {
-
+        try {
             Map<String, String> infosGeneral = new HashMap<>();
             List<Map<String, String>> infosVideo = new ArrayList<>();
             List<Map<String, String>> infosAudio = new ArrayList<>();
             List<Map<String, String>> infosText = new ArrayList<>();
 
-            parseMediaInfo(stream, infosGeneral, infosVideo, infosAudio, infosText);
+            readMediaInfo(movieFilePath, infosGeneral, infosVideo, infosAudio, infosText);
 
             // resolve duration
             int duration = getDuration(infosGeneral, infosVideo);
@@ -347,18 +344,97 @@ public class MediaInfoScanner {
         }
     }
 
-    @SuppressWarnings("resource")
-    protected MediaInfoStream createStream(String movieFilePath) throws IOException {
+    /**
+     * Get the stream information for the file.
+     *
+     * The cache is checked first and is used if the file has not changed since it was last scanned. Otherwise the
+     * ContainerProbe reads Matroska and MP4 files, and MediaInfo is only run for the files the probe cannot read.
+     *
+     * @param movieFilePath
+     * @param infosGeneral
+     * @param infosVideo
+     * @param infosAudio
+     * @param infosText
+     * @return false if there was no way to read the file
+     * @throws Exception
+     */
+    private boolean readMediaInfo(String movieFilePath,
+            Map<String, String> infosGeneral,
+            List<Map<String, String>> infosVideo,
+            List<Map<String, String>> infosAudio,
+            List<Map<String, String>> infosText) throws Exception {
+
+        File movieFile = new File(movieFilePath);
+        File mediaInfoFile = findMediaInfoFile(movieFilePath);
+        boolean hasMediaInfoFile = mediaInfoFile != null;
+        // The ISO images are extracted to the temp directory every time, so there is no point in caching them
+        boolean useCache = MediaInfoCache.isEnabled()
+                && !hasMediaInfoFile
+                && !movieFile.getAbsolutePath().startsWith(new File(randomDirName).getAbsolutePath());
+
+        if (useCache) {
+            MediaInfoCache.MediaInfoData cached = MediaInfoCache.read(movieFile);
+            if (cached != null) {
+                cached.copyTo(infosGeneral, infosVideo, infosAudio, infosText);
+                return true;
+            }
+        }
+
+        // Only the MediaInfo output is written to the cache, reading the headers again is cheap
+        if (!hasMediaInfoFile && ContainerProbe.probe(movieFile, infosGeneral, infosVideo, infosAudio, infosText)) {
+            return true;
+        }
+
+        if (!IS_ACTIVATED && !hasMediaInfoFile) {
+            return false;
+        }
+
+        try (MediaInfoStream stream = createStream(movieFilePath, mediaInfoFile)) {
+            parseMediaInfo(stream, infosGeneral, infosVideo, infosAudio, infosText);
+        }
+
+        if (useCache && !infosGeneral.isEmpty()) {
+            MediaInfoCache.write(movieFile, new MediaInfoCache.MediaInfoData(movieFile, infosGeneral, infosVideo, infosAudio, infosText));
+        }
+        return true;
+    }
+
+    /**
+     * Find the file with the MediaInfo output for the video, if reading from files is enabled
+     *
+     * @param movieFilePath
+     * @return
+     */
+    private static File findMediaInfoFile(String movieFilePath) {
         if (MI_READ_FROM_FILE) {
-            // check file
             String filename = FilenameUtils.removeExtension(movieFilePath) + ".mediainfo";
             Collection<File> files = FileTools.fileCache.searchFilename(filename, Boolean.FALSE);
             if (files != null && !files.isEmpty()) {
-                // create new input stream for reading
-                LOG.debug("Reading from file {}", filename);
-                return new MediaInfoStream(new FileInputStream(files.iterator().next()));
+                return files.iterator().next();
             }
         }
+        return null;
+    }
+
+    protected MediaInfoStream createStream(String movieFilePath) throws IOException {
+        return createStream(movieFilePath, findMediaInfoFile(movieFilePath));
+    }
+
+    /**
+     * Open the MediaInfo output, from the file if there is one, otherwise by running MediaInfo
+     *
+     * @param movieFilePath
+     * @param mediaInfoFile the file with the MediaInfo output, or null
+     * @return
+     * @throws IOException
+     */
+    @SuppressWarnings("resource")
+    protected MediaInfoStream createStream(String movieFilePath, File mediaInfoFile) throws IOException {
+        if (mediaInfoFile != null) {
+            // create new input stream for reading
+            LOG.debug("Reading from file {}", mediaInfoFile.getName());
+            return new MediaInfoStream(new FileInputStream(mediaInfoFile));
+        }
 
         // Create the command line
         List<String> commandMedia = new ArrayList<>(MI_EXE);
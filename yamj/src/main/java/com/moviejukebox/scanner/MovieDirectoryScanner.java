@@ -34,14 +34,25 @@ import com.moviejukebox.tools.HTMLTools;
 import com.moviejukebox.tools.OverrideTools;
 import com.moviejukebox.tools.PropertiesUtil;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,8 +68,11 @@ public class MovieDirectoryScanner {
 
     private static final String SOURCE_FILENAME = "filename";
     private static final Logger LOG = LoggerFactory.getLogger(MovieDirectoryScanner.class);
-    private static int dirCount = 1;
-    private static int fileCount = 0;
+    private static final AtomicInteger DIR_COUNT = new AtomicInteger(1);
+    private static final AtomicInteger FILE_COUNT = new AtomicInteger(0);
+    // Number of directory listings run ahead of the scan at the same time
+    private static final int WALK_THREADS = PropertiesUtil.getIntProperty("mjb.scanner.directoryThreads", 4);
+    private static ExecutorService walkPool = null;
     private static final Pattern PATTERN_RAR_PART = Pattern.compile("\\.part(\\d+)\\.rar");
 
     private int mediaLibraryRootPathIndex; // always includes path delimiter
@@ -76,6 +90,9 @@ public class MovieDirectoryScanner {
     private final Boolean excludeMultiPartBluRay;
     private final Boolean playFullBluRayDisk;
     private final Boolean nmjCompliant;
+    private final String jukeboxName;
+    // The exclusions of the library being scanned
+    private volatile ExclusionFilter exclusionFilter = null;
 
     // BD rip infos Scanner
     private final BDRipScanner localBDRipScanner;
@@ -83,6 +100,9 @@ public class MovieDirectoryScanner {
     // Archived virtual directories (f.ex. rar, zip, tar.gz etc.)
     private IArchiveScanner[] archiveScanners;
 
+    // Listings of the directories from the previous scan
+    private ScanJournal journal;
+
     public MovieDirectoryScanner() {
         supportedExtensions.addAll(Arrays.asList(PropertiesUtil.getProperty("mjb.extensions", "AVI DIVX MKV WMV M2TS TS RM QT ISO VOB MPG MOV").toUpperCase().split(" ")));
         thumbnailsFormat = PropertiesUtil.getProperty("thumbnails.format", "png");
@@ -98,6 +118,7 @@ public class MovieDirectoryScanner {
         hashpathdepth = PropertiesUtil.getIntProperty("mjb.scanner.hashpathdepth", 0);
         playFullBluRayDisk = PropertiesUtil.getBooleanProperty("mjb.playFullBluRayDisk", Boolean.FALSE);
         nmjCompliant = PropertiesUtil.getBooleanProperty("mjb.nmjCompliant", Boolean.FALSE);
+        jukeboxName = PropertiesUtil.getProperty("mjb.detailsDirName", "Jukebox");
 
         localBDRipScanner = new BDRipScanner();
     }
@@ -122,13 +143,19 @@ public class MovieDirectoryScanner {
         // including path delimiter
         mediaLibraryRootPathIndex = FileTools.getDirPathWithSeparator(mediaLibraryRoot).length();
 
+        // The archive contents are not part of the journal, so always list the directories when they are scanned
+        journal = new ScanJournal(srcPath.getPath(), archiveScanners == null);
         this.scanDirectory(srcPath, directory, library);
+        journal.save();
         return library;
     }
 
     /**
      * Recursively scan the directory for video files
      *
+     * The directories are listed ahead on the walk threads, the files are
+     * scanned on this thread in the same order as a sequential scan.
+     *
      * @param srcPath
      * @param directory
      * @param collection
@@ -138,66 +165,167 @@ public class MovieDirectoryScanner {
         if (directory.isFile()) {
             scanFile(srcPath, directory, collection);
         } else {
+            scanDirectory(srcPath, new DirectoryListing(directory), collection);
+        }
+    }
+
+    private void scanDirectory(MediaLibraryPath srcPath, DirectoryListing listing, Library collection) {
+        File directory = listing.getDirectory();
+
+        // skip this directory if it is the nmj_database
+        if (nmjCompliant && "nmj_database".equalsIgnoreCase(directory.getName())) {
+            LOG.debug("Scanning of directory {} skipped due nmj database", directory.getAbsolutePath());
+            listing.cancel();
+            return;
+        }
 
-            // skip this directory if it is the nmj_database
-            if (nmjCompliant && "nmj_database".equalsIgnoreCase(directory.getName())) {
-                LOG.debug("Scanning of directory {} skipped due nmj database", directory.getAbsolutePath());
+        File[] files = listing.getFiles();
+
+        int fileCount = files == null ? FILE_COUNT.get() : FILE_COUNT.addAndGet(files.length);
+        System.out.print("\r    Scanning directory #" + DIR_COUNT.getAndIncrement() + ", " + fileCount + " files scanned");
+
+        if (files == null || files.length == 0) {
+            return;
+        }
+
+        List<File> fileList = Arrays.asList(files);
+        Collections.sort(fileList);
+
+        // Prescan files list. Ignore directory if file with predefined name is found.
+        // TODO May be read the file and exclude files by mask (similar to .cvsignore)
+        for (File file : files) {
+            if (".mjbignore".equalsIgnoreCase(file.getName())) {
+                LOG.debug("Scanning of directory {} skipped due to override file", directory.getAbsolutePath());
                 return;
             }
 
-            File[] files = directory.listFiles();
+            if (nmjCompliant) {
+                // also check for .no_all.nmj and .no_video.nmj and the
+                if (".no_all.nmj".equalsIgnoreCase(file.getName())) {
+                    LOG.debug("Scanning of directory {} skipped due to nmj all override file", directory.getAbsolutePath());
+                    return;
+                }
+                if (".no_video.nmj".equalsIgnoreCase(file.getName())) {
+                    LOG.debug("Scanning of directory {} skipped due to nmj video override file", directory.getAbsolutePath());
+                    return;
+                }
+            }
+        }
 
-            if (files != null) {
-                fileCount += files.length;
+        // add all files to the global cache, after ignore check but before the actual scan
+        FileTools.fileCache.addFiles(files);
+
+        // Start listing the sub-directories before scanning anything
+        List<File> scanList = new ArrayList<>(fileList.size());
+        Map<File, DirectoryListing> listings = new HashMap<>();
+        for (File file : fileList) {
+            if (!isFiltered(srcPath, file)) {
+                scanList.add(file);
+                if (file.isDirectory() && !"VIDEO_TS".equalsIgnoreCase(file.getName()) && !"BDMV".equalsIgnoreCase(file.getName())) {
+                    listings.put(file, new DirectoryListing(file));
+                }
+            }
+        }
+
+        for (File file : scanList) {
+            if (file.isDirectory() && "VIDEO_TS".equalsIgnoreCase(file.getName())) {
+                scanFile(srcPath, file.getParentFile(), collection);
+            } else if (file.isDirectory() && "BDMV".equalsIgnoreCase(file.getName())) {
+                scanFile(srcPath, file.getParentFile(), collection);
+            } else if (file.isDirectory()) {
+                scanDirectory(srcPath, listings.get(file), collection);
+            } else {
+                scanFile(srcPath, file, collection);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getWalkPool() {
+        // Shared by all the libraries, the threads are daemons so the pool does not need to be shut down
+        if (walkPool == null) {
+            walkPool = Executors.newFixedThreadPool(WALK_THREADS, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "DirectoryWalk-" + count.incrementAndGet());
+                    thread.setDaemon(Boolean.TRUE);
+                    return thread;
+                }
+            });
+        }
+        return walkPool;
+    }
+
+    /**
+     * The listing of a directory, started on the walk threads.
+     *
+     * The walk threads only list directories, they never wait for each other
+     * or touch the state of the scanner.
+     */
+    private final class DirectoryListing implements Callable<File[]> {
+
+        private final File directory;
+        private final Future<File[]> files;
+
+        private DirectoryListing(File directory) {
+            this.directory = directory;
+            if (WALK_THREADS > 1) {
+                this.files = getWalkPool().submit(this);
+            } else {
+                this.files = null;
             }
+        }
 
-            System.out.print("\r    Scanning directory #" + dirCount++ + ", " + fileCount + " files scanned");
+        public File getDirectory() {
+            return directory;
+        }
 
-            if (files != null && files.length > 0) {
-                List<File> fileList = Arrays.asList(files);
-                Collections.sort(fileList);
+        @Override
+        public File[] call() {
+            return listFiles(directory);
+        }
 
-                // Prescan files list. Ignore directory if file with predefined name is found.
-                // TODO May be read the file and exclude files by mask (similar to .cvsignore)
-                for (File file : files) {
-                    if (".mjbignore".equalsIgnoreCase(file.getName())) {
-                        LOG.debug("Scanning of directory {} skipped due to override file", directory.getAbsolutePath());
-                        return;
-                    }
+        /**
+         * Wait for the listing, or list the directory now if it was not started
+         *
+         * @return
+         */
+        public File[] getFiles() {
+            if (files == null) {
+                return listFiles(directory);
+            }
 
-                    if (nmjCompliant) {
-                        // also check for .no_all.nmj and .no_video.nmj and the
-                        if (".no_all.nmj".equalsIgnoreCase(file.getName())) {
-                            LOG.debug("Scanning of directory {} skipped due to nmj all override file", directory.getAbsolutePath());
-                            return;
-                        }
-                        if (".no_video.nmj".equalsIgnoreCase(file.getName())) {
-                            LOG.debug("Scanning of directory {} skipped due to nmj video override file", directory.getAbsolutePath());
-                            return;
-                        }
-                    }
-                }
+            try {
+                return files.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                LOG.debug("Failed to list directory {}: {}", directory.getAbsolutePath(), ex.getCause().getMessage());
+            }
+            return listFiles(directory);
+        }
 
-                // add all files to the global cache, after ignore check but before the actual scan
-                FileTools.fileCache.addFiles(files);
-
-                for (File file : fileList) {
-                    if (!isFiltered(srcPath, file)) {
-                        if (file.isDirectory() && "VIDEO_TS".equalsIgnoreCase(file.getName())) {
-                            scanFile(srcPath, file.getParentFile(), collection);
-                        } else if (file.isDirectory() && "BDMV".equalsIgnoreCase(file.getName())) {
-                            scanFile(srcPath, file.getParentFile(), collection);
-                        } else if (file.isDirectory()) {
-                            scanDirectory(srcPath, file, collection);
-                        } else {
-                            scanFile(srcPath, file, collection);
-                        }
-                    }
-                }
+        public void cancel() {
+            if (files != null) {
+                files.cancel(Boolean.FALSE);
             }
         }
     }
 
+    /**
+     * List the files in the directory, using the journal of the previous scan if there is one
+     *
+     * @param directory
+     * @return
+     */
+    private File[] listFiles(File directory) {
+        if (journal == null) {
+            return directory.listFiles();
+        }
+        return journal.listFiles(directory);
+    }
+
     /**
      * Checks the file or directory passed to determine if it should be excluded
      * from the scan
@@ -218,7 +346,7 @@ public class MovieDirectoryScanner {
                 return true;
             }
 
-            String extension = file.getName().substring(index + 1).toUpperCase();
+            String extension = filename.substring(index + 1).toUpperCase();
             if (!supportedExtensions.contains(extension)) {
                 return true;
             }
@@ -237,15 +365,82 @@ public class MovieDirectoryScanner {
         String relativeFilename = file.getAbsolutePath().substring(mediaLibraryRootPathIndex);
 
         String relativeFileNameLower = relativeFilename.toLowerCase();
-        String jukeboxName = PropertiesUtil.getProperty("mjb.detailsDirName", "Jukebox");
 
-        for (String excluded : srcPath.getExcludes()) {
-            if (excluded.length() > 0) {
+        ExclusionFilter filter = getExclusionFilter(srcPath);
+        if (filter.matchesPattern(relativeFileNameLower)) {
+            LOG.debug("{} '{}' excluded.", isDirectory ? "Directory" : "File", relativeFilename);
+            return true;
+        }
+
+        if (filter.matchesPath(relativeFileNameLower)) {
+            // Don't print a message for the exclusion of Jukebox files
+            if (!relativeFileNameLower.contains(jukeboxName)) {
+                LOG.debug("{} '{}' excluded.", isDirectory ? "Directory" : "File", relativeFilename);
+            }
+            return true;
+        }
+
+        // Handle special case of RARs. If ".rar", and it is ".partXXX.rar"
+        // exclude all NON-"part001.rar" files.
+        if (relativeFileNameLower.contains(".rar")) {
+            Matcher m = PATTERN_RAR_PART.matcher(relativeFileNameLower);
+
+            if (m.find() && (m.groupCount() == 1)) {
+                if (Integer.parseInt(m.group(1)) != 1) {
+                    LOG.debug("Excluding file '{}' as it is a non-first part RAR archive ({})", relativeFilename, m.group(1));
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the compiled exclusions of the library path
+     *
+     * @param srcPath
+     * @return
+     */
+    private ExclusionFilter getExclusionFilter(MediaLibraryPath srcPath) {
+        ExclusionFilter filter = exclusionFilter;
+        if (filter == null || filter.srcPath != srcPath) {
+            filter = new ExclusionFilter(srcPath);
+            exclusionFilter = filter;
+        }
+        return filter;
+    }
+
+    /**
+     * The exclusions of a library path, compiled once for all the files of the
+     * library.
+     *
+     * Each exclusion is used both as a regular expression and as part of the
+     * path. The regular expressions are combined into a single one unless they
+     * use back references (which would be renumbered) or quoting.
+     */
+    private static final class ExclusionFilter {
+
+        private static final Pattern PATTERN_BACK_REFERENCE = Pattern.compile("\\\\(\\d|k<|Q)");
+        private final MediaLibraryPath srcPath;
+        private final List<Pattern> patterns = new ArrayList<>();
+        private final List<String> paths = new ArrayList<>();
+
+        private ExclusionFilter(MediaLibraryPath srcPath) {
+            this.srcPath = srcPath;
+
+            List<String> combinable = new ArrayList<>();
+            for (String excluded : srcPath.getExcludes()) {
+                if (excluded.length() == 0) {
+                    continue;
+                }
+
                 try {
                     Pattern excludePatt = Pattern.compile(excluded, Pattern.CASE_INSENSITIVE);
-                    if (excludePatt.matcher(relativeFileNameLower).find()) {
-                        LOG.debug("{} '{}' excluded.", isDirectory ? "Directory" : "File", relativeFilename);
-                        return true;
+                    if (PATTERN_BACK_REFERENCE.matcher(excluded).find()) {
+                        patterns.add(excludePatt);
+                    } else {
+                        combinable.add(excluded);
                     }
                 } catch (Exception error) {
                     LOG.info("Error processing exclusion pattern: {}, {}", excluded, error.getMessage());
@@ -253,28 +448,47 @@ public class MovieDirectoryScanner {
 
                 excluded = excluded.replace("/", File.separator);
                 excluded = excluded.replace("\\", File.separator);
-                if (relativeFileNameLower.contains(excluded.toLowerCase())) {
-                    // Don't print a message for the exclusion of Jukebox files
-                    if (!relativeFileNameLower.contains(jukeboxName)) {
-                        LOG.debug("{} '{}' excluded.", isDirectory ? "Directory" : "File", relativeFilename);
+                paths.add(excluded.toLowerCase());
+            }
+
+            if (combinable.size() == 1) {
+                patterns.add(Pattern.compile(combinable.get(0), Pattern.CASE_INSENSITIVE));
+            } else if (combinable.size() > 1) {
+                StringBuilder combined = new StringBuilder();
+                for (String excluded : combinable) {
+                    if (combined.length() > 0) {
+                        combined.append('|');
+                    }
+                    combined.append("(?:").append(excluded).append(')');
+                }
+                try {
+                    patterns.add(Pattern.compile(combined.toString(), Pattern.CASE_INSENSITIVE));
+                } catch (PatternSyntaxException error) {
+                    // Some flags change how the rest of the expression is read, so use them separately
+                    for (String excluded : combinable) {
+                        patterns.add(Pattern.compile(excluded, Pattern.CASE_INSENSITIVE));
                     }
-                    return true;
                 }
             }
         }
 
-        // Handle special case of RARs. If ".rar", and it is ".partXXX.rar"
-        // exclude all NON-"part001.rar" files.
-        Matcher m = PATTERN_RAR_PART.matcher(relativeFileNameLower);
-
-        if (m.find() && (m.groupCount() == 1)) {
-            if (Integer.parseInt(m.group(1)) != 1) {
-                LOG.debug("Excluding file '{}' as it is a non-first part RAR archive ({})", relativeFilename, m.group(1));
-                return true;
+        private boolean matchesPattern(String relativeFileNameLower) {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(relativeFileNameLower).find()) {
+                    return true;
+                }
             }
+            return false;
         }
 
-        return false;
+        private boolean matchesPath(String relativeFileNameLower) {
+            for (String path : paths) {
+                if (relativeFileNameLower.contains(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
     /**
@@ -26,11 +26,16 @@ import static java.util.regex.Pattern.CASE_INSENSITIVE;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -113,6 +118,16 @@ public final class MovieFilenameScanner {
     private static final Pattern TOKEN_DELIMITERS_MATCH_PATTERN = patt("(?:[" + Pattern.quote(TOKEN_DELIMITERS_STRING) + "]|$|^)");
     private static final Pattern NOTOKEN_DELIMITERS_MATCH_PATTERN = patt("(?:[" + Pattern.quote(NOTOKEN_DELIMITERS_STRING) + "])");
     private static final Pattern WORD_DELIMITERS_MATCH_PATTERN = patt("(?:[" + Pattern.quote(WORD_DELIMITERS_STRING) + "]|$|^)");
+    // Regular expression syntax, keywords containing it can not be looked up as words
+    private static final Pattern REGEX_SYNTAX_PATTERN = patt("[\\\\\\[\\]{}()^$.|*+?]");
+    /**
+     * The words of the plain keywords in the keyword patterns.
+     *
+     * A keyword pattern with its keywords surrounded by word delimiters can only match if all the words of one of its keywords are
+     * words of the scanned text, so the pattern is only run when a lookup of the words finds them. Patterns not in this map are
+     * always run.
+     */
+    private static final Map<Pattern, String[][]> KEYWORD_WORDS = new ConcurrentHashMap<>();
     // Last 4 digits or last 4 digits in parenthesis.
     private static final Pattern MOVIE_YEAR_PATTERN = patt("\\({0,1}(\\d{4})(?:/|\\\\|\\||-){0,1}(I*)\\){0,1}$");
     // One or more '.[]_ '
@@ -212,7 +227,7 @@ public final class MovieFilenameScanner {
                 }
                 tokenBuilder.append(Pattern.quote(s));
             }
-            put(key, tpatt(tokenBuilder.toString()));
+            put(key, keywordPattern(tpatt(tokenBuilder.toString()), tokens));
         }
 
         {
@@ -233,7 +248,9 @@ public final class MovieFilenameScanner {
         @Override
         protected void put(String key, Collection<String> tokens) {
             StringBuilder tokenBuilder = new StringBuilder();
+            List<String> keywords = new ArrayList<>();
             for (String token : tokens) {
+                keywords.add(token.toUpperCase());
                 // Only add the token if it's not there already
                 String quotedToken = Pattern.quote(token.toUpperCase());
                 if (tokenBuilder.indexOf(quotedToken) < 0) {
@@ -243,7 +260,7 @@ public final class MovieFilenameScanner {
                     tokenBuilder.append(quotedToken);
                 }
             }
-            put(key, iwpatt(tokenBuilder.toString()));
+            put(key, keywordPattern(iwpatt(tokenBuilder.toString()), keywords));
         }
 
         {
@@ -256,7 +273,7 @@ public final class MovieFilenameScanner {
 
         {
             for (int i : new int[]{23, 24, 25, 29, 30, 50, 59, 60}) {
-                put(i, iwpatt("p" + i + "|" + i + "p"));
+                put(i, keywordPattern(iwpatt("p" + i + "|" + i + "p"), Arrays.asList("p" + i, i + "p")));
             }
         }
     };
@@ -265,7 +282,7 @@ public final class MovieFilenameScanner {
 
         {
             for (String s : AUDIO_CODECS_ARRAY) {
-                put(s, iwpatt(s));
+                put(s, keywordPattern(iwpatt(s), Arrays.asList(s)));
             }
         }
     };
@@ -273,9 +290,9 @@ public final class MovieFilenameScanner {
         private static final long serialVersionUID = 7370884465939448891L;
 
         {
-            put("XviD", iwpatt("XVID"));
-            put("DivX", iwpatt("DIVX|DIVX6"));
-            put("H.264", iwpatt("H264|H\\.264|X264"));
+            put("XviD", keywordPattern(iwpatt("XVID"), Arrays.asList("XVID")));
+            put("DivX", keywordPattern(iwpatt("DIVX|DIVX6"), Arrays.asList("DIVX", "DIVX6")));
+            put("H.264", keywordPattern(iwpatt("H264|H\\.264|X264"), Arrays.asList("H264", "H.264", "X264")));
         }
     };
     private static final Map<String, Pattern> HD_RESOLUTION_MAP = new HashMap<String, Pattern>() {
@@ -283,7 +300,7 @@ public final class MovieFilenameScanner {
 
         {
             for (String s : new String[]{"720p", "1080i", "1080p", "HD", "1280x720", "1920x1080", "2160p"}) {
-                put(s, iwpatt(s));
+                put(s, keywordPattern(iwpatt(s), Arrays.asList(s)));
             }
         }
     };
@@ -304,17 +321,26 @@ public final class MovieFilenameScanner {
         @Override
         public void put(String key, Collection<String> tokens) {
             StringBuilder patt = new StringBuilder(key);
+            List<String> keywords = new ArrayList<>();
+            keywords.add(key);
             for (String token : tokens) {
                 patt.append("|");
                 patt.append(token);
+                keywords.add(token);
+            }
+            if (isPlainKeywords(keywords)) {
+                put(key, keywordPattern(iwpatt(patt.toString()), keywords));
+            } else {
+                put(key, iwpatt(patt.toString()));
             }
-            put(key, iwpatt(patt.toString()));
         }
     };
     private final MovieFileNameDTO dto = new MovieFileNameDTO();
     private final File file;
     private final String filename;
     private String rest;
+    private String restWordsSource;
+    private Set<String> restWords;
 
     private MovieFilenameScanner(File file) {
         // CHECK FOR USE_PARENT_PATTERN matches
@@ -381,7 +407,9 @@ public final class MovieFilenameScanner {
 
         // Remove version info
         for (Pattern pattern : MOVIE_VERSION_PATTERNS) {
-            rest = pattern.matcher(rest).replaceAll("./.");
+            if (mayMatch(pattern, getRestWords())) {
+                rest = pattern.matcher(rest).replaceAll("./.");
+            }
         }
         LOG.trace("After version info: '{}'", rest);
 
@@ -546,7 +574,11 @@ public final class MovieFilenameScanner {
 
                     // Loose language search
                     if (token.length() >= 2 && token.indexOf('-') < 0) {
+                        Set<String> words = splitWords(token);
                         for (Map.Entry<String, Pattern> e : LOOSE_LANGUAGE_MAP.entrySet()) {
+                            if (!mayMatch(e.getValue(), words)) {
+                                continue;
+                            }
                             Matcher matcher = e.getValue().matcher(token);
                             if (matcher.find()) {
                                 dto.getLanguages().add(e.getKey());
@@ -602,7 +634,7 @@ public final class MovieFilenameScanner {
                 }
             }
         }
-        LOG.trace("Final: {}", dto.toString());
+        LOG.trace("Final: {}", dto);
 
     }
 
@@ -670,11 +702,135 @@ public final class MovieFilenameScanner {
                 + NOTOKEN_DELIMITERS_MATCH_PATTERN + "*)" + TOKEN_DELIMITERS_MATCH_PATTERN);
     }
 
+    /**
+     * Register the keywords matched by a keyword pattern, so the pattern is only run when their words are found.
+     *
+     * @param pattern Pattern matching one of the keywords with word delimiters around
+     * @param keywords The literal keywords of the pattern
+     * @return The pattern
+     */
+    private static Pattern keywordPattern(Pattern pattern, Collection<String> keywords) {
+        boolean ignoreCase = (pattern.flags() & CASE_INSENSITIVE) != 0;
+        String[][] keywordWords = new String[keywords.size()][];
+        int i = 0;
+        for (String keyword : keywords) {
+            Set<String> words = splitWords(ignoreCase ? keyword.toUpperCase(Locale.ENGLISH) : keyword);
+            if (words.isEmpty()) {
+                // Nothing to look up, the pattern has to be run
+                return pattern;
+            }
+            keywordWords[i++] = words.toArray(new String[words.size()]);
+        }
+        KEYWORD_WORDS.put(pattern, keywordWords);
+        return pattern;
+    }
+
+    /**
+     * Remove the keywords of patterns that are no longer used
+     *
+     * @param patterns
+     */
+    private static void forgetKeywords(Collection<Pattern> patterns) {
+        for (Pattern pattern : patterns) {
+            KEYWORD_WORDS.remove(pattern);
+        }
+    }
+
+    /**
+     * Check that the keywords are not regular expressions
+     *
+     * @param keywords
+     * @return True if none of the keywords contains regular expression syntax
+     */
+    private static boolean isPlainKeywords(Collection<String> keywords) {
+        for (String keyword : keywords) {
+            if (REGEX_SYNTAX_PATTERN.matcher(keyword).find()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Split the text into its words, as they are and in upper case.
+     *
+     * @param text
+     * @return The words between the word delimiters
+     */
+    private static Set<String> splitWords(String text) {
+        Set<String> words = new HashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || WORD_DELIMITERS_STRING.indexOf(text.charAt(i)) >= 0) {
+                if (start >= 0) {
+                    String word = text.substring(start, i);
+                    words.add(word);
+                    words.add(word.toUpperCase(Locale.ENGLISH));
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Check if the pattern can match a text with the given words.
+     *
+     * @param pattern
+     * @param words The words of the text, from splitWords
+     * @return False if the pattern is a keyword pattern and none of its keywords is in the words
+     */
+    private static boolean mayMatch(Pattern pattern, Set<String> words) {
+        String[][] keywordWords = KEYWORD_WORDS.get(pattern);
+        if (keywordWords == null) {
+            return true;
+        }
+        for (String[] keyword : keywordWords) {
+            boolean found = true;
+            for (String word : keyword) {
+                if (!words.contains(word)) {
+                    found = false;
+                    break;
+                }
+            }
+            if (found) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the words of the rest, split again only after the rest has changed.
+     *
+     * @return The words of the rest
+     */
+    private Set<String> getRestWords() {
+        // The rest is only ever replaced, so the reference tells if it changed
+        if (restWordsSource != rest) {
+            restWords = splitWords(rest);
+            restWordsSource = rest;
+        }
+        return restWords;
+    }
+
     private static String cleanUp(String filename) {
         // SKIP
         String rFilename = filename; // We can't modify the parameter, so copy it
+        Set<String> words = null;
         for (Pattern p : SKIP_PATTERNS) {
-            rFilename = p.matcher(rFilename).replaceAll("./.");
+            if (words == null) {
+                words = splitWords(rFilename);
+            }
+            if (mayMatch(p, words)) {
+                String skipped = p.matcher(rFilename).replaceAll("./.");
+                if (!skipped.equals(rFilename)) {
+                    rFilename = skipped;
+                    words = null;
+                }
+            }
         }
         return rFilename;
     }
@@ -725,6 +881,9 @@ public final class MovieFilenameScanner {
 
     private <T> T seekPatternAndUpdateRest(Map<T, Pattern> map, T oldValue) {
         for (Map.Entry<T, Pattern> e : map.entrySet()) {
+            if (!mayMatch(e.getValue(), getRestWords())) {
+                continue;
+            }
             Matcher matcher = e.getValue().matcher(rest);
             if (matcher.find()) {
                 rest = cutMatch(rest, matcher, "./.");
@@ -745,6 +904,9 @@ public final class MovieFilenameScanner {
      */
     private <T> T seekPatternAndUpdateRest(Map<T, Pattern> map, T oldValue, Collection<Pattern> protectPatterns) {
         for (Map.Entry<T, Pattern> e : map.entrySet()) {
+            if (!mayMatch(e.getValue(), getRestWords())) {
+                continue;
+            }
             Matcher matcher = e.getValue().matcher(rest);
             if (matcher.find()) {
                 String restCut = cutMatch(rest, matcher, "./.");
@@ -779,12 +941,13 @@ public final class MovieFilenameScanner {
 
     public static void setSkipKeywords(String[] skipKeywords, boolean caseSensitive) {
         MovieFilenameScanner.skipKeywords = skipKeywords.clone();
+        forgetKeywords(SKIP_PATTERNS);
         SKIP_PATTERNS.clear();
         for (String s : MovieFilenameScanner.skipKeywords) {
             if (caseSensitive) {
-                SKIP_PATTERNS.add(wpatt(Pattern.quote(s)));
+                SKIP_PATTERNS.add(keywordPattern(wpatt(Pattern.quote(s)), Arrays.asList(s)));
             } else {
-                SKIP_PATTERNS.add(iwpatt(Pattern.quote(s)));
+                SKIP_PATTERNS.add(keywordPattern(iwpatt(Pattern.quote(s)), Arrays.asList(s)));
             }
         }
     }
@@ -822,10 +985,14 @@ public final class MovieFilenameScanner {
 
     public static void setMovieVersionKeywords(String[] movieVersionKeywords) {
         MovieFilenameScanner.movieVersionKeywords = movieVersionKeywords.clone();
+        forgetKeywords(MOVIE_VERSION_PATTERNS);
         MOVIE_VERSION_PATTERNS.clear();
         for (String s : MovieFilenameScanner.movieVersionKeywords) {
-            MOVIE_VERSION_PATTERNS.add(
-                    iwpatt(s.replace(" ", WORD_DELIMITERS_MATCH_PATTERN.pattern())));
+            Pattern pattern = iwpatt(s.replace(" ", WORD_DELIMITERS_MATCH_PATTERN.pattern()));
+            if (isPlainKeywords(Arrays.asList(s))) {
+                keywordPattern(pattern, Arrays.asList(s));
+            }
+            MOVIE_VERSION_PATTERNS.add(pattern);
         }
     }
 
@@ -853,6 +1020,8 @@ public final class MovieFilenameScanner {
      * Clear language detection patterns.
      */
     public static void clearLanguages() {
+        forgetKeywords(STRICT_LANGUAGE_MAP.values());
+        forgetKeywords(LOOSE_LANGUAGE_MAP.values());
         STRICT_LANGUAGE_MAP.clear();
         LOOSE_LANGUAGE_MAP.clear();
     }
@@ -870,6 +1039,7 @@ public final class MovieFilenameScanner {
     }
 
     public static void setSourceKeywords(List<String> keywords, Map<String, String> keywordMap) {
+        forgetKeywords(VIDEO_SOURCE_MAP.values());
         VIDEO_SOURCE_MAP.clear();
         VIDEO_SOURCE_MAP.putAll(keywords, keywordMap);
     }
@@ -0,0 +1,227 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.scanner;
+
+import com.moviejukebox.tools.FileTools;
+import com.moviejukebox.tools.PropertiesUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Journal of the directories scanned in a media library.
+ *
+ * For each directory the modification date and the names and types of the
+ * entries are kept between runs. Adding, removing or renaming an entry changes
+ * the modification date of the directory, so while the date is unchanged the
+ * recorded entries are used instead of listing the directory and checking the
+ * type of every entry again.
+ *
+ * Only the listing is reused; the video files themselves are still checked, so
+ * files changed in place are still picked up.
+ */
+public class ScanJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScanJournal.class);
+    private static final int JOURNAL_VERSION = 1;
+    private static final String EXT_JOURNAL = ".journal";
+    private static final boolean JOURNAL_ENABLED = PropertiesUtil.getBooleanProperty("mjb.scanner.journal.enable", Boolean.FALSE);
+    private static final File JOURNAL_DIRECTORY = new File(PropertiesUtil.getProperty("mjb.scanner.journal.directory", "cache/journal"));
+    // Directories changed this close to the time they were listed may have changed again without a new date
+    private static final long RACY_MARGIN = 2000L;
+    private final boolean enabled;
+    private final File journalFile;
+    private final Map<String, DirectoryEntry> previousEntries;
+    // The directories of a library are listed in parallel
+    private final Map<String, DirectoryEntry> currentEntries = new ConcurrentHashMap<>();
+    private final AtomicInteger unchangedCount = new AtomicInteger(0);
+    private final AtomicInteger listedCount = new AtomicInteger(0);
+
+    /**
+     * Load the journal of the library path
+     *
+     * @param libraryPath
+     * @param enable false to always list the directories, e.g. when archive scanners are used
+     */
+    public ScanJournal(String libraryPath, boolean enable) {
+        this.enabled = enable && JOURNAL_ENABLED;
+        this.journalFile = new File(JOURNAL_DIRECTORY, DigestUtils.md5Hex(libraryPath) + EXT_JOURNAL);
+        if (enabled) {
+            previousEntries = readJournal(journalFile);
+            LOG.debug("Scan journal: Loaded {} directories for {}", previousEntries.size(), libraryPath);
+        } else {
+            previousEntries = new HashMap<>();
+        }
+    }
+
+    /**
+     * List the files in the directory, from the journal if the directory has not changed
+     *
+     * @param directory
+     * @return the files in the directory or null if the directory can not be read
+     */
+    public File[] listFiles(File directory) {
+        if (!enabled) {
+            return directory.listFiles();
+        }
+
+        String path = directory.getAbsolutePath();
+        long lastModified = directory.lastModified();
+        DirectoryEntry entry = previousEntries.get(path);
+
+        if (entry != null && entry.lastModified == lastModified && entry.isSettled()) {
+            unchangedCount.incrementAndGet();
+            currentEntries.put(path, entry);
+
+            File[] files = new File[entry.names.length];
+            for (int i = 0; i < files.length; i++) {
+                files[i] = new FileTools.FileEx(directory, entry.names[i], entry.directories[i]);
+            }
+            return files;
+        }
+
+        listedCount.incrementAndGet();
+        long scanTime = System.currentTimeMillis();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            String[] names = new String[files.length];
+            boolean[] directories = new boolean[files.length];
+            for (int i = 0; i < files.length; i++) {
+                names[i] = files[i].getName();
+                directories[i] = files[i].isDirectory();
+            }
+            currentEntries.put(path, new DirectoryEntry(lastModified, scanTime, names, directories));
+        }
+        return files;
+    }
+
+    /**
+     * Save the directories scanned in this run. Directories that were not
+     * scanned this time are dropped from the journal.
+     */
+    public void save() {
+        if (!enabled) {
+            return;
+        }
+
+        LOG.debug("Scan journal: {} directories unchanged, {} directories listed", unchangedCount, listedCount);
+
+        File tempFile = new File(journalFile.getPath() + ".tmp" + Thread.currentThread().getId());
+        FileTools.makeDirsForFile(journalFile);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(JOURNAL_VERSION);
+            out.writeInt(currentEntries.size());
+            for (Map.Entry<String, DirectoryEntry> e : currentEntries.entrySet()) {
+                DirectoryEntry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.scanTime);
+                out.writeInt(entry.names.length);
+                for (int i = 0; i < entry.names.length; i++) {
+                    out.writeUTF(entry.names[i]);
+                    out.writeBoolean(entry.directories[i]);
+                }
+            }
+        } catch (IOException ex) {
+            LOG.warn("Scan journal: Failed to write {}: {}", journalFile.getName(), ex.getMessage());
+            FileUtils.deleteQuietly(tempFile);
+            return;
+        }
+
+        // A failed run leaves the journal of the previous run
+        FileTools.replaceFile(tempFile, journalFile);
+    }
+
+    private static Map<String, DirectoryEntry> readJournal(File journalFile) {
+        Map<String, DirectoryEntry> entries = new HashMap<>();
+        if (!journalFile.exists()) {
+            return entries;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            if (in.readInt() != JOURNAL_VERSION) {
+                return entries;
+            }
+
+            int count = in.readInt();
+            for (int d = 0; d < count; d++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                long scanTime = in.readLong();
+                int size = in.readInt();
+                String[] names = new String[size];
+                boolean[] directories = new boolean[size];
+                for (int i = 0; i < size; i++) {
+                    names[i] = in.readUTF();
+                    directories[i] = in.readBoolean();
+                }
+                entries.put(path, new DirectoryEntry(lastModified, scanTime, names, directories));
+            }
+        } catch (IOException ex) {
+            // A damaged journal only means a full scan
+            LOG.warn("Scan journal: Failed to read {}: {}", journalFile.getName(), ex.getMessage());
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * The recorded listing of a directory
+     */
+    private static final class DirectoryEntry {
+
+        private final long lastModified;
+        private final long scanTime;
+        private final String[] names;
+        private final boolean[] directories;
+
+        private DirectoryEntry(long lastModified, long scanTime, String[] names, boolean[] directories) {
+            this.lastModified = lastModified;
+            this.scanTime = scanTime;
+            this.names = names;
+            this.directories = directories;
+        }
+
+        /**
+         * Check the directory was not changed around the time it was listed,
+         * otherwise a later change may have kept the same date.
+         */
+        private boolean isSettled() {
+            return lastModified > 0 && (scanTime - lastModified) > RACY_MARGIN;
+        }
+    }
+}
@@ -32,16 +32,12 @@ import com.moviejukebox.plugin.DefaultBackgroundPlugin;
 import com.moviejukebox.plugin.DefaultImagePlugin;
 import com.moviejukebox.plugin.MovieImagePlugin;
 import com.moviejukebox.tools.*;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.util.*;
 import java.util.Map.Entry;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
-import javax.imageio.stream.ImageInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -727,9 +723,6 @@ public abstract class ArtworkScanner implements IArtworkScanner {
      */
     @Override
     public boolean validateArtwork(IImage artworkImage, int artworkWidth, int artworkHeight, boolean checkAspect) {
-        @SuppressWarnings("rawtypes")
-        Iterator readers = ImageIO.getImageReadersBySuffix("jpeg");
-        ImageReader reader = (ImageReader) readers.next();
         int urlWidth;
         int urlHeight;
         float urlAspect;
@@ -742,14 +735,12 @@ public abstract class ArtworkScanner implements IArtworkScanner {
             return Boolean.FALSE;
         }
 
-        try (InputStream in = new URL(artworkImage.getUrl()).openStream();
-             ImageInputStream iis = ImageIO.createImageInputStream(in))
-        {
-            reader.setInput(iis, Boolean.TRUE);
-            urlWidth = reader.getWidth(0);
-            urlHeight = reader.getHeight(0);
-        } catch (IOException ex) {
-            LOG.debug("ValidateArtwork error: {}: can't open URL", ex.getMessage());
+        // Only the start of the image is read, the download reuses it
+        Dimension imageDimension = PosterScanner.getUrlDimensions(artworkImage.getUrl());
+        urlWidth = imageDimension.width;
+        urlHeight = imageDimension.height;
+        if (urlWidth <= 0 || urlHeight <= 0) {
+            LOG.debug("ValidateArtwork error: can't read image size from URL");
             return Boolean.FALSE; // Quit and return a Boolean.FALSE poster
         }
 
@@ -35,16 +35,13 @@ import com.omertron.themoviedbapi.enumeration.SearchType;
 import com.omertron.themoviedbapi.model.movie.MovieInfo;
 import com.omertron.themoviedbapi.results.ResultList;
 import com.omertron.thetvdbapi.model.*;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.util.*;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
-import javax.imageio.stream.ImageInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -451,9 +448,6 @@ public final class FanartScanner {
     }
 
     public static boolean validateArtwork(IImage artworkImage, int artworkWidth, int artworkHeight, boolean checkAspect) {
-        @SuppressWarnings("rawtypes")
-        Iterator readers = ImageIO.getImageReadersBySuffix("jpeg");
-        ImageReader reader = (ImageReader) readers.next();
         int urlWidth, urlHeight;
         float urlAspect;
 
@@ -465,17 +459,12 @@ public final class FanartScanner {
             return false;
         }
 
-        try {
-            URL url = new URL(artworkImage.getUrl());
-
-            try (InputStream in = url.openStream();
-                    ImageInputStream iis = ImageIO.createImageInputStream(in)) {
-                reader.setInput(iis, true);
-                urlWidth = reader.getWidth(0);
-                urlHeight = reader.getHeight(0);
-            }
-        } catch (IOException error) {
-            LOG.debug("ValidateFanart error: {}: can't open url", error.getMessage());
+        // Only the start of the image is read, the download reuses it
+        Dimension imageDimension = PosterScanner.getUrlDimensions(artworkImage.getUrl());
+        urlWidth = imageDimension.width;
+        urlHeight = imageDimension.height;
+        if (urlWidth <= 0 || urlHeight <= 0) {
+            LOG.debug("ValidateFanart error: can't read image size from url");
             return false; // Quit and return a false fanart
         }
 
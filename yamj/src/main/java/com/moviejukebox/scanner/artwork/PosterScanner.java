@@ -32,10 +32,21 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
@@ -49,6 +60,7 @@ import org.slf4j.LoggerFactory;
 import com.moviejukebox.model.IImage;
 import com.moviejukebox.model.Image;
 import com.moviejukebox.model.Jukebox;
+import com.moviejukebox.model.Identifiable;
 import com.moviejukebox.model.Movie;
 import com.moviejukebox.model.enumerations.DirtyFlag;
 import com.moviejukebox.plugin.ImdbPlugin;
@@ -95,6 +107,11 @@ public final class PosterScanner {
     private static final int POSTER_HEIGHT;
     private static final String TV_POSTER_SEARCH_PRIORITY;
     private static final String MOVIE_POSTER_SEARCH_PRIORITY;
+    // Number of poster plugins of a movie queried at the same time
+    private static final int SEARCH_THREADS = PropertiesUtil.getIntProperty("poster.scanner.searchThreads", 4);
+    // Time in seconds to wait for a poster plugin, from the start of its search
+    private static final int SEARCH_TIMEOUT = PropertiesUtil.getIntProperty("poster.scanner.searchTimeout", 60);
+    private static ExecutorService searchPool = null;
 
     static {
         StringTokenizer st;
@@ -320,26 +337,40 @@ public final class PosterScanner {
      * Image.UNKNOWN)
      */
     public static IImage getPosterURL(Movie movie) {
-        String posterSearchToken;
-        IImage posterImage = Image.UNKNOWN;
-        StringTokenizer st;
-
         if (movie.isTVShow()) {
-            st = new StringTokenizer(TV_POSTER_SEARCH_PRIORITY, ",");
-        } else {
-            st = new StringTokenizer(MOVIE_POSTER_SEARCH_PRIORITY, ",");
+            return getPosterURL(movie, TV_POSTER_SEARCH_PRIORITY, SEARCH_TIMEOUT);
         }
+        return getPosterURL(movie, MOVIE_POSTER_SEARCH_PRIORITY, SEARCH_TIMEOUT);
+    }
 
-        while (st.hasMoreTokens() && StringTools.isNotValidString(posterImage.getUrl())) {
-            posterSearchToken = st.nextToken();
-
-            IPosterPlugin iPosterPlugin = PLUGINS.get(posterSearchToken);
+    /**
+     * Locate the PosterURL from the Internet using the plugins in the search
+     * priority.
+     *
+     * Up to SEARCH_THREADS plugins are queried at the same time, the poster of
+     * the first plugin in the priority list that returns a valid poster is
+     * used. A plugin that has not answered when the timeout expires is ignored
+     * and the next plugin is started.
+     *
+     * @param movie The movieBean to search for
+     * @param searchPriority Comma separated list of the plugins to use
+     * @param timeout Time in seconds to wait for a plugin, from the start of
+     * its search
+     * @return The posterImage with poster url that was found (Maybe
+     * Image.UNKNOWN)
+     */
+    public static IImage getPosterURL(Movie movie, String searchPriority, int timeout) {
+        List<PosterSearch> searches = new ArrayList<>();
+        StringTokenizer st = new StringTokenizer(searchPriority, ",");
+        while (st.hasMoreTokens()) {
+            String posterSearchToken = st.nextToken();
 
             // Check that plugin is register even on movie or tv
-            if (iPosterPlugin == null) {
+            if (PLUGINS.get(posterSearchToken) == null) {
                 LOG.error("'{}' plugin doesn't exist, please check your moviejukebox properties. Valid plugins are : {}", posterSearchToken, getPluginsCode());
             }
 
+            IPosterPlugin iPosterPlugin;
             String msg;
 
             if (movie.isTVShow()) {
@@ -353,26 +384,190 @@ public final class PosterScanner {
             if (iPosterPlugin == null) {
                 LOG.info("{} is not a {} Poster plugin - skipping", posterSearchToken, msg);
             } else {
-                LOG.debug("Using {} to search for a {} poster for {}", posterSearchToken, msg, movie.getTitle());
-                posterImage = iPosterPlugin.getPosterUrl(movie, movie);
+                searches.add(new PosterSearch(posterSearchToken, iPosterPlugin, movie));
             }
+        }
 
-            // Validate the poster- No need to validate if we're UNKNOWN
-            if (!Movie.UNKNOWN.equalsIgnoreCase(posterImage.getUrl()) && POSTER_VALIDATE && !validatePoster(posterImage, POSTER_WIDTH, POSTER_HEIGHT, POSTER_VALIDATE_ASPECT)) {
-                posterImage = Image.UNKNOWN;
-            } else {
-                if (!Movie.UNKNOWN.equalsIgnoreCase(posterImage.getUrl())) {
-                    LOG.debug("Poster URL found at {}: {}", posterSearchToken, posterImage.getUrl());
-                    // TODO: This is a hack, but seeing as only one poster scanner uses it, it should be safe until it's all refactored to use the Artwork class
-                    posterImage.setSubimage(posterSearchToken);
-                    movie.setDirty(DirtyFlag.POSTER, Boolean.TRUE);
+        int winner;
+        IImage posterImage = Image.UNKNOWN;
+        if (SEARCH_THREADS <= 1 || searches.size() <= 1) {
+            // One plugin after the other
+            for (winner = 0; winner < searches.size(); winner++) {
+                posterImage = searches.get(winner).call();
+                if (StringTools.isValidString(posterImage.getUrl())) {
+                    break;
                 }
             }
+        } else {
+            // The searches of the movie have their own threads, so a slow site can't hold up the other movies
+            List<Future<IImage>> results = new ArrayList<>(searches.size());
+            while (results.size() < Math.min(SEARCH_THREADS, searches.size())) {
+                results.add(getSearchPool().submit(searches.get(results.size())));
+            }
+
+            for (winner = 0; winner < results.size(); winner++) {
+                posterImage = getResult(results.get(winner), searches.get(winner), timeout);
+                if (posterImage == null) {
+                    LOG.debug("Poster search for {} timed out waiting for {}", movie.getBaseFilename(), searches.get(winner).getName());
+                    posterImage = Image.UNKNOWN;
+                } else if (StringTools.isValidString(posterImage.getUrl())) {
+                    break;
+                }
+
+                // This search is finished or out of time, so start the next one
+                if (results.size() < searches.size()) {
+                    results.add(getSearchPool().submit(searches.get(results.size())));
+                }
+            }
+
+            // The lower priority plugins and the ones out of time are not needed anymore
+            for (Future<IImage> result : results) {
+                result.cancel(Boolean.TRUE);
+            }
+        }
+
+        // Store the IDs found by the plugins which would have been queried one after the other
+        for (int i = 0; i <= winner && i < searches.size(); i++) {
+            searches.get(i).storeIds();
+        }
+
+        if (StringTools.isValidString(posterImage.getUrl())) {
+            String posterSearchToken = searches.get(winner).getName();
+            LOG.debug("Poster URL found at {}: {}", posterSearchToken, posterImage.getUrl());
+            // TODO: This is a hack, but seeing as only one poster scanner uses it, it should be safe until it's all refactored to use the Artwork class
+            posterImage.setSubimage(posterSearchToken);
+            movie.setDirty(DirtyFlag.POSTER, Boolean.TRUE);
         }
 
         return posterImage;
     }
 
+    /**
+     * Wait for the result of a poster search.
+     *
+     * The timeout starts when the search starts running.
+     *
+     * @param result
+     * @param search
+     * @param timeout the time in seconds to wait
+     * @return the poster image or null if the search did not finish in time
+     */
+    private static IImage getResult(Future<IImage> result, PosterSearch search, int timeout) {
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(timeout);
+        try {
+            while (true) {
+                long started = search.getStarted();
+                long wait = started == 0 ? timeoutMillis : started + timeoutMillis - System.currentTimeMillis();
+                if (wait <= 0) {
+                    return result.isDone() ? result.get() : null;
+                }
+                try {
+                    return result.get(wait, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException ex) {
+                    // Check the time left again, the search may have started late
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (CancellationException ex) {
+            return null;
+        } catch (ExecutionException ex) {
+            LOG.debug("Poster search failed: {}", ex.getCause().getMessage());
+            return Image.UNKNOWN;
+        }
+    }
+
+    /**
+     * The pool starts a thread for each search, each movie limits its own
+     * number of searches to SEARCH_THREADS.
+     *
+     * A search that runs out of time keeps its thread until the connection
+     * times out, so it does not block the searches of the other movies.
+     */
+    private static synchronized ExecutorService getSearchPool() {
+        if (searchPool == null) {
+            searchPool = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "PosterSearch-" + count.incrementAndGet());
+                    // Do not keep the JVM running for a slow poster site
+                    thread.setDaemon(Boolean.TRUE);
+                    return thread;
+                }
+            });
+        }
+        return searchPool;
+    }
+
+    /**
+     * Search and validate a poster with one plugin.
+     *
+     * The IDs found by the plugin are kept apart from the movie, so the
+     * plugins can run at the same time.
+     */
+    private static final class PosterSearch implements Callable<IImage>, Identifiable {
+
+        private final String name;
+        private final IPosterPlugin plugin;
+        private final Movie movie;
+        private final Map<String, String> ids = new HashMap<>(2);
+        private volatile long started = 0;
+
+        PosterSearch(String name, IPosterPlugin plugin, Movie movie) {
+            this.name = name;
+            this.plugin = plugin;
+            this.movie = movie;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the time the search started, or 0 if it has not started yet
+         *
+         * @return
+         */
+        public long getStarted() {
+            return started;
+        }
+
+        @Override
+        public IImage call() {
+            started = System.currentTimeMillis();
+            LOG.debug("Using {} to search for a poster for {}", name, movie.getTitle());
+            IImage posterImage = plugin.getPosterUrl(this, movie);
+
+            // Validate the poster- No need to validate if we're UNKNOWN
+            if (!Movie.UNKNOWN.equalsIgnoreCase(posterImage.getUrl()) && POSTER_VALIDATE && !validatePoster(posterImage, POSTER_WIDTH, POSTER_HEIGHT, POSTER_VALIDATE_ASPECT)) {
+                return Image.UNKNOWN;
+            }
+            return posterImage;
+        }
+
+        @Override
+        public synchronized String getId(String key) {
+            if (ids.containsKey(key)) {
+                return ids.get(key);
+            }
+            return movie.getId(key);
+        }
+
+        @Override
+        public synchronized void setId(String key, String id) {
+            ids.put(key, id);
+        }
+
+        public synchronized void storeIds() {
+            for (Map.Entry<String, String> id : ids.entrySet()) {
+                movie.setId(id.getKey(), id.getValue());
+            }
+        }
+    }
+
     /**
      * Validate the artwork against the dimensions and aspect.
      *
@@ -409,6 +604,11 @@ public final class PosterScanner {
         double urlWidth = imageDimension.getWidth();
         double urlHeight = imageDimension.getHeight();
 
+        if (urlWidth <= 0 || urlHeight <= 0) {
+            LOG.debug("{} rejected: unable to read the image size from the URL", posterImage);
+            return Boolean.FALSE;
+        }
+
         // Check if we need to cut the poster into a sub image
         if (StringTools.isValidString(posterImage.getSubimage())) {
             StringTokenizer st = new StringTokenizer(posterImage.getSubimage(), ", ");
@@ -447,8 +647,11 @@ public final class PosterScanner {
     /**
      * Read an URL and get the dimensions of the image.
      *
-     * This will try to determine the image type from the URL, if that fails
-     * then it will default to JPEG.
+     * The dimensions are read from the start of the image, which is kept for
+     * the download of the image.
+     *
+     * If the image format is not known, this will try to determine the image
+     * type from the URL, if that fails then it will default to JPEG.
      *
      * If the reading of the image fails, then the other type (PNG or JPEG) will
      * be used instead in case there was an incorrectly named extension
@@ -457,6 +660,17 @@ public final class PosterScanner {
      * @return
      */
     public static Dimension getUrlDimensions(String imageUrl) {
+        try {
+            Dimension probedDimension = FileTools.getImageDimension(imageUrl);
+            if (probedDimension != null) {
+                return probedDimension;
+            }
+        } catch (IOException ex) {
+            LOG.debug("getUrlDimensions error: {}: can't open url: {}", ex.getMessage(), imageUrl);
+            return new Dimension(0, 0);
+        }
+
+        // The header parser doesn't know the image format, so try the image readers
         String imageExtension = FilenameUtils.getExtension(imageUrl);
         if (StringUtils.isBlank(imageExtension)) {
             imageExtension = "jpeg";
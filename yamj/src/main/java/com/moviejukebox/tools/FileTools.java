@@ -31,13 +31,21 @@ import com.moviejukebox.model.Jukebox;
 import com.moviejukebox.model.Movie;
 import com.moviejukebox.model.MovieFile;
 import com.moviejukebox.scanner.IArchiveScanner;
+import java.awt.Dimension;
 import java.io.*;
 import java.net.URL;
 import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
@@ -165,6 +173,32 @@ public final class FileTools {
         return bytesCopied;
     }
 
+    /**
+     * Replace the target file with a newly written temporary file
+     *
+     * The file is moved atomically where the file system supports it, so readers see either the old or the new file.
+     * The temporary file is deleted if it can't be moved.
+     *
+     * @param tempFile
+     * @param targetFile
+     * @return true if the target file has been replaced
+     */
+    public static boolean replaceFile(File tempFile, File targetFile) {
+        try {
+            try {
+                Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                LOG.trace("Atomic move not supported for {}", targetFile.getName());
+                Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return Boolean.TRUE;
+        } catch (IOException ex) {
+            LOG.debug("Failed to replace {}: {}", targetFile.getName(), ex.getMessage());
+            FileUtils.deleteQuietly(tempFile);
+            return Boolean.FALSE;
+        }
+    }
+
     /**
      * Copy the source file to the destination
      *
@@ -573,8 +607,8 @@ public final class FileTools {
         Collection<File> files = FileTools.fileCache.searchFilename(safeFilename, Boolean.TRUE);
 
         if (!files.isEmpty()) {
-            // Copy the synchronized list to avoid ConcurrentModificationException
-            Iterator<File> iter = new ArrayList<>(FileTools.fileCache.searchFilename(safeFilename, Boolean.TRUE)).iterator();
+            // The search returns a new list, so there is no ConcurrentModificationException
+            Iterator<File> iter = files.iterator();
 
             while (iter.hasNext() && (searchFile == null)) {
                 File file = iter.next();
@@ -640,6 +674,45 @@ public final class FileTools {
         return YamjHttpClientBuilder.getHttpClient().downloadImage(imageFile, url);
     }
 
+    /**
+     * Get the dimensions of the image at the URL, reading only the start of the image.
+     *
+     * A following downloadImage of the same URL reuses the bytes already read.
+     *
+     * @param imageURL
+     * @return the dimensions, a zero dimension if they can't be read from the image or null if the image format is not known
+     * @throws IOException if the image can't be read
+     */
+    public static Dimension getImageDimension(String imageURL) throws IOException {
+        URL url;
+        if (imageURL.contains(" ")) {
+            url = new URL(imageURL.replaceAll(" ", "%20"));
+        } else {
+            url = new URL(imageURL);
+        }
+
+        if ("file".equals(url.getProtocol())) {
+            byte[] header = new byte[65536];
+            int length = 0;
+            try (InputStream in = url.openStream()) {
+                int count;
+                while (length < header.length && (count = in.read(header, length, header.length - length)) > 0) {
+                    length += count;
+                }
+            }
+            if (!GraphicTools.isImageFormatKnown(header, length)) {
+                return null;
+            }
+            Dimension dimension = GraphicTools.getImageDimension(header, length);
+            if (dimension == null || dimension.width <= 0 || dimension.height <= 0) {
+                return new Dimension(0, 0);
+            }
+            return dimension;
+        }
+
+        return YamjHttpClientBuilder.getHttpClient().getImageDimension(url);
+    }
+
     /**
      * Find the parent directory of the movie file.
      *
@@ -790,6 +863,20 @@ public final class FileTools {
             fileExists = exists;
         }
 
+        /**
+         * Create an existing file whose type is already known, e.g. from a previous scan
+         *
+         * @param parent
+         * @param child
+         * @param isDirectory
+         */
+        public FileEx(File parent, String child, boolean isDirectory) {
+            this(parent, child);
+            fileExists = Boolean.TRUE;
+            isDir = isDirectory;
+            isfile = !isDirectory;
+        }
+
         // archive scanner supporting constructors
         public FileEx(String pathname, IArchiveScanner[] archiveScanners) {
             super(pathname);
@@ -940,6 +1027,13 @@ public final class FileTools {
         //cache for ALL files found during initial scan
 
         private final Map<String, File> cachedFiles = new ConcurrentHashMap<>(1000);
+        // Secondary indexes of the cached keys; all keys are the upper case absolute path
+        // file name -> keys of the files with that name
+        private final ConcurrentNavigableMap<String, Set<String>> nameIndex = new ConcurrentSkipListMap<>();
+        // parent directory -> keys of the files in that directory
+        private final ConcurrentMap<String, Set<String>> directoryIndex = new ConcurrentHashMap<>(1000);
+        // directory path segment -> parent directories containing that segment
+        private final ConcurrentNavigableMap<String, Set<String>> segmentIndex = new ConcurrentSkipListMap<>();
 
         /**
          * Check whether the file exists
@@ -967,7 +1061,10 @@ public final class FileTools {
          * @param file
          */
         public void fileAdd(File file) {
-            cachedFiles.put(file.getAbsolutePath().toUpperCase(), file);
+            String key = file.getAbsolutePath().toUpperCase();
+            if (cachedFiles.put(key, file) == null) {
+                indexKey(key);
+            }
         }
 
         /**
@@ -1021,25 +1118,111 @@ public final class FileTools {
             if (files.length == 0) {
                 return;
             }
-            Map<String, File> map = new HashMap<>(files.length);
             for (File f : files) {
-                map.put(f.getAbsolutePath().toUpperCase(), f);
+                fileAdd(f);
             }
-            cachedFiles.putAll(map);
         }
 
         public long size() {
             return cachedFiles.size();
         }
 
+        /**
+         * Add the key to the name, directory and segment indexes
+         *
+         * @param key
+         */
+        private void indexKey(String key) {
+            int pos = key.lastIndexOf(File.separatorChar);
+            String name = key.substring(pos + 1);
+            String directory = pos < 0 ? "" : key.substring(0, pos);
+
+            addToIndex(nameIndex, name, key);
+
+            Set<String> dirKeys = directoryIndex.get(directory);
+            if (dirKeys == null) {
+                dirKeys = newKeySet();
+                Set<String> existing = directoryIndex.putIfAbsent(directory, dirKeys);
+                if (existing == null) {
+                    // First time this directory is seen, so index its path segments
+                    for (String segment : directory.split(Pattern.quote(File.separator))) {
+                        if (!segment.isEmpty()) {
+                            addToIndex(segmentIndex, segment, directory);
+                        }
+                    }
+                } else {
+                    dirKeys = existing;
+                }
+            }
+            dirKeys.add(key);
+        }
+
+        private static void addToIndex(ConcurrentNavigableMap<String, Set<String>> index, String indexKey, String value) {
+            Set<String> values = index.get(indexKey);
+            if (values == null) {
+                values = newKeySet();
+                Set<String> existing = index.putIfAbsent(indexKey, values);
+                if (existing != null) {
+                    values = existing;
+                }
+            }
+            values.add(value);
+        }
+
+        private static Set<String> newKeySet() {
+            return Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        }
+
+        /**
+         * Search for all files where the path contains the search name.
+         *
+         * If the search name contains a path separator, the part after the last separator must be the start of a file or directory
+         * name, so the name and segment indexes are used to find the candidates. Otherwise all the cached files are checked.
+         *
+         * @param searchName
+         * @param findAll
+         * @return
+         */
         public Collection<File> searchFilename(String searchName, boolean findAll) {
             ArrayList<File> files = new ArrayList<>();
 
             String upperName = searchName.toUpperCase();
+            int pos = upperName.lastIndexOf(File.separatorChar);
+            if (pos < 0 || pos == upperName.length() - 1) {
+                // Nothing to anchor the search on
+                for (Map.Entry<String, File> entry : cachedFiles.entrySet()) {
+                    if (entry.getKey().contains(upperName)) {
+                        files.add(entry.getValue());
+                        if (!findAll) {
+                            // We only look for the first
+                            break;
+                        }
+                    }
+                }
+                return files;
+            }
 
-            for (String listName : cachedFiles.keySet()) {
-                if (listName.contains(upperName)) {
-                    files.add(cachedFiles.get(listName));
+            String namePrefix = upperName.substring(pos + 1);
+            Set<String> candidates = new LinkedHashSet<>();
+
+            // Files with a name starting with the search name
+            for (Set<String> keys : prefixRange(nameIndex, namePrefix).values()) {
+                candidates.addAll(keys);
+            }
+
+            // Files in a directory where one of the path segments starts with the search name
+            for (Set<String> directories : prefixRange(segmentIndex, namePrefix).values()) {
+                for (String directory : directories) {
+                    Set<String> keys = directoryIndex.get(directory);
+                    if (keys != null) {
+                        candidates.addAll(keys);
+                    }
+                }
+            }
+
+            for (String key : candidates) {
+                if (key.contains(upperName)) {
+                    files.add(cachedFiles.get(key));
                     if (!findAll) {
                         // We only look for the first
                         break;
@@ -1050,6 +1233,10 @@ public final class FileTools {
             return files;
         }
 
+        private static Map<String, Set<String>> prefixRange(ConcurrentNavigableMap<String, Set<String>> index, String prefix) {
+            return index.subMap(prefix, Boolean.TRUE, prefix + Character.MAX_VALUE, Boolean.FALSE);
+        }
+
         public void saveFileList(String filename) throws FileNotFoundException, UnsupportedEncodingException {
             try (PrintWriter p = new PrintWriter(new OutputStreamWriter(new FileOutputStream(filename, Boolean.TRUE), DEFAULT_CHARSET))) {
                 Set<String> names = cachedFiles.keySet();
@@ -27,6 +27,8 @@ import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -88,6 +90,124 @@ public final class GraphicTools {
         }
     }
 
+    /**
+     * Get the dimensions of a JPEG, PNG, GIF or BMP image from the first bytes of the image file.
+     *
+     * Only the headers are read, so the image does not need to be complete.
+     *
+     * @param data the first bytes of the image
+     * @param length the number of valid bytes in data
+     * @return the dimensions, null if more bytes are needed or a zero dimension if the image format is not known
+     */
+    public static Dimension getImageDimension(byte[] data, int length) {
+        if (length < 8) {
+            return null;
+        }
+
+        if ((data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G') {
+            // PNG: the IHDR chunk always comes first
+            if (length < 24) {
+                return null;
+            }
+            return new Dimension(readInt(data, 16, 4, true), readInt(data, 20, 4, true));
+        }
+
+        if (data[0] == 'G' && data[1] == 'I' && data[2] == 'F') {
+            // GIF: logical screen size
+            if (length < 10) {
+                return null;
+            }
+            return new Dimension(readInt(data, 6, 2, false), readInt(data, 8, 2, false));
+        }
+
+        if (data[0] == 'B' && data[1] == 'M') {
+            if (length < 26) {
+                return null;
+            }
+            if (readInt(data, 14, 4, false) == 12) {
+                // OS/2 bitmap header
+                return new Dimension(readInt(data, 18, 2, false), readInt(data, 20, 2, false));
+            }
+            // height is negative for top-down bitmaps
+            return new Dimension(readInt(data, 18, 4, false), Math.abs(readInt(data, 22, 4, false)));
+        }
+
+        if ((data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8) {
+            return getJpegDimension(data, length);
+        }
+
+        return new Dimension(0, 0);
+    }
+
+    /**
+     * Check if the image format is one that getImageDimension can read, from the first bytes of the image file.
+     *
+     * @param data the first bytes of the image
+     * @param length the number of valid bytes in data
+     * @return
+     */
+    public static boolean isImageFormatKnown(byte[] data, int length) {
+        if (length < 4) {
+            return Boolean.FALSE;
+        }
+        return ((data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G')
+                || (data[0] == 'G' && data[1] == 'I' && data[2] == 'F')
+                || (data[0] == 'B' && data[1] == 'M')
+                || ((data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8);
+    }
+
+    /**
+     * Walk the JPEG segments up to the start of frame, which holds the dimensions
+     */
+    private static Dimension getJpegDimension(byte[] data, int length) {
+        int position = 2;
+        while (position + 1 < length) {
+            if ((data[position] & 0xFF) != 0xFF) {
+                // corrupt segment structure
+                return new Dimension(0, 0);
+            }
+
+            int marker = data[position + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // fill byte
+                position++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                // markers without a segment
+                position += 2;
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // end of image or start of scan before the frame
+                return new Dimension(0, 0);
+            }
+
+            if (position + 4 > length) {
+                return null;
+            }
+            int segmentLength = readInt(data, position + 2, 2, true);
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                // start of frame: precision, height, width
+                if (position + 9 > length) {
+                    return null;
+                }
+                return new Dimension(readInt(data, position + 7, 2, true), readInt(data, position + 5, 2, true));
+            }
+            position += 2 + segmentLength;
+        }
+        return null;
+    }
+
+    private static int readInt(byte[] data, int offset, int size, boolean bigEndian) {
+        int value = 0;
+        for (int i = 0; i < size; i++) {
+            int b = data[bigEndian ? offset + i : offset + size - 1 - i] & 0xFF;
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+
     public static void saveImageAsJpeg(BufferedImage bi, String filename) {
         if (bi == null || StringTools.isNotValidString(filename)) {
             return;
@@ -131,6 +251,23 @@ public final class GraphicTools {
         }
     }
 
+    /**
+     * Create a copy of the image, so it can be changed without altering the
+     * original
+     *
+     * @param imgSrc
+     * @return
+     */
+    public static BufferedImage copyImage(BufferedImage imgSrc) {
+        if (imgSrc == null) {
+            return null;
+        }
+
+        ColorModel colorModel = imgSrc.getColorModel();
+        WritableRaster raster = imgSrc.copyData(imgSrc.getRaster().createCompatibleWritableRaster());
+        return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+    }
+
     public static BufferedImage createBlankImage(int width, int height) {
         return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
     }
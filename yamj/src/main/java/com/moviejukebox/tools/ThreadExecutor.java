@@ -30,30 +30,28 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ThreadExecutor<T> implements ThreadFactory {
+public class ThreadExecutor<T> implements ForkJoinPool.ForkJoinWorkerThreadFactory {
 
     private static final Logger LOG = LoggerFactory.getLogger(ThreadExecutor.class);
-    private final Collection<Future<T>> values = new ArrayList<>(100);
-    private ThreadPoolExecutor pool = null;
-    private BlockingQueue<Runnable> queue = null;
+    // Number of tasks that may be waiting for a free thread before submit blocks
+    private static final int QUEUE_SIZE = 100;
+    private final Collection<Future<T>> values = new ArrayList<>(QUEUE_SIZE);
+    private final ForkJoinPool pool;
     private final int threadsRun, threadsIo, threadsTotal;
     private final boolean ignoreErrors = true;
-    private Semaphore runningThreads, ioThreads;
+    private final Semaphore runningThreads, ioThreads, pendingTasks;
     private static final Map<String, String> HOST_GROUP = new HashMap<>();
     private static final Map<String, Semaphore> GROUP_LIMITS = new HashMap<>();
 
@@ -88,10 +86,11 @@ public class ThreadExecutor<T> implements ThreadFactory {
     }
 
     /**
-     * Helper class Encapsulates a fixed thread pool ExecutorService Saves
-     * futures, used just to catch inner exceptions Usage patter: - create with
-     * thread count and io slots - submit tasks (Callable) - call waitFor; this
-     * logs
+     * Helper class Encapsulates a work-stealing thread pool that lives for the
+     * whole run. Saves futures, used just to catch inner exceptions. Usage
+     * patter: - create with thread count and io slots - submit tasks
+     * (Callable) - call waitFor; this logs - call restart to begin the next
+     * phase - call shutdown when all phases are done
      *
      * - in addition processing threads should call pairs EnterIO, LeaveIO to
      * switch from running to io state
@@ -104,31 +103,50 @@ public class ThreadExecutor<T> implements ThreadFactory {
         this.threadsRun = threadsRun;
         this.threadsIo = threadsIo <= 0 ? threadsRun : threadsIo;
         threadsTotal = this.threadsRun + this.threadsIo;
-        restart();
+
+        runningThreads = new Semaphore(this.threadsRun);
+        ioThreads = new Semaphore(this.threadsIo);
+        // Bounds the work accepted but not yet finished; submit blocks on it
+        pendingTasks = new Semaphore(QUEUE_SIZE + threadsTotal);
+
+        // The pool has enough parallelism for all running and io threads.
+        // The semaphores are waited on plainly, so the pool never adds spare threads and stays at threadsTotal
+        // Async mode keeps the submitted tasks in FIFO order
+        pool = new ForkJoinPool(threadsTotal, this, null, true);
     }
 
     /*
      * Thread descendant class used for our execution scheduling
      */
-    private static final class ScheduledThread extends Thread {
+    private static final class ScheduledThread extends ForkJoinWorkerThread {
 
         private final Semaphore sRun, sIo;
         private Semaphore sIotarget;
         private final Stack<String> hosts = new Stack<>();
 
-        private ScheduledThread(Runnable r, Semaphore sRun, Semaphore sIo) {
-            super(r);
+        private ScheduledThread(ForkJoinPool pool, Semaphore sRun, Semaphore sIo) {
+            super(pool);
             this.sRun = sRun;
             this.sIo = sIo;
         }
 
-        @Override
-        public void run() {
+        /*
+         * Each task holds a running slot while it is executed (not the whole thread)
+         */
+        private <V> V execute(Callable<V> c) throws Exception {
             sRun.acquireUninterruptibly();
             try {
-                super.run();
+                return c.call();
             } finally {
-                sRun.release();
+                if (!hosts.empty()) {
+                    LOG.debug("ThreadExecutor: Task finished inside EnterIO({}); released", hosts.peek());
+                    hosts.clear();
+                    sIotarget.release();
+                    sIo.release();
+                    sIotarget = null;
+                } else {
+                    sRun.release();
+                }
             }
         }
 
@@ -162,15 +180,12 @@ public class ThreadExecutor<T> implements ThreadFactory {
             }
 
             // there should be NO way to fail
-            //String dbgstr = "host="+host+"; thread="+getName();
-            //logger.finest("ThreadExecutor: Try EnterIO: "+dbgstr);
             Semaphore s = GROUP_LIMITS.get(semaphoreGroup);
             sIotarget = s;
             sRun.release(); // exit running state; another thread might be released;
             sIotarget.acquireUninterruptibly(); // aquire URL target semaphore
             hosts.push(host);
             sIo.acquireUninterruptibly(); // enter io state
-            //logger.finest("ThreadExecutor: EnterIO done: "+dbgstr);
             //ready to go...
         }
 
@@ -187,13 +202,10 @@ public class ThreadExecutor<T> implements ThreadFactory {
                 return;
             }
 
-            //String dbgstr = "host="+host+"; thread="+getName();
             sIotarget.release();
             sIo.release();
             sIotarget = null;
-            //logger.finest("ThreadExecutor: Try LeaveIO: "+dbgstr);
             sRun.acquireUninterruptibly(); //back to running state
-            //logger.finest("ThreadExecutor: LeaveIO done: "+dbgstr);
         }
     }
 
@@ -232,35 +244,42 @@ public class ThreadExecutor<T> implements ThreadFactory {
     }
 
     @Override
-    public Thread newThread(Runnable r) {
-        return new ScheduledThread(r, runningThreads, ioThreads);
+    public ForkJoinWorkerThread newThread(ForkJoinPool forkJoinPool) {
+        return new ScheduledThread(forkJoinPool, runningThreads, ioThreads);
     }
 
+    /**
+     * Start a new processing phase.
+     *
+     * The pool itself is kept, only the results of the previous phase are
+     * discarded
+     */
     public final void restart() {
+        if (pool.isShutdown()) {
+            throw new IllegalStateException("ThreadExecutor has already been shut down");
+        }
         values.clear();
-        runningThreads = new Semaphore(threadsRun);
-        ioThreads = new Semaphore(threadsIo);
-
-        //refined: use a fixed queue with some extra space; in relation with submit
-        //the size is just an approximation; it has no real connection to thread count
-        //make it reasonable sized to avoid waiting in submit
-        queue = new ArrayBlockingQueue<>(100);
-//        queue = new LinkedBlockingQueue<Runnable>();
-        //allow more threads, they are managed by semaphores
-        pool = new ThreadPoolExecutor(threadsRun, 2 * threadsTotal,
-                100, TimeUnit.MILLISECONDS,
-                queue,
-                this);
     }
 
-    public void submit(Callable<T> c) throws InterruptedException {
-        //never queue too many objects; wait for some space to limit resource allocations
-        //in case of fixed size queues, tasks could even be rejected
-        //therefore wait here a very short time
-        while (queue.remainingCapacity() <= 0) {
-            Thread.sleep(5);
+    public void submit(final Callable<T> c) throws InterruptedException {
+        //never queue too many objects; block until one of the pending tasks has finished
+        pendingTasks.acquire();
+        try {
+            values.add(pool.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    try {
+                        return ((ScheduledThread) Thread.currentThread()).execute(c);
+                    } finally {
+                        pendingTasks.release();
+                    }
+                }
+            }));
+        } catch (RuntimeException ex) {
+            // the task was rejected, so give the slot back
+            pendingTasks.release();
+            throw ex;
         }
-        values.add(pool.submit(c));
     }
 
     public void submit(Runnable r) throws InterruptedException {
@@ -269,7 +288,6 @@ public class ThreadExecutor<T> implements ThreadFactory {
     }
 
     public List<T> waitForValues() throws Throwable {
-        pool.shutdown();
         List<T> v = new ArrayList<>(values.size());
         for (Future<T> f : values) {
             try {
@@ -284,7 +302,7 @@ public class ThreadExecutor<T> implements ThreadFactory {
                 Thread.currentThread().interrupt();
             }
         }
-        pool.shutdownNow();
+        values.clear();
         return v;
     }
 
@@ -295,4 +313,11 @@ public class ThreadExecutor<T> implements ThreadFactory {
             LOG.error("ThreadExecutor: Unfinished downloading threads detected: {}", dif);
         }
     }
+
+    /**
+     * Stop the pool threads once all the processing phases are complete
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
 }
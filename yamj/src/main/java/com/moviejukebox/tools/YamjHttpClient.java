@@ -19,18 +19,31 @@
  */
 package com.moviejukebox.tools;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.*;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.imageio.ImageIO;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.protocol.HTTP;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamj.api.common.http.DigestedResponse;
@@ -41,7 +54,22 @@ public class YamjHttpClient extends PoolingHttpClient {
 
     private static final Logger LOG = LoggerFactory.getLogger(YamjHttpClient.class);
     private static final String ACCEPT_LANGUAGE = PropertiesUtil.getProperty("mjb.Accept-Language", null);
+    // most bytes read to determine the dimensions of an image
+    private static final int IMAGE_PROBE_LIMIT = 131072;
+    private static final int IMAGE_PROBE_CHUNK = 4096;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)", Pattern.CASE_INSENSITIVE);
+    // number of probed images kept for the download
+    private static final int IMAGE_HEADER_CACHE_SIZE = 32;
     private int imageRetryCount;
+    // the bytes read by the image probe, so the download only needs the remainder
+    private final Map<String, ImageHeader> imageHeaders = Collections.synchronizedMap(new LinkedHashMap<String, ImageHeader>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ImageHeader> eldest) {
+            return size() > IMAGE_HEADER_CACHE_SIZE;
+        }
+    });
     
     public YamjHttpClient(HttpClient httpClient, PoolingHttpClientConnectionManager connManager) {
         super(httpClient, connManager);
@@ -102,6 +130,139 @@ public class YamjHttpClient extends PoolingHttpClient {
         throw new IOException("Failed request with status " + response.getStatusCode() + " for URL: " + httpGet.getURI());
     }
     
+    /**
+     * Get the dimensions of an image without downloading the whole image.
+     *
+     * Only the first bytes are requested and the transfer is stopped as soon as the dimensions are known. The bytes read are
+     * kept, so a following download of the image only transfers the rest of it.
+     *
+     * @param url
+     * @return the dimensions, a zero dimension if they can't be read from the image or null if the image format is not known
+     * @throws IOException if the image can't be requested
+     */
+    public Dimension getImageDimension(URL url) throws IOException {
+        HttpGet httpGet = null;
+        try {
+            httpGet = new HttpGet(url.toString());
+            httpGet.setHeader("Range", "bytes=0-" + (IMAGE_PROBE_LIMIT - 1));
+            HttpResponse response = execute(httpGet);
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (entity == null || (status != HttpStatus.SC_OK && status != HttpStatus.SC_PARTIAL_CONTENT)) {
+                EntityUtils.consumeQuietly(entity);
+                throw new IOException("Failed to probe image with status " + status + " for URL: " + url);
+            }
+
+            byte[] header = new byte[IMAGE_PROBE_CHUNK];
+            int length = 0;
+            Dimension dimension = null;
+            boolean endOfStream = Boolean.FALSE;
+            InputStream in = entity.getContent();
+            while (dimension == null && length < IMAGE_PROBE_LIMIT) {
+                if (length == header.length) {
+                    header = Arrays.copyOf(header, Math.min(header.length * 2, IMAGE_PROBE_LIMIT));
+                }
+                int count = in.read(header, length, Math.min(IMAGE_PROBE_CHUNK, header.length - length));
+                if (count < 0) {
+                    endOfStream = Boolean.TRUE;
+                    break;
+                }
+                length += count;
+                dimension = GraphicTools.getImageDimension(header, length);
+            }
+
+            long total = status == HttpStatus.SC_OK ? entity.getContentLength() : getRangeTotal(response);
+            // a small image may be read completely before the end of the stream is seen
+            boolean complete = total < 0 ? endOfStream && status == HttpStatus.SC_OK : total == length;
+            if (endOfStream || complete) {
+                in.close();
+            } else {
+                // stop the transfer instead of reading the rest of the image
+                httpGet.abort();
+            }
+
+            byte[] data = Arrays.copyOf(header, length);
+            ImageHeader imageHeader = new ImageHeader(data, complete, getValidator(response), total);
+            imageHeaders.put(url.toString(), imageHeader);
+
+            if (!GraphicTools.isImageFormatKnown(data, length)) {
+                return null;
+            }
+            if (dimension == null && length >= IMAGE_PROBE_LIMIT) {
+                // the dimensions are further into the image (e.g. a JPEG with a lot of metadata), so read all of it
+                LOG.debug("No image dimensions in the first {} bytes, reading the whole image: {}", length, url);
+                dimension = readImageDimension(url, imageHeader);
+            }
+            if (dimension == null || dimension.width <= 0 || dimension.height <= 0) {
+                LOG.debug("Unable to determine image dimensions from the first {} bytes: {}", length, url);
+                return new Dimension(0, 0);
+            }
+            return dimension;
+        } catch (IOException | RuntimeException ex) {
+            if (httpGet != null) {
+                httpGet.abort();
+            }
+            if (ex instanceof IOException) {
+                throw (IOException) ex;
+            }
+            throw new IOException("Failed to probe image: " + url, ex);
+        }
+    }
+
+    /**
+     * Get the total length of the resource from the Content-Range header
+     *
+     * @param response
+     * @return the length, or -1 if it is not known
+     */
+    private static long getRangeTotal(HttpResponse response) {
+        long[] range = parseContentRange(response);
+        return range == null ? -1L : range[2];
+    }
+
+    /**
+     * Parse the Content-Range header of a response, e.g. "bytes 0-1233/1234"
+     *
+     * @param response
+     * @return the first byte, last byte and total length (-1 if not known), or null if there is no valid header
+     */
+    private static long[] parseContentRange(HttpResponse response) {
+        Header contentRange = response.getFirstHeader("Content-Range");
+        if (contentRange == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_RANGE.matcher(contentRange.getValue().trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        try {
+            long start = Long.parseLong(matcher.group(1));
+            long end = Long.parseLong(matcher.group(2));
+            long total = "*".equals(matcher.group(3)) ? -1L : Long.parseLong(matcher.group(3));
+            if (end < start || (total >= 0 && end >= total)) {
+                return null;
+            }
+            return new long[]{start, end, total};
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the value that identifies this version of the resource, for the If-Range header
+     *
+     * @param response
+     * @return the strong ETag, the last modified date or null if there is neither
+     */
+    private static String getValidator(HttpResponse response) {
+        Header etag = response.getFirstHeader("ETag");
+        if (etag != null && !etag.getValue().startsWith("W/")) {
+            return etag.getValue();
+        }
+        Header lastModified = response.getFirstHeader("Last-Modified");
+        return lastModified == null ? null : lastModified.getValue();
+    }
+
     /**
      * Download the image for the specified URL into the specified file.
      *
@@ -111,6 +272,12 @@ public class YamjHttpClient extends PoolingHttpClient {
      */
     public boolean downloadImage(File file, URL url) {
         LOG.debug("Attempting to download '{}'", url);
+        ImageHeader header = imageHeaders.remove(url.toString());
+        if (header != null && downloadRemainder(file, url, header)) {
+            LOG.debug("Successfully downloaded '{}' to '{}'", url, file.getAbsolutePath());
+            return Boolean.TRUE;
+        }
+
         boolean success = Boolean.FALSE;
         int retryCount = imageRetryCount;
         
@@ -140,4 +307,149 @@ public class YamjHttpClient extends PoolingHttpClient {
         
         return success;
     }
+
+    /**
+     * Get the dimensions of an image by reading the whole image.
+     *
+     * The image read is kept, so the following download doesn't request it again.
+     *
+     * @param url
+     * @param header
+     * @return the dimensions, or null if the image can't be read
+     */
+    private Dimension readImageDimension(URL url, ImageHeader header) {
+        byte[] image = requestRemainder(url, header);
+        if (image == null) {
+            return null;
+        }
+        imageHeaders.put(url.toString(), new ImageHeader(image, Boolean.TRUE, null, image.length));
+
+        try {
+            BufferedImage bi = ImageIO.read(new ByteArrayInputStream(image));
+            if (bi != null) {
+                return new Dimension(bi.getWidth(), bi.getHeight());
+            }
+        } catch (IOException ex) {
+            LOG.debug("Failed to read image '{}': {}", url, ex.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Write the image from the bytes read by the probe and request the rest of the image if needed.
+     *
+     * @param file
+     * @param url
+     * @param header
+     * @return true if the image has been written, false if it must be downloaded again
+     */
+    private boolean downloadRemainder(File file, URL url, ImageHeader header) {
+        byte[] image = requestRemainder(url, header);
+        if (image == null) {
+            return Boolean.FALSE;
+        }
+
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(image);
+            return Boolean.TRUE;
+        } catch (IOException ex) {
+            LOG.debug("Failed to write image '{}': {}", file.getAbsolutePath(), ex.getMessage());
+            return Boolean.FALSE;
+        }
+    }
+
+    /**
+     * Get the whole image from the bytes read by the probe and the rest of the image.
+     *
+     * @param url
+     * @param header
+     * The rest is only used if the server sends it from the end of the probed bytes and the length of the image is the
+     * same as when it was probed, otherwise the image may have changed in between.
+     *
+     * @param url
+     * @param header
+     * @return the image, or null if the rest of the image can't be requested or doesn't match the probed bytes
+     */
+    private byte[] requestRemainder(URL url, ImageHeader header) {
+        if (header.isComplete()) {
+            return header.getData();
+        }
+
+        HttpGet httpGet = new HttpGet(url.toString());
+        httpGet.setHeader("Range", "bytes=" + header.getData().length + "-");
+        if (header.getValidator() != null) {
+            // the server sends the whole image if it has changed since the probe
+            httpGet.setHeader("If-Range", header.getValidator());
+        }
+        try {
+            HttpResponse response = execute(httpGet);
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (entity == null || (status != HttpStatus.SC_OK && status != HttpStatus.SC_PARTIAL_CONTENT)) {
+                EntityUtils.consumeQuietly(entity);
+                return null;
+            }
+
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            if (status == HttpStatus.SC_OK) {
+                // the server sends the whole image
+                entity.writeTo(outputStream);
+                return outputStream.toByteArray();
+            }
+
+            long[] range = parseContentRange(response);
+            if (range == null || range[0] != header.getData().length || (header.getTotal() >= 0 && range[2] != header.getTotal())) {
+                LOG.debug("Rest of image '{}' doesn't follow the probed bytes", url);
+                EntityUtils.consumeQuietly(entity);
+                return null;
+            }
+
+            // the server sends the rest of the image only
+            outputStream.write(header.getData());
+            entity.writeTo(outputStream);
+            if (outputStream.size() != range[1] + 1 || (range[2] >= 0 && outputStream.size() != range[2])) {
+                LOG.debug("Incomplete rest of image '{}': {} bytes", url, outputStream.size());
+                return null;
+            }
+            return outputStream.toByteArray();
+        } catch (Exception ex) {
+            LOG.debug("Failed to download rest of image '{}': {}", url, ex.getMessage());
+            httpGet.abort();
+            return null;
+        }
+    }
+
+    /**
+     * The first bytes of an image, as read by the dimension probe
+     */
+    private static final class ImageHeader {
+
+        private final byte[] data;
+        private final boolean complete;
+        private final String validator;
+        private final long total;
+
+        ImageHeader(byte[] data, boolean complete, String validator, long total) {
+            this.data = data;
+            this.complete = complete;
+            this.validator = validator;
+            this.total = total;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public String getValidator() {
+            return validator;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+    }
 }
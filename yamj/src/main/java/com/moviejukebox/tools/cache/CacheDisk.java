@@ -0,0 +1,298 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.tools.cache;
+
+import com.moviejukebox.tools.FileTools;
+import com.moviejukebox.tools.PropertiesUtil;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk tier of the cache, so that cached objects survive between runs.
+ *
+ * Each object is serialised into its own file named after the hash of the
+ * key. Only Serializable objects are stored.
+ *
+ * The objects are serialised when they are added, but the files are written
+ * by a background thread. flush must be called before the program exits.
+ */
+public final class CacheDisk {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheDisk.class);
+    private static final String EXT_CACHE = ".cache";
+    private static final boolean DISK_ENABLED = PropertiesUtil.getBooleanProperty("mjb.cache.disk", Boolean.FALSE);
+    private static final File CACHE_DIRECTORY = new File(PropertiesUtil.getProperty("mjb.cache.diskDirectory", "cache"));
+    private static final long MAX_AGE = TimeUnit.DAYS.toMillis(PropertiesUtil.getIntProperty("mjb.cache.diskMaxAge", 7));
+    // Most objects waiting to be written before the callers have to wait
+    private static final int MAX_PENDING = 1000;
+    // How often the callers waiting for the writer check that it is still running
+    private static final long WAIT_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    // Serialised objects waiting for the writer, by key. REMOVED marks a file to delete
+    private static final Map<String, byte[]> PENDING = new LinkedHashMap<>();
+    private static final byte[] REMOVED = new byte[0];
+    private static Thread writer = null;
+
+    private CacheDisk() {
+        throw new UnsupportedOperationException("Class cannot be instantiated");
+    }
+
+    public static boolean isEnabled() {
+        return DISK_ENABLED;
+    }
+
+    /**
+     * Write an object to the disk cache
+     *
+     * The object is serialised straight away, the file is written in the
+     * background.
+     *
+     * @param key
+     * @param value
+     */
+    public static void write(String key, Object value) {
+        if (!DISK_ENABLED) {
+            return;
+        }
+
+        if (!(value instanceof Serializable)) {
+            LOG.trace("Cache (Disk): Object ({}) for key '{}' is not serializable", value.getClass().getSimpleName(), key);
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeUTF(key);
+            out.writeObject(value);
+        } catch (IOException ex) {
+            LOG.debug("Cache (Disk): Failed to serialise key '{}': {}", key, ex.getMessage());
+            return;
+        }
+
+        addPending(key, bytes.toByteArray());
+    }
+
+    /**
+     * Wait until all the pending objects have been written
+     */
+    public static void flush() {
+        synchronized (PENDING) {
+            while (!PENDING.isEmpty()) {
+                try {
+                    startWriter();
+                    PENDING.wait(WAIT_MILLIS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void addPending(String key, byte[] data) {
+        synchronized (PENDING) {
+            while (PENDING.size() >= MAX_PENDING && !PENDING.containsKey(key)) {
+                try {
+                    startWriter();
+                    PENDING.wait(WAIT_MILLIS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            // The latest value replaces one that has not been written yet
+            PENDING.remove(key);
+            PENDING.put(key, data);
+
+            startWriter();
+            PENDING.notifyAll();
+        }
+    }
+
+    /**
+     * Start the writer if it is not running, the lock on PENDING must be held
+     */
+    private static void startWriter() {
+        if (writer == null || !writer.isAlive()) {
+            writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    writePending();
+                }
+            }, "CacheDiskWriter");
+            writer.setDaemon(Boolean.TRUE);
+            writer.start();
+        }
+    }
+
+    /**
+     * Write the pending objects, oldest first.
+     *
+     * An object stays pending until its file is written, so read never sees an older file.
+     */
+    private static void writePending() {
+        while (true) {
+            Map.Entry<String, byte[]> entry;
+            synchronized (PENDING) {
+                while (PENDING.isEmpty()) {
+                    try {
+                        PENDING.wait();
+                    } catch (InterruptedException ex) {
+                        LOG.debug("Cache (Disk): Writer interrupted");
+                    }
+                }
+                Iterator<Map.Entry<String, byte[]>> iterator = PENDING.entrySet().iterator();
+                entry = iterator.next();
+            }
+
+            String key = entry.getKey();
+            byte[] data = entry.getValue();
+            try {
+                if (data == REMOVED) {
+                    FileUtils.deleteQuietly(getCacheFile(key));
+                } else {
+                    writeFile(key, data);
+                }
+            } catch (RuntimeException ex) {
+                // Drop the object rather than stop the writer
+                LOG.warn("Cache (Disk): Failed to write key '{}': {}", key, ex.getMessage());
+            } finally {
+                synchronized (PENDING) {
+                    if (PENDING.get(key) == data) {
+                        PENDING.remove(key);
+                    }
+                    PENDING.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static void writeFile(String key, byte[] data) {
+        File cacheFile = getCacheFile(key);
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+        FileTools.makeDirsForFile(cacheFile);
+
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            out.write(data);
+        } catch (IOException ex) {
+            LOG.debug("Cache (Disk): Failed to write key '{}': {}", key, ex.getMessage());
+            FileUtils.deleteQuietly(tempFile);
+            return;
+        }
+
+        FileTools.replaceFile(tempFile, cacheFile);
+    }
+
+    /**
+     * Read an object from the disk cache
+     *
+     * @param key
+     * @return the object or null if it is not found or expired
+     */
+    public static Object read(String key) {
+        if (!DISK_ENABLED) {
+            return null;
+        }
+
+        byte[] pending;
+        synchronized (PENDING) {
+            pending = PENDING.get(key);
+        }
+        if (pending == REMOVED) {
+            return null;
+        }
+        if (pending != null) {
+            try {
+                return readObject(key, new ByteArrayInputStream(pending));
+            } catch (IOException | ClassNotFoundException ex) {
+                LOG.debug("Cache (Disk): Failed to read pending key '{}': {}", key, ex.getMessage());
+                return null;
+            }
+        }
+
+        File cacheFile = getCacheFile(key);
+        if (!cacheFile.exists()) {
+            return null;
+        }
+
+        if (MAX_AGE > 0 && (System.currentTimeMillis() - cacheFile.lastModified()) > MAX_AGE) {
+            LOG.debug("Cache (Disk): Expired object for key '{}'", key);
+            FileUtils.deleteQuietly(cacheFile);
+            return null;
+        }
+
+        try {
+            return readObject(key, new BufferedInputStream(new FileInputStream(cacheFile)));
+        } catch (IOException | ClassNotFoundException ex) {
+            // Probably written by a different version of the class
+            LOG.debug("Cache (Disk): Failed to read key '{}': {}", key, ex.getMessage());
+            FileUtils.deleteQuietly(cacheFile);
+            return null;
+        }
+    }
+
+    private static Object readObject(String key, InputStream stream) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(stream)) {
+            // Guard against two keys with the same hash
+            if (!key.equals(in.readUTF())) {
+                return null;
+            }
+            return in.readObject();
+        }
+    }
+
+    /**
+     * Remove an object from the disk cache
+     *
+     * @param key
+     */
+    public static void remove(String key) {
+        if (DISK_ENABLED) {
+            addPending(key, REMOVED);
+        }
+    }
+
+    private static File getCacheFile(String key) {
+        String hash = DigestUtils.md5Hex(key);
+        // Spread the files over sub-directories to keep the directories small
+        return new File(new File(CACHE_DIRECTORY, hash.substring(0, 2)), hash + EXT_CACHE);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.tools.cache;
+
+import com.moviejukebox.tools.PropertiesUtil;
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+
+/**
+ * Hands the XML documents written to the temp jukebox over to the HTML writer
+ * so they do not need to be parsed again for the XSL transformation.
+ *
+ * The written file is still the reference, if the document is no longer held
+ * the file is read instead. The documents are soft referenced so they can be
+ * reclaimed when memory is low.
+ */
+public final class CacheDocument {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheDocument.class);
+    private static final int MAX_ENTRIES = PropertiesUtil.getIntProperty("mjb.xml.documentCacheSize", 100);
+    private static final Map<String, SoftReference<Document>> DOCUMENTS = new LinkedHashMap<String, SoftReference<Document>>(16, 0.75F, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SoftReference<Document>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private static volatile boolean enabled = Boolean.FALSE;
+
+    private CacheDocument() {
+        throw new UnsupportedOperationException("Class cannot be instantiated");
+    }
+
+    /**
+     * Enable or disable the hand-off. It should only be enabled when the HTML
+     * is going to be generated, otherwise the documents are never consumed.
+     *
+     * @param enable
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable && MAX_ENTRIES > 0;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    /**
+     * Add the document that was written to the file.
+     *
+     * The document must not be changed after it has been added.
+     *
+     * @param xmlFile
+     * @param doc
+     */
+    public static void put(File xmlFile, Document doc) {
+        if (enabled && doc != null) {
+            synchronized (DOCUMENTS) {
+                DOCUMENTS.put(getKey(xmlFile), new SoftReference<>(doc));
+            }
+        }
+    }
+
+    /**
+     * Get the source to transform for the file.
+     *
+     * Returns the document if it is still held, otherwise the file is read
+     *
+     * @param xmlFile
+     * @return
+     */
+    public static Source getSource(File xmlFile) {
+        Document doc = null;
+        if (enabled) {
+            synchronized (DOCUMENTS) {
+                SoftReference<Document> ref = DOCUMENTS.get(getKey(xmlFile));
+                if (ref != null) {
+                    doc = ref.get();
+                }
+            }
+        }
+
+        if (doc == null) {
+            return new StreamSource(xmlFile);
+        }
+
+        LOG.trace("Cache (Document): Using document for {}", xmlFile.getName());
+        // Keep the system ID so relative references in the XSL still resolve
+        return new DOMSource(doc, xmlFile.toURI().toString());
+    }
+
+    /**
+     * Remove the document for the file once it is no longer needed
+     *
+     * @param xmlFile
+     */
+    public static void remove(File xmlFile) {
+        if (enabled) {
+            synchronized (DOCUMENTS) {
+                DOCUMENTS.remove(getKey(xmlFile));
+            }
+        }
+    }
+
+    /**
+     * Clear the cache
+     */
+    public static void clear() {
+        synchronized (DOCUMENTS) {
+            DOCUMENTS.clear();
+        }
+    }
+
+    private static String getKey(File xmlFile) {
+        String path = FilenameUtils.normalize(xmlFile.getAbsolutePath());
+        return path == null ? xmlFile.getAbsolutePath() : path;
+    }
+}
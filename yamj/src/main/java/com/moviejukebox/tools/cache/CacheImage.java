@@ -0,0 +1,146 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.tools.cache;
+
+import com.moviejukebox.tools.GraphicTools;
+import com.moviejukebox.tools.SkinProperties;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of the decoded skin images (overlays, logos, flags, etc)
+ *
+ * The images are shared between threads, so they must only be drawn from and
+ * never drawn on. The cache is cleared when the skin changes.
+ */
+public final class CacheImage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheImage.class);
+    private static final ConcurrentMap<String, BufferedImage> IMAGES = new ConcurrentHashMap<>();
+    private static volatile String skinKey = null;
+
+    private CacheImage() {
+        throw new UnsupportedOperationException("Class cannot be instantiated");
+    }
+
+    /**
+     * Get the decoded image for the file
+     *
+     * @param filename
+     * @return
+     * @throws IOException
+     */
+    public static BufferedImage getImage(String filename) throws IOException {
+        checkSkin();
+
+        BufferedImage image = IMAGES.get(filename);
+        if (image == null) {
+            image = GraphicTools.loadJPEGImage(filename);
+            if (image == null) {
+                throw new IOException("Unable to decode image file '" + filename + "'");
+            }
+            LOG.trace("Cache (Image): Loaded {}", filename);
+            BufferedImage existing = IMAGES.putIfAbsent(filename, image);
+            if (existing != null) {
+                image = existing;
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Get the decoded image for the file
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static BufferedImage getImage(File file) throws IOException {
+        return getImage(file.getPath());
+    }
+
+    /**
+     * Get the decoded image for the file scaled to the width and height
+     *
+     * @param filename
+     * @param width
+     * @param height
+     * @return
+     * @throws IOException
+     */
+    public static BufferedImage getImage(String filename, int width, int height) throws IOException {
+        BufferedImage image = getImage(filename);
+        if (width <= 0 || height <= 0 || (image.getWidth() == width && image.getHeight() == height)) {
+            return image;
+        }
+
+        String key = filename + "#" + width + "x" + height;
+        BufferedImage scaled = IMAGES.get(key);
+        if (scaled == null) {
+            // Scale the same way as drawing the image with a size would do
+            scaled = GraphicTools.createBlankImage(width, height);
+            Graphics2D g2d = scaled.createGraphics();
+            g2d.drawImage(image, 0, 0, width, height, null);
+            g2d.dispose();
+
+            BufferedImage existing = IMAGES.putIfAbsent(key, scaled);
+            if (existing != null) {
+                scaled = existing;
+            }
+        }
+        return scaled;
+    }
+
+    /**
+     * Clear the cache if the skin has changed since the images were loaded
+     */
+    private static void checkSkin() {
+        String currentSkin = SkinProperties.getSkinHome() + "#" + SkinProperties.getFileDate();
+        if (currentSkin.equals(skinKey)) {
+            return;
+        }
+
+        synchronized (IMAGES) {
+            if (!currentSkin.equals(skinKey)) {
+                if (skinKey != null) {
+                    LOG.debug("Cache (Image): Skin changed, clearing {} images", IMAGES.size());
+                }
+                IMAGES.clear();
+                skinKey = currentSkin;
+            }
+        }
+    }
+
+    /**
+     * Clear the cache
+     */
+    public static void clear() {
+        IMAGES.clear();
+    }
+}
@@ -25,34 +25,75 @@ package com.moviejukebox.tools.cache;
 import com.moviejukebox.tools.PropertiesUtil;
 import com.moviejukebox.tools.StringTools;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Utility class to provide a caching mechanism for data across threads
- * Initially this will be stored in memory, but ideally should be cached to a
- * database Many sites provide a "last modified" date/time attribute, so we
- * should consider also caching that in the database
+ *
+ * The memory tier is a bounded LRU cache with an optional time to live. It is
+ * backed by an optional disk tier (see CacheDisk) so objects can survive
+ * between runs. Many sites provide a "last modified" date/time attribute, so
+ * we should consider also caching that
  *
  * @author Stuart.Boston
  *
  */
 public final class CacheMemory {
 
-    private static final Map<String, Object> CACHE = new ConcurrentHashMap<>();
     private static final Logger LOG = LoggerFactory.getLogger(CacheMemory.class);
+    private static final int MIN_ENTRIES = 10;
+    private static final long TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(PropertiesUtil.getIntProperty("mjb.cache.ttl", 0));
+    private static volatile int maxEntries = Math.max(MIN_ENTRIES, PropertiesUtil.getIntProperty("mjb.cache.maxEntries", 2000));
+    // Access ordered, so the eldest entry is the least recently used
+    private static final Map<String, CacheEntry> CACHE = new LinkedHashMap<String, CacheEntry>(16, 0.75F, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            if (size() > maxEntries) {
+                EVICTIONS.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+    private static final AtomicLong HITS = new AtomicLong(0);
+    private static final AtomicLong DISK_HITS = new AtomicLong(0);
+    private static final AtomicLong MISSES = new AtomicLong(0);
+    private static final AtomicLong EVICTIONS = new AtomicLong(0);
     private static boolean cacheEnabled = initCacheState();
 
     private CacheMemory() {
         throw new UnsupportedOperationException("Class cannot be instantiated");
     }
 
+    /*
+     * Cached value with the time it was added
+     */
+    private static final class CacheEntry {
+
+        private final Object value;
+        private final long created;
+
+        private CacheEntry(Object value) {
+            this.value = value;
+            this.created = System.currentTimeMillis();
+        }
+
+        private boolean isExpired() {
+            return TIME_TO_LIVE > 0 && (System.currentTimeMillis() - created) > TIME_TO_LIVE;
+        }
+    }
+
     /**
      * Add an item to the cache. If the item currently exists in the cache it
-     * will be removed before being added.
+     * will be replaced.
      *
      * @param key
      * @param value
@@ -62,18 +103,25 @@ public final class CacheMemory {
             return;
         }
 
-        if (CACHE.containsKey(key)) {
-            LOG.debug("Cache (Add): Already contains object ({}) with key '{}' overwriting...", value.getClass().getSimpleName(), key);
-            CACHE.remove(key);
-        } else {
+        CacheEntry previous;
+        synchronized (CACHE) {
+            previous = CACHE.put(key, new CacheEntry(value));
+        }
+
+        if (previous == null) {
             LOG.debug("Cache (Add): Adding object ({}) for key '{}'", value.getClass().getSimpleName(), key);
+        } else {
+            LOG.debug("Cache (Add): Already contains object ({}) with key '{}' overwriting...", value.getClass().getSimpleName(), key);
         }
-        CACHE.put(key, value);
+
+        CacheDisk.write(key, value);
     }
 
     /**
      * Get an item from the cache
      *
+     * The memory tier is checked first, then the disk tier
+     *
      * @param key
      * @return
      */
@@ -82,19 +130,35 @@ public final class CacheMemory {
             return null;
         }
 
-        if (CACHE.containsKey(key)) {
-            Object value = CACHE.get(key);
-            if (value == null) {
-                LOG.debug("Cache (Get): No object found for {}", key);
-            } else {
-                LOG.debug("Cache (Get): Got object ({}) for {}", value.getClass().getSimpleName(), key);
-                return value;
+        CacheEntry entry;
+        synchronized (CACHE) {
+            entry = CACHE.get(key);
+            if (entry != null && entry.isExpired()) {
+                CACHE.remove(key);
+                EVICTIONS.incrementAndGet();
+                entry = null;
             }
-        } else {
+        }
+
+        if (entry != null) {
+            HITS.incrementAndGet();
+            LOG.debug("Cache (Get): Got object ({}) for {}", entry.value.getClass().getSimpleName(), key);
+            return entry.value;
+        }
+
+        Object value = CacheDisk.read(key);
+        if (value == null) {
+            MISSES.incrementAndGet();
             LOG.debug("Cache (Get): No object found for {}", key);
+            return null;
         }
 
-        return null;
+        DISK_HITS.incrementAndGet();
+        LOG.debug("Cache (Get): Got object ({}) from disk for {}", value.getClass().getSimpleName(), key);
+        synchronized (CACHE) {
+            CACHE.put(key, new CacheEntry(value));
+        }
+        return value;
     }
 
     /**
@@ -107,9 +171,10 @@ public final class CacheMemory {
             return;
         }
 
-        if (CACHE.containsKey(key)) {
+        synchronized (CACHE) {
             CACHE.remove(key);
         }
+        CacheDisk.remove(key);
     }
 
     public static String generateCacheKey(String stringOne, String stringTwo) {
@@ -177,22 +242,49 @@ public final class CacheMemory {
     }
 
     /**
-     * Called when running low on memory, clear the cache and turn off the
-     * caching routine Also print out a message to warn the user
+     * Called when running low on memory, evict the memory tier and halve its
+     * size. Objects are still available from the disk tier if it is used.
      */
     public static void purgeCache() {
         if (cacheEnabled) {
-            LOG.debug("Cache: Disabling cache due to low memory.");
-            setCacheState(false);
+            maxEntries = Math.max(MIN_ENTRIES, maxEntries / 2);
+            LOG.debug("Cache: Evicting cache due to low memory, maximum size is now {}", maxEntries);
             clear();
         }
     }
 
     /**
-     * Clear the cache
+     * Clear the memory tier of the cache
      */
     public static void clear() {
         LOG.debug("Cache: Clearing cache");
-        CACHE.clear();
+        synchronized (CACHE) {
+            EVICTIONS.addAndGet(CACHE.size());
+            CACHE.clear();
+        }
+    }
+
+    public static long getHitCount() {
+        return HITS.get();
+    }
+
+    public static long getDiskHitCount() {
+        return DISK_HITS.get();
+    }
+
+    public static long getMissCount() {
+        return MISSES.get();
+    }
+
+    public static long getEvictionCount() {
+        return EVICTIONS.get();
+    }
+
+    /**
+     * Output the cache counters to the log
+     */
+    public static void logStatistics() {
+        LOG.debug("Cache: {} hits, {} disk hits, {} misses, {} evictions",
+                HITS.get(), DISK_HITS.get(), MISSES.get(), EVICTIONS.get());
     }
 }
@@ -22,28 +22,56 @@
  */
 package com.moviejukebox.tools.downloader;
 
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.moviejukebox.tools.PropertiesUtil;
 import com.moviejukebox.tools.WebBrowser;
-import com.moviejukebox.tools.YamjHttpClientBuilder;
 
 /**
  * This is the downloader class.
  *
  * It will display the download progress of the file being processed.
  *
+ * The file is downloaded to a ".part" file first, which is renamed when the download is complete. An interrupted download is
+ * resumed with a HTTP range request. Large files can be downloaded in several segments at the same time, the progress of the
+ * segments is kept in a ".ranges" file.
+ *
+ * The ETag or Last-Modified of the remote file is kept in a ".validator" file and sent as If-Range when the download is resumed,
+ * so a server with a changed file sends the whole file again instead of the rest of it.
+ *
  * Taken from http://stackoverflow.com/a/11068356/443283
  *
  * @author stuart.boston
@@ -53,9 +81,27 @@ public final class Downloader implements RBCWrapperDelegate {
     private static final Logger LOG = LoggerFactory.getLogger(Downloader.class);
     private static final String FORMAT_PERCENTAGE = "\rDownload progress %,d Kb received, %.02f%%";
     private static final String FORMAT_NOPER = "\rDownload progress %,d Kb received";
+    private static final String PART_EXTENSION = ".part";
+    private static final String RANGES_EXTENSION = ".ranges";
+    private static final String VALIDATOR_EXTENSION = ".validator";
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    // Content-Range: bytes 100-199/1000 or bytes */1000
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(?:(\\d+)-(\\d+)|\\*)/(\\d+|\\*)");
+    private static final int BUFFER_SIZE = 65536;
+    // Save the progress of the segments after this number of bytes
+    private static final long SAVE_INTERVAL = 4L * 1024 * 1024;
+    private static final int SEGMENTS = PropertiesUtil.getIntProperty("trailers.download.segments", 1);
+    private static final long SEGMENT_MIN_SIZE = PropertiesUtil.getLongProperty("trailers.download.segmentMinSize", 32L) * 1024 * 1024;
     private boolean showProgress = Boolean.TRUE;
     private boolean downloadOk;
     private long downloadTime;
+    private long expectedSize = -1L;
+    private final AtomicLong received = new AtomicLong();
+    // The ETag or Last-Modified sent with the range requests
+    private String validator = null;
+    // Set when a range request is answered with the whole file
+    private volatile boolean remoteChanged = Boolean.FALSE;
+    private final boolean appleUrl;
     public static final String USER_AGENT_APPLE = "QuickTime/7.6.2";
     public static final String USER_AGENT_NORMAL = "Mozilla/4.0 (compatible)";
 
@@ -63,45 +109,509 @@ public final class Downloader implements RBCWrapperDelegate {
         this.showProgress = showProgress;
         this.downloadOk = Boolean.FALSE;
         this.downloadTime = 0L;
+        this.appleUrl = remoteURL.toLowerCase().contains(".apple.");
         // The time the download started
         long startTime = System.currentTimeMillis();
 
+        File localFile = new File(localPath);
+        File partFile = new File(localPath + PART_EXTENSION);
         try {
-            URL url = new URL(remoteURL);
-            int contentLength = contentLength(url);
+            if (download(new URL(remoteURL), partFile)) {
+                Files.deleteIfExists(localFile.toPath());
+                if (partFile.renameTo(localFile)) {
+                    Files.deleteIfExists(getValidatorFile(partFile).toPath());
+                    downloadOk = Boolean.TRUE;
+                } else {
+                    LOG.warn("Failed to rename {} to {}", partFile.getName(), localFile.getName());
+                }
+            }
+        } catch (MalformedURLException ex) {
+            LOG.debug("Failed to transform URL: {}", ex.getMessage());
+        } catch (IOException ex) {
+            LOG.debug("Output error: {}", ex.getMessage());
+        }
+
+        if (!downloadOk && partFile.exists()) {
+            LOG.debug("Download of {} is incomplete, it will be resumed next time ({} of {} bytes)", remoteURL, partFile.length(), expectedSize);
+        }
 
-            if (contentLength < 0) {
-                LOG.warn("WARNING: Remote URL is not a file! {}", remoteURL);
-                return;
+        // Calculate the download time.
+        downloadTime = System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Download the file, resuming a previous download if there is one
+     *
+     * @param url
+     * @param partFile
+     * @return true if the file is complete
+     * @throws IOException
+     */
+    private boolean download(URL url, File partFile) throws IOException {
+        File rangesFile = new File(partFile.getPath() + RANGES_EXTENSION);
+        File validatorFile = getValidatorFile(partFile);
+        validator = readValidator(validatorFile);
+        if (rangesFile.exists()) {
+            List<long[]> segments = readSegments(rangesFile);
+            if (segments != null && partFile.exists() && validator != null) {
+                LOG.debug("Resuming segmented download of {}", url);
+                expectedSize = segments.get(segments.size() - 1)[1];
+                boolean complete = downloadSegments(url, partFile, rangesFile, segments, null);
+                if (complete || !remoteChanged) {
+                    return complete;
+                }
+                LOG.debug("Remote file {} has changed, starting again", url);
+                remoteChanged = Boolean.FALSE;
             }
+            // The progress can't be used, start again
+            Files.deleteIfExists(rangesFile.toPath());
+            Files.deleteIfExists(partFile.toPath());
+        }
 
-            WebBrowser wb = new WebBrowser();
-            HttpURLConnection connection = (HttpURLConnection) wb.openProxiedConnection(url);
+        if (partFile.exists() && validator == null) {
+            // Without a validator there is no way to know that the rest of the file belongs to this part
+            LOG.debug("Partial download of {} can't be checked, starting again", url);
+            Files.deleteIfExists(partFile.toPath());
+        }
 
-            if (remoteURL.toLowerCase().contains(".apple.")) {
-                LOG.debug("Using Apple user agent - '{}'", USER_AGENT_APPLE);
-                connection.setRequestProperty("User-Agent", USER_AGENT_APPLE);
+        long offset = partFile.exists() ? partFile.length() : 0L;
+        HttpURLConnection connection = openConnection(url, offset, -1L);
+        try {
+            int status = connection.getResponseCode();
+            if (status == HTTP_RANGE_NOT_SATISFIABLE && offset > 0) {
+                long[] range = getContentRange(connection);
+                if (range != null && range[2] == offset) {
+                    LOG.debug("Download of {} is already complete", url);
+                    expectedSize = offset;
+                    return Boolean.TRUE;
+                }
+
+                // The partial file does not match the remote file
+                LOG.debug("Partial download of {} is not valid, starting again", url);
+                connection.disconnect();
+                Files.deleteIfExists(partFile.toPath());
+                offset = 0L;
+                connection = openConnection(url, offset, -1L);
+                status = connection.getResponseCode();
+            }
+
+            boolean rangeSupported;
+            if (status == HttpURLConnection.HTTP_PARTIAL) {
+                long[] range = getContentRange(connection);
+                if (range == null || range[0] != offset) {
+                    LOG.warn("Unexpected range '{}' for {}", connection.getHeaderField("Content-Range"), url);
+                    return Boolean.FALSE;
+                }
+                expectedSize = range[2];
+                rangeSupported = Boolean.TRUE;
+            } else if (status == HttpURLConnection.HTTP_OK) {
+                if (offset > 0) {
+                    LOG.debug("Remote file has changed or the server does not resume downloads, downloading {} again", url);
+                    offset = 0L;
+                }
+                expectedSize = connection.getContentLengthLong();
+                rangeSupported = "bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"));
             } else {
-                LOG.debug("Using normal user agent - '{}'", USER_AGENT_NORMAL);
-                connection.setRequestProperty("User-Agent", USER_AGENT_NORMAL);
+                LOG.warn("Failed to download {}, HTTP status {}", url, status);
+                return Boolean.FALSE;
             }
 
-            try (ReadableByteChannel rbc = new RBCWrapper(Channels.newChannel(connection.getInputStream()), contentLength, this);
-                 FileOutputStream fos = new FileOutputStream(localPath))
-            {
-                fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
-                fos.flush();
+            String contentType = connection.getContentType();
+            if (contentType != null && contentType.toLowerCase().startsWith("text/html")) {
+                LOG.warn("WARNING: Remote URL is not a file! {}", url);
+                return Boolean.FALSE;
             }
-        } catch (MalformedURLException ex) {
-            LOG.debug("Failed to transform URL: {}", ex.getMessage());
+
+            if (offset == 0) {
+                saveValidator(validatorFile, connection);
+            }
+
+            if (SEGMENTS > 1 && rangeSupported && expectedSize > 0 && (expectedSize - offset) >= SEGMENT_MIN_SIZE) {
+                // The open connection is used for the first segment
+                List<long[]> segments = splitSegments(offset, expectedSize);
+                if (!downloadSegments(url, partFile, rangesFile, segments, connection)) {
+                    return Boolean.FALSE;
+                }
+                return status != HttpURLConnection.HTTP_OK || checkMd5(url, partFile, connection.getHeaderField("Content-MD5"));
+            }
+
+            return downloadSingle(url, partFile, connection, offset);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Download the rest of the file with the open connection
+     */
+    private boolean downloadSingle(URL url, File partFile, HttpURLConnection connection, long offset) throws IOException {
+        // A checksum of the whole file can only be checked if the whole file is downloaded
+        MessageDigest digest = null;
+        String contentMd5 = connection.getHeaderField("Content-MD5");
+        if (offset == 0 && StringUtils.isNotBlank(contentMd5)) {
+            digest = getMd5Digest();
+        }
+
+        received.set(offset);
+        try (RandomAccessFile file = new RandomAccessFile(partFile, "rw");
+                InputStream in = connection.getInputStream()) {
+            file.setLength(offset);
+            long length = expectedSize < 0 ? -1L : expectedSize - offset;
+            copy(in, length, file.getChannel(), offset, digest, null);
+        }
+
+        if (expectedSize >= 0 && partFile.length() != expectedSize) {
+            LOG.warn("Download of {} is incomplete, {} of {} bytes", url, partFile.length(), expectedSize);
+            return Boolean.FALSE;
+        }
+
+        if (digest != null && !Arrays.equals(digest.digest(), Base64.decodeBase64(contentMd5.trim()))) {
+            LOG.warn("Checksum of {} does not match, the download is removed", url);
+            Files.deleteIfExists(partFile.toPath());
+            return Boolean.FALSE;
+        }
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Check the downloaded file against the Content-MD5 of the server, if there is one
+     *
+     * @param url
+     * @param partFile
+     * @param contentMd5
+     * @return false if the checksum does not match
+     * @throws IOException
+     */
+    private static boolean checkMd5(URL url, File partFile, String contentMd5) throws IOException {
+        MessageDigest digest = StringUtils.isBlank(contentMd5) ? null : getMd5Digest();
+        if (digest == null) {
+            return Boolean.TRUE;
+        }
+
+        try (InputStream in = Files.newInputStream(partFile.toPath())) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, count);
+            }
+        }
+
+        if (!Arrays.equals(digest.digest(), Base64.decodeBase64(contentMd5.trim()))) {
+            LOG.warn("Checksum of {} does not match, the download is removed", url);
+            Files.deleteIfExists(partFile.toPath());
+            return Boolean.FALSE;
+        }
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Download the segments of the file at the same time
+     *
+     * @param url
+     * @param partFile
+     * @param rangesFile the file to save the progress of the segments
+     * @param segments start, end and current position of each segment
+     * @param connection an open connection for the first segment or null
+     * @return true if the file is complete
+     * @throws IOException
+     */
+    private boolean downloadSegments(final URL url, File partFile, final File rangesFile, final List<long[]> segments,
+            final HttpURLConnection connection) throws IOException {
+        LOG.debug("Downloading {} in {} segments", url, segments.size());
+        long done = 0;
+        for (long[] segment : segments) {
+            done += segment[2] - segment[0];
+        }
+        received.set(done);
+        saveSegments(rangesFile, segments);
+
+        boolean complete = Boolean.TRUE;
+        ExecutorService pool = Executors.newFixedThreadPool(segments.size());
+        try (RandomAccessFile file = new RandomAccessFile(partFile, "rw")) {
+            if (file.length() < expectedSize) {
+                file.setLength(expectedSize);
+            }
+            final FileChannel channel = file.getChannel();
+
+            List<Future<Boolean>> results = new ArrayList<>();
+            boolean first = Boolean.TRUE;
+            for (final long[] segment : segments) {
+                final HttpURLConnection segmentConnection = first ? connection : null;
+                first = Boolean.FALSE;
+                if (segment[2] >= segment[1]) {
+                    // segment already downloaded
+                    continue;
+                }
+                results.add(pool.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws IOException {
+                        return downloadSegment(url, segmentConnection, channel, segment, rangesFile, segments);
+                    }
+                }));
+            }
+
+            for (Future<Boolean> result : results) {
+                try {
+                    complete &= result.get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    complete = Boolean.FALSE;
+                } catch (ExecutionException ex) {
+                    LOG.debug("Segment download failed: {}", ex.getCause().getMessage());
+                    complete = Boolean.FALSE;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (!complete) {
+            saveSegments(rangesFile, segments);
+            return Boolean.FALSE;
+        }
+
+        Files.deleteIfExists(rangesFile.toPath());
+        if (partFile.length() != expectedSize) {
+            LOG.warn("Download of {} has the wrong size, {} of {} bytes", url, partFile.length(), expectedSize);
+            return Boolean.FALSE;
+        }
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Download one segment of the file
+     */
+    private boolean downloadSegment(URL url, HttpURLConnection openConnection, FileChannel channel, long[] segment,
+            File rangesFile, List<long[]> segments) throws IOException {
+        HttpURLConnection connection = openConnection;
+        if (connection == null || segment[2] != segment[0]) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            connection = openConnection(url, segment[2], segment[1] - 1);
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                LOG.debug("Remote file {} has changed", url);
+                remoteChanged = Boolean.TRUE;
+                connection.disconnect();
+                return Boolean.FALSE;
+            }
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                LOG.debug("Segment of {} not available, HTTP status {}", url, connection.getResponseCode());
+                connection.disconnect();
+                return Boolean.FALSE;
+            }
+            long[] range = getContentRange(connection);
+            if (range == null || range[0] != segment[2]) {
+                LOG.debug("Unexpected range '{}' for {}", connection.getHeaderField("Content-Range"), url);
+                connection.disconnect();
+                return Boolean.FALSE;
+            }
+        }
+
+        try (InputStream in = connection.getInputStream()) {
+            copy(in, segment[1] - segment[2], channel, segment[2], null, new SegmentProgress(segment, rangesFile, segments));
+        } finally {
+            connection.disconnect();
+        }
+        return segment[2] == segment[1];
+    }
+
+    /**
+     * Copy the stream into the file at the position
+     *
+     * @param in
+     * @param length the number of bytes to copy or -1 to copy up to the end of the stream
+     * @param channel
+     * @param position
+     * @param digest optional digest to update
+     * @param progress optional progress of a segment
+     * @throws IOException
+     */
+    private void copy(InputStream in, long length, FileChannel channel, long position, MessageDigest digest,
+            SegmentProgress progress) throws IOException {
+        long remaining = length < 0 ? Long.MAX_VALUE : length;
+        long writePosition = position;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (ReadableByteChannel rbc = new RBCWrapper(Channels.newChannel(in), length, this)) {
+            while (remaining > 0) {
+                buffer.clear();
+                if (remaining < buffer.capacity()) {
+                    buffer.limit((int) remaining);
+                }
+                int count = rbc.read(buffer);
+                if (count < 0) {
+                    break;
+                }
+                received.addAndGet(count);
+                buffer.flip();
+                if (digest != null) {
+                    digest.update(buffer.array(), 0, buffer.limit());
+                }
+                while (buffer.hasRemaining()) {
+                    writePosition += channel.write(buffer, writePosition);
+                }
+                remaining -= count;
+                if (progress != null) {
+                    progress.update(writePosition);
+                }
+            }
+        }
+    }
+
+    private HttpURLConnection openConnection(URL url, long start, long end) throws IOException {
+        WebBrowser wb = new WebBrowser();
+        HttpURLConnection connection = (HttpURLConnection) wb.openProxiedConnection(url);
+
+        if (appleUrl) {
+            LOG.debug("Using Apple user agent - '{}'", USER_AGENT_APPLE);
+            connection.setRequestProperty("User-Agent", USER_AGENT_APPLE);
+        } else {
+            LOG.debug("Using normal user agent - '{}'", USER_AGENT_NORMAL);
+            connection.setRequestProperty("User-Agent", USER_AGENT_NORMAL);
+        }
+
+        if (start > 0 || end >= 0) {
+            connection.setRequestProperty("Range", "bytes=" + start + "-" + (end >= 0 ? Long.toString(end) : ""));
+            if (validator != null) {
+                // The server sends the whole file if it has changed
+                connection.setRequestProperty("If-Range", validator);
+            }
+        }
+        return connection;
+    }
+
+    private static File getValidatorFile(File partFile) {
+        return new File(partFile.getPath() + VALIDATOR_EXTENSION);
+    }
+
+    /**
+     * Read the validator of a previous download
+     *
+     * @param validatorFile
+     * @return the ETag or Last-Modified or null if there is none
+     */
+    private static String readValidator(File validatorFile) {
+        if (!validatorFile.exists()) {
+            return null;
+        }
+        try {
+            String value = new String(Files.readAllBytes(validatorFile.toPath()), StandardCharsets.UTF_8).trim();
+            return value.isEmpty() ? null : value;
         } catch (IOException ex) {
-            LOG.debug("Output error: {}", ex.getMessage());
+            LOG.debug("Failed to read {}: {}", validatorFile.getName(), ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Keep the validator of the response for the range requests.
+     *
+     * A weak ETag can't be used with If-Range, so the Last-Modified date is used instead
+     *
+     * @param validatorFile
+     * @param connection
+     * @throws IOException
+     */
+    private void saveValidator(File validatorFile, HttpURLConnection connection) throws IOException {
+        String etag = connection.getHeaderField("ETag");
+        if (StringUtils.isNotBlank(etag) && !etag.startsWith("W/")) {
+            validator = etag.trim();
+        } else if (StringUtils.isNotBlank(connection.getHeaderField("Last-Modified"))) {
+            validator = connection.getHeaderField("Last-Modified").trim();
+        } else {
+            validator = null;
         }
 
-        downloadOk = Boolean.TRUE;
+        if (validator == null) {
+            Files.deleteIfExists(validatorFile.toPath());
+        } else {
+            Files.write(validatorFile.toPath(), validator.getBytes(StandardCharsets.UTF_8));
+        }
+    }
 
-        // Calculate the download time.
-        downloadTime = System.currentTimeMillis() - startTime;
+    /**
+     * Get the range of the response
+     *
+     * @param connection
+     * @return first byte, last byte and total length; -1 if unknown
+     */
+    private static long[] getContentRange(HttpURLConnection connection) {
+        String contentRange = connection.getHeaderField("Content-Range");
+        if (contentRange == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_RANGE.matcher(contentRange.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        long[] range = new long[]{-1L, -1L, -1L};
+        if (matcher.group(1) != null) {
+            range[0] = Long.parseLong(matcher.group(1));
+            range[1] = Long.parseLong(matcher.group(2));
+        }
+        if (!"*".equals(matcher.group(3))) {
+            range[2] = Long.parseLong(matcher.group(3));
+        }
+        return range;
+    }
+
+    /**
+     * Split the rest of the file into segments of about the same size
+     */
+    private static List<long[]> splitSegments(long offset, long size) {
+        int count = (int) Math.max(1, Math.min(SEGMENTS, (size - offset) / SEGMENT_MIN_SIZE));
+        long segmentSize = (size - offset + count - 1) / count;
+        List<long[]> segments = new ArrayList<>(count);
+        for (long start = offset; start < size; start += segmentSize) {
+            segments.add(new long[]{start, Math.min(size, start + segmentSize), start});
+        }
+        return segments;
+    }
+
+    /**
+     * Read the progress of a segmented download, one "start end position" line per segment
+     *
+     * @param rangesFile
+     * @return the segments or null if the file is not valid
+     */
+    private static List<long[]> readSegments(File rangesFile) {
+        try {
+            List<long[]> segments = new ArrayList<>();
+            for (String line : Files.readAllLines(rangesFile.toPath(), StandardCharsets.UTF_8)) {
+                if (StringUtils.isBlank(line)) {
+                    continue;
+                }
+                String[] values = line.trim().split("\\s+");
+                long[] segment = new long[]{Long.parseLong(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2])};
+                if (segment[0] > segment[2] || segment[2] > segment[1]) {
+                    return null;
+                }
+                segments.add(segment);
+            }
+            return segments.isEmpty() ? null : segments;
+        } catch (IOException | RuntimeException ex) {
+            LOG.debug("Failed to read download progress {}: {}", rangesFile.getName(), ex.getMessage());
+            return null;
+        }
+    }
+
+    private static void saveSegments(File rangesFile, List<long[]> segments) throws IOException {
+        synchronized (segments) {
+            StringBuilder sb = new StringBuilder();
+            for (long[] segment : segments) {
+                sb.append(segment[0]).append(' ').append(segment[1]).append(' ').append(segment[2]).append('\n');
+            }
+            Files.write(rangesFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static MessageDigest getMd5Digest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            LOG.debug("MD5 not available, checksum not checked");
+            return null;
+        }
     }
 
     /**
@@ -117,42 +627,46 @@ public final class Downloader implements RBCWrapperDelegate {
 
     @Override
     public void rbcProgressCallback(RBCWrapper rbc, double progress) {
+        // the progress of the whole file, the channel may only be a segment of it
+        long total = received.get();
         if (showProgress) {
-            if (progress > 0) {
-                System.out.print(String.format(FORMAT_PERCENTAGE, rbc.getKbReadSoFar(), progress));
+            if (expectedSize > 0) {
+                System.out.print(String.format(FORMAT_PERCENTAGE, total / 1024, (double) total / (double) expectedSize * 100.0));
             } else {
-                System.out.print(String.format(FORMAT_NOPER, rbc.getKbReadSoFar()));
+                System.out.print(String.format(FORMAT_NOPER, total / 1024));
             }
         }
     }
 
+    public boolean isDownloadOk() {
+        return downloadOk;
+    }
+
     /**
-     * Get the content length from the header
-     *
-     * @param url
-     * @return
+     * Keep the position of a segment and save the progress from time to time
      */
-    private static int contentLength(URL url) {
-        HttpURLConnection connection = null;
-        int contentLength = -1;
+    private static final class SegmentProgress {
 
-        try {
-            HttpURLConnection.setFollowRedirects(false);
-            connection = (HttpURLConnection) url.openConnection(YamjHttpClientBuilder.getProxy());
-            connection.setRequestMethod("HEAD");
-            contentLength = connection.getContentLength();
-        } catch (IOException ex) {
-            LOG.trace("Failed to get length from header: {}", ex.getMessage());
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
-        }
+        private final long[] segment;
+        private final File rangesFile;
+        private final List<long[]> segments;
+        private long saved;
 
-        return contentLength;
-    }
+        SegmentProgress(long[] segment, File rangesFile, List<long[]> segments) {
+            this.segment = segment;
+            this.rangesFile = rangesFile;
+            this.segments = segments;
+            this.saved = segment[2];
+        }
 
-    public boolean isDownloadOk() {
-        return downloadOk;
+        void update(long position) throws IOException {
+            synchronized (segments) {
+                segment[2] = position;
+            }
+            if (position - saved >= SAVE_INTERVAL) {
+                saved = position;
+                saveSegments(rangesFile, segments);
+            }
+        }
     }
 }
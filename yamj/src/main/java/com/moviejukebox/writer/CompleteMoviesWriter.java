@@ -25,6 +25,7 @@ package com.moviejukebox.writer;
 import com.moviejukebox.MovieJukebox;
 import com.moviejukebox.model.Jukebox;
 import com.moviejukebox.model.Library;
+import com.moviejukebox.model.Movie;
 import com.moviejukebox.tools.FileTools;
 import com.moviejukebox.tools.StringTools;
 import com.moviejukebox.tools.SystemTools;
@@ -32,16 +33,29 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
-import javax.xml.transform.Result;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
 /**
+ * Writes the CompleteMovies file and the RSS feed.
+ *
+ * The movies are marshalled one at a time into a stream of SAX events, which is written to CompleteMovies.xml and
+ * transformed by rss.xsl at the same time, so the library is never held as a document and the file is not read back.
  *
  * @author stuart.boston
  */
@@ -51,11 +65,23 @@ public class CompleteMoviesWriter {
     private static final String COMPLETE_MOVIES_XML = "CompleteMovies.xml";
     private static final String RSS_XML_FILENAME = "rss.xml";
     private static final String RSS_XSL_FILENAME = "rss.xsl";
+    // The element names used by MovieJukebox.JukeboxXml
+    private static final String JUKEBOX = "jukebox";
+    private static final QName MOVIES = new QName("movies");
+    // The context is thread safe and expensive to create, so it's only created once
+    private static JAXBContext context = null;
 
     protected CompleteMoviesWriter() {
         throw new UnsupportedOperationException("Class cannot be initialised");
     }
 
+    private static synchronized JAXBContext getContext() throws JAXBException {
+        if (context == null) {
+            context = JAXBContext.newInstance(MovieJukebox.JukeboxXml.class);
+        }
+        return context;
+    }
+
     /**
      * Write the CompleteMovies file to the jukebox
      *
@@ -64,46 +90,89 @@ public class CompleteMoviesWriter {
      * @return
      */
     public static boolean generate(Library library, Jukebox jukebox) {
-        JAXBContext context;
-
-        try {
-            LOG.info("Generating {}", COMPLETE_MOVIES_XML);
-            context = JAXBContext.newInstance(MovieJukebox.JukeboxXml.class);
-        } catch (JAXBException error) {
-            LOG.warn("RSS is not generated (Context creation error).");
-            LOG.warn(SystemTools.getStackTrace(error));
-            return Boolean.FALSE;
-        }
-
-        MovieJukebox.JukeboxXml jukeboxXml = new MovieJukebox.JukeboxXml();
-        jukeboxXml.movies = library.values();
+        return generate(library, jukebox, new File(RSS_XSL_FILENAME));
+    }
 
+    /**
+     * Write the CompleteMovies file to the jukebox, using the given stylesheet for the RSS feed
+     *
+     * @param library
+     * @param jukebox
+     * @param rssXslFile
+     * @return
+     */
+    static boolean generate(Library library, Jukebox jukebox, File rssXslFile) {
         File totalMoviesXmlFile = new File(jukebox.getJukeboxTempLocationDetails(), COMPLETE_MOVIES_XML);
         File rootTotalMoviesFile = FileTools.fileCache.getFile(StringTools.appendToPath(jukebox.getJukeboxRootLocationDetails(), COMPLETE_MOVIES_XML));
+        File rssXmlFile = new File(jukebox.getJukeboxTempLocationDetails(), RSS_XML_FILENAME);
+        boolean generated = Boolean.TRUE;
 
         if (library.isDirty() || !rootTotalMoviesFile.exists()) {
-            try (OutputStream marStream = FileTools.createFileOutputStream(totalMoviesXmlFile)) {
-                context.createMarshaller().marshal(jukeboxXml, marStream);
-                marStream.flush();
+            LOG.info("Generating {}", COMPLETE_MOVIES_XML);
+
+            Marshaller marshaller;
+            TransformerHandler xmlHandler;
+            try {
+                marshaller = getContext().createMarshaller();
+                // Each movie is marshalled on its own, inside the jukebox element written here
+                marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+
+                TransformerFactory factory = TransformerFactory.newInstance();
+                if (!factory.getFeature(SAXTransformerFactory.FEATURE)) {
+                    throw new TransformerConfigurationException("The transformer factory does not support SAX input");
+                }
+                xmlHandler = ((SAXTransformerFactory) factory).newTransformerHandler();
+                xmlHandler.getTransformer().setOutputProperty(OutputKeys.STANDALONE, "yes");
+            } catch (JAXBException | TransformerConfigurationException error) {
+                LOG.warn("RSS is not generated (Context creation error).");
+                LOG.warn(SystemTools.getStackTrace(error));
+                return Boolean.FALSE;
+            }
+
+            TransformerHandler rssHandler;
+            try {
+                rssHandler = MovieJukeboxHTMLWriter.getTransformerHandler(rssXslFile, jukebox.getJukeboxRootLocationDetails());
+            } catch (TransformerConfigurationException ex) {
+                // Still write the CompleteMovies file
+                LOG.warn("RSS is not generated (Transformer error): {}", ex.getMessage());
+                LOG.warn(SystemTools.getStackTrace(ex));
+                rssHandler = null;
+                generated = Boolean.FALSE;
+            }
+
+            try (OutputStream xmlStream = FileTools.createFileOutputStream(totalMoviesXmlFile);
+                    OutputStream rssStream = (rssHandler == null ? null : FileTools.createFileOutputStream(rssXmlFile))) {
+                xmlHandler.setResult(new StreamResult(xmlStream));
+                if (rssHandler != null) {
+                    rssHandler.setResult(new StreamResult(rssStream));
+                }
+                TeeContentHandler handler = new TeeContentHandler(xmlHandler, rssHandler);
+
+                handler.startDocument();
+                handler.startElement("", JUKEBOX, JUKEBOX, new AttributesImpl());
+                for (Movie movie : library.values()) {
+                    marshaller.marshal(new JAXBElement<>(MOVIES, Movie.class, movie), handler);
+                }
+                handler.endElement("", JUKEBOX, JUKEBOX);
+                handler.endDocument();
+
+                if (handler.getSecondError() != null) {
+                    LOG.warn("RSS is not generated (Transformer error): {}", handler.getSecondError().getMessage());
+                    LOG.warn(SystemTools.getStackTrace(handler.getSecondError()));
+                    generated = Boolean.FALSE;
+                } else if (rssHandler != null) {
+                    LOG.debug("RSS has been generated.");
+                }
             } catch (JAXBException ex) {
                 LOG.warn("RSS is not generated (JAXB error): {}", ex.getMessage());
                 LOG.warn(SystemTools.getStackTrace(ex));
                 return Boolean.FALSE;
-            } catch (IOException ex) {
+            } catch (SAXException ex) {
                 LOG.warn("RSS is not generated (Jukebox error): {}", ex.getMessage());
                 LOG.warn(SystemTools.getStackTrace(ex));
                 return Boolean.FALSE;
-            }
-
-            try {
-                Transformer transformer = MovieJukeboxHTMLWriter.getTransformer(new File(RSS_XSL_FILENAME), jukebox.getJukeboxRootLocationDetails());
-
-                Result xmlResult = new StreamResult(new File(jukebox.getJukeboxTempLocationDetails(), RSS_XML_FILENAME));
-                transformer.transform(new StreamSource(totalMoviesXmlFile), xmlResult);
-
-                LOG.debug("RSS has been generated.");
-            } catch (TransformerException ex) {
-                LOG.warn("RSS is not generated (Transformer error): {}", ex.getMessage());
+            } catch (IOException ex) {
+                LOG.warn("RSS is not generated (Jukebox error): {}", ex.getMessage());
                 LOG.warn(SystemTools.getStackTrace(ex));
                 return Boolean.FALSE;
             }
@@ -112,6 +181,165 @@ public class CompleteMoviesWriter {
         // These should be added to the list of jukebox files regardless of the state of the library
         FileTools.addJukeboxFile(COMPLETE_MOVIES_XML);
         FileTools.addJukeboxFile(RSS_XML_FILENAME);
-        return Boolean.TRUE;
+        return generated;
+    }
+
+    /**
+     * Passes the SAX events on to two handlers.
+     *
+     * An error from the second handler only stops the events to that handler, so the first output is still complete.
+     */
+    static final class TeeContentHandler implements ContentHandler {
+
+        private final ContentHandler first;
+        private ContentHandler second;
+        private SAXException secondError = null;
+
+        TeeContentHandler(ContentHandler first, ContentHandler second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        /**
+         * Get the error that stopped the second handler, or null if there was none
+         *
+         * @return
+         */
+        public SAXException getSecondError() {
+            return secondError;
+        }
+
+        private void secondFailed(SAXException error) {
+            secondError = error;
+            second = null;
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            first.setDocumentLocator(locator);
+            if (second != null) {
+                second.setDocumentLocator(locator);
+            }
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            first.startDocument();
+            if (second != null) {
+                try {
+                    second.startDocument();
+                } catch (SAXException error) {
+                    secondFailed(error);
+                }
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            first.endDocument();
+            if (second != null) {
+                try {
+                    second.endDocument();
+                } catch (SAXException error) {
+                    secondFailed(error);
+                }
+            }
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            first.startPrefixMapping(prefix, uri);
+            if (second != null) {
+                try {
+                    second.startPrefixMapping(prefix, uri);
+                } catch (SAXException error) {
+                    secondFailed(error);
+                }
+            }
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            first.endPrefixMapping(prefix);
+            if (second != null) {
+                try {
+                    second.endPrefixMapping(prefix);
+                } catch (SAXException error) {
+                    secondFailed(error);
+                }
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            first.startElement(uri, localName, qName, atts);
+            if (second != null) {
+                try {
+                    second.startElement(uri, localName, qName, atts);
+                } catch (SAXException error) {
+                    secondFailed(error);
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            first.endElement(uri, localName, qName);
+            if (second != null) {
+                try {
+                    second.endElement(uri, localName, qName);
+                } catch (SAXException error) {
+                    secondFailed(error);
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            first.characters(ch, start, length);
+            if (second != null) {
+                try {
+                    second.characters(ch, start, length);
+                } catch (SAXException error) {
+                    secondFailed(error);
+                }
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            first.ignorableWhitespace(ch, start, length);
+            if (second != null) {
+                try {
+                    second.ignorableWhitespace(ch, start, length);
+                } catch (SAXException error) {
+                    secondFailed(error);
+                }
+            }
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            first.processingInstruction(target, data);
+            if (second != null) {
+                try {
+                    second.processingInstruction(target, data);
+                } catch (SAXException error) {
+                    secondFailed(error);
+                }
+            }
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException {
+            first.skippedEntity(name);
+            if (second != null) {
+                try {
+                    second.skippedEntity(name);
+                } catch (SAXException error) {
+                    secondFailed(error);
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,77 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.writer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Builds the elements in a DOM document
+ */
+final class DomXmlOutput extends XmlOutput {
+
+    private final Document doc;
+    private final Deque<Element> elements = new ArrayDeque<>();
+    private Element root = null;
+
+    DomXmlOutput(Document doc) {
+        this.doc = doc;
+    }
+
+    @Override
+    public void startElement(String elementName) {
+        Element element = doc.createElement(elementName);
+        if (elements.isEmpty()) {
+            root = element;
+        } else {
+            elements.peek().appendChild(element);
+        }
+        elements.push(element);
+    }
+
+    @Override
+    public void setAttribute(String attribName, String attribValue) {
+        elements.peek().setAttribute(attribName, attribValue);
+    }
+
+    @Override
+    public void appendText(String text) {
+        elements.peek().appendChild(doc.createTextNode(text));
+    }
+
+    @Override
+    public void endElement() {
+        elements.pop();
+    }
+
+    /**
+     * Get the first element that was started
+     *
+     * @return
+     */
+    public Element getElement() {
+        return root;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.writer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Fingerprint of an index page, so that pages that show the same content as the last run are not written again.
+ *
+ * The fingerprint is taken over everything the page document contains, apart from the generation date, and is stored
+ * on the root element of the page.
+ */
+final class IndexFingerprint {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexFingerprint.class);
+    public static final String ATTRIBUTE = "fingerprint";
+    // Changes on every run, so it's left out of the fingerprint
+    private static final String GENERATION_DATE = "xmlGenerationDate";
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+    // Separators between the parts of the document, so different documents can't give the same byte stream
+    private static final byte START = 1;
+    private static final byte ATTRIB = 2;
+    private static final byte TEXT = 3;
+    private static final byte END = 4;
+
+    private IndexFingerprint() {
+        throw new UnsupportedOperationException("Class cannot be instantiated");
+    }
+
+    /**
+     * Calculate the fingerprint of the page document
+     *
+     * @param doc
+     * @return the fingerprint, or null if it can't be calculated
+     */
+    public static String calculate(Document doc) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            LOG.debug("MD5 not available, index pages will always be written");
+            return null;
+        }
+
+        update(digest, doc.getDocumentElement());
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, Node node) {
+        if (node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE) {
+            digest.update(TEXT);
+            update(digest, node.getNodeValue());
+            return;
+        }
+
+        if (node.getNodeType() != Node.ELEMENT_NODE || GENERATION_DATE.equals(node.getNodeName())) {
+            return;
+        }
+
+        digest.update(START);
+        update(digest, node.getNodeName());
+
+        NamedNodeMap attributes = node.getAttributes();
+        for (int looper = 0; looper < attributes.getLength(); looper++) {
+            Node attribute = attributes.item(looper);
+            digest.update(ATTRIB);
+            update(digest, attribute.getNodeName());
+            digest.update(ATTRIB);
+            update(digest, attribute.getNodeValue());
+        }
+
+        NodeList children = node.getChildNodes();
+        for (int looper = 0; looper < children.getLength(); looper++) {
+            update(digest, children.item(looper));
+        }
+        digest.update(END);
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Read the fingerprint stored in an existing page.
+     *
+     * Only the root element is read.
+     *
+     * @param xmlFile
+     * @return the fingerprint, or null if the page doesn't have one
+     */
+    public static String read(File xmlFile) {
+        XMLStreamReader reader = null;
+        try (InputStream in = new FileInputStream(xmlFile)) {
+            reader = INPUT_FACTORY.createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return reader.getAttributeValue(null, ATTRIBUTE);
+                }
+            }
+        } catch (IOException | XMLStreamException ex) {
+            LOG.debug("Unable to read the fingerprint of {}: {}", xmlFile.getName(), ex.getMessage());
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ex) {
+                    LOG.trace("Failed to close reader for {}", xmlFile.getName(), ex);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -25,9 +25,13 @@ package com.moviejukebox.writer;
 import com.moviejukebox.model.*;
 import com.moviejukebox.model.enumerations.DirtyFlag;
 import com.moviejukebox.tools.*;
+import com.moviejukebox.tools.cache.CacheDocument;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import javax.xml.parsers.ParserConfigurationException;
@@ -35,6 +39,8 @@ import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.*;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import org.apache.commons.lang3.StringUtils;
@@ -65,6 +71,17 @@ public class MovieJukeboxHTMLWriter {
     private static final String MYIHOME_IP = PropertiesUtil.getProperty("mjb.myiHome.IP", "");
     private static final boolean GENERATE_MULTIPART_PLAYLIST = PropertiesUtil.getBooleanProperty("mjb.playlist.generateMultiPart", Boolean.TRUE);
     private static final int MAX_RETRY_COUNT = 3;   // The number of times to retry writing a HTML page
+    // Compiled stylesheets, the least recently used are dropped when the cache is full
+    private static final int TEMPLATES_CACHE_SIZE = Math.max(1, PropertiesUtil.getIntProperty("mjb.xsl.cacheSize", 20));
+    private static final Map<String, CachedTemplates> TEMPLATES = new LinkedHashMap<String, CachedTemplates>(16, 0.75F, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedTemplates> eldest) {
+            return size() > TEMPLATES_CACHE_SIZE;
+        }
+    };
+    private static volatile Map<String, String> styleSheetParameters = null;
 
     public MovieJukeboxHTMLWriter() {
 
@@ -116,7 +133,7 @@ public class MovieJukeboxHTMLWriter {
                     // the original source directory
                     if (tempXmlFile.exists()) {
                         // Use the temp file
-                        xmlSource = new StreamSource(tempXmlFile);
+                        xmlSource = CacheDocument.getSource(tempXmlFile);
                     } else {
                         // Use the file in the original directory
                         xmlSource = new StreamSource(oldXmlFile);
@@ -136,6 +153,7 @@ public class MovieJukeboxHTMLWriter {
                     }
                 }
             }
+            CacheDocument.remove(tempXmlFile);
         } catch (Exception error) {
             LOG.error("Failed generating HTML for movie {}", movie.getBaseFilename());
             LOG.error(SystemTools.getStackTrace(error));
@@ -173,7 +191,7 @@ public class MovieJukeboxHTMLWriter {
                 if (!finalHtmlFile.exists() || forceHTMLOverwrite || person.isDirty()) {
                     if (tempXmlFile.exists()) {
                         // Use the temp file
-                        xmlSource = new StreamSource(tempXmlFile);
+                        xmlSource = CacheDocument.getSource(tempXmlFile);
                     } else {
                         // Use the file in the original directory
                         xmlSource = new StreamSource(oldXmlFile);
@@ -196,6 +214,7 @@ public class MovieJukeboxHTMLWriter {
                     }
                 }
             }
+            CacheDocument.remove(tempXmlFile);
         } catch (Exception error) {
             LOG.error("Failed generating HTML for person {}", person.getName());
             LOG.error(SystemTools.getStackTrace(error));
@@ -558,7 +577,7 @@ public class MovieJukeboxHTMLWriter {
 
             if (xmlFile.exists()) {
                 FileTools.addJukeboxFile(xmlFile.getName());
-                xmlSource = new StreamSource(xmlFile);
+                xmlSource = CacheDocument.getSource(xmlFile);
             } else {
                 xmlSource = new StreamSource(oldXmlFile);
             }
@@ -568,6 +587,7 @@ public class MovieJukeboxHTMLWriter {
 
             Transformer transformer = getTransformer(new File(SKIN_HOME, template), jukebox.getJukeboxTempLocation());
             doTransform(transformer, xmlSource, xmlResult, "Playlist generation");
+            CacheDocument.remove(xmlFile);
 
         } catch (Exception error) {
             LOG.error("Failed generating HTML library category index.");
@@ -592,7 +612,13 @@ public class MovieJukeboxHTMLWriter {
                     @Override
                     public Void call() {
                         for (int page = 1; page <= idx.pages; page++) {
-                            writeSingleIndexPage(jukebox, idx, page);
+                            if (idx.canSkipPage(page)) {
+                                // Only the pages that were written need to be transformed
+                                FileTools.addJukeboxFile(idx.baseName + page + EXT_XML);
+                                FileTools.addJukeboxFile(idx.baseName + page + EXT_HTML);
+                            } else {
+                                writeSingleIndexPage(jukebox, idx, page);
+                            }
                         }
                         return null;
                     }
@@ -641,11 +667,12 @@ public class MovieJukeboxHTMLWriter {
                 }
 
                 // Transformer transformer = getTransformer(new File(skinHome, "index.xsl"), rootPath);
-                Source xmlSource = new StreamSource(xmlFile);
+                Source xmlSource = CacheDocument.getSource(xmlFile);
                 Result xmlResult = new StreamResult(htmlFile);
 
                 doTransform(transformer, xmlSource, xmlResult, "Category page");
             }
+            CacheDocument.remove(xmlFile);
         } catch (Exception error) {
             LOG.error("Failed generating HTML library index for Category: {}, Key: {}, Page: {}", idx.categoryName, idx.key, page);
             LOG.error(SystemTools.getStackTrace(error));
@@ -653,45 +680,127 @@ public class MovieJukeboxHTMLWriter {
     }
 
     /**
-     * Creates and caches Transformer, one for every thread/xsl file.
+     * Creates a Transformer for the xsl file.
+     *
+     * The compiled stylesheet (Templates) is cached, but a new Transformer is created for every call. Saxon keeps all the
+     * documents parsed by a transformer in memory, so transformers must not be kept or reused.
      *
      * @param xslFile
      * @param styleSheetTargetRootPath
      * @return
      */
     public static Transformer getTransformer(File xslFile, String styleSheetTargetRootPath) {
-        /*
-         * Removed caching of transformer, as saxon keeps all parsed documents in memory, causing memory leaks.
-         * Creating a new transformer every time doesn't consume too much time and has no impact on performance.
-         * It lets YAMJ save lot of memory.
-         * @author Vincent
-         */
-        Source xslSource = new StreamSource(xslFile);
-
-        // Sometimes the StreamSource doesn't return an object and we get a null pointer exception, so check it and try loading it again
-        for (int looper = 1; looper < 5; looper++) {
-            xslSource = new StreamSource(xslFile);
-            if (xslSource != null) {
-                // looks ok, so quit the loop
-                break;
+        Transformer transformer = null;
+        try {
+            Templates templates = getTemplates(xslFile);
+            transformer = templates.newTransformer();
+            setStyleSheetParameters(transformer, styleSheetTargetRootPath);
+        } catch (TransformerConfigurationException ex) {
+            LOG.error("Failed to get transformer for XSL: " + xslFile.getAbsolutePath());
+            LOG.warn(SystemTools.getStackTrace(ex));
+        }
+        return transformer;
+    }
+
+    /**
+     * Creates a TransformerHandler for the xsl file, so the stylesheet can be applied to SAX events as they are
+     * produced instead of to a file.
+     *
+     * The handler gets the same parameters as getTransformer
+     *
+     * @param xslFile
+     * @param styleSheetTargetRootPath
+     * @return
+     * @throws TransformerConfigurationException
+     */
+    public static TransformerHandler getTransformerHandler(File xslFile, String styleSheetTargetRootPath) throws TransformerConfigurationException {
+        if (!TRANSFORMER.getFeature(SAXTransformerFactory.FEATURE)) {
+            throw new TransformerConfigurationException("The transformer factory does not support SAX input");
+        }
+
+        Templates templates = getTemplates(xslFile);
+        TransformerHandler handler;
+        // The factory is not guaranteed to be thread safe
+        synchronized (TRANSFORMER) {
+            handler = ((SAXTransformerFactory) TRANSFORMER).newTransformerHandler(templates);
+        }
+        setStyleSheetParameters(handler.getTransformer(), styleSheetTargetRootPath);
+        return handler;
+    }
+
+    private static void setStyleSheetParameters(Transformer transformer, String styleSheetTargetRootPath) {
+        transformer.setParameter("homePage", INDEX_HTML_FILE);
+        transformer.setParameter("rootPath", new File(styleSheetTargetRootPath).getAbsolutePath().replace('\\', '/'));
+        for (Entry<String, String> e : getStyleSheetParameters().entrySet()) {
+            transformer.setParameter(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Get the compiled stylesheet for the xsl file, compiling it if it's not in the cache or the file has changed
+     *
+     * @param xslFile
+     * @return
+     * @throws TransformerConfigurationException
+     */
+    private static Templates getTemplates(File xslFile) throws TransformerConfigurationException {
+        String key = xslFile.getAbsolutePath();
+        long lastModified = xslFile.lastModified();
+
+        synchronized (TEMPLATES) {
+            CachedTemplates cached = TEMPLATES.get(key);
+            if (cached != null && cached.lastModified == lastModified) {
+                return cached.templates;
             }
         }
 
-        Transformer transformer = null;
-        try {
-            transformer = TRANSFORMER.newTransformer(xslSource);
-            transformer.setParameter("homePage", INDEX_HTML_FILE);
-            transformer.setParameter("rootPath", new File(styleSheetTargetRootPath).getAbsolutePath().replace('\\', '/'));
+        Templates templates;
+        // The factory is not guaranteed to be thread safe
+        synchronized (TRANSFORMER) {
+            templates = TRANSFORMER.newTemplates(new StreamSource(xslFile));
+        }
+        LOG.debug("Compiled stylesheet {}", xslFile.getName());
+
+        synchronized (TEMPLATES) {
+            TEMPLATES.put(key, new CachedTemplates(templates, lastModified));
+        }
+        return templates;
+    }
+
+    /**
+     * The properties are passed to every stylesheet as parameters.
+     *
+     * They are only read once, when the first transformer is created
+     *
+     * @return
+     */
+    private static Map<String, String> getStyleSheetParameters() {
+        Map<String, String> parameters = styleSheetParameters;
+        if (parameters == null) {
+            parameters = new LinkedHashMap<>();
             for (Entry<Object, Object> e : PropertiesUtil.getEntrySet()) {
                 if (e.getKey() != null && e.getValue() != null) {
-                    transformer.setParameter(e.getKey().toString(), e.getValue().toString());
+                    parameters.put(e.getKey().toString(), e.getValue().toString());
                 }
             }
-        } catch (TransformerConfigurationException ex) {
-            LOG.error("Failed to get transformer for XSL: " + xslFile.getAbsolutePath());
-            LOG.warn(SystemTools.getStackTrace(ex));
+            parameters = Collections.unmodifiableMap(parameters);
+            styleSheetParameters = parameters;
+        }
+        return parameters;
+    }
+
+    /**
+     * Compiled stylesheet with the modification date of the xsl file
+     */
+    private static final class CachedTemplates {
+
+        private final Templates templates;
+        private final long lastModified;
+
+        private CachedTemplates(Templates templates, long lastModified) {
+            this.templates = templates;
+            this.lastModified = lastModified;
         }
-        return transformer;
     }
 
     /**
@@ -33,8 +33,10 @@ import com.moviejukebox.model.comparator.SortIgnorePrefixesComparator;
 import com.moviejukebox.model.enumerations.*;
 import com.moviejukebox.plugin.ImdbPlugin;
 import com.moviejukebox.tools.*;
+import com.moviejukebox.tools.cache.CacheDocument;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
@@ -44,7 +46,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.pojava.datetime.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -119,7 +120,6 @@ public class MovieJukeboxXMLWriter {
     private static final List<String> INDEXES_FOR_CATEGORIES_XML = Arrays.asList("Other,Genres,Title,Year,Library,Set".split(","));
     private final boolean setsExcludeTV;
     private static final String PEOPLE_FOLDER = initPeopleFolder();
-    private static final boolean ENABLE_WATCH_SCANNER = PropertiesUtil.getBooleanProperty("watched.scanner.enable", Boolean.TRUE);
     // Should we scrape people information
     private static final boolean ENABLE_PEOPLE = PropertiesUtil.getBooleanProperty("mjb.people", Boolean.FALSE);
     private static final boolean ADD_PEOPLE_INFO = PropertiesUtil.getBooleanProperty("mjb.people.addInfo", Boolean.FALSE);
@@ -131,10 +131,6 @@ public class MovieJukeboxXMLWriter {
     private static final boolean ENABLE_TRIVIA = PropertiesUtil.getBooleanProperty("mjb.scrapeTrivia", Boolean.FALSE);
     // Retrieve the title sort type
     private static final TitleSortType TITLE_SORT_TYPE = TitleSortType.fromString(PropertiesUtil.getProperty("mjb.sortTitle", "title"));
-    // Should we reindex the New / Watched / Unwatched categories?
-    private boolean reindexNew = Boolean.FALSE;
-    private boolean reindexWatched = Boolean.FALSE;
-    private boolean reindexUnwatched = Boolean.FALSE;
     private final boolean XML_COMPATIBLE = PropertiesUtil.getBooleanProperty("mjb.XMLcompatible", Boolean.FALSE);
     private final boolean SORT_LIBRARY = PropertiesUtil.getBooleanProperty("indexing.sort.libraries", Boolean.TRUE);
 
@@ -359,12 +355,13 @@ public class MovieJukeboxXMLWriter {
             }
         }
 
-        DOMHelper.writeDocumentToFile(xmlDoc, xmlFile);
+        if (DOMHelper.writeDocumentToFile(xmlDoc, xmlFile)) {
+            CacheDocument.put(xmlFile, xmlDoc);
+        }
     }
 
     private Element processCategoryIndex(Document doc, String indexName, String indexOriginalName, List<Movie> indexMovies, String categoryKey,
             int categoryMinCount, Library library) {
-        List<Movie> allMovies = library.getMoviesList();
         int countMovieCat = library.getMovieCountForIndex(categoryKey, indexName);
         boolean skipSet = "Set".equalsIgnoreCase(categoryKey) && countMovieCat <= 1;
 
@@ -394,8 +391,8 @@ public class MovieJukeboxXMLWriter {
         if (includeMoviesInCategories) {
             eCategory.setAttribute("filename", indexFilename);
 
-            for (Identifiable movie : indexMovies) {
-                DOMHelper.appendChild(doc, eCategory, MOVIE, String.valueOf(allMovies.indexOf(movie)));
+            for (Movie movie : indexMovies) {
+                DOMHelper.appendChild(doc, eCategory, MOVIE, String.valueOf(library.getMoviePosition(movie)));
             }
         } else {
             eCategory.setTextContent(indexFilename);
@@ -450,9 +447,8 @@ public class MovieJukeboxXMLWriter {
                         String key = FileTools.createCategoryKey(group.getKey());
                         String categoryPath = categoryName + " " + key;
 
-                        // FIXME This is horrible! Issue 735 will get rid of it.
                         int categoryCount = library.getMovieCountForIndex(categoryName, key);
-                        if (categoryCount < categoryMinCount && !Arrays.asList("Other,Genres,Title,Year,Library,Set".split(",")).contains(categoryName)
+                        if (categoryCount < categoryMinCount && !INDEXES_FOR_CATEGORIES_XML.contains(categoryName)
                                 && !Library.INDEX_SET.equalsIgnoreCase(categoryName)) {
                             StringBuilder loggerString = new StringBuilder();
                             loggerString.append("Category '").append(categoryPath).append("' does not contain enough videos (");
@@ -460,7 +456,6 @@ public class MovieJukeboxXMLWriter {
                             LOG.debug(loggerString.toString());
                             return null;
                         }
-                        boolean skipIndex = !FORCE_INDEX_OVERWRITE;
 
                         // Try and determine if the set contains TV shows and therefore use the TV show settings
                         // TODO have a custom property so that you can set this on a per-set basis.
@@ -479,13 +474,6 @@ public class MovieJukeboxXMLWriter {
                                 } else {
                                     nbVideosPerPage = nbSetMoviesPerPage;
                                     nbVideosPerLine = nbSetMoviesPerLine;
-                                    // Issue 1886: HTML indexes recreated every time
-                                    for (Movie m : library.getMoviesList()) {
-                                        if (m.isSetMaster() && m.getTitle().equals(key)) {
-                                            skipIndex &= !m.isDirty(DirtyFlag.INFO);
-                                            break;
-                                        }
-                                    }
                                 }
                             }
                         }
@@ -493,43 +481,6 @@ public class MovieJukeboxXMLWriter {
                         List<Movie> tmpMovieList = movies;
                         int moviepos = 0;
                         for (Movie movie : movies) {
-                            // Don't skip the index if the movie is dirty
-                            if (movie.isDirty(DirtyFlag.INFO) || movie.isDirty(DirtyFlag.RECHECK)) {
-                                skipIndex = false;
-                            }
-
-                            // Check for changes to the Watched, Unwatched and New categories whilst we are processing the All category
-                            if (ENABLE_WATCH_SCANNER && key.equals(Library.getRenamedCategory(Library.INDEX_ALL))) {
-                                if (movie.isWatched() && movie.isDirty(DirtyFlag.WATCHED)) {
-                                    // Don't skip the index
-                                    reindexWatched = true;
-                                    reindexUnwatched = true;
-                                    reindexNew = true;
-                                }
-
-                                if (!movie.isWatched() && movie.isDirty(DirtyFlag.WATCHED)) {
-                                    // Don't skip the index
-                                    reindexWatched = true;
-                                    reindexUnwatched = true;
-                                    reindexNew = true;
-                                }
-                            }
-
-                            // Check to see if we are in one of the category indexes
-                            if (reindexNew
-                                    && (key.equals(Library.getRenamedCategory(Library.INDEX_NEW))
-                                    || key.equals(Library.getRenamedCategory(Library.INDEX_NEW_MOVIE)) || key.equals(Library.getRenamedCategory(Library.INDEX_NEW_TV)))) {
-                                skipIndex = false;
-                            }
-
-                            if (reindexWatched && key.equals(Library.getRenamedCategory(Library.INDEX_WATCHED))) {
-                                skipIndex = false;
-                            }
-
-                            if (reindexUnwatched && key.equals(Library.getRenamedCategory(Library.INDEX_UNWATCHED))) {
-                                skipIndex = false;
-                            }
-
                             if (!beforeSortExplodeSet) {
                                 // Issue 1263 - Allow explode of Set in category .
                                 if (movie.isSetMaster() && (categoriesExplodeSet.contains(categoryName) || categoriesExplodeSet.contains(group.getKey()))
@@ -564,58 +515,34 @@ public class MovieJukeboxXMLWriter {
                         int last = 1 + (tmpMovieList.size() - 1) / nbVideosPerPage;
                         int previous = last;
                         moviepos = 0;
-                        skipIndex = (skipIndex && Library.INDEX_LIBRARY.equalsIgnoreCase(categoryName)) ? !library.isDirtyLibrary(group.getKey()) : skipIndex;
-                        IndexInfo idx = new IndexInfo(categoryName, key, last, nbVideosPerPage, nbVideosPerLine, skipIndex);
+                        IndexInfo idx = new IndexInfo(categoryName, key, last, nbVideosPerPage, nbVideosPerLine, Boolean.TRUE);
 
                         // Don't skip the indexing for sets as this overwrites the set files
+                        boolean forceIndex = FORCE_INDEX_OVERWRITE;
                         if (Library.INDEX_SET.equalsIgnoreCase(categoryName) && setReindex) {
                             LOG.trace("Forcing generation of set index.");
-                            skipIndex = false;
+                            forceIndex = true;
                         }
 
+                        // Each page is only written if its content has changed from the last run
+                        int next;
+                        int written = 0;
                         for (int current = 1; current <= last; current++) {
-                            if (setReindex && Library.INDEX_SET.equalsIgnoreCase(categoryName)) {
-                                idx.canSkip = false;
-                            } else {
-                                idx.checkSkip(current, jukebox.getJukeboxRootLocationDetails());
-                                skipIndex &= idx.canSkip;
+                            // All pages are handled here
+                            next = (current % last) + 1; // this gives 1 for last
+                            if (writeIndexPage(library, tmpMovieList.subList(moviepos, Math.min(moviepos + nbVideosPerPage, tmpMovieList.size())),
+                                    jukebox, idx, previous, current, next, last, tmpMovieList.size(), forceIndex)) {
+                                written++;
                             }
-                        }
 
-                        if (skipIndex && Library.INDEX_PERSON.equalsIgnoreCase(idx.categoryName)) {
-                            for (Person person : library.getPeople()) {
-                                if (!person.getName().equalsIgnoreCase(idx.key)) {
-                                    continue;
-                                }
-                                if (!person.isDirty()) {
-                                    continue;
-                                }
-                                skipIndex = false;
-                                break;
-                            }
+                            moviepos += nbVideosPerPage;
+                            previous = current;
                         }
 
-                        if (skipIndex) {
+                        if (written == 0) {
                             LOG.debug("Category '{}' - no change detected, skipping XML generation.", categoryPath);
-
-                            // Add the existing file to the cache so they aren't deleted
-                            for (int current = 1; current <= last; current++) {
-                                String name = idx.baseName + current + EXT_XML;
-                                FileTools.addJukeboxFile(name);
-                            }
                         } else {
-                            LOG.debug("Category '{}' - generating {} XML file{}", categoryPath, last, last == 1 ? "." : "s.");
-
-                            int next;
-                            for (int current = 1; current <= last; current++) {
-                                // All pages are handled here
-                                next = (current % last) + 1; // this gives 1 for last
-                                writeIndexPage(library, tmpMovieList.subList(moviepos, Math.min(moviepos + nbVideosPerPage, tmpMovieList.size())),
-                                        jukebox.getJukeboxTempLocationDetails(), idx, previous, current, next, last, tmpMovieList.size());
-
-                                moviepos += nbVideosPerPage;
-                                previous = current;
-                            }
+                            LOG.debug("Category '{}' - generated {} of {} XML file{}", categoryPath, written, last, last == 1 ? "." : "s.");
                         }
 
                         library.addGeneratedIndex(idx);
@@ -634,19 +561,24 @@ public class MovieJukeboxXMLWriter {
     /**
      * Write out the index pages
      *
+     * The page is only written if its fingerprint differs from the page written by the last run, or if it is forced.
+     *
      * @param library
      * @param movies
-     * @param rootPath
+     * @param jukebox
      * @param idx
      * @param previous
      * @param current
      * @param next
      * @param last
      * @param indexCount
+     * @param forceIndex
+     * @return true if the page was written
      */
-    public void writeIndexPage(Library library, List<Movie> movies, String rootPath, IndexInfo idx, int previous, int current, int next, int last, int indexCount) {
+    public boolean writeIndexPage(Library library, List<Movie> movies, Jukebox jukebox, IndexInfo idx, int previous, int current, int next, int last, int indexCount,
+            boolean forceIndex) {
         String prefix = idx.baseName;
-        File xmlFile = new File(rootPath, prefix + current + EXT_XML);
+        File xmlFile = new File(jukebox.getJukeboxTempLocationDetails(), prefix + current + EXT_XML);
 
         Document xmlDoc;
         try {
@@ -654,7 +586,7 @@ public class MovieJukeboxXMLWriter {
         } catch (ParserConfigurationException error) {
             LOG.error("Failed writing index page: {}", xmlFile.getName());
             LOG.error(SystemTools.getStackTrace(error));
-            return;
+            return false;
         }
 
         FileTools.addJukeboxFile(xmlFile.getName());
@@ -743,23 +675,9 @@ public class MovieJukeboxXMLWriter {
         }
 
         if (ENABLE_PEOPLE && ADD_PEOPLE_INFO && (Library.INDEX_PERSON + Library.INDEX_CAST + Library.INDEX_DIRECTOR + Library.INDEX_WRITER).contains(idx.categoryName)) {
-            for (Person person : library.getPeople()) {
-                if (!person.getName().equalsIgnoreCase(idx.key) && !person.getTitle().equalsIgnoreCase(idx.key)) {
-                    boolean found = false;
-                    if (!Library.INDEX_PERSON.equals(idx.categoryName)) {
-                        for (String name : person.getAka()) {
-                            if (name.equalsIgnoreCase(idx.key)) {
-                                found = true;
-                                break;
-                            }
-                        }
-                    }
-                    if (!found) {
-                        continue;
-                    }
-                }
+            Person person = library.getPersonForIndex(idx.categoryName, idx.key);
+            if (person != null) {
                 eLibrary.appendChild(writePerson(xmlDoc, person, false));
-                break;
             }
         }
 
@@ -791,8 +709,24 @@ public class MovieJukeboxXMLWriter {
         // Add the Library node to the document
         xmlDoc.appendChild(eLibrary);
 
+        // Compare with the page from the last run, the page numbers shift with the movies, so each page is checked on its own
+        String fingerprint = IndexFingerprint.calculate(xmlDoc);
+        if (!forceIndex && fingerprint != null && idx.pageExists(current, jukebox.getJukeboxRootLocationDetails())
+                && fingerprint.equals(IndexFingerprint.read(new File(jukebox.getJukeboxRootLocationDetails(), xmlFile.getName())))) {
+            LOG.trace("Index page {} - no change detected", xmlFile.getName());
+            return false;
+        }
+
+        if (fingerprint != null) {
+            eLibrary.setAttribute(IndexFingerprint.ATTRIBUTE, fingerprint);
+        }
+        idx.setPageChanged(current);
+
         // Save the document to file
-        DOMHelper.writeDocumentToFile(xmlDoc, xmlFile);
+        if (DOMHelper.writeDocumentToFile(xmlDoc, xmlFile)) {
+            CacheDocument.put(xmlFile, xmlDoc);
+        }
+        return true;
     }
 
     private Element processIndexCategory(Document doc, String categoryName, String categoryKey, boolean isCurrentKey, IndexInfo idx, int indexSize,
@@ -806,8 +740,7 @@ public class MovieJukeboxXMLWriter {
             return null;
         }
 
-        // FIXME This is horrible! Issue 735 will get rid of it.
-        if (indexSize < Library.calcMinCategoryCount(categoryName) && !Arrays.asList("Other,Genres,Title,Year,Library,Set".split(",")).contains(categoryKey)) {
+        if (indexSize < Library.calcMinCategoryCount(categoryName) && !INDEXES_FOR_CATEGORIES_XML.contains(categoryKey)) {
             return null;
         }
 
@@ -876,28 +809,29 @@ public class MovieJukeboxXMLWriter {
     }
 
     /**
-     * Create an element based on a collection of items
+     * Write an element based on a collection of items
      *
-     * @param doc
+     * Nothing is written if there are no items
+     *
+     * @param out
      * @param set
      * @param element
      * @param items
      * @param library
      * @param cat
-     * @return
+     * @param source
      */
-    private static Element generateElementSet(Document doc, String set, String element, Collection<String> items, Library library, String cat, String source) {
+    private static void writeElementSet(XmlOutput out, String set, String element, Collection<String> items, Library library, String cat, String source) {
 
         if (!items.isEmpty()) {
-            Element eSet = doc.createElement(set);
-            eSet.setAttribute(COUNT, String.valueOf(items.size()));
-            eSet.setAttribute(SOURCE, source);
+            out.startElement(set);
+            out.setAttribute(COUNT, String.valueOf(items.size()));
+            out.setAttribute(SOURCE, source);
             for (String item : items) {
-                writeIndexedElement(doc, eSet, element, item, createIndexAttribute(library, cat, item));
+                writeIndexedElement(out, element, item, createIndexAttribute(library, cat, item));
             }
-            return eSet;
+            out.endElement();
         }
-        return null;
     }
 
     /**
@@ -906,17 +840,16 @@ public class MovieJukeboxXMLWriter {
      * If there is a non-null value in the indexValue, this will be appended to
      * the element.
      *
-     * @param doc
-     * @param parentElement
+     * @param out
      * @param attributeName
      * @param attributeValue
      * @param indexValue
      */
-    private static void writeIndexedElement(Document doc, Element parentElement, String attributeName, String attributeValue, String indexValue) {
+    private static void writeIndexedElement(XmlOutput out, String attributeName, String attributeValue, String indexValue) {
         if (indexValue == null) {
-            DOMHelper.appendChild(doc, parentElement, attributeName, attributeValue);
+            out.appendChild(attributeName, attributeValue);
         } else {
-            DOMHelper.appendChild(doc, parentElement, attributeName, attributeValue, INDEX, indexValue);
+            out.appendChild(attributeName, attributeValue, INDEX, indexValue);
         }
     }
 
@@ -954,86 +887,99 @@ public class MovieJukeboxXMLWriter {
      * @param library
      * @return
      */
-    @SuppressWarnings("deprecation")
     private Element writeMovie(Document doc, Movie movie, Library library) {
-        Element eMovie = doc.createElement(MOVIE);
+        DomXmlOutput out = new DomXmlOutput(doc);
+        writeMovie(out, movie, library);
+        return out.getElement();
+    }
+
+    /**
+     * Write the movie details element
+     *
+     * @param out
+     * @param movie
+     * @param library
+     */
+    @SuppressWarnings("deprecation")
+    private void writeMovie(XmlOutput out, Movie movie, Library library) {
+        out.startElement(MOVIE);
 
         // holds the child attributes for reuse
         Map<String, String> childAttributes = new LinkedHashMap<>();
 
-        eMovie.setAttribute("isExtra", Boolean.toString(movie.isExtra()));
-        eMovie.setAttribute("isSet", Boolean.toString(movie.isSetMaster()));
+        out.setAttribute("isExtra", Boolean.toString(movie.isExtra()));
+        out.setAttribute("isSet", Boolean.toString(movie.isSetMaster()));
         if (movie.isSetMaster()) {
-            eMovie.setAttribute("setSize", Integer.toString(movie.getSetSize()));
+            out.setAttribute("setSize", Integer.toString(movie.getSetSize()));
         }
-        eMovie.setAttribute("isTV", Boolean.toString(movie.isTVShow()));
+        out.setAttribute("isTV", Boolean.toString(movie.isTVShow()));
 
         for (Map.Entry<String, String> e : movie.getIdMap().entrySet()) {
-            DOMHelper.appendChild(doc, eMovie, "id", e.getValue(), MOVIEDB, e.getKey());
+            out.appendChild("id", e.getValue(), MOVIEDB, e.getKey());
         }
 
-        DOMHelper.appendChild(doc, eMovie, "mjbVersion", GitRepositoryState.getVersion());
-        DOMHelper.appendChild(doc, eMovie, "mjbGitSHA", GIT.getCommitId());
-        DOMHelper.appendChild(doc, eMovie, "xmlGenerationDate", DateTimeTools.convertDateToString(new Date(), DateTimeTools.getDateFormatLongString()));
-        DOMHelper.appendChild(doc, eMovie, "baseFilenameBase", movie.getBaseFilename());
-        DOMHelper.appendChild(doc, eMovie, BASE_FILENAME, movie.getBaseName());
+        out.appendChild("mjbVersion", GitRepositoryState.getVersion());
+        out.appendChild("mjbGitSHA", GIT.getCommitId());
+        out.appendChild("xmlGenerationDate", DateTimeTools.convertDateToString(new Date(), DateTimeTools.getDateFormatLongString()));
+        out.appendChild("baseFilenameBase", movie.getBaseFilename());
+        out.appendChild(BASE_FILENAME, movie.getBaseName());
         if ((TITLE_SORT_TYPE == TitleSortType.ADOPT_ORIGINAL) && (StringTools.isValidString(movie.getOriginalTitle()))) {
-            DOMHelper.appendChild(doc, eMovie, TITLE, movie.getOriginalTitle(), SOURCE, movie.getOverrideSource(OverrideFlag.TITLE));
+            out.appendChild(TITLE, movie.getOriginalTitle(), SOURCE, movie.getOverrideSource(OverrideFlag.TITLE));
         } else {
-            DOMHelper.appendChild(doc, eMovie, TITLE, movie.getTitle(), SOURCE, movie.getOverrideSource(OverrideFlag.TITLE));
+            out.appendChild(TITLE, movie.getTitle(), SOURCE, movie.getOverrideSource(OverrideFlag.TITLE));
         }
-        DOMHelper.appendChild(doc, eMovie, SORT_TITLE, movie.getTitleSort());
-        DOMHelper.appendChild(doc, eMovie, ORIGINAL_TITLE, movie.getOriginalTitle(), SOURCE, movie.getOverrideSource(OverrideFlag.ORIGINALTITLE));
+        out.appendChild(SORT_TITLE, movie.getTitleSort());
+        out.appendChild(ORIGINAL_TITLE, movie.getOriginalTitle(), SOURCE, movie.getOverrideSource(OverrideFlag.ORIGINALTITLE));
 
         childAttributes.clear();
         childAttributes.put("Year", Library.getYearCategory(movie.getYear()));
         childAttributes.put(SOURCE, movie.getOverrideSource(OverrideFlag.YEAR));
-        DOMHelper.appendChild(doc, eMovie, YEAR, movie.getYear(), childAttributes);
+        out.appendChild(YEAR, movie.getYear(), childAttributes);
 
-        DOMHelper.appendChild(doc, eMovie, "releaseDate", movie.getReleaseDate(), SOURCE, movie.getOverrideSource(OverrideFlag.RELEASEDATE));
-        DOMHelper.appendChild(doc, eMovie, "showStatus", movie.getShowStatus());
+        out.appendChild("releaseDate", movie.getReleaseDate(), SOURCE, movie.getOverrideSource(OverrideFlag.RELEASEDATE));
+        out.appendChild("showStatus", movie.getShowStatus());
 
         // This is the main rating
-        DOMHelper.appendChild(doc, eMovie, RATING, Integer.toString(movie.getRating()));
+        out.appendChild(RATING, Integer.toString(movie.getRating()));
 
         // This is the list of ratings
-        Element eRatings = doc.createElement("ratings");
+        out.startElement("ratings");
         for (String site : movie.getRatings().keySet()) {
-            DOMHelper.appendChild(doc, eRatings, RATING, Integer.toString(movie.getRating(site)), MOVIEDB, site);
+            out.appendChild(RATING, Integer.toString(movie.getRating(site)), MOVIEDB, site);
         }
-        eMovie.appendChild(eRatings);
+        out.endElement();
 
-        DOMHelper.appendChild(doc, eMovie, "watched", Boolean.toString(movie.isWatched()));
-        DOMHelper.appendChild(doc, eMovie, "watchedNFO", Boolean.toString(movie.isWatchedNFO()));
-        DOMHelper.appendChild(doc, eMovie, "watchedFile", Boolean.toString(movie.isWatchedFile()));
+        out.appendChild("watched", Boolean.toString(movie.isWatched()));
+        out.appendChild("watchedNFO", Boolean.toString(movie.isWatchedNFO()));
+        out.appendChild("watchedFile", Boolean.toString(movie.isWatchedFile()));
         if (movie.isWatched()) {
-            DOMHelper.appendChild(doc, eMovie, "watchedDate", getWatchedDateString(movie.getWatchedDate()));
+            out.appendChild("watchedDate", getWatchedDateString(movie.getWatchedDate()));
         }
-        DOMHelper.appendChild(doc, eMovie, "top250", Integer.toString(movie.getTop250()), SOURCE, movie.getOverrideSource(OverrideFlag.TOP250));
-        DOMHelper.appendChild(doc, eMovie, DETAILS, HTMLTools.encodeUrl(movie.getBaseName()) + EXT_HTML);
-        DOMHelper.appendChild(doc, eMovie, "posterURL", HTMLTools.encodeUrl(movie.getPosterURL()));
-        DOMHelper.appendChild(doc, eMovie, "posterFile", HTMLTools.encodeUrl(movie.getPosterFilename()));
-        DOMHelper.appendChild(doc, eMovie, "fanartURL", HTMLTools.encodeUrl(movie.getFanartURL()));
-        DOMHelper.appendChild(doc, eMovie, "fanartFile", HTMLTools.encodeUrl(movie.getFanartFilename()));
-        DOMHelper.appendChild(doc, eMovie, "detailPosterFile", HTMLTools.encodeUrl(movie.getDetailPosterFilename()));
-        DOMHelper.appendChild(doc, eMovie, "thumbnail", HTMLTools.encodeUrl(movie.getThumbnailFilename()));
-        DOMHelper.appendChild(doc, eMovie, "bannerURL", HTMLTools.encodeUrl(movie.getBannerURL()));
-        DOMHelper.appendChild(doc, eMovie, "bannerFile", HTMLTools.encodeUrl(movie.getBannerFilename()));
-        DOMHelper.appendChild(doc, eMovie, "wideBannerFile", HTMLTools.encodeUrl(movie.getWideBannerFilename()));
-        DOMHelper.appendChild(doc, eMovie, "clearLogoURL", HTMLTools.encodeUrl(movie.getClearLogoURL()));
-        DOMHelper.appendChild(doc, eMovie, "clearLogoFile", HTMLTools.encodeUrl(movie.getClearLogoFilename()));
-        DOMHelper.appendChild(doc, eMovie, "clearArtURL", HTMLTools.encodeUrl(movie.getClearArtURL()));
-        DOMHelper.appendChild(doc, eMovie, "clearArtFile", HTMLTools.encodeUrl(movie.getClearArtFilename()));
-        DOMHelper.appendChild(doc, eMovie, "tvThumbURL", HTMLTools.encodeUrl(movie.getTvThumbURL()));
-        DOMHelper.appendChild(doc, eMovie, "tvThumbFile", HTMLTools.encodeUrl(movie.getTvThumbFilename()));
-        DOMHelper.appendChild(doc, eMovie, "seasonThumbURL", HTMLTools.encodeUrl(movie.getSeasonThumbURL()));
-        DOMHelper.appendChild(doc, eMovie, "seasonThumbFile", HTMLTools.encodeUrl(movie.getSeasonThumbFilename()));
-        DOMHelper.appendChild(doc, eMovie, "movieDiscURL", HTMLTools.encodeUrl(movie.getMovieDiscURL()));
-        DOMHelper.appendChild(doc, eMovie, "movieDiscFile", HTMLTools.encodeUrl(movie.getMovieDiscFilename()));
-        DOMHelper.appendChild(doc, eMovie, "plot", movie.getPlot(), SOURCE, movie.getOverrideSource(OverrideFlag.PLOT));
-        DOMHelper.appendChild(doc, eMovie, "outline", movie.getOutline(), SOURCE, movie.getOverrideSource(OverrideFlag.OUTLINE));
-        DOMHelper.appendChild(doc, eMovie, "quote", movie.getQuote(), SOURCE, movie.getOverrideSource(OverrideFlag.QUOTE));
-        DOMHelper.appendChild(doc, eMovie, "tagline", movie.getTagline(), SOURCE, movie.getOverrideSource(OverrideFlag.TAGLINE));
+        out.appendChild("top250", Integer.toString(movie.getTop250()), SOURCE, movie.getOverrideSource(OverrideFlag.TOP250));
+        out.appendChild(DETAILS, HTMLTools.encodeUrl(movie.getBaseName()) + EXT_HTML);
+        out.appendChild("posterURL", HTMLTools.encodeUrl(movie.getPosterURL()));
+        out.appendChild("posterFile", HTMLTools.encodeUrl(movie.getPosterFilename()));
+        out.appendChild("fanartURL", HTMLTools.encodeUrl(movie.getFanartURL()));
+        out.appendChild("fanartFile", HTMLTools.encodeUrl(movie.getFanartFilename()));
+        out.appendChild("detailPosterFile", HTMLTools.encodeUrl(movie.getDetailPosterFilename()));
+        out.appendChild("thumbnail", HTMLTools.encodeUrl(movie.getThumbnailFilename()));
+        out.appendChild("bannerURL", HTMLTools.encodeUrl(movie.getBannerURL()));
+        out.appendChild("bannerFile", HTMLTools.encodeUrl(movie.getBannerFilename()));
+        out.appendChild("wideBannerFile", HTMLTools.encodeUrl(movie.getWideBannerFilename()));
+        out.appendChild("clearLogoURL", HTMLTools.encodeUrl(movie.getClearLogoURL()));
+        out.appendChild("clearLogoFile", HTMLTools.encodeUrl(movie.getClearLogoFilename()));
+        out.appendChild("clearArtURL", HTMLTools.encodeUrl(movie.getClearArtURL()));
+        out.appendChild("clearArtFile", HTMLTools.encodeUrl(movie.getClearArtFilename()));
+        out.appendChild("tvThumbURL", HTMLTools.encodeUrl(movie.getTvThumbURL()));
+        out.appendChild("tvThumbFile", HTMLTools.encodeUrl(movie.getTvThumbFilename()));
+        out.appendChild("seasonThumbURL", HTMLTools.encodeUrl(movie.getSeasonThumbURL()));
+        out.appendChild("seasonThumbFile", HTMLTools.encodeUrl(movie.getSeasonThumbFilename()));
+        out.appendChild("movieDiscURL", HTMLTools.encodeUrl(movie.getMovieDiscURL()));
+        out.appendChild("movieDiscFile", HTMLTools.encodeUrl(movie.getMovieDiscFilename()));
+        out.appendChild("plot", movie.getPlot(), SOURCE, movie.getOverrideSource(OverrideFlag.PLOT));
+        out.appendChild("outline", movie.getOutline(), SOURCE, movie.getOverrideSource(OverrideFlag.OUTLINE));
+        out.appendChild("quote", movie.getQuote(), SOURCE, movie.getOverrideSource(OverrideFlag.QUOTE));
+        out.appendChild("tagline", movie.getTagline(), SOURCE, movie.getOverrideSource(OverrideFlag.TAGLINE));
 
         childAttributes.clear();
         String countryIndex = createIndexAttribute(library, Library.INDEX_COUNTRY, movie.getCountriesAsString());
@@ -1041,198 +987,188 @@ public class MovieJukeboxXMLWriter {
             childAttributes.put(INDEX, countryIndex);
         }
         childAttributes.put(SOURCE, movie.getOverrideSource(OverrideFlag.COUNTRY));
-        DOMHelper.appendChild(doc, eMovie, COUNTRY, movie.getCountriesAsString(), childAttributes);
+        out.appendChild(COUNTRY, movie.getCountriesAsString(), childAttributes);
         if (XML_COMPATIBLE) {
-            Element eCountry = doc.createElement("countries");
-            int cnt = 0;
+            out.startElement("countries");
+            out.setAttribute(COUNT, String.valueOf(movie.getCountries().size()));
             for (String country : movie.getCountries()) {
-                writeIndexedElement(doc, eCountry, "land", country, createIndexAttribute(library, Library.INDEX_COUNTRY, country));
-                cnt++;
+                writeIndexedElement(out, "land", country, createIndexAttribute(library, Library.INDEX_COUNTRY, country));
             }
-            eCountry.setAttribute(COUNT, String.valueOf(cnt));
-            eMovie.appendChild(eCountry);
+            out.endElement();
         }
 
-        DOMHelper.appendChild(doc, eMovie, "company", movie.getCompany(), SOURCE, movie.getOverrideSource(OverrideFlag.COMPANY));
+        out.appendChild("company", movie.getCompany(), SOURCE, movie.getOverrideSource(OverrideFlag.COMPANY));
         if (XML_COMPATIBLE) {
-            Element eCompany = doc.createElement("companies");
-            int cnt = 0;
-            for (String company : movie.getCompany().split(Movie.SPACE_SLASH_SPACE)) {
-                DOMHelper.appendChild(doc, eCompany, "credit", company);
-                cnt++;
+            String[] companies = movie.getCompany().split(Movie.SPACE_SLASH_SPACE);
+            out.startElement("companies");
+            out.setAttribute(COUNT, String.valueOf(companies.length));
+            for (String company : companies) {
+                out.appendChild("credit", company);
             }
-            eCompany.setAttribute(COUNT, String.valueOf(cnt));
-            eMovie.appendChild(eCompany);
+            out.endElement();
         }
 
-        DOMHelper.appendChild(doc, eMovie, "runtime", movie.getRuntime(), SOURCE, movie.getOverrideSource(OverrideFlag.RUNTIME));
-        DOMHelper.appendChild(doc, eMovie, "certification", Library.getIndexingCertification(movie.getCertification()), SOURCE, movie.getOverrideSource(OverrideFlag.CERTIFICATION));
-        DOMHelper.appendChild(doc, eMovie, SEASON, Integer.toString(movie.getSeason()));
+        out.appendChild("runtime", movie.getRuntime(), SOURCE, movie.getOverrideSource(OverrideFlag.RUNTIME));
+        out.appendChild("certification", Library.getIndexingCertification(movie.getCertification()), SOURCE, movie.getOverrideSource(OverrideFlag.CERTIFICATION));
+        out.appendChild(SEASON, Integer.toString(movie.getSeason()));
 
-        DOMHelper.appendChild(doc, eMovie, LANGUAGE, movie.getLanguage(), SOURCE, movie.getOverrideSource(OverrideFlag.LANGUAGE));
+        out.appendChild(LANGUAGE, movie.getLanguage(), SOURCE, movie.getOverrideSource(OverrideFlag.LANGUAGE));
         if (XML_COMPATIBLE) {
-            Element eLanguage = doc.createElement("languages");
-            int cnt = 0;
-            for (String language : movie.getLanguage().split(Movie.SPACE_SLASH_SPACE)) {
-                DOMHelper.appendChild(doc, eLanguage, "lang", language);
-                cnt++;
+            String[] languages = movie.getLanguage().split(Movie.SPACE_SLASH_SPACE);
+            out.startElement("languages");
+            out.setAttribute(COUNT, String.valueOf(languages.length));
+            for (String language : languages) {
+                out.appendChild("lang", language);
             }
-            eLanguage.setAttribute(COUNT, String.valueOf(cnt));
-            eMovie.appendChild(eLanguage);
+            out.endElement();
         }
 
-        DOMHelper.appendChild(doc, eMovie, "subtitles", movie.getSubtitles());
+        out.appendChild("subtitles", movie.getSubtitles());
         if (XML_COMPATIBLE) {
-            Element eSubtitle = doc.createElement("subs");
-            int cnt = 0;
-            for (String subtitle : SubtitleTools.getSubtitles(movie)) {
-                DOMHelper.appendChild(doc, eSubtitle, "subtitle", subtitle);
-                cnt++;
+            Collection<String> subtitles = SubtitleTools.getSubtitles(movie);
+            out.startElement("subs");
+            out.setAttribute(COUNT, String.valueOf(subtitles.size()));
+            for (String subtitle : subtitles) {
+                out.appendChild("subtitle", subtitle);
             }
-            eSubtitle.setAttribute(COUNT, String.valueOf(cnt));
-            eMovie.appendChild(eSubtitle);
+            out.endElement();
         }
 
-        DOMHelper.appendChild(doc, eMovie, "trailerExchange", movie.isTrailerExchange() ? YES : "NO");
+        out.appendChild("trailerExchange", movie.isTrailerExchange() ? YES : "NO");
 
         if (movie.getTrailerLastScan() == 0) {
-            DOMHelper.appendChild(doc, eMovie, TRAILER_LAST_SCAN, Movie.UNKNOWN);
+            out.appendChild(TRAILER_LAST_SCAN, Movie.UNKNOWN);
         } else {
+            String trailerLastScan;
             try {
                 DateTime dt = new DateTime(movie.getTrailerLastScan());
-                DOMHelper.appendChild(doc, eMovie, TRAILER_LAST_SCAN, DateTimeTools.convertDateToString(dt));
+                trailerLastScan = DateTimeTools.convertDateToString(dt);
             } catch (Exception error) {
-                DOMHelper.appendChild(doc, eMovie, TRAILER_LAST_SCAN, Movie.UNKNOWN);
+                trailerLastScan = Movie.UNKNOWN;
             }
+            out.appendChild(TRAILER_LAST_SCAN, trailerLastScan);
         }
 
-        DOMHelper.appendChild(doc, eMovie, "container", movie.getContainer(), SOURCE, movie.getOverrideSource(OverrideFlag.CONTAINER));
-        DOMHelper.appendChild(doc, eMovie, "videoCodec", movie.getVideoCodec());
-        DOMHelper.appendChild(doc, eMovie, "audioCodec", movie.getAudioCodec());
+        out.appendChild("container", movie.getContainer(), SOURCE, movie.getOverrideSource(OverrideFlag.CONTAINER));
+        out.appendChild("videoCodec", movie.getVideoCodec());
+        out.appendChild("audioCodec", movie.getAudioCodec());
 
         // Write codec information
-        eMovie.appendChild(createCodecsElement(doc, movie.getCodecs()));
-        DOMHelper.appendChild(doc, eMovie, "audioChannels", movie.getAudioChannels());
-        DOMHelper.appendChild(doc, eMovie, "resolution", movie.getResolution(), SOURCE, movie.getOverrideSource(OverrideFlag.RESOLUTION));
+        writeCodecs(out, movie.getCodecs());
+        out.appendChild("audioChannels", movie.getAudioChannels());
+        out.appendChild("resolution", movie.getResolution(), SOURCE, movie.getOverrideSource(OverrideFlag.RESOLUTION));
 
         // If the source is unknown, use the default source
         if (StringTools.isNotValidString(movie.getVideoSource())) {
-            DOMHelper.appendChild(doc, eMovie, "videoSource", DEFAULT_SOURCE, SOURCE, Movie.UNKNOWN);
+            out.appendChild("videoSource", DEFAULT_SOURCE, SOURCE, Movie.UNKNOWN);
         } else {
-            DOMHelper.appendChild(doc, eMovie, "videoSource", movie.getVideoSource(), SOURCE, movie.getOverrideSource(OverrideFlag.VIDEOSOURCE));
+            out.appendChild("videoSource", movie.getVideoSource(), SOURCE, movie.getOverrideSource(OverrideFlag.VIDEOSOURCE));
         }
 
-        DOMHelper.appendChild(doc, eMovie, "videoOutput", movie.getVideoOutput(), SOURCE, movie.getOverrideSource(OverrideFlag.VIDEOOUTPUT));
-        DOMHelper.appendChild(doc, eMovie, "aspect", movie.getAspectRatio(), SOURCE, movie.getOverrideSource(OverrideFlag.ASPECTRATIO));
-        DOMHelper.appendChild(doc, eMovie, "fps", Float.toString(movie.getFps()), SOURCE, movie.getOverrideSource(OverrideFlag.FPS));
+        out.appendChild("videoOutput", movie.getVideoOutput(), SOURCE, movie.getOverrideSource(OverrideFlag.VIDEOOUTPUT));
+        out.appendChild("aspect", movie.getAspectRatio(), SOURCE, movie.getOverrideSource(OverrideFlag.ASPECTRATIO));
+        out.appendChild("fps", Float.toString(movie.getFps()), SOURCE, movie.getOverrideSource(OverrideFlag.FPS));
 
         if (movie.getFileDate() == null) {
-            DOMHelper.appendChild(doc, eMovie, "fileDate", Movie.UNKNOWN);
+            out.appendChild("fileDate", Movie.UNKNOWN);
         } else {
             // Try to catch any date re-formatting errors
+            String fileDate;
             try {
-                DOMHelper.appendChild(doc, eMovie, "fileDate", DateTimeTools.convertDateToString(movie.getFileDate()));
+                fileDate = DateTimeTools.convertDateToString(movie.getFileDate());
             } catch (ArrayIndexOutOfBoundsException error) {
-                DOMHelper.appendChild(doc, eMovie, "fileDate", Movie.UNKNOWN);
+                fileDate = Movie.UNKNOWN;
             }
+            out.appendChild("fileDate", fileDate);
         }
-        DOMHelper.appendChild(doc, eMovie, "fileSize", movie.getFileSizeString());
-        DOMHelper.appendChild(doc, eMovie, "first", HTMLTools.encodeUrl(movie.getFirst()));
-        DOMHelper.appendChild(doc, eMovie, "previous", HTMLTools.encodeUrl(movie.getPrevious()));
-        DOMHelper.appendChild(doc, eMovie, "next", HTMLTools.encodeUrl(movie.getNext()));
-        DOMHelper.appendChild(doc, eMovie, "last", HTMLTools.encodeUrl(movie.getLast()));
-        DOMHelper.appendChild(doc, eMovie, "libraryDescription", movie.getLibraryDescription());
-        DOMHelper.appendChild(doc, eMovie, "prebuf", Long.toString(movie.getPrebuf()));
+        out.appendChild("fileSize", movie.getFileSizeString());
+        out.appendChild("first", HTMLTools.encodeUrl(movie.getFirst()));
+        out.appendChild("previous", HTMLTools.encodeUrl(movie.getPrevious()));
+        out.appendChild("next", HTMLTools.encodeUrl(movie.getNext()));
+        out.appendChild("last", HTMLTools.encodeUrl(movie.getLast()));
+        out.appendChild("libraryDescription", movie.getLibraryDescription());
+        out.appendChild("prebuf", Long.toString(movie.getPrebuf()));
 
         if (!movie.getGenres().isEmpty()) {
-            Element eGenres = doc.createElement("genres");
-            eGenres.setAttribute(COUNT, String.valueOf(movie.getGenres().size()));
-            eGenres.setAttribute(SOURCE, movie.getOverrideSource(OverrideFlag.GENRES));
+            out.startElement("genres");
+            out.setAttribute(COUNT, String.valueOf(movie.getGenres().size()));
+            out.setAttribute(SOURCE, movie.getOverrideSource(OverrideFlag.GENRES));
             for (String genre : movie.getGenres()) {
-                writeIndexedElement(doc, eGenres, "genre", genre, createIndexAttribute(library, Library.INDEX_GENRES, Library.getIndexingGenre(genre)));
+                writeIndexedElement(out, "genre", genre, createIndexAttribute(library, Library.INDEX_GENRES, Library.getIndexingGenre(genre)));
             }
-            eMovie.appendChild(eGenres);
+            out.endElement();
         }
 
         Collection<String> items = movie.getSetsKeys();
         if (!items.isEmpty()) {
-            Element eSets = doc.createElement("sets");
-            eSets.setAttribute(COUNT, String.valueOf(items.size()));
+            out.startElement("sets");
+            out.setAttribute(COUNT, String.valueOf(items.size()));
             for (String item : items) {
-                Element eSetItem = doc.createElement("set");
+                out.startElement("set");
                 Integer order = movie.getSetOrder(item);
                 if (null != order) {
-                    eSetItem.setAttribute(ORDER, String.valueOf(order));
+                    out.setAttribute(ORDER, String.valueOf(order));
                 }
                 String index = createIndexAttribute(library, Library.INDEX_SET, item);
                 if (null != index) {
-                    eSetItem.setAttribute(INDEX, index);
+                    out.setAttribute(INDEX, index);
                 }
 
-                eSetItem.setTextContent(item);
-                eSets.appendChild(eSetItem);
+                out.setTextContent(item);
+                out.endElement();
             }
-            eMovie.appendChild(eSets);
+            out.endElement();
         }
 
-        writeIndexedElement(doc, eMovie, "director", movie.getDirector(), createIndexAttribute(library, Library.INDEX_DIRECTOR, movie.getDirector()));
+        writeIndexedElement(out, "director", movie.getDirector(), createIndexAttribute(library, Library.INDEX_DIRECTOR, movie.getDirector()));
 
-        Element eSet;
-        eSet = generateElementSet(doc, "directors", "director", movie.getDirectors(), library, Library.INDEX_DIRECTOR, movie.getOverrideSource(OverrideFlag.DIRECTORS));
-        if (eSet != null) {
-            eMovie.appendChild(eSet);
-        }
-
-        eSet = generateElementSet(doc, "writers", "writer", movie.getWriters(), library, Library.INDEX_WRITER, movie.getOverrideSource(OverrideFlag.WRITERS));
-        if (eSet != null) {
-            eMovie.appendChild(eSet);
-        }
-
-        eSet = generateElementSet(doc, "cast", "actor", movie.getCast(), library, Library.INDEX_CAST, movie.getOverrideSource(OverrideFlag.ACTORS));
-        if (eSet != null) {
-            eMovie.appendChild(eSet);
-        }
+        writeElementSet(out, "directors", "director", movie.getDirectors(), library, Library.INDEX_DIRECTOR, movie.getOverrideSource(OverrideFlag.DIRECTORS));
+        writeElementSet(out, "writers", "writer", movie.getWriters(), library, Library.INDEX_WRITER, movie.getOverrideSource(OverrideFlag.WRITERS));
+        writeElementSet(out, "cast", "actor", movie.getCast(), library, Library.INDEX_CAST, movie.getOverrideSource(OverrideFlag.ACTORS));
 
         // Issue 1901: Awards
         if (ENABLE_AWARDS) {
             Collection<AwardEvent> awards = movie.getAwards();
             if (awards != null && !awards.isEmpty()) {
-                Element eAwards = doc.createElement("awards");
-                eAwards.setAttribute(COUNT, String.valueOf(awards.size()));
+                out.startElement("awards");
+                out.setAttribute(COUNT, String.valueOf(awards.size()));
                 for (AwardEvent event : awards) {
-                    Element eEvent = doc.createElement("event");
-                    eEvent.setAttribute(NAME, event.getName());
-                    eEvent.setAttribute(COUNT, String.valueOf(event.getAwards().size()));
+                    out.startElement("event");
+                    out.setAttribute(NAME, event.getName());
+                    out.setAttribute(COUNT, String.valueOf(event.getAwards().size()));
                     for (Award award : event.getAwards()) {
-                        Element eAwardItem = doc.createElement("award");
-                        eAwardItem.setAttribute(NAME, award.getName());
-                        eAwardItem.setAttribute(WON, Integer.toString(award.getWon()));
-                        eAwardItem.setAttribute("nominated", Integer.toString(award.getNominated()));
-                        eAwardItem.setAttribute(YEAR, Integer.toString(award.getYear()));
-                        if (award.getWons() != null && !award.getWons().isEmpty()) {
-                            eAwardItem.setAttribute("wons", StringUtils.join(award.getWons(), Movie.SPACE_SLASH_SPACE));
-                            if (XML_COMPATIBLE) {
+                        out.startElement("award");
+                        out.setAttribute(NAME, award.getName());
+                        out.setAttribute(WON, Integer.toString(award.getWon()));
+                        out.setAttribute("nominated", Integer.toString(award.getNominated()));
+                        out.setAttribute(YEAR, Integer.toString(award.getYear()));
+                        boolean hasWons = award.getWons() != null && !award.getWons().isEmpty();
+                        boolean hasNominations = award.getNominations() != null && !award.getNominations().isEmpty();
+                        if (hasWons) {
+                            out.setAttribute("wons", StringUtils.join(award.getWons(), Movie.SPACE_SLASH_SPACE));
+                        }
+                        if (hasNominations) {
+                            out.setAttribute("nominations", StringUtils.join(award.getNominations(), Movie.SPACE_SLASH_SPACE));
+                        }
+                        if (XML_COMPATIBLE) {
+                            if (hasWons) {
                                 for (String won : award.getWons()) {
-                                    DOMHelper.appendChild(doc, eAwardItem, WON, won);
+                                    out.appendChild(WON, won);
                                 }
                             }
-                        }
-                        if (award.getNominations() != null && !award.getNominations().isEmpty()) {
-                            eAwardItem.setAttribute("nominations", StringUtils.join(award.getNominations(), Movie.SPACE_SLASH_SPACE));
-                            if (XML_COMPATIBLE) {
+                            if (hasNominations) {
                                 for (String nomination : award.getNominations()) {
-                                    DOMHelper.appendChild(doc, eAwardItem, "nomination", nomination);
+                                    out.appendChild("nomination", nomination);
                                 }
                             }
+                        } else {
+                            out.setTextContent(award.getName());
                         }
-                        if (!XML_COMPATIBLE) {
-                            eAwardItem.setTextContent(award.getName());
-                        }
-                        eEvent.appendChild(eAwardItem);
+                        out.endElement();
                     }
-                    eAwards.appendChild(eEvent);
+                    out.endElement();
                 }
-                eMovie.appendChild(eAwards);
+                out.endElement();
             }
         }
 
@@ -1240,112 +1176,107 @@ public class MovieJukeboxXMLWriter {
         if (ENABLE_PEOPLE) {
             Collection<Filmography> people = movie.getPeople();
             if (people != null && !people.isEmpty()) {
-                Element ePeople = doc.createElement("people");
-                ePeople.setAttribute(COUNT, String.valueOf(people.size()));
+                out.startElement("people");
+                out.setAttribute(COUNT, String.valueOf(people.size()));
                 for (Filmography person : people) {
-                    Element ePerson = doc.createElement("person");
-
-                    ePerson.setAttribute(NAME, person.getName());
-                    ePerson.setAttribute("doublage", person.getDoublage());
-                    ePerson.setAttribute(TITLE, person.getTitle());
-                    ePerson.setAttribute(CHARACTER, person.getCharacter());
-                    ePerson.setAttribute(JOB, person.getJob());
-                    ePerson.setAttribute("id", person.getId());
+                    out.startElement("person");
+
+                    out.setAttribute(NAME, person.getName());
+                    out.setAttribute("doublage", person.getDoublage());
+                    out.setAttribute(TITLE, person.getTitle());
+                    out.setAttribute(CHARACTER, person.getCharacter());
+                    out.setAttribute(JOB, person.getJob());
+                    out.setAttribute("id", person.getId());
                     for (Map.Entry<String, String> personID : person.getIdMap().entrySet()) {
                         if (!personID.getKey().equals(ImdbPlugin.IMDB_PLUGIN_ID)) {
-                            ePerson.setAttribute(ID + personID.getKey(), personID.getValue());
+                            out.setAttribute(ID + personID.getKey(), personID.getValue());
                         }
                     }
-                    ePerson.setAttribute(DEPARTMENT, person.getDepartment());
-                    ePerson.setAttribute(URL, person.getUrl());
-                    ePerson.setAttribute(ORDER, Integer.toString(person.getOrder()));
-                    ePerson.setAttribute("cast_id", Integer.toString(person.getCastId()));
-                    ePerson.setAttribute("photoFile", person.getPhotoFilename());
+                    out.setAttribute(DEPARTMENT, person.getDepartment());
+                    out.setAttribute(URL, person.getUrl());
+                    out.setAttribute(ORDER, Integer.toString(person.getOrder()));
+                    out.setAttribute("cast_id", Integer.toString(person.getCastId()));
+                    out.setAttribute("photoFile", person.getPhotoFilename());
                     String inx = createIndexAttribute(library, Library.INDEX_PERSON, person.getName());
                     if (inx != null) {
-                        ePerson.setAttribute(INDEX, inx);
+                        out.setAttribute(INDEX, inx);
                     }
-                    ePerson.setAttribute(SOURCE, person.getSource());
-                    ePerson.setTextContent(person.getFilename());
-                    ePeople.appendChild(ePerson);
+                    out.setAttribute(SOURCE, person.getSource());
+                    out.setTextContent(person.getFilename());
+                    out.endElement();
                 }
-                eMovie.appendChild(ePeople);
+                out.endElement();
             }
         }
 
         // Issue 2012: Financial information about movie
         if (ENABLE_BUSINESS) {
-            Element eBusiness = doc.createElement("business");
-            eBusiness.setAttribute("budget", movie.getBudget());
+            out.startElement("business");
+            out.setAttribute("budget", movie.getBudget());
 
             for (Map.Entry<String, String> gross : movie.getGross().entrySet()) {
-                DOMHelper.appendChild(doc, eBusiness, "gross", gross.getValue(), COUNTRY, gross.getKey());
+                out.appendChild("gross", gross.getValue(), COUNTRY, gross.getKey());
             }
 
             for (Map.Entry<String, String> openweek : movie.getOpenWeek().entrySet()) {
-                DOMHelper.appendChild(doc, eBusiness, "openweek", openweek.getValue(), COUNTRY, openweek.getKey());
+                out.appendChild("openweek", openweek.getValue(), COUNTRY, openweek.getKey());
             }
 
-            eMovie.appendChild(eBusiness);
+            out.endElement();
         }
 
         // Issue 2013: Add trivia
         if (ENABLE_TRIVIA) {
-            Element eTrivia = doc.createElement("didyouknow");
-            eTrivia.setAttribute(COUNT, String.valueOf(movie.getDidYouKnow().size()));
+            out.startElement("didyouknow");
+            out.setAttribute(COUNT, String.valueOf(movie.getDidYouKnow().size()));
 
             for (String trivia : movie.getDidYouKnow()) {
-                DOMHelper.appendChild(doc, eTrivia, "trivia", trivia);
+                out.appendChild("trivia", trivia);
             }
 
-            eMovie.appendChild(eTrivia);
+            out.endElement();
         }
 
         // Write the indexes that the movie belongs to
-        Element eIndexes = doc.createElement("indexes");
+        out.startElement("indexes");
         String originalName;
         for (Entry<String, String> index : movie.getIndexes().entrySet()) {
-            Element eIndexEntry = doc.createElement(INDEX);
-            eIndexEntry.setAttribute("type", index.getKey());
+            out.startElement(INDEX);
+            out.setAttribute("type", index.getKey());
             originalName = Library.getOriginalCategory(index.getKey(), Boolean.TRUE);
-            eIndexEntry.setAttribute(ORIGINAL_NAME, originalName);
-            eIndexEntry.setAttribute("encoded", FileTools.makeSafeFilename(index.getValue()));
-            eIndexEntry.setTextContent(index.getValue());
-            eIndexes.appendChild(eIndexEntry);
+            out.setAttribute(ORIGINAL_NAME, originalName);
+            out.setAttribute("encoded", FileTools.makeSafeFilename(index.getValue()));
+            out.setTextContent(index.getValue());
+            out.endElement();
         }
-        eMovie.appendChild(eIndexes);
+        out.endElement();
 
         // Write details about the files
-        Element eFiles = doc.createElement("files");
+        out.startElement("files");
         for (MovieFile mf : movie.getFiles()) {
-            Element eFileItem = doc.createElement("file");
-            eFileItem.setAttribute(SEASON, Integer.toString(mf.getSeason()));
-            eFileItem.setAttribute("firstPart", Integer.toString(mf.getFirstPart()));
-            eFileItem.setAttribute("lastPart", Integer.toString(mf.getLastPart()));
-            eFileItem.setAttribute(TITLE, mf.getTitle());
-            eFileItem.setAttribute("subtitlesExchange", mf.isSubtitlesExchange() ? YES : "NO");
+            out.startElement("file");
+            out.setAttribute(SEASON, Integer.toString(mf.getSeason()));
+            out.setAttribute("firstPart", Integer.toString(mf.getFirstPart()));
+            out.setAttribute("lastPart", Integer.toString(mf.getLastPart()));
+            out.setAttribute(TITLE, mf.getTitle());
+            out.setAttribute("subtitlesExchange", mf.isSubtitlesExchange() ? YES : "NO");
 
             // Fixes an issue with null file lengths
-            try {
-                if (mf.getFile() == null) {
-                    eFileItem.setAttribute("size", "0");
-                } else {
-                    eFileItem.setAttribute("size", Long.toString(mf.getSize()));
-                }
-            } catch (DOMException ex) {
-                LOG.debug("File length error for file {}", mf.getFilename(), ex);
-                eFileItem.setAttribute("size", "0");
+            if (mf.getFile() == null) {
+                out.setAttribute("size", "0");
+            } else {
+                out.setAttribute("size", Long.toString(mf.getSize()));
             }
 
             // Playlink values; can be empty, but not null
             for (Map.Entry<String, String> e : mf.getPlayLink().entrySet()) {
-                eFileItem.setAttribute(e.getKey().toLowerCase(), e.getValue());
+                out.setAttribute(e.getKey().toLowerCase(), e.getValue());
             }
 
-            eFileItem.setAttribute("watched", mf.isWatched() ? TRUE : FALSE);
+            out.setAttribute("watched", mf.isWatched() ? TRUE : FALSE);
 
             if (mf.getFile() != null) {
-                DOMHelper.appendChild(doc, eFileItem, "fileLocation", mf.getFile().getAbsolutePath());
+                out.appendChild("fileLocation", mf.getFile().getAbsolutePath());
             }
 
             // Write the fileURL
@@ -1362,7 +1293,7 @@ public class MovieJukeboxXMLWriter {
             }
 
             if (StringTools.isValidString(archiveName)) {
-                DOMHelper.appendChild(doc, eFileItem, "fileArchiveName", archiveName);
+                out.appendChild("fileArchiveName", archiveName);
 
                 // If they want full URL, do so
                 if (IS_EXTENDED_URL && !filename.endsWith(archiveName)) {
@@ -1370,14 +1301,14 @@ public class MovieJukeboxXMLWriter {
                 }
             }
 
-            DOMHelper.appendChild(doc, eFileItem, "fileURL", filename);
+            out.appendChild("fileURL", filename);
 
             for (int part = mf.getFirstPart(); part <= mf.getLastPart(); ++part) {
 
                 childAttributes.clear();
                 childAttributes.put(PART, Integer.toString(part));
                 childAttributes.put(SOURCE, mf.getOverrideSource(OverrideFlag.EPISODE_TITLE));
-                DOMHelper.appendChild(doc, eFileItem, "fileTitle", mf.getTitle(part), childAttributes);
+                out.appendChild("fileTitle", mf.getTitle(part), childAttributes);
 
                 // Only write out these for TV Shows
                 if (movie.isTVShow()) {
@@ -1386,16 +1317,16 @@ public class MovieJukeboxXMLWriter {
                     childAttributes.put("afterSeason", mf.getAirsAfterSeason(part));
                     childAttributes.put("beforeSeason", mf.getAirsBeforeSeason(part));
                     childAttributes.put("beforeEpisode", mf.getAirsBeforeEpisode(part));
-                    DOMHelper.appendChild(doc, eFileItem, "airsInfo", String.valueOf(part), childAttributes);
+                    out.appendChild("airsInfo", String.valueOf(part), childAttributes);
 
                     childAttributes.clear();
                     childAttributes.put(PART, Integer.toString(part));
                     childAttributes.put(SOURCE, mf.getOverrideSource(OverrideFlag.EPISODE_FIRST_AIRED));
-                    DOMHelper.appendChild(doc, eFileItem, "firstAired", mf.getFirstAired(part), childAttributes);
+                    out.appendChild("firstAired", mf.getFirstAired(part), childAttributes);
                 }
 
                 if (mf.getWatchedDate() > 0) {
-                    DOMHelper.appendChild(doc, eFileItem, "watchedDate", getWatchedDateString(mf.getWatchedDate()));
+                    out.appendChild("watchedDate", getWatchedDateString(mf.getWatchedDate()));
                 }
 
                 if (includeEpisodePlots) {
@@ -1413,19 +1344,19 @@ public class MovieJukeboxXMLWriter {
                     }
                     
                     childAttributes.put(SOURCE, filePlotSource);
-                    DOMHelper.appendChild(doc, eFileItem, "filePlot", filePlot, childAttributes);
+                    out.appendChild("filePlot", filePlot, childAttributes);
                 }
 
                 if (includeEpisodeRating) {
                     childAttributes.clear();
                     childAttributes.put(PART, Integer.toString(part));
                     childAttributes.put(SOURCE, mf.getOverrideSource(OverrideFlag.EPISODE_RATING));
-                    DOMHelper.appendChild(doc, eFileItem, "fileRating", mf.getRating(part), childAttributes);
+                    out.appendChild("fileRating", mf.getRating(part), childAttributes);
                 }
 
                 if (includeVideoImages) {
-                    DOMHelper.appendChild(doc, eFileItem, "fileImageURL", HTMLTools.encodeUrl(mf.getVideoImageURL(part)), PART, String.valueOf(part));
-                    DOMHelper.appendChild(doc, eFileItem, "fileImageFile", HTMLTools.encodeUrl(mf.getVideoImageFilename(part)), PART, String.valueOf(part));
+                    out.appendChild("fileImageURL", HTMLTools.encodeUrl(mf.getVideoImageURL(part)), PART, String.valueOf(part));
+                    out.appendChild("fileImageFile", HTMLTools.encodeUrl(mf.getVideoImageFilename(part)), PART, String.valueOf(part));
                 }
 
                 // Episode IDs
@@ -1434,67 +1365,86 @@ public class MovieJukeboxXMLWriter {
                         childAttributes.clear();
                         childAttributes.put(PART, Integer.toString(part));
                         childAttributes.put(SOURCE, entry.getKey());
-                        DOMHelper.appendChild(doc, eFileItem, "fileId", entry.getValue(), childAttributes);
+                        out.appendChild("fileId", entry.getValue(), childAttributes);
                     }
                 }
             }
 
             if (mf.getAttachments() != null && !mf.getAttachments().isEmpty()) {
-                Element eAttachments = doc.createElement("attachments");
+                out.startElement("attachments");
                 for (Attachment att : mf.getAttachments()) {
-                    Element eAttachment = doc.createElement("attachment");
-                    eAttachment.setAttribute("type", att.getType().toString());
-                    DOMHelper.appendChild(doc, eAttachment, "attachmentId", String.valueOf(att.getAttachmentId()));
-                    DOMHelper.appendChild(doc, eAttachment, "contentType", att.getContentType().toString());
-                    DOMHelper.appendChild(doc, eAttachment, "mimeType", att.getMimeType());
-                    DOMHelper.appendChild(doc, eAttachment, "part", String.valueOf(att.getPart()));
-                    eAttachments.appendChild(eAttachment);
+                    out.startElement("attachment");
+                    out.setAttribute("type", att.getType().toString());
+                    out.appendChild("attachmentId", String.valueOf(att.getAttachmentId()));
+                    out.appendChild("contentType", att.getContentType().toString());
+                    out.appendChild("mimeType", att.getMimeType());
+                    out.appendChild("part", String.valueOf(att.getPart()));
+                    out.endElement();
                 }
-                eFileItem.appendChild(eAttachments);
+                out.endElement();
             }
 
-            eFiles.appendChild(eFileItem);
+            out.endElement();
         }
-        eMovie.appendChild(eFiles);
+        out.endElement();
 
         Collection<ExtraFile> extraFiles = movie.getExtraFiles();
         if (extraFiles != null && !extraFiles.isEmpty()) {
-            Element eExtras = doc.createElement("extras");
+            out.startElement("extras");
             for (ExtraFile ef : extraFiles) {
-                Element eExtraItem = doc.createElement("extra");
-                eExtraItem.setAttribute(TITLE, ef.getTitle());
+                out.startElement("extra");
+                out.setAttribute(TITLE, ef.getTitle());
                 if (ef.getPlayLink() != null) {
                     // Playlink values
                     for (Map.Entry<String, String> e : ef.getPlayLink().entrySet()) {
-                        eExtraItem.setAttribute(e.getKey().toLowerCase(), e.getValue());
+                        out.setAttribute(e.getKey().toLowerCase(), e.getValue());
                     }
                 }
-                eExtraItem.setTextContent(ef.getFilename()); // should already be URL-encoded
-                eExtras.appendChild(eExtraItem);
+                out.setTextContent(ef.getFilename()); // should already be URL-encoded
+                out.endElement();
             }
-            eMovie.appendChild(eExtras);
+            out.endElement();
         }
 
-        return eMovie;
+        out.endElement();
     }
 
     /**
-     * Create an element with the codec information in it.
+     * Write an element with the codec information in it.
      *
-     * @param doc
+     * @param out
      * @param movieCodecs
-     * @return
      */
-    private static Element createCodecsElement(Document doc, Set<Codec> movieCodecs) {
-        Element eCodecs = doc.createElement("codecs");
-        Element eCodecAudio = doc.createElement("audio");
-        Element eCodecVideo = doc.createElement("video");
-        int countAudio = 0;
-        int countVideo = 0;
+    private static void writeCodecs(XmlOutput out, Set<Codec> movieCodecs) {
+        List<Codec> audioCodecs = new ArrayList<>();
+        List<Codec> videoCodecs = new ArrayList<>();
+        for (Codec codec : movieCodecs) {
+            if (codec.getCodecType() == CodecType.AUDIO) {
+                audioCodecs.add(codec);
+            } else {
+                videoCodecs.add(codec);
+            }
+        }
 
+        out.startElement("codecs");
+        writeCodecs(out, "audio", audioCodecs);
+        writeCodecs(out, "video", videoCodecs);
+        out.endElement();
+    }
+
+    /**
+     * Write the codecs of one type, audio or video.
+     *
+     * @param out
+     * @param codecType
+     * @param codecs
+     */
+    private static void writeCodecs(XmlOutput out, String codecType, List<Codec> codecs) {
         Map<String, String> codecAttribs = new HashMap<>();
 
-        for (Codec codec : movieCodecs) {
+        out.startElement(codecType);
+        out.setAttribute(COUNT, String.valueOf(codecs.size()));
+        for (Codec codec : codecs) {
             codecAttribs.clear();
 
             codecAttribs.put("format", codec.getCodecFormat());
@@ -1508,19 +1458,10 @@ public class MovieJukeboxXMLWriter {
                 codecAttribs.put(LANGUAGE, codec.getCodecLanguage());
                 codecAttribs.put("langugageFull", codec.getCodecFullLanguage());
                 codecAttribs.put("channels", String.valueOf(codec.getCodecChannels()));
-                DOMHelper.appendChild(doc, eCodecAudio, "codec", codec.getCodec(), codecAttribs);
-                countAudio++;
-            } else {
-                DOMHelper.appendChild(doc, eCodecVideo, "codec", codec.getCodec(), codecAttribs);
-                countVideo++;
             }
+            out.appendChild("codec", codec.getCodec(), codecAttribs);
         }
-        eCodecAudio.setAttribute(COUNT, String.valueOf(countAudio));
-        eCodecVideo.setAttribute(COUNT, String.valueOf(countVideo));
-        eCodecs.appendChild(eCodecAudio);
-        eCodecs.appendChild(eCodecVideo);
-
-        return eCodecs;
+        out.endElement();
     }
 
     /**
@@ -1543,32 +1484,37 @@ public class MovieJukeboxXMLWriter {
 
         LOG.debug("DirtyFlags for {} are: {}", movie.getBaseName(), movie.showDirty());
         if (!finalXmlFile.exists() || FORCE_XML_OVERWRITE || movie.isDirty(DirtyFlag.INFO) || movie.isDirty(DirtyFlag.RECHECK) || movie.isDirty(DirtyFlag.WATCHED)) {
-            Document xmlDoc;
-            try {
-                xmlDoc = DOMHelper.createDocument();
-            } catch (ParserConfigurationException error) {
+            try (StreamXmlOutput out = new StreamXmlOutput(tempXmlFile)) {
+                out.startElement(DETAILS);
+                writeMovie(out, movie, library);
+                out.endElement();
+            } catch (IOException error) {
                 LOG.error("Failed writing {}", tempXmlFile.getAbsolutePath());
                 LOG.error(SystemTools.getStackTrace(error));
-                return;
+                deletePartialFile(tempXmlFile);
+            } catch (RuntimeException error) {
+                // Don't leave a partial file behind to be copied to the jukebox
+                deletePartialFile(tempXmlFile);
+                throw error;
             }
 
-            Element eDetails = xmlDoc.createElement(DETAILS);
-            xmlDoc.appendChild(eDetails);
-
-            Element eMovie = writeMovie(xmlDoc, movie, library);
-
-            if (eMovie != null) {
-                eDetails.appendChild(eMovie);
-            }
-
-            DOMHelper.writeDocumentToFile(xmlDoc, tempXmlFile);
-
             if (WRITE_NFO_FILES) {
                 MovieNFOWriter.writeNfoFile(jukebox, movie);
             }
         }
     }
 
+    /**
+     * Delete an XML file that was not completely written
+     *
+     * @param xmlFile
+     */
+    private static void deletePartialFile(File xmlFile) {
+        if (xmlFile.exists() && !xmlFile.delete()) {
+            LOG.warn("Failed to delete partial file {}", xmlFile.getAbsolutePath());
+        }
+    }
+
     /**
      * Generate the person
      *
@@ -1677,7 +1623,9 @@ public class MovieJukeboxXMLWriter {
                 Element eDetails = personDoc.createElement(DETAILS);
                 eDetails.appendChild(writePerson(personDoc, person, true));
                 personDoc.appendChild(eDetails);
-                DOMHelper.writeDocumentToFile(personDoc, tempXmlFile);
+                if (DOMHelper.writeDocumentToFile(personDoc, tempXmlFile)) {
+                    CacheDocument.put(tempXmlFile, personDoc);
+                }
             } catch (ParserConfigurationException error) {
                 LOG.error("Failed writing person XML for {}", tempXmlFile.getName());
                 LOG.error(SystemTools.getStackTrace(error));
@@ -0,0 +1,297 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.writer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the elements straight to a file without building a document.
+ *
+ * The output is the same as DOMHelper.writeDocumentToFile gives for the same elements, which is the indented output of the
+ * Saxon serialiser: three spaces per level, long start tags have their attributes on separate lines and the attributes are in
+ * name order as they are in a DOM element.
+ */
+final class StreamXmlOutput extends XmlOutput implements Closeable {
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+    private static final int INDENT_SPACES = 3;
+    private static final int LINE_LENGTH = 80;
+    private final Writer writer;
+    private final Deque<String> elementNames = new ArrayDeque<>();
+    // The attributes of the current start tag, in the order the DOM keeps them
+    private final Map<String, String> attributes = new TreeMap<>();
+    private boolean started = Boolean.FALSE;
+    private boolean attributesPending = Boolean.FALSE;
+    private boolean startTagOpen = Boolean.FALSE;
+    // Indentation state
+    private int level = 0;
+    private boolean sameLine = Boolean.FALSE;
+    private boolean afterStartTag = Boolean.FALSE;
+    private boolean afterEndTag = Boolean.FALSE;
+    private boolean allWhite = Boolean.TRUE;
+    private int line = 0;
+    private int column = 0;
+    // The first write error, which is thrown when the file is closed
+    private IOException writeError = null;
+
+    StreamXmlOutput(File xmlFile) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(xmlFile), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void startElement(String elementName) {
+        writeAttributes();
+        if (afterStartTag || afterEndTag) {
+            indent();
+        }
+
+        if (!started) {
+            write(XML_DECLARATION);
+            started = Boolean.TRUE;
+        }
+        closeStartTag();
+        write("<");
+        write(elementName);
+        elementNames.push(elementName);
+        startTagOpen = Boolean.TRUE;
+        attributesPending = Boolean.TRUE;
+
+        level++;
+        sameLine = Boolean.TRUE;
+        afterStartTag = Boolean.TRUE;
+        afterEndTag = Boolean.FALSE;
+        allWhite = Boolean.TRUE;
+        line = 0;
+    }
+
+    @Override
+    public void setAttribute(String attribName, String attribValue) {
+        if (!attributesPending) {
+            throw new IllegalStateException("Attribute '" + attribName + "' set after the content of " + elementNames.peek());
+        }
+        // The DOM writes a null value as an empty attribute
+        attributes.put(attribName, attribValue == null ? "" : attribValue);
+    }
+
+    @Override
+    public void appendText(String text) {
+        if (text == null) {
+            // A null text node is not written
+            return;
+        }
+
+        writeAttributes();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                sameLine = Boolean.FALSE;
+                line++;
+                column = 0;
+            }
+            if (!Character.isWhitespace(c)) {
+                allWhite = Boolean.FALSE;
+            }
+            column++;
+        }
+
+        closeStartTag();
+        writeEscaped(text, Boolean.FALSE);
+
+        if (!allWhite) {
+            afterStartTag = Boolean.FALSE;
+            afterEndTag = Boolean.FALSE;
+        }
+    }
+
+    @Override
+    public void endElement() {
+        writeAttributes();
+        level--;
+        if (afterEndTag && !sameLine) {
+            indent();
+        }
+
+        String elementName = elementNames.pop();
+        if (startTagOpen) {
+            write("/>");
+            startTagOpen = Boolean.FALSE;
+        } else {
+            write("</");
+            write(elementName);
+            write(">");
+        }
+
+        sameLine = Boolean.FALSE;
+        afterEndTag = Boolean.TRUE;
+        afterStartTag = Boolean.FALSE;
+        allWhite = Boolean.TRUE;
+        line = 0;
+    }
+
+    /**
+     * Finish the document and close the file
+     *
+     * @throws IOException if any of the writes failed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (afterEndTag) {
+                write("\n");
+            }
+        } finally {
+            writer.close();
+        }
+
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    /**
+     * Write the attributes of the current start tag, one per line if they do not fit on the line
+     */
+    private void writeAttributes() {
+        if (!attributesPending) {
+            return;
+        }
+        attributesPending = Boolean.FALSE;
+
+        int length = 0;
+        for (Map.Entry<String, String> attrib : attributes.entrySet()) {
+            length += attrib.getKey().length() + attrib.getValue().length() + 8;
+        }
+        int attributeIndent = -1;
+        if (length > LINE_LENGTH) {
+            attributeIndent = (level - 1) * INDENT_SPACES + elementNames.peek().length() + 2;
+        }
+
+        boolean first = Boolean.TRUE;
+        for (Map.Entry<String, String> attrib : attributes.entrySet()) {
+            if (first || attributeIndent < 0) {
+                write(" ");
+            } else {
+                write("\n");
+                writeSpaces(attributeIndent);
+            }
+            first = Boolean.FALSE;
+            write(attrib.getKey());
+            write("=\"");
+            writeEscaped(attrib.getValue(), Boolean.TRUE);
+            write("\"");
+        }
+        attributes.clear();
+    }
+
+    private void closeStartTag() {
+        if (startTagOpen) {
+            write(">");
+            startTagOpen = Boolean.FALSE;
+        }
+    }
+
+    private void indent() {
+        int spaces = level * INDENT_SPACES;
+        if (line > 0) {
+            spaces -= column;
+            if (spaces <= 0) {
+                return;
+            }
+            closeStartTag();
+            writeSpaces(spaces + 1);
+        } else {
+            closeStartTag();
+            write("\n");
+            writeSpaces(spaces);
+        }
+        sameLine = Boolean.FALSE;
+    }
+
+    private void writeSpaces(int count) {
+        for (int i = 0; i < count; i++) {
+            write(" ");
+        }
+    }
+
+    /**
+     * Write the text with the same character references as the Saxon serialiser
+     */
+    private void writeEscaped(String text, boolean inAttribute) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                write("&lt;");
+            } else if (c == '>') {
+                write("&gt;");
+            } else if (c == '&') {
+                write("&amp;");
+            } else if (c == '"' && inAttribute) {
+                write("&#34;");
+            } else if (c == '\r') {
+                write("&#xD;");
+            } else if ((c == '\n' || c == '\t') && inAttribute) {
+                write(c == '\n' ? "&#xA;" : "&#x9;");
+            } else if (c == 0) {
+                // Not allowed in XML, so it is dropped
+                continue;
+            } else if ((c < 0x20 && c != '\n' && c != '\t') || (c >= 0x7F && c <= 0x9F) || c == 0x2028) {
+                write("&#x");
+                write(Integer.toHexString(c));
+                write(";");
+            } else {
+                write(c);
+            }
+        }
+    }
+
+    private void write(String text) {
+        if (writeError == null) {
+            try {
+                writer.write(text);
+            } catch (IOException ex) {
+                writeError = ex;
+            }
+        }
+    }
+
+    private void write(char c) {
+        if (writeError == null) {
+            try {
+                writer.write(c);
+            } catch (IOException ex) {
+                writeError = ex;
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.writer;
+
+import java.util.Map;
+
+/**
+ * Output for the XML elements of the jukebox files.
+ *
+ * The elements are written in document order so that the same code can build a DOM element or write straight to a file. The
+ * methods follow the DOM calls that they replace, so both outputs give the same file.
+ */
+abstract class XmlOutput {
+
+    /**
+     * Start a child element of the current element
+     *
+     * @param elementName
+     */
+    public abstract void startElement(String elementName);
+
+    /**
+     * Set an attribute of the current element; this must be done before any content is added
+     *
+     * @param attribName
+     * @param attribValue
+     */
+    public abstract void setAttribute(String attribName, String attribValue);
+
+    /**
+     * Add a text node to the current element, in the same way as Document.createTextNode
+     *
+     * @param text
+     */
+    public abstract void appendText(String text);
+
+    /**
+     * End the current element
+     */
+    public abstract void endElement();
+
+    /**
+     * Set the text of the current element, in the same way as Element.setTextContent
+     *
+     * Empty text does not create a text node
+     *
+     * @param text
+     */
+    public void setTextContent(String text) {
+        if (text != null && !text.isEmpty()) {
+            appendText(text);
+        }
+    }
+
+    /**
+     * Add a child element to the current element
+     *
+     * @param elementName
+     * @param elementValue
+     */
+    public void appendChild(String elementName, String elementValue) {
+        appendChild(elementName, elementValue, null);
+    }
+
+    /**
+     * Add a child element to the current element with a single attribute/value pair
+     *
+     * @param elementName
+     * @param elementValue
+     * @param attribName
+     * @param attribValue
+     */
+    public void appendChild(String elementName, String elementValue, String attribName, String attribValue) {
+        startElement(elementName);
+        setAttribute(attribName, attribValue);
+        appendText(elementValue);
+        endElement();
+    }
+
+    /**
+     * Add a child element to the current element with a set of attributes
+     *
+     * @param elementName
+     * @param elementValue
+     * @param childAttributes
+     */
+    public void appendChild(String elementName, String elementValue, Map<String, String> childAttributes) {
+        startElement(elementName);
+        if (childAttributes != null && !childAttributes.isEmpty()) {
+            for (Map.Entry<String, String> attrib : childAttributes.entrySet()) {
+                setAttribute(attrib.getKey(), attrib.getValue());
+            }
+        }
+        appendText(elementValue);
+        endElement();
+    }
+}
@@ -26,14 +26,18 @@ import com.moviejukebox.AbstractTests;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import com.moviejukebox.tools.ThreadExecutor;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class LibraryTest extends AbstractTests {
@@ -91,6 +95,122 @@ public class LibraryTest extends AbstractTests {
         assertEquals(4, index.get("The Sopranos").size());
     }
 
+    /**
+     * The counts, positions and people found by the lookups built in buildIndex must be the same as the ones found by
+     * scanning the indexes, the movie list and the people
+     *
+     * @throws Throwable
+     */
+    @Test
+    public void testIndexLookups() throws Throwable {
+        LOG.info("testIndexLookups");
+        Library library = new Library();
+        library.addMovie(movie("Alien", "1979", "Alien Saga", 1, "Horror", "Science Fiction"));
+        library.addMovie(movie("Aliens", "1986", "Alien Saga", 2, "Action", "Science Fiction"));
+        library.addMovie(movie("Alien 3", "1992", "Alien Saga", 3, "Science Fiction"));
+        library.addMovie(movie("Shrek", "2001", "Shrek", 1, "Animation"));
+        library.addMovie(movie("Shrek 2", "2004", "Shrek", 2, "Animation"));
+        library.addMovie(movie("Heat", "1995", null, 0, "Action", "Crime"));
+        for (int season = 1; season <= 3; season++) {
+            library.addMovie(tv("The Sopranos", season));
+        }
+
+        library.addPerson(person("John Smith", "John Smith"));
+        library.addPerson(person("Jane Doe", "Jane Doe", "John Smith", "JD"));
+        library.addPerson(person("Bob", "Robert", "Bobby"));
+        library.addPerson(person("Robert", "Robert"));
+        library.addPerson(person("Zed", "Zed", "JD"));
+
+        library.buildIndex(new ThreadExecutor<Void>(2, 2));
+
+        int categories = 0;
+        for (Map.Entry<String, Index> index : library.getIndexes().entrySet()) {
+            for (String category : index.getValue().keySet()) {
+                assertEquals(index.getKey() + "/" + category, scanMovieCount(library, index.getKey(), category),
+                        library.getMovieCountForIndex(index.getKey(), category));
+                categories++;
+            }
+            assertEquals(-1, library.getMovieCountForIndex(index.getKey(), "Unknown category"));
+        }
+        assertTrue("No set index", library.getIndexes().containsKey(Library.INDEX_SET));
+        assertTrue("No categories indexed", categories > 0);
+        assertEquals(-1, library.getMovieCountForIndex("Unknown index", "Alien Saga"));
+
+        List<Movie> movies = library.getMoviesList();
+        for (Movie movie : movies) {
+            assertEquals(movie.getTitle(), movies.indexOf(movie), library.getMoviePosition(movie));
+        }
+        for (Index index : library.getIndexes().values()) {
+            for (List<Movie> indexMovies : index.values()) {
+                for (Movie movie : indexMovies) {
+                    assertEquals(movie.getTitle(), movies.indexOf(movie), library.getMoviePosition(movie));
+                }
+            }
+        }
+
+        for (String indexName : Arrays.asList(Library.INDEX_PERSON, Library.INDEX_CAST, Library.INDEX_DIRECTOR)) {
+            for (String key : Arrays.asList("John Smith", "JOHN SMITH", "Jane Doe", "JD", "Bob", "Robert", "Bobby", "Zed", "Nobody")) {
+                assertSame(indexName + "/" + key, scanPerson(library, indexName, key), library.getPersonForIndex(indexName, key));
+            }
+        }
+    }
+
+    /**
+     * Count the movies the way getMovieCountForIndex did before the counts were kept
+     */
+    private static int scanMovieCount(Library library, String indexName, String category) {
+        Index index = library.getUnCompressedIndexes().get(indexName);
+        if (index == null) {
+            index = library.getIndexes().get(indexName);
+        }
+        if (index == null) {
+            return -1;
+        }
+
+        List<Movie> categoryList = index.get(category);
+        return categoryList == null ? -1 : categoryList.size();
+    }
+
+    /**
+     * Find the person the way the index pages did before the people were mapped
+     */
+    private static Person scanPerson(Library library, String indexName, String key) {
+        for (Person person : library.getPeople()) {
+            if (person.getName().equalsIgnoreCase(key) || person.getTitle().equalsIgnoreCase(key)) {
+                return person;
+            }
+            if (!Library.INDEX_PERSON.equals(indexName)) {
+                for (String name : person.getAka()) {
+                    if (name.equalsIgnoreCase(key)) {
+                        return person;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Movie movie(String title, String year, String set, int order, String... genres) {
+        Movie movie = movie(title);
+        movie.setYear(year, Movie.UNKNOWN);
+        movie.setBaseName(title);
+        movie.setGenres(Arrays.asList(genres), Movie.UNKNOWN);
+        if (set != null) {
+            movie.addSet(set, order);
+        }
+        return movie;
+    }
+
+    private static Person person(String name, String title, String... akas) {
+        Person person = new Person();
+        person.setName(name);
+        person.setTitle(title);
+        for (String aka : akas) {
+            person.addAka(aka);
+        }
+        return person;
+    }
+
     private static void addMovies(Index index, int number) {
         for (int i = 0; i < number; i++) {
             index.addMovie("i" + i, new Movie());
@@ -0,0 +1,237 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+import com.moviejukebox.AbstractTests;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.Random;
+import net.anidb.checksum.Ed2kChecksum;
+import org.apache.commons.io.FileUtils;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class AniDbPluginTest extends AbstractTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AniDbPluginTest.class);
+    private static final int ED2K_CHUNK_SIZE = 9728000;
+    private static final int FILE_SIZE = 300000;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void configure() {
+        doConfiguration();
+    }
+
+    /**
+     * The chunked hash must match the ed2k hash of the whole file around the chunk size
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testEd2kChecksum() throws IOException {
+        LOG.info("testEd2kChecksum");
+        long[] sizes = {0, 1000, ED2K_CHUNK_SIZE - 1, ED2K_CHUNK_SIZE, ED2K_CHUNK_SIZE + 1, 2L * ED2K_CHUNK_SIZE + 12345};
+
+        for (long size : sizes) {
+            File file = createFile(size);
+            try {
+                assertEquals("Wrong hash for " + size + " bytes", getExpectedChecksum(file), AniDbPlugin.getEd2kChecksum(file));
+            } finally {
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    /**
+     * A version 1 database gets the columns and the index of version 2
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUpdateTables() throws Exception {
+        LOG.info("testUpdateTables");
+        ConnectionSource connectionSource = createConnectionSource();
+        try {
+            Dao<AnidbTableInfo, String> tableDao = DaoManager.<Dao<AnidbTableInfo, String>, AnidbTableInfo>createDao(connectionSource, AnidbTableInfo.class);
+            TableUtils.createTable(connectionSource, AnidbTableInfo.class);
+            tableDao.executeRaw("INSERT INTO " + AnidbTableInfo.TABLE_NAME + " (version) VALUES (1)");
+            tableDao.executeRaw("CREATE TABLE " + AnidbLocalFile.TABLE_NAME + " ("
+                    + AnidbLocalFile.ID_COLUMN_NAME + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + AnidbLocalFile.FILENAME_COLUMN_NAME + " BLOB, "
+                    + AnidbLocalFile.ED2K_COLUMN_NAME + " VARCHAR, "
+                    + AnidbLocalFile.SIZE_COLUMN_NAME + " BIGINT, "
+                    + AnidbLocalFile.LAST_SEEN_COLUMN_NAME + " TIMESTAMP)");
+
+            AniDbPlugin.updateTables(connectionSource);
+
+            assertEquals(2, tableDao.queryForAll().get(0).getVersion());
+            assertEquals(1, countFingerprintIndex(tableDao));
+
+            Dao<AnidbLocalFile, String> localFileDao = createLocalFileDao(connectionSource);
+            File file = createFile(folder.newFolder("old"), "Episode 01.mkv", 1);
+            AnidbLocalFile localFile = AniDbPlugin.loadLocalFile(localFileDao, file);
+            assertNotNull(localFile);
+            assertNotEquals("", localFile.getFingerprint());
+            assertEquals(1, localFileDao.countOf());
+        } finally {
+            connectionSource.close();
+        }
+    }
+
+    /**
+     * A new database has the index with the name used by the update
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCreateTables() throws Exception {
+        LOG.info("testCreateTables");
+        ConnectionSource connectionSource = createConnectionSource();
+        try {
+            AniDbPlugin.updateTables(connectionSource);
+
+            Dao<AnidbTableInfo, String> tableDao = DaoManager.<Dao<AnidbTableInfo, String>, AnidbTableInfo>createDao(connectionSource, AnidbTableInfo.class);
+            assertEquals(1, countFingerprintIndex(tableDao));
+        } finally {
+            connectionSource.close();
+        }
+    }
+
+    /**
+     * A moved and renamed file is found by its fingerprint and is not stored again
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testMovedFile() throws Exception {
+        LOG.info("testMovedFile");
+        ConnectionSource connectionSource = createConnectionSource();
+        try {
+            AniDbPlugin.updateTables(connectionSource);
+            Dao<AnidbLocalFile, String> localFileDao = createLocalFileDao(connectionSource);
+
+            File file = createFile(folder.newFolder("old"), "Episode 01.mkv", 1);
+            AnidbLocalFile localFile = AniDbPlugin.loadLocalFile(localFileDao, file);
+            assertNotNull(localFile);
+
+            File movedFile = new File(folder.newFolder("new"), "Show - 01.mkv");
+            long lastModified = file.lastModified();
+            assertTrue(file.renameTo(movedFile));
+            assertTrue(movedFile.setLastModified(lastModified));
+
+            AnidbLocalFile found = AniDbPlugin.loadLocalFile(localFileDao, movedFile);
+            assertNotNull(found);
+            assertEquals(localFile.getId(), found.getId());
+            assertEquals(localFile.getEd2k(), found.getEd2k());
+            assertEquals(movedFile.getAbsolutePath(), found.getOriginalFilename());
+            assertEquals(1, localFileDao.countOf());
+            assertEquals(movedFile.getAbsolutePath(), localFileDao.queryForAll().get(0).getOriginalFilename());
+
+            // A different file of the same size and time is hashed and stored on its own
+            File otherFile = createFile(folder.getRoot(), "Episode 02.mkv", 2);
+            assertTrue(otherFile.setLastModified(lastModified));
+            AnidbLocalFile other = AniDbPlugin.loadLocalFile(localFileDao, otherFile);
+            assertNotNull(other);
+            assertNotEquals(localFile.getId(), other.getId());
+            assertNotEquals(localFile.getEd2k(), other.getEd2k());
+            assertEquals(2, localFileDao.countOf());
+        } finally {
+            connectionSource.close();
+        }
+    }
+
+    private ConnectionSource createConnectionSource() throws IOException, SQLException {
+        return new JdbcConnectionSource("jdbc:sqlite:" + new File(folder.newFolder(), "anidb.db").getAbsolutePath());
+    }
+
+    private static Dao<AnidbLocalFile, String> createLocalFileDao(ConnectionSource connectionSource) throws SQLException {
+        return DaoManager.<Dao<AnidbLocalFile, String>, AnidbLocalFile>createDao(connectionSource, AnidbLocalFile.class);
+    }
+
+    private static long countFingerprintIndex(Dao<AnidbTableInfo, String> tableDao) throws SQLException {
+        return tableDao.queryRawValue("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = '"
+                + AnidbLocalFile.FINGERPRINT_INDEX_NAME + "' AND tbl_name = '" + AnidbLocalFile.TABLE_NAME + "'");
+    }
+
+    private static File createFile(File directory, String name, long seed) throws IOException {
+        File file = new File(directory, name);
+        Random random = new Random(seed);
+        byte[] buffer = new byte[FILE_SIZE];
+        random.nextBytes(buffer);
+        FileUtils.writeByteArrayToFile(file, buffer);
+        return file;
+    }
+
+    private static File createFile(long size) throws IOException {
+        File file = File.createTempFile("yamj-ed2k-", ".bin");
+        Random random = new Random(size);
+        byte[] buffer = new byte[65536];
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            long remaining = size;
+            while (remaining > 0) {
+                int count = (int) Math.min(buffer.length, remaining);
+                random.nextBytes(buffer);
+                out.write(buffer, 0, count);
+                remaining -= count;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Hash the file in one pass with the library checksum
+     */
+    private static String getExpectedChecksum(File file) throws IOException {
+        Ed2kChecksum ed2kChecksum = new Ed2kChecksum();
+        byte[] buffer = new byte[65536];
+        try (InputStream in = new FileInputStream(file)) {
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                ed2kChecksum.update(buffer, 0, count);
+            }
+        }
+        return ed2kChecksum.getHexDigest();
+    }
+}
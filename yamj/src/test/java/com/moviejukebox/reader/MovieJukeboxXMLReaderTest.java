@@ -26,14 +26,33 @@ import com.moviejukebox.AbstractTests;
 import static org.junit.Assert.assertEquals;
 
 import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
+import com.moviejukebox.model.Movie;
 import com.moviejukebox.model.Person;
+import com.moviejukebox.plugin.ImdbPlugin;
+import com.moviejukebox.tools.DOMHelper;
 import org.junit.BeforeClass;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import static org.junit.Assert.assertEquals;
+import org.w3c.dom.Element;
+import static org.junit.Assert.assertTrue;
 
 /**
  *
@@ -42,6 +61,8 @@ import static org.junit.Assert.assertEquals;
 public class MovieJukeboxXMLReaderTest extends AbstractTests {
 
     private static final Logger LOG = LoggerFactory.getLogger(MovieJukeboxXMLReaderTest.class);
+    // Nested values are compared to this depth
+    private static final int MAX_DEPTH = 5;
 
     @BeforeClass
     public static void setUpClass() {
@@ -53,7 +74,18 @@ public class MovieJukeboxXMLReaderTest extends AbstractTests {
      */
     @Test
     public void testParseMovieXML() {
-        LOG.info("parseMovieXML - no test written");
+        LOG.info("parseMovieXML");
+        File xmlFile = getTestFile("ExampleMovieXML.xml");
+
+        Movie movie = new Movie();
+        MovieJukeboxXMLReader instance = new MovieJukeboxXMLReader();
+        boolean result = instance.parseMovieXML(xmlFile, movie);
+        assertEquals(true, result);
+        assertEquals("tt0068646", movie.getId(ImdbPlugin.IMDB_PLUGIN_ID));
+        assertEquals("The Godfather", movie.getTitle());
+        assertEquals("1972", movie.getYear());
+        assertTrue(movie.getGenres().contains("Drama"));
+        assertEquals(1, movie.getMovieFiles().size());
     }
 
     /**
@@ -79,4 +111,194 @@ public class MovieJukeboxXMLReaderTest extends AbstractTests {
         LOG.info("Person: " + person.toString());
         assertEquals(expResult, result);
     }
+
+    /**
+     * The movie must be the same as the one read by the old DOM reader
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParseMovieXMLAsDom() throws Exception {
+        LOG.info("parseMovieXMLAsDom");
+        assertSameMovie(getTestFile("ExampleMovieXML.xml"));
+    }
+
+    /**
+     * The DOM edge cases: people with "id_" attributes, attachments, an empty element, an element starting with a child element
+     * and a missing element
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParseMovieXMLEdgeCasesAsDom() throws Exception {
+        LOG.info("parseMovieXMLEdgeCasesAsDom");
+        String xml = FileUtils.readFileToString(getTestFile("ExampleMovieXML.xml"), StandardCharsets.UTF_8);
+        xml = replaceFirst(xml, "id=\"nm0000338\"", "id=\"nm0000338\" id_themoviedb=\"1776\" id_imdb=\"nm0000338\"");
+        xml = replaceFirst(xml, "</file>", "<attachments><attachment type=\"MATROSKA\"><attachmentId>2</attachmentId>"
+                + "<contentType>POSTER</contentType><mimeType>image/jpeg</mimeType><part>1</part></attachment>"
+                + "<attachment type=\"MATROSKA\"><attachmentId>3</attachmentId><contentType>FANART</contentType>"
+                + "<mimeType>image/png</mimeType><part>1</part></attachment></attachments></file>");
+        xml = xml.replaceAll("<outline>[^<]*</outline>", "<outline/>");
+        xml = xml.replaceAll("<tagline>[^<]*</tagline>", "<tagline><b>Genres</b>:Crime</tagline>");
+        xml = xml.replaceAll("<quote>[^<]*</quote>", "");
+
+        File xmlFile = File.createTempFile("yamj-movie-", ".xml");
+        try {
+            FileUtils.writeStringToFile(xmlFile, xml, StandardCharsets.UTF_8);
+            Movie movie = assertSameMovie(xmlFile);
+            assertEquals("Attachments not read", 2, movie.getFirstFile().getAttachments().size());
+        } finally {
+            FileUtils.deleteQuietly(xmlFile);
+        }
+    }
+
+    /**
+     * The person must be the same as the one read by the old DOM reader
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParsePersonXMLAsDom() throws Exception {
+        LOG.info("parsePersonXMLAsDom");
+        File xmlFile = getTestFile("ParsePersonTest.xml");
+
+        Person expected = new Person();
+        assertTrue(new DomMovieJukeboxXMLReader().parsePersonXML(xmlFile, expected));
+        Person actual = new Person();
+        assertTrue(new MovieJukeboxXMLReader().parsePersonXML(xmlFile, actual));
+        assertSameValue("person", expected, actual, 0, new IdentityHashMap<Object, Boolean>());
+    }
+
+    /**
+     * The first values must be the same as DOMHelper.getValueFromElement gives
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStreamElementValues() throws Exception {
+        LOG.info("streamElementValues");
+        String xml = "<details><movie>"
+                + "<text source=\"imdb\">plain</text>"
+                + "<empty/>"
+                + "<emptyPair></emptyPair>"
+                + "<childFirst><b>bold</b> text</childFirst>"
+                + "<textFirst>text <b>bold</b></textFirst>"
+                + "<mixed>a &amp; b<![CDATA[ <c> ]]>d</mixed>"
+                + "<nested><text>inner</text></nested>"
+                + "</movie></details>";
+        File xmlFile = File.createTempFile("yamj-values-", ".xml");
+        try {
+            FileUtils.writeStringToFile(xmlFile, xml, StandardCharsets.UTF_8);
+            Element domMovie = (Element) DOMHelper.getDocFromFile(xmlFile).getElementsByTagName("movie").item(0);
+            List<StreamElement> movies = StreamElement.read(xmlFile, "movie", new StreamElement.ElementSpec().withValues(), Boolean.TRUE);
+            assertEquals(1, movies.size());
+
+            for (String tagName : new String[]{"text", "empty", "emptyPair", "childFirst", "textFirst", "mixed", "missing"}) {
+                assertEquals("Wrong value for " + tagName, DOMHelper.getValueFromElement(domMovie, tagName), movies.get(0).getValue(tagName));
+            }
+            assertEquals("", movies.get(0).getValue("missing"));
+            assertEquals("imdb", movies.get(0).getValueSource("text"));
+        } finally {
+            FileUtils.deleteQuietly(xmlFile);
+        }
+    }
+
+    private static String replaceFirst(String text, String search, String replacement) {
+        int index = text.indexOf(search);
+        assertTrue("Missing '" + search + "'", index >= 0);
+        return text.substring(0, index) + replacement + text.substring(index + search.length());
+    }
+
+    /**
+     * Read the file with both readers and compare the movies
+     */
+    private static Movie assertSameMovie(File xmlFile) throws ReflectiveOperationException {
+        Movie expected = new Movie();
+        assertTrue(new DomMovieJukeboxXMLReader().parseMovieXML(xmlFile, expected));
+        Movie actual = new Movie();
+        assertTrue(new MovieJukeboxXMLReader().parseMovieXML(xmlFile, actual));
+        assertSameValue("movie", expected, actual, 0, new IdentityHashMap<Object, Boolean>());
+        return actual;
+    }
+
+    /**
+     * Compare the values of all getters, going into collections, maps and the model classes
+     */
+    private static void assertSameValue(String path, Object expected, Object actual, int depth, Map<Object, Boolean> visited)
+            throws ReflectiveOperationException {
+        if (expected == null || actual == null) {
+            assertEquals(path, expected, actual);
+            return;
+        }
+        assertEquals(path + " type", expected.getClass(), actual.getClass());
+
+        if (expected instanceof Map) {
+            Map<?, ?> expectedMap = (Map<?, ?>) expected;
+            Map<?, ?> actualMap = (Map<?, ?>) actual;
+            assertEquals(path + " keys", expectedMap.keySet(), actualMap.keySet());
+            for (Map.Entry<?, ?> entry : expectedMap.entrySet()) {
+                assertSameValue(path + "[" + entry.getKey() + "]", entry.getValue(), actualMap.get(entry.getKey()), depth + 1, visited);
+            }
+        } else if (expected instanceof Collection) {
+            Collection<?> expectedCollection = (Collection<?>) expected;
+            Collection<?> actualCollection = (Collection<?>) actual;
+            assertEquals(path + " size", expectedCollection.size(), actualCollection.size());
+            if (expected instanceof Set && !isModelValue(expectedCollection)) {
+                assertEquals(path, expected, actual);
+                return;
+            }
+            Iterator<?> actualIterator = actualCollection.iterator();
+            int index = 0;
+            for (Object expectedItem : expectedCollection) {
+                assertSameValue(path + "[" + index++ + "]", expectedItem, actualIterator.next(), depth + 1, visited);
+            }
+        } else if (expected.getClass().isArray()) {
+            assertTrue(path, Arrays.deepEquals(new Object[]{expected}, new Object[]{actual}));
+        } else if (!expected.getClass().getName().startsWith("com.moviejukebox.") || expected.getClass().isEnum()) {
+            assertEquals(path, expected, actual);
+        } else if (depth < MAX_DEPTH && visited.put(expected, Boolean.TRUE) == null) {
+            for (Method getter : getGetters(expected.getClass())) {
+                assertSameValue(path + "." + getter.getName(), invoke(getter, expected), invoke(getter, actual), depth + 1, visited);
+            }
+        }
+    }
+
+    private static boolean isModelValue(Collection<?> collection) {
+        for (Object item : collection) {
+            return item != null && item.getClass().getName().startsWith("com.moviejukebox.");
+        }
+        return Boolean.FALSE;
+    }
+
+    /**
+     * The public getters without arguments, sorted by name
+     */
+    private static List<Method> getGetters(Class<?> cls) {
+        List<Method> getters = new ArrayList<>();
+        for (Method method : cls.getMethods()) {
+            String name = method.getName();
+            if (method.getParameterTypes().length == 0 && !Modifier.isStatic(method.getModifiers())
+                    && !"getClass".equals(name) && (name.startsWith("get") || name.startsWith("is"))) {
+                getters.add(method);
+            }
+        }
+        Collections.sort(getters, new Comparator<Method>() {
+            @Override
+            public int compare(Method method1, Method method2) {
+                return method1.getName().compareTo(method2.getName());
+            }
+        });
+        return getters;
+    }
+
+    /**
+     * Call the getter, a thrown exception is compared as the value
+     */
+    private static Object invoke(Method getter, Object target) throws IllegalAccessException {
+        try {
+            return getter.invoke(target);
+        } catch (InvocationTargetException ex) {
+            return ex.getCause().getClass().getName();
+        }
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.scanner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.moviejukebox.AbstractTests;
+import com.moviejukebox.model.MovieFile;
+import com.moviejukebox.model.attachment.Attachment;
+import com.moviejukebox.model.attachment.AttachmentType;
+import com.moviejukebox.model.attachment.ContentType;
+import com.moviejukebox.tools.PropertiesUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class AttachmentScannerTest extends AbstractTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AttachmentScannerTest.class);
+    private static final File TEST_DIR = new File(FileUtils.getTempDirectory(), "yamj-attachment-scanner-test");
+    private static final byte[] POSTER = "poster image data".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FANART = "fanart image data, a bit longer than the poster".getBytes(StandardCharsets.US_ASCII);
+    private static File movieFile;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        doConfiguration();
+        // The MIME types are only set up when the scanner is enabled
+        PropertiesUtil.setProperty("attachment.scanner.enable", true);
+        movieFile = writeFile("movie.mkv", createMatroska());
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        FileUtils.deleteQuietly(TEST_DIR);
+    }
+
+    /**
+     * The attachments are found through the seek head, behind the clusters
+     */
+    @Test
+    public void testScanAttachments() {
+        LOG.info("testScanAttachments");
+        List<Attachment> attachments = scan();
+
+        // The text attachment is not used, but it still counts for the ids
+        assertEquals(2, attachments.size());
+        assertEquals(2, attachments.get(0).getAttachmentId());
+        assertEquals(ContentType.POSTER, attachments.get(0).getContentType());
+        assertEquals("image/jpeg", attachments.get(0).getMimeType());
+        assertEquals(POSTER.length, attachments.get(0).getDataSize());
+        assertEquals(3, attachments.get(1).getAttachmentId());
+        assertEquals(ContentType.FANART, attachments.get(1).getContentType());
+        assertEquals(FANART.length, attachments.get(1).getDataSize());
+    }
+
+    @Test
+    public void testCopyAttachment() throws IOException {
+        LOG.info("testCopyAttachment");
+        List<Attachment> attachments = scan();
+
+        File target = new File(TEST_DIR, "poster.jpg");
+        assertTrue("Copy failed", AttachmentScanner.copyAttachment(attachments.get(0), target));
+        assertArrayEquals(POSTER, FileUtils.readFileToByteArray(target));
+
+        target = new File(TEST_DIR, "fanart.png");
+        assertTrue("Copy failed", AttachmentScanner.copyAttachment(attachments.get(1), target));
+        assertArrayEquals(FANART, FileUtils.readFileToByteArray(target));
+    }
+
+    /**
+     * An attachment read from the jukebox XML only has its id, the data is found again in the movie file
+     */
+    @Test
+    public void testCopyAttachmentFromXml() throws IOException {
+        LOG.info("testCopyAttachmentFromXml");
+        Attachment attachment = new Attachment();
+        attachment.setType(AttachmentType.MATROSKA);
+        attachment.setAttachmentId(3);
+        attachment.setContentType(ContentType.FANART);
+        attachment.setSourceFile(movieFile);
+
+        File target = new File(TEST_DIR, "fanart-xml.png");
+        assertTrue("Copy failed", AttachmentScanner.copyAttachment(attachment, target));
+        assertArrayEquals(FANART, FileUtils.readFileToByteArray(target));
+        assertTrue("Data position not kept", attachment.getDataPosition() > 0);
+
+        Attachment missing = new Attachment();
+        missing.setAttachmentId(4);
+        missing.setSourceFile(movieFile);
+        assertFalse("Unknown attachment copied", AttachmentScanner.copyAttachment(missing, new File(TEST_DIR, "missing.jpg")));
+    }
+
+    private static List<Attachment> scan() {
+        MovieFile mf = new MovieFile();
+        mf.setFile(movieFile);
+        AttachmentScanner.scanAttachments(mf);
+        return mf.getAttachments();
+    }
+
+    /**
+     * A matroska file with the attachments after the cluster, so they can only be found with the seek head
+     */
+    private static byte[] createMatroska() throws IOException {
+        byte[] header = ebml(0x1A45DFA3, ebml(0x4282, "matroska".getBytes(StandardCharsets.US_ASCII)));
+        byte[] cluster = ebml(0x1F43B675, new byte[256]);
+        byte[] attachments = ebml(0x1941A469, concat(
+                attachedFile("notes.txt", "text/plain", "some notes".getBytes(StandardCharsets.US_ASCII)),
+                attachedFile("movie.poster.jpg", "image/jpeg", POSTER),
+                attachedFile("movie.fanart.png", "image/png", FANART)));
+
+        // The seek head has the same length for any position
+        int seekHeadLength = seekHead(0).length;
+        byte[] segment = concat(seekHead(seekHeadLength + cluster.length), cluster, attachments);
+        return concat(header, ebml(0x18538067, segment));
+    }
+
+    private static byte[] seekHead(long attachmentsPosition) throws IOException {
+        return ebml(0x114D9B74, ebml(0x4DBB, concat(
+                ebml(0x53AB, uint(0x1941A469, 4)),
+                ebml(0x53AC, uint(attachmentsPosition, 8)))));
+    }
+
+    private static byte[] attachedFile(String name, String mimeType, byte[] data) throws IOException {
+        return ebml(0x61A7, concat(
+                ebml(0x466E, name.getBytes(StandardCharsets.UTF_8)),
+                ebml(0x4660, mimeType.getBytes(StandardCharsets.US_ASCII)),
+                ebml(0x465C, data)));
+    }
+
+    private static File writeFile(String name, byte[] content) throws IOException {
+        File file = new File(TEST_DIR, name);
+        FileUtils.writeByteArrayToFile(file, content);
+        return file;
+    }
+
+    private static byte[] ebml(long id, byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int idLength = id > 0xFFFFFF ? 4 : (id > 0xFFFF ? 3 : (id > 0xFF ? 2 : 1));
+        out.write(uint(id, idLength));
+        // Eight byte sizes are valid for every element
+        out.write(0x01);
+        out.write(uint(data.length, 7));
+        out.write(data);
+        return out.toByteArray();
+    }
+
+    private static byte[] uint(long value, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = (byte) (value & 0xFF);
+            value >>= 8;
+        }
+        return bytes;
+    }
+
+    private static byte[] concat(byte[]... parts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.moviejukebox.AbstractTests;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ContainerProbeTest extends AbstractTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContainerProbeTest.class);
+    private static final File TEST_DIR = new File(FileUtils.getTempDirectory(), "yamj-container-probe-test");
+    private final Map<String, String> infosGeneral = new HashMap<>();
+    private final List<Map<String, String>> infosVideo = new ArrayList<>();
+    private final List<Map<String, String>> infosAudio = new ArrayList<>();
+    private final List<Map<String, String>> infosText = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUpClass() {
+        doConfiguration();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        FileUtils.deleteQuietly(TEST_DIR);
+    }
+
+    @Before
+    public void setUp() {
+        infosGeneral.clear();
+        infosVideo.clear();
+        infosAudio.clear();
+        infosText.clear();
+    }
+
+    @Test
+    public void testMatroska() throws IOException {
+        LOG.info("testMatroska");
+        byte[] header = ebml(0x1A45DFA3, ebml(0x4282, "matroska".getBytes(StandardCharsets.US_ASCII)));
+        byte[] info = ebml(0x1549A966, concat(
+                ebml(0x2AD7B1, uint(1000000, 3)),
+                ebml(0x4489, float64(6840000.0)),
+                ebml(0x7BA9, "Test Movie".getBytes(StandardCharsets.UTF_8))));
+        byte[] videoTrack = ebml(0xAE, concat(
+                ebml(0x83, uint(1, 1)),
+                ebml(0x86, "V_MPEG4/ISO/AVC".getBytes(StandardCharsets.US_ASCII)),
+                ebml(0x23E383, uint(41708375, 4)),
+                ebml(0xE0, concat(
+                        ebml(0xB0, uint(1920, 2)),
+                        ebml(0xBA, uint(800, 2)),
+                        ebml(0x9A, uint(2, 1))))));
+        byte[] audioTrack = ebml(0xAE, concat(
+                ebml(0x83, uint(2, 1)),
+                ebml(0x86, "A_DTS".getBytes(StandardCharsets.US_ASCII)),
+                ebml(0x22B59C, "ger".getBytes(StandardCharsets.US_ASCII)),
+                ebml(0xE1, concat(
+                        ebml(0xB5, float64(48000.0)),
+                        ebml(0x9F, uint(6, 1))))));
+        byte[] textTrack = ebml(0xAE, concat(
+                ebml(0x83, uint(17, 1)),
+                ebml(0x86, "S_TEXT/UTF8".getBytes(StandardCharsets.US_ASCII)),
+                ebml(0x22B59C, "fre".getBytes(StandardCharsets.US_ASCII))));
+        byte[] tracks = ebml(0x1654AE6B, concat(videoTrack, audioTrack, textTrack));
+        byte[] cluster = ebml(0x1F43B675, new byte[64]);
+        File file = writeFile("movie.mkv", concat(header, ebml(0x18538067, concat(info, tracks, cluster))));
+
+        assertTrue("File not probed", ContainerProbe.probe(file, infosGeneral, infosVideo, infosAudio, infosText));
+        assertEquals("Matroska", infosGeneral.get("Format"));
+        assertEquals("6840000", infosGeneral.get("Duration"));
+        assertEquals("Test Movie", infosGeneral.get("Movie name"));
+
+        assertEquals(1, infosVideo.size());
+        Map<String, String> video = infosVideo.get(0);
+        assertEquals("AVC", video.get("Format"));
+        assertEquals("1920", video.get("Width"));
+        assertEquals("800", video.get("Height"));
+        assertEquals("2.400", video.get("Display aspect ratio"));
+        assertEquals("23.976", video.get("Frame rate"));
+        assertEquals("Progressive", video.get("Scan type"));
+        assertEquals("Wrong default language", "en", video.get("Language"));
+
+        assertEquals(1, infosAudio.size());
+        Map<String, String> audio = infosAudio.get(0);
+        assertEquals("DTS", audio.get("Format"));
+        assertEquals("A_DTS", audio.get("Codec ID"));
+        assertEquals("6", audio.get("Channel(s)"));
+        assertEquals("48000", audio.get("Sampling rate"));
+        assertEquals("de", audio.get("Language"));
+
+        assertEquals(1, infosText.size());
+        assertEquals("UTF-8", infosText.get(0).get("Format"));
+        assertEquals("fr", infosText.get(0).get("Language"));
+    }
+
+    @Test
+    public void testMp4() throws IOException {
+        LOG.info("testMp4");
+        byte[] ftyp = box("ftyp", concat("isom".getBytes(StandardCharsets.US_ASCII), uint(512, 4)));
+        byte[] mdat = box("mdat", new byte[128]);
+        // Version 0 movie header: 90 seconds at a time scale of 1000
+        byte[] mvhd = box("mvhd", concat(new byte[12], uint(1000, 4), uint(90000, 4), new byte[80]));
+
+        byte[] videoEntry = concat(uint(86, 4), "avc1".getBytes(StandardCharsets.US_ASCII), new byte[24],
+                uint(1280, 2), uint(720, 2), new byte[50]);
+        byte[] videoTrak = box("trak", concat(
+                box("tkhd", concat(new byte[76], uint(1280 << 16, 4), uint(720 << 16, 4))),
+                box("mdia", concat(
+                        mediaHeader(24000, 2160000, "eng"),
+                        box("hdlr", concat(new byte[8], "vide".getBytes(StandardCharsets.US_ASCII), new byte[12])),
+                        box("minf", box("stbl", concat(
+                                box("stsd", concat(new byte[4], uint(1, 4), videoEntry)),
+                                box("stsz", concat(new byte[8], uint(2160, 4))))))))));
+
+        byte[] audioEntry = concat(uint(36, 4), "ac-3".getBytes(StandardCharsets.US_ASCII), new byte[16],
+                uint(6, 2), uint(16, 2), new byte[4], uint(48000 << 16, 4));
+        byte[] audioTrak = box("trak", concat(
+                box("tkhd", new byte[84]),
+                box("mdia", concat(
+                        mediaHeader(48000, 4320000, "jpn"),
+                        box("hdlr", concat(new byte[8], "soun".getBytes(StandardCharsets.US_ASCII), new byte[12])),
+                        box("minf", box("stbl", box("stsd", concat(new byte[4], uint(1, 4), audioEntry))))))));
+
+        // The movie box after the media data, as written by most encoders
+        File file = writeFile("movie.mp4", concat(ftyp, mdat, box("moov", concat(mvhd, videoTrak, audioTrak))));
+
+        assertTrue("File not probed", ContainerProbe.probe(file, infosGeneral, infosVideo, infosAudio, infosText));
+        assertEquals("MPEG-4", infosGeneral.get("Format"));
+        assertEquals("90000", infosGeneral.get("Duration"));
+
+        assertEquals(1, infosVideo.size());
+        Map<String, String> video = infosVideo.get(0);
+        assertEquals("AVC", video.get("Format"));
+        assertEquals("avc1", video.get("Codec ID"));
+        assertEquals("1280", video.get("Width"));
+        assertEquals("720", video.get("Height"));
+        assertEquals("1.778", video.get("Display aspect ratio"));
+        assertEquals("24.000", video.get("Frame rate"));
+        assertEquals("en", video.get("Language"));
+
+        assertEquals(1, infosAudio.size());
+        Map<String, String> audio = infosAudio.get(0);
+        assertEquals("AC-3", audio.get("Format"));
+        assertEquals("6", audio.get("Channel(s)"));
+        assertEquals("48000", audio.get("Sampling rate"));
+        assertEquals("ja", audio.get("Language"));
+    }
+
+    @Test
+    public void testUnknownFormat() throws IOException {
+        LOG.info("testUnknownFormat");
+        File file = writeFile("movie.avi", "RIFF....AVI LIST".getBytes(StandardCharsets.US_ASCII));
+        assertFalse("AVI should be left to MediaInfo", ContainerProbe.probe(file, infosGeneral, infosVideo, infosAudio, infosText));
+        assertTrue(infosGeneral.isEmpty());
+
+        // A damaged file must not leave partial information
+        file = writeFile("broken.mkv", concat(ebml(0x1A45DFA3, new byte[0]), new byte[]{0x18, 0x53}));
+        assertFalse("Broken file should be left to MediaInfo", ContainerProbe.probe(file, infosGeneral, infosVideo, infosAudio, infosText));
+        assertTrue(infosGeneral.isEmpty());
+    }
+
+    private static File writeFile(String name, byte[] content) throws IOException {
+        File file = new File(TEST_DIR, name);
+        FileUtils.writeByteArrayToFile(file, content);
+        return file;
+    }
+
+    private static byte[] mediaHeader(int timeScale, int duration, String language) throws IOException {
+        int packed = 0;
+        for (char c : language.toCharArray()) {
+            packed = (packed << 5) | (c - 0x60);
+        }
+        return box("mdhd", concat(new byte[12], uint(timeScale, 4), uint(duration, 4), uint(packed, 2), new byte[2]));
+    }
+
+    private static byte[] box(String type, byte[] data) throws IOException {
+        return concat(uint(data.length + 8, 4), type.getBytes(StandardCharsets.US_ASCII), data);
+    }
+
+    private static byte[] ebml(long id, byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int idLength = id > 0xFFFFFF ? 4 : (id > 0xFFFF ? 3 : (id > 0xFF ? 2 : 1));
+        out.write(uint(id, idLength));
+        // Eight byte sizes are valid for every element
+        out.write(0x01);
+        out.write(uint(data.length, 7));
+        out.write(data);
+        return out.toByteArray();
+    }
+
+    private static byte[] uint(long value, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = (byte) (value & 0xFF);
+            value >>= 8;
+        }
+        return bytes;
+    }
+
+    private static byte[] float64(double value) {
+        return uint(Double.doubleToLongBits(value), 8);
+    }
+
+    private static byte[] concat(byte[]... parts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.moviejukebox.AbstractTests;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MediaInfoCacheTest extends AbstractTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MediaInfoCacheTest.class);
+    private static final File TEST_DIR = new File(FileUtils.getTempDirectory(), "yamj-mediainfo-cache-test");
+    private static File originalCacheDirectory;
+
+    @BeforeClass
+    public static void setUpClass() {
+        doConfiguration();
+        originalCacheDirectory = MediaInfoCache.getCacheDirectory();
+        MediaInfoCache.setCacheDirectory(new File(TEST_DIR, "cache"));
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        MediaInfoCache.setCacheDirectory(originalCacheDirectory);
+        FileUtils.deleteQuietly(TEST_DIR);
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        LOG.info("testReadWrite");
+        File videoFile = new File(TEST_DIR, "movie.avi");
+        FileUtils.writeStringToFile(videoFile, "video content", "UTF-8");
+
+        Map<String, String> general = new HashMap<>();
+        general.put("Duration", "1h 54mn");
+        List<Map<String, String>> video = new ArrayList<>();
+        Map<String, String> stream = new HashMap<>();
+        stream.put("Codec ID", "V_MPEG4/ISO/AVC");
+        video.add(stream);
+
+        MediaInfoCache.write(videoFile, new MediaInfoCache.MediaInfoData(videoFile, general,
+                video, new ArrayList<Map<String, String>>(), new ArrayList<Map<String, String>>()));
+
+        MediaInfoCache.MediaInfoData cached = MediaInfoCache.read(videoFile);
+        assertNotNull("Entry not cached", cached);
+
+        Map<String, String> infosGeneral = new HashMap<>();
+        List<Map<String, String>> infosVideo = new ArrayList<>();
+        List<Map<String, String>> infosAudio = new ArrayList<>();
+        List<Map<String, String>> infosText = new ArrayList<>();
+        cached.copyTo(infosGeneral, infosVideo, infosAudio, infosText);
+        assertEquals("Wrong duration", "1h 54mn", infosGeneral.get("Duration"));
+        assertEquals("Wrong video count", 1, infosVideo.size());
+        assertEquals("Wrong codec", "V_MPEG4/ISO/AVC", infosVideo.get(0).get("Codec ID"));
+        assertEquals("Wrong audio count", 0, infosAudio.size());
+
+        // Changing the file must invalidate the entry
+        FileUtils.writeStringToFile(videoFile, "changed video content", "UTF-8");
+        assertNull("Entry not invalidated", MediaInfoCache.read(videoFile));
+    }
+}
@@ -499,6 +499,52 @@ public class MovieFilenameScannerTest extends AbstractTests {
         assertEquals("South Park", d.getTitle());
     }
 
+    @Test
+    public void testThroughput() {
+        LOG.info("Throughput");
+        // filename and expected title
+        String[][] filenames = new String[][]{
+            {"Aliens(1986).avi", "Aliens"},
+            {"Aime ton Père (2002) [Jacob Berger, Gérard Depardieu, Guillaume Depardieu, Sylvie Testud].ISO", "Aime ton Père"},
+            {"The.Matrix 720P - Unrated Trailer.avi", "The Matrix"},
+            {"South Park - S14E05 - 200 (1).avi", "South Park"},
+            {"Alien vs Predator [SET Alien Collection 2][SET Predator-3].mkv", "Alien vs Predator"},
+            {"Gladiator[PART1].[TRAILER-gladiator_480_sv2].mov", "Gladiator"}
+        };
+        int iterations = 1000;
+
+        // Warm up the patterns before timing
+        for (String[] filename : filenames) {
+            assertEquals(filename[1], scan(filename[0]).getTitle());
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (String[] filename : filenames) {
+                assertEquals(filename[1], scan(filename[0]).getTitle());
+            }
+        }
+        long elapsed = Math.max(1L, System.nanoTime() - start);
+        long scans = (long) iterations * filenames.length;
+        LOG.info("Scanned {} filenames in {}ms ({} per second)", scans, elapsed / 1000000L, scans * 1000000000L / elapsed);
+
+        // The repeated scans must give the same results as the first scan
+        MovieFileNameDTO d = scan("South Park - S14E05 - 200 (1).avi");
+        assertEquals(14, d.getSeason());
+        assertEquals(Arrays.asList(new Integer[]{5}), d.getEpisodes());
+        assertEquals("200 (1)", d.getEpisodeTitle());
+
+        d = scan("Aliens(1986).avi");
+        assertEquals(1986, d.getYear());
+
+        d = scan("Alien vs Predator [SET Alien Collection 2][SET Predator-3].mkv");
+        assertEquals(2, d.getSets().size());
+        assertEquals(3, d.getSets().get(1).getIndex());
+
+        d = scan("Gladiator[PART1].[TRAILER-gladiator_480_sv2].mov");
+        assertEquals("TRAILER-gladiator_480_sv2", d.getPartTitle());
+    }
+
     @SuppressWarnings("serial")
     private static MovieFileNameDTO scan(String filename) {
         File file = new File(filename) {
@@ -23,12 +23,34 @@
 package com.moviejukebox.scanner;
 
 import com.moviejukebox.AbstractTests;
+import com.moviejukebox.model.IImage;
+import com.moviejukebox.model.IMovieBasicInformation;
+import com.moviejukebox.model.Identifiable;
+import com.moviejukebox.model.Image;
 import com.moviejukebox.model.Movie;
 import com.moviejukebox.plugin.ImdbInfo;
 import com.moviejukebox.plugin.ImdbPluginTest;
+import com.moviejukebox.plugin.poster.ITvShowPosterPlugin;
 import com.moviejukebox.scanner.artwork.PosterScanner;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -41,10 +63,32 @@ public class PosterScannerTest extends AbstractTests {
 
     private static final Logger LOG = LoggerFactory.getLogger(ImdbPluginTest.class);
     private Movie movieTest;
+    // Local server for the poster searches
+    private static HttpServer server;
+    private static String serverUrl;
 
     @BeforeClass
-    public static void configure() {
+    public static void configure() throws IOException {
         doConfiguration();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/poster", new ImageHandler(200, 300, 0));
+        server.createContext("/slow", new ImageHandler(200, 300, 1000));
+        server.createContext("/hang", new ImageHandler(200, 300, 10000));
+        server.createContext("/landscape", new ImageHandler(300, 200, 0));
+        server.createContext("/error", new ImageHandler(0, 0, 0));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        serverUrl = "http://localhost:" + server.getAddress().getPort();
+
+        for (String path : new String[]{"poster", "slow", "hang", "landscape", "error"}) {
+            PosterScanner.register("stub" + path, new StubPosterPlugin("stub" + path, serverUrl + "/" + path));
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        server.stop(0);
     }
 
     @Before
@@ -108,4 +152,159 @@ public class PosterScannerTest extends AbstractTests {
         Assert.assertEquals(1400, dimension.getWidth(), 10);
         Assert.assertEquals(2100, dimension.getHeight(), 10);
     }
+
+    @Test
+    public void testPosterSearchPriority() {
+        LOG.info("testPosterSearchPriority");
+        Movie movie = createTvShow();
+        // the slow poster is first in the list, so it wins even if the other one is quicker
+        IImage posterImage = PosterScanner.getPosterURL(movie, "stubslow,stubposter", 30);
+        Assert.assertEquals(serverUrl + "/slow", posterImage.getUrl());
+        Assert.assertEquals("1", movie.getId("stubslow"));
+        // no ID from a plugin after the winner
+        Assert.assertEquals(Movie.UNKNOWN, movie.getId("stubposter"));
+    }
+
+    @Test
+    public void testPosterSearchFailing() {
+        LOG.info("testPosterSearchFailing");
+        Movie movie = createTvShow();
+        IImage posterImage = PosterScanner.getPosterURL(movie, "stuberror,stublandscape,stubposter", 30);
+        Assert.assertEquals(serverUrl + "/poster", posterImage.getUrl());
+        Assert.assertEquals("1", movie.getId("stuberror"));
+        Assert.assertEquals("1", movie.getId("stublandscape"));
+    }
+
+    @Test
+    public void testPosterSearchTimeout() {
+        LOG.info("testPosterSearchTimeout");
+        Movie movie = createTvShow();
+        long start = System.currentTimeMillis();
+        IImage posterImage = PosterScanner.getPosterURL(movie, "stubhang,stubposter", 2);
+        long duration = System.currentTimeMillis() - start;
+        LOG.info("Poster search took {}ms", duration);
+        Assert.assertEquals(serverUrl + "/poster", posterImage.getUrl());
+        Assert.assertTrue("Search did not stop at the timeout", duration < 5000);
+    }
+
+    @Test
+    public void testPosterSearchHangingSite() throws Exception {
+        LOG.info("testPosterSearchHangingSite");
+        // More movies at the same time than the searches of one movie, all with the hanging site first
+        int movieCount = 12;
+        ExecutorService movieThreads = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<IImage>> results = new ArrayList<>(movieCount);
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < movieCount; i++) {
+                results.add(movieThreads.submit(new Callable<IImage>() {
+                    @Override
+                    public IImage call() {
+                        return PosterScanner.getPosterURL(createTvShow(), "stubhang,stubposter", 1);
+                    }
+                }));
+            }
+
+            for (Future<IImage> result : results) {
+                Assert.assertEquals(serverUrl + "/poster", result.get(30, TimeUnit.SECONDS).getUrl());
+            }
+            long duration = System.currentTimeMillis() - start;
+            LOG.info("Poster searches took {}ms", duration);
+            // Two rounds of movies, each waiting about one second for the hanging site
+            Assert.assertTrue("The hanging site held up the other movies", duration < 8000);
+        } finally {
+            movieThreads.shutdownNow();
+        }
+    }
+
+    private static Movie createTvShow() {
+        Movie movie = new Movie();
+        movie.setMovieType(Movie.TYPE_TVSHOW);
+        movie.setTitle("Poster Search", Movie.UNKNOWN);
+        return movie;
+    }
+
+    /**
+     * Serve a PNG image of the given size after a delay, or an error if the size is zero
+     */
+    private static class ImageHandler implements HttpHandler {
+
+        private final int width;
+        private final int height;
+        private final long delay;
+
+        public ImageHandler(int width, int height, long delay) {
+            this.width = width;
+            this.height = height;
+            this.delay = delay;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (width == 0) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+
+            ByteArrayOutputStream image = new ByteArrayOutputStream();
+            ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", image);
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, image.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                image.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Poster plugin returning a fixed URL
+     */
+    private static class StubPosterPlugin implements ITvShowPosterPlugin {
+
+        private final String name;
+        private final String url;
+
+        public StubPosterPlugin(String name, String url) {
+            this.name = name;
+            this.url = url;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isNeeded() {
+            return true;
+        }
+
+        @Override
+        public IImage getPosterUrl(Identifiable ident, IMovieBasicInformation movieInformation) {
+            ident.setId(name, "1");
+            return new Image(url);
+        }
+
+        @Override
+        public String getIdFromMovieInfo(String title, String year, int tvSeason) {
+            return "1";
+        }
+
+        @Override
+        public IImage getPosterUrl(String title, String year, int tvSeason) {
+            return new Image(url);
+        }
+
+        @Override
+        public IImage getPosterUrl(String id, int season) {
+            return new Image(url);
+        }
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.moviejukebox.AbstractTests;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.imageio.ImageIO;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class GraphicToolsTest extends AbstractTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GraphicToolsTest.class);
+
+    @BeforeClass
+    public static void configure() {
+        doConfiguration();
+    }
+
+    @Test
+    public void testGetImageDimension() throws IOException {
+        LOG.info("testGetImageDimension");
+        for (String format : new String[]{"jpg", "png", "gif", "bmp"}) {
+            byte[] image = createImage(format, 321, 457);
+            Dimension dimension = GraphicTools.getImageDimension(image, image.length);
+            LOG.info("{}: {}", format, dimension);
+            assertEquals("Wrong " + format + " dimension", new Dimension(321, 457), dimension);
+            assertTrue("Format " + format + " not known", GraphicTools.isImageFormatKnown(image, image.length));
+        }
+    }
+
+    @Test
+    public void testGetImageDimensionHeaderOnly() throws IOException {
+        LOG.info("testGetImageDimensionHeaderOnly");
+        byte[] image = createImage("jpg", 640, 480);
+
+        // the size is in the first few hundred bytes
+        assertEquals(new Dimension(640, 480), GraphicTools.getImageDimension(image, 1024));
+        // more bytes are needed
+        assertNull(GraphicTools.getImageDimension(image, 4));
+        assertNull(GraphicTools.getImageDimension(image, 20));
+    }
+
+    @Test
+    public void testGetImageDimensionUnknown() {
+        LOG.info("testGetImageDimensionUnknown");
+        byte[] data = "RIFF0000WEBPVP8 0000".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(new Dimension(0, 0), GraphicTools.getImageDimension(data, data.length));
+        assertFalse(GraphicTools.isImageFormatKnown(data, data.length));
+    }
+
+    private static byte[] createImage(String format, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.moviejukebox.AbstractTests;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class YamjHttpClientTest extends AbstractTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(YamjHttpClientTest.class);
+    // Images of a known size, the noise image is larger than the probe
+    private static byte[] smallImage;
+    private static byte[] noiseImage;
+    private static byte[] largeHeaderImage;
+    // Local server for the images
+    private static HttpServer server;
+    private static String serverUrl;
+    private YamjHttpClient httpClient;
+    private File imageFile;
+
+    @BeforeClass
+    public static void configure() throws IOException {
+        doConfiguration();
+
+        smallImage = writeImage(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB), "png");
+
+        BufferedImage noise = new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+        for (int x = 0; x < noise.getWidth(); x++) {
+            for (int y = 0; y < noise.getHeight(); y++) {
+                noise.setRGB(x, y, random.nextInt());
+            }
+        }
+        noiseImage = writeImage(noise, "png");
+        assertTrue("Noise image smaller than the probe", noiseImage.length > 131072);
+
+        // Put 192 KiB of APP15 segments in front of the SOF, so the dimensions aren't in the probed bytes
+        byte[] jpeg = writeImage(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "jpg");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        for (int segment = 0; segment < 3; segment++) {
+            out.write(new byte[]{(byte) 0xFF, (byte) 0xEF, (byte) 0xFF, (byte) 0xFF});
+            out.write(new byte[0xFFFF - 2]);
+        }
+        out.write(jpeg, 2, jpeg.length - 2);
+        largeHeaderImage = out.toByteArray();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        serverUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        server.stop(0);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        httpClient = YamjHttpClientBuilder.getHttpClient();
+        imageFile = File.createTempFile("yamj-image-", ".img");
+    }
+
+    @After
+    public void cleanUp() {
+        FileUtils.deleteQuietly(imageFile);
+    }
+
+    /**
+     * An image smaller than the probe is written from the probed bytes
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testCachedHeader() throws IOException {
+        LOG.info("testCachedHeader");
+        ImageHandler handler = new ImageHandler(smallImage, true, false);
+        URL url = createContext("/small.png", handler);
+
+        assertEquals(new Dimension(20, 10), httpClient.getImageDimension(url));
+        assertTrue("Download failed", httpClient.downloadImage(imageFile, url));
+        assertEquals("Image requested again", 1, handler.getRequests());
+        assertArrayEquals(smallImage, Files.readAllBytes(imageFile.toPath()));
+    }
+
+    /**
+     * Only the rest of the image is requested after the probe
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testRemainder() throws IOException {
+        LOG.info("testRemainder");
+        ImageHandler handler = new ImageHandler(noiseImage, true, false);
+        URL url = createContext("/noise.png", handler);
+
+        assertEquals(new Dimension(300, 300), httpClient.getImageDimension(url));
+        assertTrue("Download failed", httpClient.downloadImage(imageFile, url));
+        assertEquals(2, handler.getRequests());
+        assertTrue("Whole image requested: " + handler.getLastRange(), handler.getLastRange().matches("bytes=[1-9]\\d*-"));
+        assertArrayEquals(noiseImage, Files.readAllBytes(imageFile.toPath()));
+    }
+
+    /**
+     * The dimensions of a JPEG with more metadata than the probe reads are read from the whole image
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testLargeHeader() throws IOException {
+        LOG.info("testLargeHeader");
+        ImageHandler handler = new ImageHandler(largeHeaderImage, true, false);
+        URL url = createContext("/header.jpg", handler);
+
+        assertEquals(new Dimension(40, 30), httpClient.getImageDimension(url));
+        assertTrue("Download failed", httpClient.downloadImage(imageFile, url));
+        assertEquals("Image requested again", 2, handler.getRequests());
+        assertArrayEquals(largeHeaderImage, Files.readAllBytes(imageFile.toPath()));
+    }
+
+    /**
+     * A server that ignores the range sends the whole image
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testIgnoredRange() throws IOException {
+        LOG.info("testIgnoredRange");
+        URL url = createContext("/norange.png", new ImageHandler(noiseImage, false, false));
+
+        assertEquals(new Dimension(300, 300), httpClient.getImageDimension(url));
+        assertTrue("Download failed", httpClient.downloadImage(imageFile, url));
+        assertArrayEquals(noiseImage, Files.readAllBytes(imageFile.toPath()));
+    }
+
+    /**
+     * A rest that doesn't start after the probed bytes is not used
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testWrongContentRange() throws IOException {
+        LOG.info("testWrongContentRange");
+        ImageHandler handler = new ImageHandler(noiseImage, true, true);
+        URL url = createContext("/badrange.png", handler);
+
+        assertEquals(new Dimension(300, 300), httpClient.getImageDimension(url));
+        assertTrue("Download failed", httpClient.downloadImage(imageFile, url));
+        assertEquals("Image not downloaded again", 3, handler.getRequests());
+        assertArrayEquals(noiseImage, Files.readAllBytes(imageFile.toPath()));
+    }
+
+    /**
+     * An image that changed after the probe is downloaded again
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testChangedImage() throws IOException {
+        LOG.info("testChangedImage");
+        ImageHandler handler = new ImageHandler(noiseImage, true, false);
+        URL url = createContext("/changed.png", handler);
+
+        assertEquals(new Dimension(300, 300), httpClient.getImageDimension(url));
+        byte[] changed = Arrays.copyOf(noiseImage, noiseImage.length);
+        // change a byte the probe has read, after the dimensions
+        changed[100] ^= 0xFF;
+        handler.setImage(changed, "\"v2\"");
+
+        assertTrue("Download failed", httpClient.downloadImage(imageFile, url));
+        assertArrayEquals(changed, Files.readAllBytes(imageFile.toPath()));
+    }
+
+    private static byte[] writeImage(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    private static URL createContext(String path, HttpHandler handler) throws IOException {
+        server.createContext(path, handler);
+        return new URL(serverUrl + path);
+    }
+
+    /**
+     * Serves an image with an ETag and answers range requests if the If-Range matches
+     */
+    private static class ImageHandler implements HttpHandler {
+
+        private final boolean acceptRanges;
+        private final boolean rangeFromStart;
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile byte[] image;
+        private volatile String etag = "\"v1\"";
+        private volatile String lastRange;
+
+        /**
+         * @param image
+         * @param acceptRanges false to ignore range requests
+         * @param rangeFromStart true to always send the range from the start of the image
+         */
+        public ImageHandler(byte[] image, boolean acceptRanges, boolean rangeFromStart) {
+            this.image = image;
+            this.acceptRanges = acceptRanges;
+            this.rangeFromStart = rangeFromStart;
+        }
+
+        public void setImage(byte[] image, String etag) {
+            this.image = image;
+            this.etag = etag;
+        }
+
+        public int getRequests() {
+            return requests.get();
+        }
+
+        public String getLastRange() {
+            return lastRange;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            byte[] content = image;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            lastRange = range;
+
+            int start = 0;
+            int end = content.length - 1;
+            boolean partial = acceptRanges && range != null && (ifRange == null || etag.equals(ifRange));
+            if (partial) {
+                String[] bytes = range.substring("bytes=".length()).split("-", -1);
+                start = rangeFromStart ? 0 : Integer.parseInt(bytes[0]);
+                if (!bytes[1].isEmpty()) {
+                    end = Math.min(end, Integer.parseInt(bytes[1]));
+                }
+            }
+
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            exchange.getResponseHeaders().add("Cache-Control", "no-store");
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (partial) {
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+                exchange.sendResponseHeaders(206, end - start + 1);
+            } else {
+                exchange.sendResponseHeaders(200, content.length);
+            }
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content, start, end - start + 1);
+            } catch (IOException ex) {
+                // the client stops reading once it has the dimensions
+                LOG.trace("Image transfer stopped: {}", ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.tools.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.moviejukebox.AbstractTests;
+import com.moviejukebox.tools.PropertiesUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CacheDiskTest extends AbstractTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheDiskTest.class);
+    private static File cacheDirectory;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        doConfiguration();
+        cacheDirectory = Files.createTempDirectory("yamj-cache-").toFile();
+        // Read once when the class is loaded
+        PropertiesUtil.setProperty("mjb.cache.disk", true);
+        PropertiesUtil.setProperty("mjb.cache.diskDirectory", cacheDirectory.getAbsolutePath());
+        PropertiesUtil.setProperty("mjb.cache.diskMaxAge", 7);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        CacheDisk.flush();
+        FileUtils.deleteQuietly(cacheDirectory);
+    }
+
+    @Before
+    public void setUp() {
+        // Another test loaded the cache first, with the disk cache disabled
+        Assume.assumeTrue("Disk cache was loaded without these settings", CacheDisk.isEnabled());
+    }
+
+    /**
+     * An object can be read while it waits for the writer and from its file once written
+     */
+    @Test
+    public void testWriteRead() {
+        LOG.info("testWriteRead");
+        String key = "testWriteRead";
+        CacheDisk.write(key, "value");
+        assertEquals("value", CacheDisk.read(key));
+
+        CacheDisk.flush();
+        assertTrue("Cache file not written", getCacheFile(key).isFile());
+        assertEquals("value", CacheDisk.read(key));
+    }
+
+    /**
+     * The latest value written for a key is kept
+     */
+    @Test
+    public void testOverwrite() {
+        LOG.info("testOverwrite");
+        String key = "testOverwrite";
+        CacheDisk.write(key, "first");
+        CacheDisk.write(key, "second");
+        assertEquals("second", CacheDisk.read(key));
+
+        CacheDisk.flush();
+        assertEquals("second", CacheDisk.read(key));
+        assertFalse("Temporary file left behind", new File(getCacheFile(key).getPath() + ".tmp").exists());
+    }
+
+    /**
+     * A removed object is not read again and its file is deleted
+     */
+    @Test
+    public void testRemove() {
+        LOG.info("testRemove");
+        String key = "testRemove";
+        CacheDisk.write(key, "value");
+        CacheDisk.flush();
+
+        CacheDisk.remove(key);
+        assertNull(CacheDisk.read(key));
+        CacheDisk.flush();
+        assertFalse("Cache file not deleted", getCacheFile(key).exists());
+    }
+
+    /**
+     * An object older than the maximum age is not read and its file is deleted
+     */
+    @Test
+    public void testExpiry() {
+        LOG.info("testExpiry");
+        String key = "testExpiry";
+        CacheDisk.write(key, "value");
+        CacheDisk.flush();
+
+        File cacheFile = getCacheFile(key);
+        assertTrue(cacheFile.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30)));
+        assertNull(CacheDisk.read(key));
+        assertFalse("Expired file not deleted", cacheFile.exists());
+    }
+
+    /**
+     * All the objects are written when flush returns
+     */
+    @Test
+    public void testFlush() {
+        LOG.info("testFlush");
+        List<String> keys = new ArrayList<>();
+        for (int looper = 0; looper < 200; looper++) {
+            String key = "testFlush" + looper;
+            keys.add(key);
+            CacheDisk.write(key, looper);
+        }
+
+        CacheDisk.flush();
+        for (String key : keys) {
+            assertTrue("Cache file not written for " + key, getCacheFile(key).isFile());
+        }
+    }
+
+    /**
+     * An object that can't be serialised is not stored
+     */
+    @Test
+    public void testNotSerializable() {
+        LOG.info("testNotSerializable");
+        String key = "testNotSerializable";
+        CacheDisk.write(key, new Object());
+        CacheDisk.flush();
+        assertNull(CacheDisk.read(key));
+        assertFalse(getCacheFile(key).exists());
+    }
+
+    private static File getCacheFile(String key) {
+        String hash = DigestUtils.md5Hex(key);
+        return new File(new File(cacheDirectory, hash.substring(0, 2)), hash + ".cache");
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.tools.downloader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.moviejukebox.AbstractTests;
+import com.moviejukebox.tools.PropertiesUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class DownloaderTest extends AbstractTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DownloaderTest.class);
+    private static final String ETAG = "\"v2\"";
+    private static final int PART_SIZE = 40000;
+    private static final int CHUNK_SIZE = 16384;
+    private static final byte[] CONTENT = new byte[100000];
+    // Large enough for three segments of the minimum size
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+    private static final byte[] LARGE_CONTENT = new byte[3 * SEGMENT_SIZE];
+    // Local server for the downloads
+    private static HttpServer server;
+    private static String serverUrl;
+    private static volatile String lastRange;
+    // The ranges requested, without the requests for the whole file
+    private static final List<String> RANGES = Collections.synchronizedList(new ArrayList<String>());
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+    private static final AtomicInteger MAX_ACTIVE = new AtomicInteger();
+    private File localFile;
+    private File partFile;
+    private File validatorFile;
+    private File rangesFile;
+
+    @BeforeClass
+    public static void configure() throws IOException {
+        doConfiguration();
+        // Read when the Downloader is loaded
+        PropertiesUtil.setProperty("trailers.download.segments", 3);
+        PropertiesUtil.setProperty("trailers.download.segmentMinSize", 1);
+        new Random(1).nextBytes(CONTENT);
+        new Random(3).nextBytes(LARGE_CONTENT);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/file", new FileHandler(CONTENT, Boolean.TRUE, null, null));
+        server.createContext("/badrange", new FileHandler(CONTENT, Boolean.TRUE, "bytes 40000-/100000", null));
+        server.createContext("/badmd5", new FileHandler(CONTENT, Boolean.TRUE, null, Base64.encodeBase64String(md5(new byte[0]))));
+        server.createContext("/norange", new FileHandler(CONTENT, Boolean.FALSE, null, null));
+        server.createContext("/large", new FileHandler(LARGE_CONTENT, Boolean.TRUE, null, null));
+        server.createContext("/largenorange", new FileHandler(LARGE_CONTENT, Boolean.FALSE, null, null));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        serverUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        server.stop(0);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        localFile = File.createTempFile("yamj-download-", ".bin");
+        Files.delete(localFile.toPath());
+        partFile = new File(localFile.getPath() + ".part");
+        validatorFile = new File(partFile.getPath() + ".validator");
+        rangesFile = new File(partFile.getPath() + ".ranges");
+        lastRange = null;
+        RANGES.clear();
+        MAX_ACTIVE.set(0);
+    }
+
+    @After
+    public void cleanUp() {
+        FileUtils.deleteQuietly(localFile);
+        FileUtils.deleteQuietly(partFile);
+        FileUtils.deleteQuietly(validatorFile);
+        FileUtils.deleteQuietly(rangesFile);
+    }
+
+    /**
+     * A partial download with a matching validator is resumed from the end of the part file
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testResume() throws IOException {
+        LOG.info("testResume");
+        Files.write(partFile.toPath(), Arrays.copyOf(CONTENT, PART_SIZE));
+        Files.write(validatorFile.toPath(), ETAG.getBytes(StandardCharsets.UTF_8));
+
+        Downloader downloader = new Downloader(localFile.getPath(), serverUrl + "/file", Boolean.FALSE);
+
+        assertTrue("Download failed", downloader.isDownloadOk());
+        assertEquals("bytes=" + PART_SIZE + "-", lastRange);
+        assertArrayEquals(CONTENT, Files.readAllBytes(localFile.toPath()));
+        assertFalse("Part file left behind", partFile.exists());
+        assertFalse("Validator left behind", validatorFile.exists());
+    }
+
+    /**
+     * A range request for a changed file is answered with the whole file, which replaces the part file
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testChangedFile() throws IOException {
+        LOG.info("testChangedFile");
+        byte[] oldContent = new byte[PART_SIZE];
+        new Random(2).nextBytes(oldContent);
+        Files.write(partFile.toPath(), oldContent);
+        Files.write(validatorFile.toPath(), "\"v1\"".getBytes(StandardCharsets.UTF_8));
+
+        Downloader downloader = new Downloader(localFile.getPath(), serverUrl + "/file", Boolean.FALSE);
+
+        assertTrue("Download failed", downloader.isDownloadOk());
+        assertEquals("bytes=" + PART_SIZE + "-", lastRange);
+        assertArrayEquals(CONTENT, Files.readAllBytes(localFile.toPath()));
+    }
+
+    /**
+     * A partial response with a malformed Content-Range is not written to the part file
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testMalformedContentRange() throws IOException {
+        LOG.info("testMalformedContentRange");
+        byte[] part = Arrays.copyOf(CONTENT, PART_SIZE);
+        Files.write(partFile.toPath(), part);
+        Files.write(validatorFile.toPath(), ETAG.getBytes(StandardCharsets.UTF_8));
+
+        Downloader downloader = new Downloader(localFile.getPath(), serverUrl + "/badrange", Boolean.FALSE);
+
+        assertFalse("Download should fail", downloader.isDownloadOk());
+        assertFalse("Local file created", localFile.exists());
+        assertArrayEquals("Part file changed", part, Files.readAllBytes(partFile.toPath()));
+    }
+
+    /**
+     * A download that does not match the Content-MD5 is removed
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testChecksumMismatch() throws IOException {
+        LOG.info("testChecksumMismatch");
+        Downloader downloader = new Downloader(localFile.getPath(), serverUrl + "/badmd5", Boolean.FALSE);
+
+        assertFalse("Download should fail", downloader.isDownloadOk());
+        assertFalse("Local file created", localFile.exists());
+        assertFalse("Part file left behind", partFile.exists());
+    }
+
+    /**
+     * A server that ignores the range sends the whole file, which replaces the part file
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testRangeIgnored() throws IOException {
+        LOG.info("testRangeIgnored");
+        Files.write(partFile.toPath(), Arrays.copyOf(CONTENT, PART_SIZE));
+        Files.write(validatorFile.toPath(), ETAG.getBytes(StandardCharsets.UTF_8));
+
+        Downloader downloader = new Downloader(localFile.getPath(), serverUrl + "/norange", Boolean.FALSE);
+
+        assertTrue("Download failed", downloader.isDownloadOk());
+        assertEquals("bytes=" + PART_SIZE + "-", lastRange);
+        assertArrayEquals(CONTENT, Files.readAllBytes(localFile.toPath()));
+    }
+
+    /**
+     * A large file is downloaded in segments at the same time
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testSegmentedDownload() throws IOException {
+        LOG.info("testSegmentedDownload");
+        Downloader downloader = new Downloader(localFile.getPath(), serverUrl + "/large", Boolean.FALSE);
+
+        assertTrue("Download failed", downloader.isDownloadOk());
+        assertArrayEquals(LARGE_CONTENT, Files.readAllBytes(localFile.toPath()));
+        // The first segment uses the request for the whole file
+        assertEquals(sorted(range(SEGMENT_SIZE, 2 * SEGMENT_SIZE), range(2 * SEGMENT_SIZE, 3 * SEGMENT_SIZE)), getRanges());
+        assertTrue("Segments not downloaded at the same time", MAX_ACTIVE.get() > 1);
+        assertFalse("Ranges file left behind", rangesFile.exists());
+        assertFalse("Validator left behind", validatorFile.exists());
+    }
+
+    /**
+     * An interrupted segmented download only requests the missing part of each segment
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testResumeSegments() throws IOException {
+        LOG.info("testResumeSegments");
+        writeInterruptedSegments();
+
+        Downloader downloader = new Downloader(localFile.getPath(), serverUrl + "/large", Boolean.FALSE);
+
+        assertTrue("Download failed", downloader.isDownloadOk());
+        assertArrayEquals(LARGE_CONTENT, Files.readAllBytes(localFile.toPath()));
+        assertEquals(sorted(range(PART_SIZE, SEGMENT_SIZE), range(SEGMENT_SIZE + PART_SIZE, 2 * SEGMENT_SIZE)), getRanges());
+        assertFalse("Ranges file left behind", rangesFile.exists());
+        assertFalse("Part file left behind", partFile.exists());
+    }
+
+    /**
+     * An interrupted segmented download from a server that ignores the range starts again
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testResumeSegmentsRangeIgnored() throws IOException {
+        LOG.info("testResumeSegmentsRangeIgnored");
+        writeInterruptedSegments();
+
+        Downloader downloader = new Downloader(localFile.getPath(), serverUrl + "/largenorange", Boolean.FALSE);
+
+        assertTrue("Download failed", downloader.isDownloadOk());
+        assertArrayEquals(LARGE_CONTENT, Files.readAllBytes(localFile.toPath()));
+        assertFalse("Ranges file left behind", rangesFile.exists());
+    }
+
+    /**
+     * Write the part and ranges files of a download interrupted in the first two segments
+     */
+    private void writeInterruptedSegments() throws IOException {
+        byte[] part = new byte[LARGE_CONTENT.length];
+        System.arraycopy(LARGE_CONTENT, 0, part, 0, PART_SIZE);
+        System.arraycopy(LARGE_CONTENT, SEGMENT_SIZE, part, SEGMENT_SIZE, PART_SIZE);
+        System.arraycopy(LARGE_CONTENT, 2 * SEGMENT_SIZE, part, 2 * SEGMENT_SIZE, SEGMENT_SIZE);
+        Files.write(partFile.toPath(), part);
+        Files.write(validatorFile.toPath(), ETAG.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder ranges = new StringBuilder();
+        ranges.append(0).append(' ').append(SEGMENT_SIZE).append(' ').append(PART_SIZE).append('\n');
+        ranges.append(SEGMENT_SIZE).append(' ').append(2 * SEGMENT_SIZE).append(' ').append(SEGMENT_SIZE + PART_SIZE).append('\n');
+        ranges.append(2 * SEGMENT_SIZE).append(' ').append(3 * SEGMENT_SIZE).append(' ').append(3 * SEGMENT_SIZE).append('\n');
+        Files.write(rangesFile.toPath(), ranges.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String range(int start, int end) {
+        return "bytes=" + start + "-" + (end - 1);
+    }
+
+    private static List<String> getRanges() {
+        synchronized (RANGES) {
+            return sorted(RANGES.toArray(new String[RANGES.size()]));
+        }
+    }
+
+    private static List<String> sorted(String... ranges) {
+        List<String> sorted = new ArrayList<>(Arrays.asList(ranges));
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static byte[] md5(byte[] data) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(data);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Serves the content with an ETag and answers range requests if the If-Range matches
+     */
+    private static class FileHandler implements HttpHandler {
+
+        private final byte[] content;
+        private final boolean acceptRanges;
+        private final String contentRange;
+        private final String contentMd5;
+
+        public FileHandler(byte[] content, boolean acceptRanges, String contentRange, String contentMd5) {
+            this.content = content;
+            this.acceptRanges = acceptRanges;
+            this.contentRange = contentRange;
+            this.contentMd5 = contentMd5;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            lastRange = range;
+            if (range != null) {
+                RANGES.add(range);
+            }
+
+            int start = 0;
+            int end = content.length - 1;
+            if (acceptRanges && range != null && (ifRange == null || ETAG.equals(ifRange))) {
+                String[] bytes = range.substring("bytes=".length()).split("-", -1);
+                start = Integer.parseInt(bytes[0]);
+                if (!bytes[1].isEmpty()) {
+                    end = Math.min(end, Integer.parseInt(bytes[1]));
+                }
+            }
+            boolean partial = start > 0 || end < content.length - 1;
+
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            if (acceptRanges) {
+                exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+            }
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            if (contentMd5 != null) {
+                exchange.getResponseHeaders().add("Content-MD5", contentMd5);
+            }
+            if (partial) {
+                exchange.getResponseHeaders().add("Content-Range", contentRange == null
+                        ? "bytes " + start + "-" + end + "/" + content.length : contentRange);
+                exchange.sendResponseHeaders(206, end - start + 1);
+            } else {
+                exchange.sendResponseHeaders(200, content.length);
+            }
+
+            int active = ACTIVE.incrementAndGet();
+            int max = MAX_ACTIVE.get();
+            while (active > max && !MAX_ACTIVE.compareAndSet(max, active)) {
+                max = MAX_ACTIVE.get();
+            }
+            try (OutputStream out = exchange.getResponseBody()) {
+                // Send the content slowly, so the segments overlap
+                for (int position = start; position <= end; position += CHUNK_SIZE) {
+                    out.write(content, position, Math.min(CHUNK_SIZE, end - position + 1));
+                    Thread.sleep(1);
+                }
+            } catch (IOException ex) {
+                // The first segment stops reading at the end of the segment
+                LOG.trace("Transfer stopped: {}", ex.getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                ACTIVE.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.writer;
+
+import com.moviejukebox.AbstractTests;
+import com.moviejukebox.MovieJukebox;
+import com.moviejukebox.model.Jukebox;
+import com.moviejukebox.model.Library;
+import com.moviejukebox.model.Movie;
+import com.moviejukebox.model.MovieFile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.bind.JAXBContext;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check that CompleteMovies.xml is written as it was when the whole library was marshalled in one go, and that it is
+ * still complete when the RSS transform fails.
+ */
+public class CompleteMoviesWriterTest extends AbstractTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompleteMoviesWriterTest.class);
+    private static final String COMPLETE_MOVIES_XML = "CompleteMovies.xml";
+    private static final String RSS_XML = "rss.xml";
+    private static final String RSS_XSL = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:template match=\"/\"><rss><xsl:value-of select=\"count(jukebox/movies)\"/></rss></xsl:template>"
+            + "</xsl:stylesheet>";
+    private static final String BROKEN_XSL = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:template match=\"/\"><xsl:message terminate=\"yes\">Broken</xsl:message></xsl:template>"
+            + "</xsl:stylesheet>";
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private Jukebox jukebox;
+
+    @BeforeClass
+    public static void setUpClass() {
+        doConfiguration();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        jukebox = new Jukebox(folder.newFolder("jukebox").getAbsolutePath(), folder.newFolder("temp").getAbsolutePath(), "Jukebox");
+        assertTrue(jukebox.getJukeboxRootLocationDetailsFile().mkdirs());
+        assertTrue(jukebox.getJukeboxTempLocationDetailsFile().mkdirs());
+    }
+
+    @Test
+    public void testGenerate() throws Exception {
+        LOG.info("testGenerate");
+        Library library = createLibrary();
+
+        assertTrue(CompleteMoviesWriter.generate(library, jukebox, createXsl(RSS_XSL)));
+
+        File xmlFile = new File(jukebox.getJukeboxTempLocationDetailsFile(), COMPLETE_MOVIES_XML);
+        assertSameXml(marshalJukebox(library), FileUtils.readFileToByteArray(xmlFile));
+
+        Document rss = parse(FileUtils.readFileToByteArray(new File(jukebox.getJukeboxTempLocationDetailsFile(), RSS_XML)));
+        assertEquals("rss", rss.getDocumentElement().getNodeName());
+        assertEquals(String.valueOf(library.size()), rss.getDocumentElement().getTextContent());
+    }
+
+    @Test
+    public void testBrokenRss() throws Exception {
+        LOG.info("testBrokenRss");
+        Library library = createLibrary();
+
+        assertFalse(CompleteMoviesWriter.generate(library, jukebox, createXsl(BROKEN_XSL)));
+
+        File xmlFile = new File(jukebox.getJukeboxTempLocationDetailsFile(), COMPLETE_MOVIES_XML);
+        assertSameXml(marshalJukebox(library), FileUtils.readFileToByteArray(xmlFile));
+    }
+
+    @Test
+    public void testMissingRss() throws Exception {
+        LOG.info("testMissingRss");
+        Library library = createLibrary();
+
+        assertFalse(CompleteMoviesWriter.generate(library, jukebox, new File(folder.getRoot(), "missing.xsl")));
+
+        File xmlFile = new File(jukebox.getJukeboxTempLocationDetailsFile(), COMPLETE_MOVIES_XML);
+        assertSameXml(marshalJukebox(library), FileUtils.readFileToByteArray(xmlFile));
+        assertFalse(new File(jukebox.getJukeboxTempLocationDetailsFile(), RSS_XML).exists());
+    }
+
+    @Test
+    public void testTeeSecondError() throws Exception {
+        LOG.info("testTeeSecondError");
+        StringWriter output = new StringWriter();
+        TransformerHandler first = ((SAXTransformerFactory) SAXTransformerFactory.newInstance()).newTransformerHandler();
+        first.setResult(new StreamResult(output));
+        FailingHandler second = new FailingHandler(2);
+
+        CompleteMoviesWriter.TeeContentHandler handler = new CompleteMoviesWriter.TeeContentHandler(first, second);
+        handler.startDocument();
+        handler.startElement("", "jukebox", "jukebox", new AttributesImpl());
+        for (int looper = 1; looper <= 3; looper++) {
+            handler.startElement("", "movies", "movies", new AttributesImpl());
+            char[] text = ("Movie " + looper).toCharArray();
+            handler.characters(text, 0, text.length);
+            handler.endElement("", "movies", "movies");
+        }
+        handler.endElement("", "jukebox", "jukebox");
+        handler.endDocument();
+
+        assertNotNull(handler.getSecondError());
+        // The second handler gets no more events after its error
+        assertEquals(2, second.elements);
+        assertFalse(second.ended);
+
+        Document doc = parse(output.toString().getBytes(StandardCharsets.UTF_8));
+        assertEquals("jukebox", doc.getDocumentElement().getNodeName());
+        assertEquals(3, doc.getElementsByTagName("movies").getLength());
+        assertEquals("Movie 3", doc.getElementsByTagName("movies").item(2).getTextContent());
+    }
+
+    @Test
+    public void testTeeNoSecond() throws Exception {
+        LOG.info("testTeeNoSecond");
+        StringWriter output = new StringWriter();
+        TransformerHandler first = ((SAXTransformerFactory) SAXTransformerFactory.newInstance()).newTransformerHandler();
+        first.setResult(new StreamResult(output));
+
+        CompleteMoviesWriter.TeeContentHandler handler = new CompleteMoviesWriter.TeeContentHandler(first, null);
+        handler.startDocument();
+        handler.startElement("", "jukebox", "jukebox", new AttributesImpl());
+        handler.endElement("", "jukebox", "jukebox");
+        handler.endDocument();
+
+        assertNull(handler.getSecondError());
+        assertEquals("jukebox", parse(output.toString().getBytes(StandardCharsets.UTF_8)).getDocumentElement().getNodeName());
+    }
+
+    /**
+     * Check the CompleteMovies file has the same declaration, root element and movies as the old output
+     *
+     * @param expected
+     * @param actual
+     * @throws Exception
+     */
+    private static void assertSameXml(byte[] expected, byte[] actual) throws Exception {
+        String declaration = new String(actual, 0, Math.min(actual.length, 100), StandardCharsets.UTF_8);
+        assertTrue("Missing standalone declaration: " + declaration, declaration.startsWith("<?xml") && declaration.contains("standalone=\"yes\""));
+
+        Document expectedDoc = parse(expected);
+        Document actualDoc = parse(actual);
+        assertTrue(actualDoc.getXmlStandalone());
+
+        Element expectedRoot = expectedDoc.getDocumentElement();
+        Element actualRoot = actualDoc.getDocumentElement();
+        assertEquals(expectedRoot.getNodeName(), actualRoot.getNodeName());
+
+        List<Element> expectedMovies = getChildElements(expectedRoot);
+        List<Element> actualMovies = getChildElements(actualRoot);
+        assertEquals(expectedMovies.size(), actualMovies.size());
+        for (int looper = 0; looper < expectedMovies.size(); looper++) {
+            Element expectedMovie = expectedMovies.get(looper);
+            Element actualMovie = actualMovies.get(looper);
+            assertEquals("movies", actualMovie.getNodeName());
+            assertEquals(expectedMovie.getAttribute("isTV"), actualMovie.getAttribute("isTV"));
+            assertEquals(getChildNames(expectedMovie), getChildNames(actualMovie));
+            assertEquals(expectedMovie.getTextContent(), actualMovie.getTextContent());
+        }
+    }
+
+    private static List<Element> getChildElements(Element parent) {
+        List<Element> children = new ArrayList<>();
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                children.add((Element) node);
+            }
+        }
+        return children;
+    }
+
+    private static List<String> getChildNames(Element parent) {
+        List<String> names = new ArrayList<>();
+        for (Element child : getChildElements(parent)) {
+            names.add(child.getNodeName());
+        }
+        return names;
+    }
+
+    private static Document parse(byte[] xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+    }
+
+    /**
+     * Marshal the library as CompleteMovies.xml was written before it was streamed
+     *
+     * @param library
+     * @return
+     * @throws Exception
+     */
+    private static byte[] marshalJukebox(Library library) throws Exception {
+        MovieJukebox.JukeboxXml jukeboxXml = new MovieJukebox.JukeboxXml();
+        jukeboxXml.movies = library.values();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        JAXBContext.newInstance(MovieJukebox.JukeboxXml.class).createMarshaller().marshal(jukeboxXml, stream);
+        return stream.toByteArray();
+    }
+
+    private File createXsl(String content) throws IOException {
+        File xslFile = folder.newFile();
+        Files.write(xslFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return xslFile;
+    }
+
+    private static Library createLibrary() {
+        Library library = new Library();
+        for (int looper = 1; looper <= 3; looper++) {
+            Movie movie = new Movie();
+            movie.setTitle("Movie " + looper, Movie.UNKNOWN);
+            movie.setBaseName("Movie_" + looper);
+            movie.setYear(String.valueOf(2000 + looper), Movie.UNKNOWN);
+            movie.setGenres(Collections.singletonList("Action"), Movie.UNKNOWN);
+            MovieFile mf = new MovieFile();
+            mf.setSeason(-1);
+            mf.setFirstPart(1);
+            movie.addMovieFile(mf);
+            library.addMovie(movie);
+        }
+        library.setDirty(true);
+        return library;
+    }
+
+    /**
+     * Fails on the given element
+     */
+    private static final class FailingHandler extends DefaultHandler {
+
+        private final int failAt;
+        private int elements = 0;
+        private boolean ended = false;
+
+        FailingHandler(int failAt) {
+            this.failAt = failAt;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            elements++;
+            if (elements == failAt) {
+                throw new SAXException("Broken");
+            }
+        }
+
+        @Override
+        public void endDocument() {
+            ended = true;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.writer;
+
+import com.moviejukebox.AbstractTests;
+import com.moviejukebox.model.IndexInfo;
+import com.moviejukebox.model.Jukebox;
+import com.moviejukebox.model.Library;
+import com.moviejukebox.model.Movie;
+import com.moviejukebox.model.MovieFile;
+import com.moviejukebox.tools.FileTools;
+import com.moviejukebox.tools.PropertiesUtil;
+import com.moviejukebox.tools.ThreadExecutor;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check that only the index pages whose content changed from the last run are written.
+ *
+ * The pages of a set index are used, as they don't depend on the category file.
+ */
+public class IndexPageTest extends AbstractTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexPageTest.class);
+    private static final String SET_NAME = "Saga";
+    private static final int MOVIES_PER_PAGE = 2;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private Jukebox jukebox;
+    private String baseName;
+
+    @BeforeClass
+    public static void setUpClass() {
+        doConfiguration();
+        // Must be set before the index classes are loaded
+        PropertiesUtil.setProperty("mjb.skipHtmlGeneration", false);
+        PropertiesUtil.setProperty("mjb.nbSetThumbnailsPerPage", MOVIES_PER_PAGE);
+        // Otherwise the pages would list the other indexes, which change with the movies as well
+        PropertiesUtil.setProperty("mjb.fullCategoriesInIndexes", false);
+        PropertiesUtil.setProperty("mjb.sets.reindex", false);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        jukebox = new Jukebox(folder.newFolder("jukebox").getAbsolutePath(), folder.newFolder("temp").getAbsolutePath(), "Jukebox");
+        assertTrue(jukebox.getJukeboxRootLocationDetailsFile().mkdirs());
+        assertTrue(jukebox.getJukeboxTempLocationDetailsFile().mkdirs());
+        baseName = new IndexInfo(Library.INDEX_SET, SET_NAME, 1, MOVIES_PER_PAGE, MOVIES_PER_PAGE, Boolean.TRUE).baseName;
+    }
+
+    @Test
+    public void testUnchangedPage() throws Throwable {
+        LOG.info("testUnchangedPage");
+        assertEquals(pages(1, 2, 3), writeIndex(buildLibrary(createMovies())));
+        publish(0);
+
+        assertEquals(pages(), writeIndex(buildLibrary(createMovies())));
+    }
+
+    @Test
+    public void testChangedMovie() throws Throwable {
+        LOG.info("testChangedMovie");
+        writeIndex(buildLibrary(createMovies()));
+        publish(0);
+
+        List<Movie> movies = createMovies();
+        movies.get(2).setCertification("PG", Movie.UNKNOWN);
+        assertEquals(pages(2), writeIndex(buildLibrary(movies)));
+    }
+
+    @Test
+    public void testInsertedMovie() throws Throwable {
+        LOG.info("testInsertedMovie");
+        writeIndex(buildLibrary(createMovies()));
+        publish(0);
+
+        // Every page shows the number of movies in the index, so the last movie is removed to keep the number the same
+        List<Movie> movies = createMovies();
+        movies.remove(movies.size() - 1);
+        movies.add(createMovie("Movie 2b", 25));
+        assertEquals(pages(2, 3), writeIndex(buildLibrary(movies)));
+    }
+
+    @Test
+    public void testMissingHtml() throws Throwable {
+        LOG.info("testMissingHtml");
+        writeIndex(buildLibrary(createMovies()));
+        publish(2);
+
+        assertEquals(pages(2), writeIndex(buildLibrary(createMovies())));
+    }
+
+    @Test
+    public void testForceIndex() throws Throwable {
+        LOG.info("testForceIndex");
+        writeIndex(buildLibrary(createMovies()));
+        publish(0);
+
+        Library library = buildLibrary(createMovies());
+        List<Movie> movies = library.getIndexes().get(Library.INDEX_SET).get(SET_NAME);
+        IndexInfo idx = new IndexInfo(Library.INDEX_SET, SET_NAME, 3, MOVIES_PER_PAGE, MOVIES_PER_PAGE, Boolean.TRUE);
+        MovieJukeboxXMLWriter writer = new MovieJukeboxXMLWriter();
+        assertFalse(writer.writeIndexPage(library, movies.subList(0, MOVIES_PER_PAGE), jukebox, idx, 3, 1, 2, 3, movies.size(), false));
+        assertTrue(writer.writeIndexPage(library, movies.subList(0, MOVIES_PER_PAGE), jukebox, idx, 3, 1, 2, 3, movies.size(), true));
+    }
+
+    @Test
+    public void testSetsReindex() throws Throwable {
+        LOG.info("testSetsReindex");
+        writeIndex(buildLibrary(createMovies()));
+        publish(0);
+
+        PropertiesUtil.setProperty("mjb.sets.reindex", true);
+        try {
+            assertEquals(pages(1, 2, 3), writeIndex(buildLibrary(createMovies())));
+        } finally {
+            PropertiesUtil.setProperty("mjb.sets.reindex", false);
+        }
+    }
+
+    private static List<Movie> createMovies() {
+        List<Movie> movies = new ArrayList<>();
+        for (int looper = 1; looper <= 6; looper++) {
+            movies.add(createMovie("Movie " + looper, looper * 10));
+        }
+        return movies;
+    }
+
+    private static Movie createMovie(String title, int order) {
+        Movie movie = new Movie();
+        movie.setTitle(title, Movie.UNKNOWN);
+        movie.setBaseName(title.replace(' ', '_'));
+        movie.addSet(SET_NAME, order);
+        MovieFile mf = new MovieFile();
+        mf.setSeason(-1);
+        mf.setFirstPart(1);
+        movie.addMovieFile(mf);
+        return movie;
+    }
+
+    private static Library buildLibrary(List<Movie> movies) throws Throwable {
+        Library library = new Library();
+        for (Movie movie : movies) {
+            library.addMovie(movie);
+        }
+        library.buildIndex(new ThreadExecutor<Void>(2, 2));
+        return library;
+    }
+
+    /**
+     * Write the index pages to an empty temp directory
+     *
+     * @param library
+     * @return the numbers of the set pages written
+     * @throws Throwable
+     */
+    private Set<Integer> writeIndex(Library library) throws Throwable {
+        FileUtils.cleanDirectory(jukebox.getJukeboxTempLocationDetailsFile());
+        new MovieJukeboxXMLWriter().writeIndexXML(jukebox, library, new ThreadExecutor<Void>(2, 2));
+
+        Set<Integer> written = new TreeSet<>();
+        for (File page : jukebox.getJukeboxTempLocationDetailsFile().listFiles()) {
+            String name = page.getName();
+            if (name.startsWith(baseName) && name.endsWith(MovieJukeboxXMLWriter.EXT_XML)) {
+                written.add(Integer.valueOf(name.substring(baseName.length(), name.length() - MovieJukeboxXMLWriter.EXT_XML.length())));
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Copy the written pages to the jukebox, as the end of a run does, with an HTML file for each
+     *
+     * @param missingHtml the page to leave without an HTML file, 0 for none
+     * @throws IOException
+     */
+    private void publish(int missingHtml) throws IOException {
+        for (File page : jukebox.getJukeboxTempLocationDetailsFile().listFiles()) {
+            File xmlFile = new File(jukebox.getJukeboxRootLocationDetailsFile(), page.getName());
+            FileUtils.copyFile(page, xmlFile);
+            FileTools.fileCache.fileAdd(xmlFile);
+
+            String name = page.getName();
+            name = name.substring(0, name.length() - MovieJukeboxXMLWriter.EXT_XML.length());
+            if (!name.equals(baseName + missingHtml)) {
+                File htmlFile = new File(jukebox.getJukeboxRootLocationDetailsFile(), name + MovieJukeboxXMLWriter.EXT_HTML);
+                FileUtils.touch(htmlFile);
+                FileTools.fileCache.fileAdd(htmlFile);
+            }
+        }
+    }
+
+    private static Set<Integer> pages(Integer... pages) {
+        return new TreeSet<>(Arrays.asList(pages));
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *      Copyright (c) 2004-2016 YAMJ Members
+ *      https://github.com/orgs/YAMJ/people
+ *
+ *      This file is part of the Yet Another Movie Jukebox (YAMJ) project.
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v2
+ *
+ */
+package com.moviejukebox.writer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.moviejukebox.AbstractTests;
+import com.moviejukebox.tools.DOMHelper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.xml.parsers.ParserConfigurationException;
+import org.apache.commons.io.FileUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+
+/**
+ * The streamed file must be byte for byte the same as the DOM written by DOMHelper
+ */
+public class XmlOutputTest extends AbstractTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(XmlOutputTest.class);
+
+    @BeforeClass
+    public static void configure() {
+        doConfiguration();
+    }
+
+    @Test
+    public void testLongAttributes() throws Exception {
+        LOG.info("testLongAttributes");
+        assertSameOutput(new Elements() {
+            @Override
+            void write(XmlOutput out) {
+                out.startElement("movie");
+                out.setAttribute("isExtra", "false");
+                out.setAttribute("isSet", "false");
+                out.setAttribute("isTV", "true");
+                out.setAttribute("source", "imdb");
+                out.setAttribute("title", "A title that is long enough to wrap the start tag");
+                out.startElement("files");
+                Map<String, String> attributes = new LinkedHashMap<>();
+                attributes.put("title", "Episode \"One\" & <Two>");
+                attributes.put("part", "1");
+                attributes.put("firstPart", "1");
+                attributes.put("lastPart", "2");
+                attributes.put("season", "3");
+                attributes.put("subtitlesExchange", "NO");
+                attributes.put("watched", "false");
+                out.appendChild("file", "file:///some/path/Show.S03E01E02.mkv", attributes);
+                out.appendChild("fileTitle", "Short", "part", "1");
+                out.endElement();
+                out.endElement();
+            }
+        });
+    }
+
+    @Test
+    public void testMixedText() throws Exception {
+        LOG.info("testMixedText");
+        assertSameOutput(new Elements() {
+            @Override
+            void write(XmlOutput out) {
+                out.startElement("plot");
+                out.appendText("Some text before ");
+                out.appendChild("b", "bold");
+                out.appendText(" and after\nover two lines");
+                out.appendChild("i", "italic");
+                out.endElement();
+                out.startElement("outline");
+                out.appendText("\n   ");
+                out.appendChild("line", "white space only text is indented around");
+                out.appendText("  \n  ");
+                out.endElement();
+                out.appendChild("url", "http://www.example.com/search?q=1&b=2");
+            }
+        });
+    }
+
+    @Test
+    public void testControlCharacters() throws Exception {
+        LOG.info("testControlCharacters");
+        assertSameOutput(new Elements() {
+            @Override
+            void write(XmlOutput out) {
+                out.appendChild("cr", "one\rtwo");
+                out.appendChild("control", "bell\u0007 del\u007f next\u0085 line end");
+                out.appendChild("unicode", "café € 😀");
+                out.appendChild("attribute", "value", "text", "tab\there\nnew line\r\"quoted\"\u0001");
+            }
+        });
+    }
+
+    @Test
+    public void testEmptyElements() throws Exception {
+        LOG.info("testEmptyElements");
+        assertSameOutput(new Elements() {
+            @Override
+            void write(XmlOutput out) {
+                out.startElement("noChildren");
+                out.endElement();
+                out.startElement("emptyContent");
+                out.setTextContent("");
+                out.endElement();
+                out.appendChild("emptyText", "");
+                out.appendChild("nullText", null);
+                out.appendChild("nullAttribute", "value", "name", null);
+                out.startElement("nested");
+                out.startElement("inner");
+                out.endElement();
+                out.endElement();
+            }
+        });
+    }
+
+    /**
+     * Write the elements inside a details element through both outputs and compare the files
+     */
+    private static void assertSameOutput(Elements elements) throws IOException, ParserConfigurationException {
+        File domFile = File.createTempFile("yamj-dom-", ".xml");
+        File streamFile = File.createTempFile("yamj-stream-", ".xml");
+        try {
+            Document doc = DOMHelper.createDocument();
+            DomXmlOutput domOut = new DomXmlOutput(doc);
+            domOut.startElement("details");
+            elements.write(domOut);
+            domOut.endElement();
+            doc.appendChild(domOut.getElement());
+            assertTrue("Failed to write the document", DOMHelper.writeDocumentToFile(doc, domFile));
+
+            try (StreamXmlOutput streamOut = new StreamXmlOutput(streamFile)) {
+                streamOut.startElement("details");
+                elements.write(streamOut);
+                streamOut.endElement();
+            }
+
+            byte[] expected = Files.readAllBytes(domFile.toPath());
+            byte[] actual = Files.readAllBytes(streamFile.toPath());
+            assertEquals("The streamed file is different", new String(expected, StandardCharsets.UTF_8), new String(actual, StandardCharsets.UTF_8));
+            assertArrayEquals("The streamed file is different", expected, actual);
+        } finally {
+            FileUtils.deleteQuietly(domFile);
+            FileUtils.deleteQuietly(streamFile);
+        }
+    }
+
+    /**
+     * The elements to write to each output
+     */
+    private abstract static class Elements {
+
+        abstract void write(XmlOutput out);
+    }
+}